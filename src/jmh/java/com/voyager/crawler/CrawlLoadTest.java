@@ -0,0 +1,203 @@
+package com.voyager.crawler;
+
+import com.voyager.crawler.core.*;
+import com.voyager.crawler.io.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+/**
+ * Crawls a {@link SyntheticWebServer} graph through the same wiring as the command line and
+ * reports, per run, pages saved per second, fetch latency percentiles, retries and peak heap.
+ * Results are printed as a table and written as JSON, so runs with different crawler options
+ * or builds can be compared. Run with
+ * {@code ./gradlew loadTest [-PloadTest.args="--hosts=50 --error-rate=0.05 --storage=archive"]}.
+ * <p>
+ * Options naming the graph or the run are read here; every other {@code --option} is passed to
+ * the crawler. Peak heap is sampled every few milliseconds and includes the server, whose pages
+ * are written from a shared buffer.
+ */
+public class CrawlLoadTest {
+    private static final Set<String> OPTIONS = Set.of("hosts", "pages", "fan-out", "same-host", "page-kb",
+            "latency-ms", "latency-sigma", "slow-hosts", "slow-factor", "throttle-rate", "error-rate",
+            "timeout-rate", "stall-ms", "seed", "depth", "runs", "results");
+    private static final Duration HEAP_SAMPLE_INTERVAL = Duration.ofMillis(5);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> crawlerOptions = new ArrayList<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = arg.startsWith("--") ? arg.substring(2, eq > 0 ? eq : arg.length()) : "";
+            if (OPTIONS.contains(name) && eq > 0) {
+                options.put(name, arg.substring(eq + 1));
+            } else if (arg.startsWith("--")) {
+                crawlerOptions.add(arg);
+            } else {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+        }
+
+        SyntheticWebServer.Graph graph = new SyntheticWebServer.Graph(
+                intOption(options, "hosts", 20),
+                intOption(options, "pages", 2000),
+                intOption(options, "fan-out", 10),
+                doubleOption(options, "same-host", 0.8),
+                intOption(options, "page-kb", 32) * 1024,
+                Duration.ofMillis(intOption(options, "latency-ms", 20)),
+                doubleOption(options, "latency-sigma", 0.5),
+                intOption(options, "slow-hosts", 2),
+                doubleOption(options, "slow-factor", 5),
+                doubleOption(options, "throttle-rate", 0.01),
+                doubleOption(options, "error-rate", 0.01),
+                doubleOption(options, "timeout-rate", 0),
+                Duration.ofMillis(intOption(options, "stall-ms", 16_000)),
+                intOption(options, "seed", 42));
+        int depth = intOption(options, "depth", 3);
+        int runs = intOption(options, "runs", 1);
+        Path resultsFile = Paths.get(options.getOrDefault("results", "loadtest-results.json"));
+
+        List<Run> results = new ArrayList<>();
+        try (SyntheticWebServer server = SyntheticWebServer.start(graph)) {
+            List<String> crawlerArgs = new ArrayList<>(List.of(server.seedUri().toString(),
+                    String.valueOf(graph.fanOut()), String.valueOf(depth), "true"));
+            crawlerArgs.addAll(crawlerOptions);
+            for (int i = 1; i <= runs; i++) {
+                server.reset();
+                results.add(run(i, crawlerArgs.toArray(new String[0]), server));
+            }
+        }
+
+        System.out.printf(Locale.US, "%n%-4s %10s %8s %10s %12s %12s %8s %8s %12s%n", "run", "time s", "pages",
+                "pages/s", "fetch p50", "fetch p99", "retries", "errors", "peak heap");
+        for (Run run : results) {
+            System.out.printf(Locale.US, "%-4d %10.2f %8d %10.1f %9.1f ms %9.1f ms %8d %8d %9.1f MB%n", run.index(),
+                    run.elapsedMs() / 1000.0, run.pagesSaved(), run.pagesPerSecond(), run.fetch().p50Millis(),
+                    run.fetch().p99Millis(), run.responses().retries(), run.responses().errors(),
+                    run.peakHeapBytes() / (1024.0 * 1024.0));
+        }
+        writeResults(resultsFile, graph, depth, crawlerOptions, results);
+        System.out.println("Results: " + resultsFile.toAbsolutePath());
+    }
+
+    private static Run run(int index, String[] args, SyntheticWebServer server) throws Exception {
+        Path outputDir = Files.createTempDirectory("load-test-");
+        System.gc();
+        try (HeapSampler heap = new HeapSampler()) {
+            CrawlMetrics metrics = CrawlerApplication.run(args, outputDir);
+            return new Run(index, metrics.elapsedNanos() / 1_000_000, metrics.progress().pagesSaved(),
+                    metrics.stages().fetch(), metrics.responses().total(), server.counts(), heap.peakBytes());
+        } finally {
+            deleteTree(outputDir);
+        }
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static void writeResults(Path file, SyntheticWebServer.Graph graph, int depth, List<String> crawlerOptions,
+            List<Run> results) throws IOException {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n  \"graph\": {\"hosts\": ").append(graph.hosts())
+                .append(", \"pagesPerHost\": ").append(graph.pagesPerHost())
+                .append(", \"fanOut\": ").append(graph.fanOut())
+                .append(", \"sameHostFraction\": ").append(graph.sameHostFraction())
+                .append(", \"pageBytes\": ").append(graph.pageBytes())
+                .append(", \"medianLatencyMs\": ").append(graph.medianLatency().toMillis())
+                .append(", \"latencySigma\": ").append(graph.latencySigma())
+                .append(", \"slowHosts\": ").append(graph.slowHosts())
+                .append(", \"slowFactor\": ").append(graph.slowFactor())
+                .append(", \"throttleRate\": ").append(graph.throttleRate())
+                .append(", \"errorRate\": ").append(graph.errorRate())
+                .append(", \"timeoutRate\": ").append(graph.timeoutRate())
+                .append(", \"stallMs\": ").append(graph.stall().toMillis())
+                .append(", \"seed\": ").append(graph.seed()).append("},\n");
+        json.append("  \"depth\": ").append(depth).append(",\n");
+        json.append("  \"crawlerOptions\": [")
+                .append(crawlerOptions.stream().map(option -> "\"" + option.replace("\\", "\\\\")
+                        .replace("\"", "\\\"") + "\"").collect(Collectors.joining(", ")))
+                .append("],\n");
+        json.append("  \"runs\": [");
+        for (int i = 0; i < results.size(); i++) {
+            Run run = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n").append(String.format(Locale.US,
+                    "    {\"run\": %d, \"elapsedMs\": %d, \"pagesSaved\": %d, \"pagesPerSecond\": %.3f,"
+                            + " \"fetchP50Ms\": %.3f, \"fetchP99Ms\": %.3f, \"retries\": %d, \"errors\": %d,"
+                            + " \"peakHeapBytes\": %d, \"server\": {\"requests\": %d, \"pages\": %d, \"throttled\": %d,"
+                            + " \"failed\": %d, \"stalled\": %d, \"notFound\": %d}}",
+                    run.index(), run.elapsedMs(), run.pagesSaved(), run.pagesPerSecond(), run.fetch().p50Millis(),
+                    run.fetch().p99Millis(), run.responses().retries(), run.responses().errors(), run.peakHeapBytes(),
+                    run.server().requests(), run.server().pages(), run.server().throttled(), run.server().failed(),
+                    run.server().stalled(), run.server().notFound()));
+        }
+        json.append(results.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(file, json, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private record Run(int index, long elapsedMs, int pagesSaved, StageStats.Snapshot fetch,
+            ResponseStats.HostSnapshot responses, SyntheticWebServer.Counts server, long peakHeapBytes) {
+        double pagesPerSecond() {
+            return elapsedMs == 0 ? 0 : pagesSaved * 1000.0 / elapsedMs;
+        }
+    }
+
+    /**
+     * Samples used heap on a daemon thread until closed and keeps the largest sample.
+     */
+    private static final class HeapSampler implements AutoCloseable {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final ScheduledExecutorService timer;
+        private final LongAccumulator peakBytes = new LongAccumulator(Math::max, 0);
+
+        HeapSampler() {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "heap-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = HEAP_SAMPLE_INTERVAL.toNanos();
+            timer.scheduleAtFixedRate(this::sample, 0, interval, TimeUnit.NANOSECONDS);
+        }
+
+        private void sample() {
+            peakBytes.accumulate(memory.getHeapMemoryUsage().getUsed());
+        }
+
+        long peakBytes() {
+            sample();
+            return peakBytes.get();
+        }
+
+        @Override
+        public void close() {
+            timer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.voyager.crawler;
+
+import com.sun.net.httpserver.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * In-process web of synthetic hosts for load tests. Each host is a separate {@link HttpServer}
+ * on its own loopback port, so the crawler's scheduler treats them as distinct hosts. Page
+ * {@code /p/<n>} of a host (and {@code /}, which is page 0) links to {@code fanOut} pages picked
+ * by a seeded hash, mostly on the same host, and is padded with text to the configured size.
+ * <p>
+ * Everything random is derived from the seed, the page and how many times the page was asked
+ * for, so a run with the same graph sees the same links, latencies and injected faults: a
+ * {@code 429} with {@code Retry-After}, a {@code 503} or {@code 500}, or a response held back
+ * until the client's timeout has passed. Response latency is log-normal around a per-host
+ * median; the last {@code slowHosts} hosts are slower by {@code slowFactor}. Other paths,
+ * {@code /robots.txt} included, answer {@code 404}.
+ */
+public final class SyntheticWebServer implements AutoCloseable {
+    private static final byte[] FILLER = ("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod"
+            + " tempor incididunt ut labore et dolore magna aliqua. Ut enim ad minim veniam, quis nostrud exercitation"
+            + " ullamco laboris nisi ut aliquip ex ea commodo consequat. ").repeat(32)
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final Graph graph;
+    private final List<HttpServer> hosts = new ArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentMap<Long, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+
+    /**
+     * Shape of the synthetic web and the faults injected into it.
+     *
+     * @param hosts            number of hosts.
+     * @param pagesPerHost     pages each host serves.
+     * @param fanOut           links on each page.
+     * @param sameHostFraction fraction of links that stay on the page's host.
+     * @param pageBytes        size of each page; pages are never smaller than their links.
+     * @param medianLatency    median time before a host answers.
+     * @param latencySigma     log-normal shape of the latency; 0 answers after exactly the median.
+     * @param slowHosts        number of hosts whose median latency is multiplied by {@code slowFactor}.
+     * @param slowFactor       latency multiplier of the slow hosts.
+     * @param throttleRate     fraction of requests answered {@code 429}.
+     * @param errorRate        fraction of requests answered {@code 503} or {@code 500}.
+     * @param timeoutRate      fraction of requests held back for {@code stall} before the page is sent.
+     * @param stall            how long a held-back request waits.
+     * @param seed             seed of the links, latencies and faults.
+     */
+    public record Graph(int hosts, int pagesPerHost, int fanOut, double sameHostFraction, int pageBytes,
+            Duration medianLatency, double latencySigma, int slowHosts, double slowFactor, double throttleRate,
+            double errorRate, double timeoutRate, Duration stall, long seed) {
+        public Graph {
+            if (hosts <= 0 || pagesPerHost <= 0 || fanOut < 0 || pageBytes < 0) {
+                throw new IllegalArgumentException("hosts and pagesPerHost must be positive, fanOut and pageBytes"
+                        + " non-negative");
+            }
+            if (slowHosts < 0 || slowHosts > hosts || slowFactor <= 0 || latencySigma < 0) {
+                throw new IllegalArgumentException("slowHosts must be at most hosts, slowFactor positive, latencySigma"
+                        + " non-negative");
+            }
+            if (sameHostFraction < 0 || sameHostFraction > 1 || throttleRate < 0 || errorRate < 0 || timeoutRate < 0
+                    || throttleRate + errorRate + timeoutRate > 1) {
+                throw new IllegalArgumentException("fractions must be between 0 and 1, fault rates summing to at"
+                        + " most 1");
+            }
+            Objects.requireNonNull(medianLatency, "medianLatency must not be null");
+            Objects.requireNonNull(stall, "stall must not be null");
+        }
+    }
+
+    /**
+     * Requests served since the last {@link #reset()}.
+     *
+     * @param requests  all requests.
+     * @param pages     pages sent in full, including those sent after a stall.
+     * @param throttled requests answered {@code 429}.
+     * @param failed    requests answered {@code 503} or {@code 500}.
+     * @param stalled   requests held back.
+     * @param notFound  requests for paths that are not pages.
+     */
+    public record Counts(long requests, long pages, long throttled, long failed, long stalled, long notFound) {
+    }
+
+    private SyntheticWebServer(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Starts the hosts of a graph on ephemeral loopback ports.
+     */
+    public static SyntheticWebServer start(Graph graph) throws IOException {
+        SyntheticWebServer server = new SyntheticWebServer(graph);
+        try {
+            for (int i = 0; i < graph.hosts(); i++) {
+                server.hosts.add(server.startHost(i));
+            }
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        return server;
+    }
+
+    private HttpServer startHost(int index) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        http.createContext("/", exchange -> handle(index, exchange));
+        http.setExecutor(executor);
+        http.start();
+        return http;
+    }
+
+    /**
+     * Returns the URI of page 0 of the first host.
+     */
+    public URI seedUri() {
+        return URI.create(origin(0) + "/");
+    }
+
+    private String origin(int host) {
+        return "http://127.0.0.1:" + hosts.get(host).getAddress().getPort();
+    }
+
+    private void handle(int host, HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            int page = pageOf(exchange.getRequestURI().getPath());
+            if (page < 0) {
+                notFound.increment();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            long key = (long) host * graph.pagesPerHost() + page;
+            int attempt = attempts.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+            SplittableRandom random = new SplittableRandom(mix(graph.seed(), key, attempt));
+
+            Thread.sleep(latency(host, random));
+            double fault = random.nextDouble();
+            if (fault < graph.throttleRate()) {
+                throttled.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+            fault -= graph.throttleRate();
+            if (fault < graph.errorRate()) {
+                failed.increment();
+                exchange.sendResponseHeaders(random.nextBoolean() ? 503 : 500, -1);
+                return;
+            }
+            fault -= graph.errorRate();
+            if (fault < graph.timeoutRate()) {
+                stalled.increment();
+                Thread.sleep(graph.stall());
+            }
+            sendPage(host, page, exchange);
+            pages.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private int pageOf(String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (!path.startsWith("/p/")) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(path.substring(3));
+            return page >= 0 && page < graph.pagesPerHost() ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Duration latency(int host, SplittableRandom random) {
+        double nanos = graph.medianLatency().toNanos() * Math.exp(graph.latencySigma() * random.nextGaussian());
+        if (host >= graph.hosts() - graph.slowHosts()) {
+            nanos *= graph.slowFactor();
+        }
+        return Duration.ofNanos((long) nanos);
+    }
+
+    /**
+     * Sends a page: its links first, so a crawler that follows only the first few finds them,
+     * then filler text up to the page size, written from a shared buffer.
+     */
+    private void sendPage(int host, int page, HttpExchange exchange) throws IOException {
+        StringBuilder head = new StringBuilder(256 + graph.fanOut() * 64);
+        head.append("<!DOCTYPE html>\n<html><head><title>Host ").append(host).append(" page ").append(page)
+                .append("</title></head>\n<body>\n<ul>\n");
+        for (int k = 0; k < graph.fanOut(); k++) {
+            long link = mix(graph.seed(), (long) host * graph.pagesPerHost() + page, -1 - k);
+            SplittableRandom random = new SplittableRandom(link);
+            int targetHost = random.nextDouble() < graph.sameHostFraction() ? host : random.nextInt(graph.hosts());
+            int targetPage = random.nextInt(graph.pagesPerHost());
+            head.append("<li><a href=\"").append(origin(targetHost)).append("/p/").append(targetPage)
+                    .append("\">Page ").append(targetPage).append("</a></li>\n");
+        }
+        head.append("</ul>\n<p>");
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+        byte[] tailBytes = "</p>\n</body></html>\n".getBytes(StandardCharsets.US_ASCII);
+        long filler = Math.max(0, graph.pageBytes() - headBytes.length - tailBytes.length);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, headBytes.length + filler + tailBytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(headBytes);
+            while (filler > 0) {
+                int chunk = (int) Math.min(filler, FILLER.length);
+                out.write(FILLER, 0, chunk);
+                filler -= chunk;
+            }
+            out.write(tailBytes);
+        }
+    }
+
+    private static long mix(long seed, long a, long b) {
+        long h = seed;
+        h = mix64(h ^ mix64(a + 0x9E3779B97F4A7C15L));
+        h = mix64(h ^ mix64(b + 0xC2B2AE3D27D4EB4FL));
+        return h;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the requests served since the last reset.
+     */
+    public Counts counts() {
+        return new Counts(requests.sum(), pages.sum(), throttled.sum(), failed.sum(), stalled.sum(),
+                notFound.sum());
+    }
+
+    /**
+     * Clears the counts and the per-page request numbers, so the next crawl sees the same
+     * faults as the first one.
+     */
+    public void reset() {
+        attempts.clear();
+        requests.reset();
+        pages.reset();
+        throttled.reset();
+        failed.reset();
+        stalled.reset();
+        notFound.reset();
+    }
+
+    @Override
+    public void close() {
+        hosts.forEach(http -> http.stop(0));
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,26 @@
+package com.voyager.crawler.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Contention benchmark for the {@link StageStats} histograms: several threads record latencies
+ * into one stage at once, as the crawl tasks of a depth do after every fetch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class StageStatsBenchmark {
+    private final StageStats stats = new StageStats();
+
+    @Benchmark
+    public void recordFetch() {
+        // Fetch latencies between 1 ms and 1 s.
+        stats.recordFetch(ThreadLocalRandom.current().nextLong(1_000_000, 1_000_000_000));
+    }
+}
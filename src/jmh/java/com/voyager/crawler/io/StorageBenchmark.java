@@ -0,0 +1,60 @@
+package com.voyager.crawler.io;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Write throughput of the storage backends: several threads save corpus pages under distinct
+ * URLs, as the crawl tasks of one depth do. See {@link StorageFootprint} for the on-disk size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class StorageBenchmark {
+    @Param({"files", "files-sharded", "archive", "archive-gzip"})
+    public String implementation;
+
+    private final AtomicLong nextPage = new AtomicLong();
+    private List<byte[]> pages;
+    private Path root;
+    private ByteContentStorage storage;
+
+    @Setup(Level.Trial)
+    public void loadCorpus() throws IOException {
+        pages = StorageFootprint.loadCorpus();
+    }
+
+    @Setup(Level.Iteration)
+    public void createStorage() throws IOException {
+        root = Files.createTempDirectory("storage-benchmark-");
+        storage = StorageFootprint.create(implementation, root);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteStorage() throws IOException {
+        if (storage instanceof ArchiveStorage archive) {
+            archive.close();
+        } else if (storage instanceof LocalFileStorage files) {
+            files.close();
+        }
+        StorageFootprint.deleteTree(root);
+    }
+
+    @Benchmark
+    public void save() {
+        long i = nextPage.getAndIncrement();
+        try (PageBody body = PageBody.wrap(pages.get((int) (i % pages.size())), StandardCharsets.UTF_8)) {
+            storage.save(StorageFootprint.url(i), body, (int) (i % 3));
+        }
+    }
+}
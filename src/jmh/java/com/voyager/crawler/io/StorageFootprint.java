@@ -0,0 +1,97 @@
+package com.voyager.crawler.io;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Writes the test corpus pages through each storage backend and reports write throughput and
+ * on-disk footprint: logical bytes, bytes allocated in file-system blocks, and file count. Run
+ * with {@code ./gradlew storageFootprint [-Ppages=<n>]}.
+ */
+public class StorageFootprint {
+    static final List<String> IMPLEMENTATIONS = List.of("files", "files-sharded", "archive", "archive-gzip");
+    private static final List<String> CORPUS = List.of("news_front.html", "blog_article.html", "latin1.html",
+            "base_tag.html");
+
+    public static void main(String[] args) throws IOException {
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        List<byte[]> pages = loadCorpus();
+        System.out.printf(Locale.US, "%-14s %12s %12s %14s %10s%n", "impl", "pages/s", "logical MB",
+                "allocated MB", "files");
+        for (String implementation : IMPLEMENTATIONS) {
+            Path root = Files.createTempDirectory("storage-footprint-");
+            try {
+                ByteContentStorage storage = create(implementation, root);
+                long start = System.nanoTime();
+                for (int i = 0; i < pageCount; i++) {
+                    try (PageBody body = PageBody.wrap(pages.get(i % pages.size()), StandardCharsets.UTF_8)) {
+                        storage.save(url(i), body, i % 3);
+                    }
+                }
+                if (storage instanceof ArchiveStorage archive) {
+                    archive.close();
+                } else if (storage instanceof LocalFileStorage files) {
+                    files.close();
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                long blockSize = Files.getFileStore(root).getBlockSize();
+                long logical = 0;
+                long allocated = 0;
+                long files = 0;
+                try (Stream<Path> paths = Files.walk(root)) {
+                    for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                        long size = Files.size(file);
+                        logical += size;
+                        allocated += (size + blockSize - 1) / blockSize * blockSize;
+                        files++;
+                    }
+                }
+                System.out.printf(Locale.US, "%-14s %12.0f %12.1f %14.1f %10d%n", implementation,
+                        pageCount / seconds, logical / (1024.0 * 1024.0), allocated / (1024.0 * 1024.0), files);
+            } finally {
+                deleteTree(root);
+            }
+        }
+    }
+
+    static ByteContentStorage create(String implementation, Path root) {
+        return switch (implementation) {
+            case "files" -> new LocalFileStorage(root.toString());
+            case "files-sharded" -> new LocalFileStorage(root.toString(), true);
+            case "archive" -> new ArchiveStorage(root, false);
+            case "archive-gzip" -> new ArchiveStorage(root, true);
+            default -> throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        };
+    }
+
+    static List<byte[]> loadCorpus() throws IOException {
+        List<byte[]> pages = new ArrayList<>();
+        for (String name : CORPUS) {
+            try (InputStream in = StorageFootprint.class.getResourceAsStream("/corpus/" + name)) {
+                if (in == null) {
+                    throw new FileNotFoundException("Missing corpus file " + name);
+                }
+                pages.add(in.readAllBytes());
+            }
+        }
+        return pages;
+    }
+
+    static URI url(long i) {
+        return URI.create("https://host" + (i % 1009) + ".example.com/section/" + (i % 37) + "/article-" + i
+                + ".html?ref=front");
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.voyager.crawler.parser;
+
+import com.voyager.crawler.io.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compares {@link JsoupHtmlParser} and {@link StreamingHtmlParser} on the test corpus, for both
+ * string and byte-body input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractionBenchmark {
+    private static final URI PAGE_URI = URI.create("https://example.com/section/page.html");
+
+    @Param({"news_front.html", "blog_article.html", "latin1.html"})
+    public String page;
+
+    private final HtmlParser jsoup = new JsoupHtmlParser();
+    private final HtmlParser streaming = new StreamingHtmlParser();
+    private final HtmlParser streamingLimited = new StreamingHtmlParser(5);
+    private String html;
+    private PageBody body;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] bytes;
+        try (InputStream in = LinkExtractionBenchmark.class.getResourceAsStream("/corpus/" + page)) {
+            if (in == null) {
+                throw new FileNotFoundException("Missing corpus file " + page);
+            }
+            bytes = in.readAllBytes();
+        }
+        Charset charset = HtmlCharsets.fromMeta(bytes, bytes.length).orElse(StandardCharsets.UTF_8);
+        body = PageBody.wrap(bytes, charset);
+        html = body.decode();
+    }
+
+    @TearDown
+    public void tearDown() {
+        body.close();
+    }
+
+    @Benchmark
+    public Set<URI> jsoupString() {
+        return jsoup.extractLinks(PAGE_URI, html);
+    }
+
+    @Benchmark
+    public Set<URI> streamingString() {
+        return streaming.extractLinks(PAGE_URI, html);
+    }
+
+    @Benchmark
+    public Set<URI> jsoupBody() {
+        return jsoup.extractLinks(PAGE_URI, body);
+    }
+
+    @Benchmark
+    public Set<URI> streamingBody() {
+        return streaming.extractLinks(PAGE_URI, body);
+    }
+
+    @Benchmark
+    public Set<URI> streamingBodyFirstFiveLinks() {
+        return streamingLimited.extractLinks(PAGE_URI, body);
+    }
+}
@@ -0,0 +1,52 @@
+package com.voyager.crawler.util;
+
+import java.lang.management.*;
+import java.lang.ref.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * Measures the retained heap of each {@link UrlDedupService} implementation after visiting a
+ * number of distinct URLs. Run with {@code ./gradlew dedupFootprint [-Purls=<n>]}.
+ */
+public class DedupFootprint {
+    private static final List<String> IMPLEMENTATIONS = List.of("set", "fingerprint", "bloom");
+
+    public static void main(String[] args) {
+        int urlCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf(Locale.US, "%-12s %12s %14s%n", "impl", "retained MB", "bytes per URL");
+        for (String implementation : IMPLEMENTATIONS) {
+            long before = usedHeapAfterGc();
+            UrlDedupService service = create(implementation, urlCount);
+            for (int i = 0; i < urlCount; i++) {
+                service.visit(url(i));
+            }
+            long retained = usedHeapAfterGc() - before;
+            System.out.printf(Locale.US, "%-12s %12.1f %14.1f   (size=%d)%n", implementation,
+                    retained / (1024.0 * 1024.0), retained / (double) urlCount, service.size());
+            Reference.reachabilityFence(service);
+        }
+    }
+
+    static UrlDedupService create(String implementation, int expectedUrls) {
+        return switch (implementation) {
+            case "set" -> new ConcurrentDedupService();
+            case "fingerprint" -> new FingerprintDedupService();
+            case "bloom" -> new BloomFilterDedupService(expectedUrls, 0.001);
+            default -> throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        };
+    }
+
+    static URI url(int i) {
+        return URI.create("https://host" + (i % 1009) + ".example.com/section/" + (i % 37) + "/article-" + i
+                + ".html?ref=front");
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
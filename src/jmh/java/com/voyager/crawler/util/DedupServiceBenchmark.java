@@ -0,0 +1,57 @@
+package com.voyager.crawler.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.*;
+import java.util.concurrent.*;
+
+/**
+ * Contention benchmark for the {@link UrlDedupService} implementations: several threads visit
+ * overlapping URLs, first inserting them and then mostly hitting URLs already seen, as a crawl
+ * with global uniqueness does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class DedupServiceBenchmark {
+    private static final int URL_COUNT = 1 << 20;
+
+    @Param({"set", "fingerprint", "bloom"})
+    public String implementation;
+
+    private URI[] urls;
+    private UrlDedupService service;
+
+    @Setup(Level.Trial)
+    public void createUrls() {
+        urls = new URI[URL_COUNT];
+        for (int i = 0; i < URL_COUNT; i++) {
+            urls[i] = DedupFootprint.url(i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createService() {
+        service = DedupFootprint.create(implementation, URL_COUNT);
+    }
+
+    /**
+     * Per-thread position in the shared URL array; threads start at different offsets so they
+     * both race on and share entries.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = ThreadLocalRandom.current().nextInt(URL_COUNT);
+    }
+
+    @Benchmark
+    public boolean visit(Cursor cursor) {
+        int index = cursor.next;
+        cursor.next = (index + 1) & (URL_COUNT - 1);
+        return service.visit(urls[index]);
+    }
+}
@@ -0,0 +1,94 @@
+package com.voyager.crawler.util;
+
+import com.voyager.crawler.core.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Cost of the {@link RobotsRules} check made for every extracted link, against a
+ * {@code robots.txt} shaped like a large news site's: a few dozen prefix rules and some wildcard
+ * and end-anchored ones, compared with rules that allow everything. Paths are drawn from a
+ * fixed mix of allowed and disallowed URLs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RobotsRulesBenchmark {
+    private static final String ROBOTS_TXT = """
+            User-agent: *
+            Disallow: /search
+            Disallow: /login
+            Disallow: /account/
+            Disallow: /cart
+            Disallow: /checkout/
+            Disallow: /api/
+            Disallow: /internal/
+            Disallow: /print/
+            Disallow: /preview/
+            Disallow: /tag/*/feed
+            Disallow: /*?utm_source=
+            Disallow: /*&utm_source=
+            Disallow: /*?sessionid=
+            Disallow: /*.pdf$
+            Disallow: /*.json$
+            Allow: /api/public/
+            Allow: /search/about
+            Disallow: /archive/19
+            Disallow: /archive/200
+            Disallow: /comments/
+            Disallow: /share/
+            Disallow: /embed/
+            Disallow: /amp/*/comments
+            Crawl-delay: 1
+
+            User-agent: SomeOtherBot
+            Disallow: /
+            """;
+
+    private static final String[] PATHS = {
+            "/",
+            "/news/world/2024/02/14/lead-story",
+            "/news/world/2024/02/14/lead-story?utm_source=home&utm_medium=lead",
+            "/search?q=election",
+            "/search/about",
+            "/sport/football/premier-league/table",
+            "/tag/politics/feed",
+            "/tag/politics",
+            "/reports/annual-2023.pdf",
+            "/reports/annual-2023.pdf?download=1",
+            "/api/public/v1/headlines",
+            "/api/v1/private",
+            "/archive/2015/03/story-1234",
+            "/archive/1998/01/story-1",
+            "/amp/business/markets/comments",
+            "/business/index.html?page=2&section=markets",
+    };
+
+    @Param({"news", "empty"})
+    public String robots;
+
+    private RobotsRules rules;
+    private URI[] uris;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rules = robots.equals("news")
+                ? RobotsRules.parse(ROBOTS_TXT, RobotsCache.PRODUCT_TOKEN)
+                : RobotsRules.allowAll();
+        uris = Arrays.stream(PATHS).map(path -> URI.create("https://news.example.com" + path)).toArray(URI[]::new);
+    }
+
+    @Benchmark
+    public boolean isAllowed() {
+        int index = next;
+        next = index + 1 < uris.length ? index + 1 : 0;
+        return rules.isAllowed(uris[index]);
+    }
+}
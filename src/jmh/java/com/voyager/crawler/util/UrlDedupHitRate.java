@@ -0,0 +1,139 @@
+package com.voyager.crawler.util;
+
+import org.jsoup.*;
+import org.jsoup.nodes.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Compares how many duplicate spellings of the same page each normalization collapses. The
+ * input is the corpus anchors, each followed by spellings a crawl meets in practice: an
+ * upper-case host, an explicit default port, a dot segment, lower-case escapes, tracking
+ * parameters, reordered query parameters and a fragment. For each method it prints the
+ * distinct URLs left and the share of visits the dedup service would then reject. Run with
+ * {@code ./gradlew urlDedupHitRate}.
+ */
+public class UrlDedupHitRate {
+    static final URI PAGE_URI = URI.create("https://example.com/section/page.html");
+    private static final List<String> CORPUS = List.of("news_front.html", "blog_article.html", "latin1.html",
+            "base_tag.html");
+
+    public static void main(String[] args) throws IOException {
+        List<URI> links = loadLinks();
+        List<URI> visits = new ArrayList<>();
+        for (URI link : links) {
+            visits.add(link);
+            visits.addAll(variants(link));
+        }
+        Map<String, UnaryOperator<URI>> methods = new LinkedHashMap<>();
+        methods.put("none", uri -> uri);
+        methods.put("legacy", UrlDedupHitRate::legacyNormalize);
+        methods.put("syntax", UrlCanonicalizer.SYNTAX_ONLY::canonicalize);
+        methods.put("tracking", UrlCanonicalizer.DEFAULT::canonicalize);
+        methods.put("tracking+sort",
+                new UrlCanonicalizer(UrlCanonicalizer.DEFAULT_TRACKING_PARAMETERS, true)::canonicalize);
+
+        System.out.printf(Locale.US, "%d corpus links, %d visits including variants%n", links.size(), visits.size());
+        System.out.printf(Locale.US, "%-14s %10s %10s%n", "method", "distinct", "hit rate");
+        for (Map.Entry<String, UnaryOperator<URI>> method : methods.entrySet()) {
+            ConcurrentDedupService dedup = new ConcurrentDedupService();
+            int hits = 0;
+            for (URI visit : visits) {
+                if (!dedup.visit(method.getValue().apply(visit))) {
+                    hits++;
+                }
+            }
+            System.out.printf(Locale.US, "%-14s %10d %9.1f%%%n", method.getKey(), visits.size() - hits,
+                    hits * 100.0 / visits.size());
+        }
+    }
+
+    /**
+     * The normalization used before {@link UrlCanonicalizer}: the URI rebuilt from its decoded
+     * components without the fragment.
+     */
+    static URI legacyNormalize(URI uri) {
+        try {
+            return new URI(uri.getScheme(), uri.getUserInfo(), uri.getHost(), uri.getPort(), uri.getPath(),
+                    uri.getQuery(), null);
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * Returns the absolute HTTP(S) targets of the corpus anchors, resolved against
+     * {@link #PAGE_URI} but not normalized.
+     */
+    static List<URI> loadLinks() throws IOException {
+        List<URI> links = new ArrayList<>();
+        for (String page : CORPUS) {
+            try (InputStream in = UrlDedupHitRate.class.getResourceAsStream("/corpus/" + page)) {
+                if (in == null) {
+                    throw new FileNotFoundException("Missing corpus file " + page);
+                }
+                Document document = Jsoup.parse(in, null, PAGE_URI.toString());
+                for (Element anchor : document.select("a[href]")) {
+                    URI uri = UrlUtils.resolve(PAGE_URI, anchor.attr("href"));
+                    if (uri != null && uri.getHost() != null && uri.getScheme().startsWith("http")) {
+                        links.add(uri);
+                    }
+                }
+            }
+        }
+        return links;
+    }
+
+    private static List<URI> variants(URI link) {
+        String scheme = link.getScheme();
+        String authority = link.getRawAuthority();
+        String path = link.getRawPath() == null || link.getRawPath().isEmpty() ? "/" : link.getRawPath();
+        String query = link.getRawQuery();
+        String rest = path + (query != null ? "?" + query : "");
+        int defaultPort = scheme.equals("https") ? 443 : 80;
+        String trackingSeparator = query != null ? "&" : "?";
+
+        List<String> spellings = new ArrayList<>();
+        spellings.add(scheme.toUpperCase(Locale.ROOT) + "://" + authority.toUpperCase(Locale.ROOT) + rest);
+        if (link.getPort() == -1) {
+            spellings.add(scheme + "://" + authority + ":" + defaultPort + rest);
+        }
+        spellings.add(scheme + "://" + authority + "/." + rest);
+        spellings.add(scheme + "://" + authority + rest + trackingSeparator
+                + "utm_source=newsletter&utm_medium=email");
+        spellings.add(scheme + "://" + authority + rest + trackingSeparator + "fbclid=IwAR0abc");
+        spellings.add(scheme + "://" + authority + rest + "#comments");
+        if (rest.contains("%")) {
+            spellings.add(scheme + "://" + authority + lowerCaseEscapes(rest));
+        }
+        if (query != null && query.contains("&")) {
+            List<String> parameters = new ArrayList<>(List.of(query.split("&")));
+            Collections.reverse(parameters);
+            spellings.add(scheme + "://" + authority + path + "?" + String.join("&", parameters));
+        }
+
+        List<URI> uris = new ArrayList<>();
+        for (String spelling : spellings) {
+            try {
+                uris.add(new URI(spelling));
+            } catch (URISyntaxException e) {
+                // The variant is not a valid URI; a parser would drop it too.
+            }
+        }
+        return uris;
+    }
+
+    private static String lowerCaseEscapes(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i + 2 < chars.length; i++) {
+            if (chars[i] == '%') {
+                chars[i + 1] = Character.toLowerCase(chars[i + 1]);
+                chars[i + 2] = Character.toLowerCase(chars[i + 2]);
+            }
+        }
+        return new String(chars);
+    }
+}
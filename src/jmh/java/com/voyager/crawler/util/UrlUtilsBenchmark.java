@@ -0,0 +1,102 @@
+package com.voyager.crawler.util;
+
+import org.jsoup.*;
+import org.jsoup.nodes.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Per-link cost of the {@link UrlUtils} helpers every extracted link goes through: resolving
+ * the raw {@code href}, canonicalizing the result, deriving its host key and its file name. The
+ * links are the anchors of the test corpus, cycled in document order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlUtilsBenchmark {
+    private static final URI PAGE_URI = URI.create("https://example.com/section/page.html");
+    private static final String[] CORPUS = {"news_front.html", "blog_article.html", "latin1.html", "base_tag.html"};
+
+    private String[] hrefs;
+    private URI[] links;
+    private int next;
+
+    @Setup
+    public void loadLinks() throws IOException {
+        List<String> values = new ArrayList<>();
+        for (String page : CORPUS) {
+            try (InputStream in = UrlUtilsBenchmark.class.getResourceAsStream("/corpus/" + page)) {
+                if (in == null) {
+                    throw new FileNotFoundException("Missing corpus file " + page);
+                }
+                Document document = Jsoup.parse(in, null, PAGE_URI.toString());
+                for (Element anchor : document.select("a[href]")) {
+                    values.add(anchor.attr("href"));
+                }
+            }
+        }
+        List<URI> resolved = new ArrayList<>();
+        for (String href : values) {
+            URI uri = UrlUtils.resolve(PAGE_URI, href);
+            if (uri != null && uri.getHost() != null) {
+                resolved.add(uri);
+            }
+        }
+        hrefs = values.toArray(new String[0]);
+        links = resolved.toArray(new URI[0]);
+    }
+
+    private int nextIndex(int length) {
+        int index = next;
+        next = index + 1 < length ? index + 1 : 0;
+        return index;
+    }
+
+    @Benchmark
+    public URI resolve() {
+        return UrlUtils.resolve(PAGE_URI, hrefs[nextIndex(hrefs.length)]);
+    }
+
+    @Benchmark
+    public URI normalize() {
+        return UrlUtils.normalize(links[nextIndex(links.length)]);
+    }
+
+    /**
+     * The normalization used before {@link UrlCanonicalizer}, for comparison.
+     */
+    @Benchmark
+    public URI legacyNormalize() {
+        return UrlDedupHitRate.legacyNormalize(links[nextIndex(links.length)]);
+    }
+
+    @Benchmark
+    public URI canonicalizeStrippingTracking() {
+        return UrlCanonicalizer.DEFAULT.canonicalize(links[nextIndex(links.length)]);
+    }
+
+    @Benchmark
+    public String hostKey() {
+        return UrlUtils.hostKey(links[nextIndex(links.length)]);
+    }
+
+    @Benchmark
+    public String toFilename() {
+        return UrlUtils.toFilename(links[nextIndex(links.length)]);
+    }
+
+    /**
+     * Everything a new link costs before the dedup check: resolve, then normalize.
+     */
+    @Benchmark
+    public URI resolveAndNormalize() {
+        return UrlUtils.normalize(UrlUtils.resolve(PAGE_URI, hrefs[nextIndex(hrefs.length)]));
+    }
+}
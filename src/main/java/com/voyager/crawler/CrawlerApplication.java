@@ -5,8 +5,11 @@ import com.voyager.crawler.core.*;
 import com.voyager.crawler.io.*;
 import com.voyager.crawler.parser.*;
 import com.voyager.crawler.util.*;
+import jdk.jfr.*;
+import java.io.*;
 import java.net.*;
 import java.nio.file.*;
+import java.text.*;
 import java.time.*;
 import java.time.format.*;
 import java.util.*;
@@ -17,7 +20,19 @@ import java.util.*;
 public class CrawlerApplication {
     private static final String OUTPUT_BASE_DIR = "crawled_data";
     private static final String OUTPUT_DIR_PREFIX = "crawler_output_";
+    private static final String FRONTIER_SPILL_DIR = ".frontier";
+    private static final String JOURNAL_FILE = ".checkpoint/journal.tsv";
+    private static final String ALIAS_FILE = ".index/aliases.tsv";
+    private static final String CONTENT_FILE = ".index/contents.tsv";
+    private static final String METRICS_FILE = "metrics.json";
+    private static final String RECORDING_FILE = "crawl.jfr";
     private static final DateTimeFormatter OUTPUT_DIR_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final Set<String> KNOWN_OPTIONS = Set.of("mode", "parser", "max-concurrency",
+            "per-host-concurrency", "host-interval-ms", "dedup", "bloom-capacity", "bloom-fpp",
+            "frontier-memory", "resume", "incremental", "content-dedup", "storage",
+            "storage-writers", "http", "http-threads", "store-compressed", "body-budget-mb", "max-page-kb",
+            "concurrency", "ignore-robots", "progress-interval-s", "jfr", "tracking-params", "sort-query",
+            "log-level", "cluster", "node");
 
     /**
      * CLI entry point for running the crawler.
@@ -26,32 +41,7 @@ public class CrawlerApplication {
      */
     public static void main(String[] args) {
         try {
-            CliArguments cli = parseArguments(args);
-
-            String outputDirName = buildOutputDirName();
-            Path outputDir = Paths.get(outputDirName).toAbsolutePath().normalize();
-
-            printBanner(cli.seedUrl(), cli.maxDepth(), cli.maxLinksPerPage(), cli.isUnique(), outputDir);
-
-            CrawlerConfig config = new CrawlerConfig(cli.seedUrl(), cli.maxLinksPerPage(), cli.maxDepth(),
-                    cli.isUnique());
-
-            ContentFetcher fetcher = new JavaHttpClientFetcher();
-            HtmlParser parser = new JsoupHtmlParser();
-            ContentStorage storage = new LocalFileStorage(outputDirName);
-            UrlDedupService dedupService = new ConcurrentDedupService();
-
-            CrawlerManager manager = new CrawlerManager(config, fetcher, parser, storage, dedupService);
-
-            long startTimeNs = System.nanoTime();
-            try {
-                manager.crawl();
-            } finally {
-                manager.shutdown();
-            }
-            long durationMs = (System.nanoTime() - startTimeNs) / 1_000_000;
-            printSummary(durationMs, outputDir);
-
+            run(args, null);
         } catch (NumberFormatException e) {
             printError(e.getMessage());
             printUsage();
@@ -67,12 +57,127 @@ public class CrawlerApplication {
         }
     }
 
+    /**
+     * Runs a crawl as {@link #main(String[])} does, but throws on failure instead of exiting.
+     *
+     * @param args      command-line arguments.
+     * @param outputDirOverride directory to write the crawl to, or null for the resumed directory or
+     *                          a new timestamped one.
+     * @return the metrics of the finished crawl.
+     */
+    static CrawlMetrics run(String[] args, Path outputDirOverride) throws Exception {
+        CliArguments cli = parseArguments(args);
+        ConsolePrinter.setLevel(cli.logLevel());
+        ConsolePrinter.startAsync();
+        try {
+            return crawl(cli, outputDirOverride);
+        } finally {
+            ConsolePrinter.stopAsync();
+            ConsolePrinter.setLevel(ConsolePrinter.Level.INFO);
+        }
+    }
+
+    private static CrawlMetrics crawl(CliArguments cli, Path outputDirOverride) throws Exception {
+        Path outputDir = (outputDirOverride != null ? outputDirOverride
+                : Paths.get(cli.resumeDir() != null ? cli.resumeDir() : buildOutputDirName(cli.cluster())))
+                .toAbsolutePath().normalize();
+
+        CrawlerConfig config = createConfig(cli);
+
+        Path journalFile = outputDir.resolve(JOURNAL_FILE);
+        CrawlCheckpoint checkpoint = null;
+        if (cli.resumeDir() != null) {
+            checkpoint = CrawlCheckpoint.load(journalFile);
+            checkpoint.requireCompatible(config);
+        }
+
+        Path recordingFile = cli.jfr() == null ? null
+                : cli.jfr().equals("true") ? outputDir.resolve(RECORDING_FILE)
+                : Paths.get(cli.jfr()).toAbsolutePath();
+        printBanner(cli, outputDir, recordingFile);
+
+        ContentStorage storage = createStorage(cli, outputDir);
+        HostScheduler scheduler = new HostScheduler(cli.politeness());
+        ContentFetcher fetcher = createFetcher(cli, storage, scheduler);
+        RobotsCache robots = cli.obeyRobots() ? new RobotsCache(scheduler) : null;
+        HtmlParser parser = createParser(cli);
+        UrlDedupService dedupService = createDedupService(cli.dedup());
+        Path spillDir = outputDir.resolve(FRONTIER_SPILL_DIR);
+        FrontierConfig frontierConfig = new FrontierConfig(cli.frontierMemory(), spillDir);
+
+        Path previousDir = cli.incrementalDir() != null
+                ? Paths.get(cli.incrementalDir()).toAbsolutePath().normalize()
+                : null;
+        if (outputDir.equals(previousDir)) {
+            throw new IllegalArgumentException("incremental must name an earlier output directory, not this one.");
+        }
+
+        Recording recording = recordingFile != null ? startRecording(recordingFile) : null;
+        CrawlMetrics metrics;
+        long startTimeNs = System.nanoTime();
+        try (ClusterNode cluster = cli.cluster() != null ? joinCluster(cli.cluster()) : null;
+                PageIndex pageIndex = checkpoint != null
+                ? PageIndex.append(outputDir, previousDir, linkLimit(cli))
+                : PageIndex.create(outputDir, previousDir, linkLimit(cli));
+                CrawlJournal journal = checkpoint != null
+                        ? CrawlJournal.append(journalFile, checkpoint)
+                        : CrawlJournal.create(journalFile, config);
+                ContentDedup contentDedup = cli.contentDedup() != ContentDedupMode.OFF
+                        ? new ContentDedup(cli.contentDedup(), outputDir.resolve(ALIAS_FILE),
+                                outputDir.resolve(CONTENT_FILE))
+                        : null) {
+            CrawlOptions options = new CrawlOptions(scheduler, frontierConfig, journal, pageIndex, contentDedup,
+                    robots, cluster);
+            CrawlerManager manager = new CrawlerManager(config, fetcher, parser, storage, dedupService, options);
+            metrics = manager.metrics();
+            ProgressReporter progress = cli.progressIntervalSeconds() > 0
+                    ? new ProgressReporter(metrics, Duration.ofSeconds(cli.progressIntervalSeconds()))
+                    : null;
+            try {
+                if (checkpoint != null) {
+                    deleteSpillSegments(spillDir);
+                    manager.resume(checkpoint);
+                } else {
+                    manager.crawl();
+                }
+            } finally {
+                if (progress != null) {
+                    progress.close();
+                }
+                manager.shutdown();
+                closeStorage(storage);
+                deleteIfEmpty(spillDir);
+            }
+            writeMetrics(metrics, outputDir.resolve(METRICS_FILE));
+        } finally {
+            if (recording != null) {
+                stopRecording(recording);
+            }
+        }
+        long durationMs = (System.nanoTime() - startTimeNs) / 1_000_000;
+        printSummary(durationMs, outputDir, recordingFile);
+        return metrics;
+    }
+
     private static CliArguments parseArguments(String[] args) {
-        if (args == null || args.length != 4) {
+        if (args == null) {
+            throw new IllegalArgumentException("Expected 4 arguments.");
+        }
+
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg != null && arg.startsWith("--")) {
+                parseOption(arg, options);
+            } else {
+                positional.add(arg == null ? "" : arg);
+            }
+        }
+        if (positional.size() != 4) {
             throw new IllegalArgumentException("Expected 4 arguments.");
         }
 
-        String seedArg = args[0].trim();
+        String seedArg = positional.get(0).trim();
         if (seedArg.isEmpty()) {
             throw new IllegalArgumentException("seedUrl must not be empty.");
         }
@@ -81,11 +186,334 @@ public class CrawlerApplication {
         }
         URI seedUrl = URI.create(seedArg);
 
-        int maxLinksPerPage = parseNonNegativeInt(args[1], "maxLinksPerPage");
-        int maxDepth = parseNonNegativeInt(args[2], "maxDepth");
-        boolean isUnique = parseBooleanStrict(args[3], "isUnique");
+        int maxLinksPerPage = parseNonNegativeInt(positional.get(1), "maxLinksPerPage");
+        int maxDepth = parseNonNegativeInt(positional.get(2), "maxDepth");
+        boolean isUnique = parseBooleanStrict(positional.get(3), "isUnique");
+
+        SchedulingMode schedulingMode = parseSchedulingMode(options.getOrDefault("mode", "barrier"));
+        ParserType parserType = parseParserType(options.getOrDefault("parser", "jsoup"));
+        PolitenessConfig politeness = new PolitenessConfig(
+                parseIntOption(options, "max-concurrency", PolitenessConfig.DEFAULT_MAX_CONCURRENT_REQUESTS),
+                parseIntOption(options, "per-host-concurrency", PolitenessConfig.DEFAULT_MAX_CONCURRENT_PER_HOST),
+                Duration.ofMillis(parseIntOption(options, "host-interval-ms",
+                        (int) PolitenessConfig.DEFAULT_MIN_HOST_INTERVAL.toMillis())),
+                parseConcurrencyMode(options.getOrDefault("concurrency", "adaptive")));
+
+        DedupConfig dedup = new DedupConfig(
+                parseDedupMode(options.getOrDefault("dedup", "set")),
+                parseIntOption(options, "bloom-capacity", DedupConfig.DEFAULT_BLOOM_CAPACITY),
+                parseProbabilityOption(options, "bloom-fpp", DedupConfig.DEFAULT_BLOOM_FALSE_POSITIVE_RATE));
+
+        int frontierMemory = parseIntOption(options, "frontier-memory", FrontierConfig.DEFAULT_MAX_URLS_IN_MEMORY);
+        if (frontierMemory == 0) {
+            throw new IllegalArgumentException("frontier-memory must be positive.");
+        }
+        ContentDedupMode contentDedup = parseContentDedupMode(options.getOrDefault("content-dedup", "off"));
+        StorageType storage = parseStorageType(options.getOrDefault("storage", "files"));
+        int storageWriters = parseIntOption(options, "storage-writers", AsyncContentStorage.DEFAULT_WRITERS);
+        HttpClientConfig http = new HttpClientConfig(
+                parseHttpProtocol(options.getOrDefault("http", "2")),
+                parseIntOption(options, "http-threads", HttpClientConfig.DEFAULT_EXECUTOR_THREADS),
+                parseBooleanOption(options, "store-compressed"));
+        FetchLimits limits = new FetchLimits(
+                parseSizeOption(options, "body-budget-mb", FetchLimits.DEFAULT_MAX_IN_FLIGHT_BYTES, 1024 * 1024),
+                parseSizeOption(options, "max-page-kb", FetchLimits.DEFAULT_MAX_RESPONSE_BYTES, 1024));
+        boolean obeyRobots = !parseBooleanOption(options, "ignore-robots");
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(
+                parseTrackingParameters(options.get("tracking-params")), parseBooleanOption(options, "sort-query"));
+        ConsolePrinter.Level logLevel = parseLogLevel(options.getOrDefault("log-level", "info"));
+        int progressIntervalSeconds = parseIntOption(options, "progress-interval-s",
+                (int) ProgressReporter.DEFAULT_INTERVAL.toSeconds());
+        String resumeDir = options.get("resume");
+        if (resumeDir != null && (resumeDir.isBlank() || resumeDir.equals("true"))) {
+            throw new IllegalArgumentException("resume requires the output directory of the crawl to continue.");
+        }
+        String jfr = options.get("jfr");
+        if (jfr != null && jfr.isBlank()) {
+            throw new IllegalArgumentException("jfr requires a file name, or no value for crawl.jfr.");
+        }
+        String incrementalDir = options.get("incremental");
+        if (incrementalDir != null && (incrementalDir.isBlank() || incrementalDir.equals("true"))) {
+            throw new IllegalArgumentException("incremental requires the output directory of a previous crawl.");
+        }
+        ClusterConfig cluster = parseCluster(options.get("cluster"), options.get("node"));
+        if (cluster != null && schedulingMode != SchedulingMode.BARRIER) {
+            throw new IllegalArgumentException("cluster requires --mode=barrier.");
+        }
+        if (cluster != null && resumeDir != null) {
+            throw new IllegalArgumentException("resume is not supported with --cluster.");
+        }
+
+        return new CliArguments(seedUrl, maxLinksPerPage, maxDepth, isUnique, schedulingMode, parserType,
+                politeness, dedup, frontierMemory, resumeDir, incrementalDir, contentDedup, storage, storageWriters,
+                http, limits, obeyRobots, canonicalizer, logLevel, progressIntervalSeconds, jfr, cluster);
+    }
+
+    private static void parseOption(String arg, Map<String, String> options) {
+        String body = arg.substring(2);
+        int eq = body.indexOf('=');
+        String name = eq < 0 ? body : body.substring(0, eq);
+        String value = eq < 0 ? "true" : body.substring(eq + 1).trim();
+        if (!KNOWN_OPTIONS.contains(name)) {
+            throw new IllegalArgumentException("Unknown option: --" + name);
+        }
+        options.put(name, value);
+    }
+
+    private static int parseIntOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : parseNonNegativeInt(value, name);
+    }
+
+    /**
+     * Parses a size given in units of {@code unitBytes}; 0 means no limit.
+     */
+    private static long parseSizeOption(Map<String, String> options, String name, long defaultBytes, long unitBytes) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultBytes;
+        }
+        int units = parseNonNegativeInt(value, name);
+        return units == 0 ? Long.MAX_VALUE : units * unitBytes;
+    }
+
+    private static boolean parseBooleanOption(Map<String, String> options, String name) {
+        String value = options.getOrDefault(name, "false");
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException(name + " must be 'true' or 'false'.");
+        };
+    }
+
+    private static SchedulingMode parseSchedulingMode(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "barrier" -> SchedulingMode.BARRIER;
+            case "pipelined" -> SchedulingMode.PIPELINED;
+            default -> throw new IllegalArgumentException("mode must be 'barrier' or 'pipelined'.");
+        };
+    }
+
+    private static ConcurrencyMode parseConcurrencyMode(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "adaptive" -> ConcurrencyMode.ADAPTIVE;
+            case "fixed" -> ConcurrencyMode.FIXED;
+            default -> throw new IllegalArgumentException("concurrency must be 'adaptive' or 'fixed'.");
+        };
+    }
+
+    private static ParserType parseParserType(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "jsoup" -> ParserType.JSOUP;
+            case "streaming" -> ParserType.STREAMING;
+            default -> throw new IllegalArgumentException("parser must be 'jsoup' or 'streaming'.");
+        };
+    }
+
+    private static DedupMode parseDedupMode(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "set" -> DedupMode.SET;
+            case "fingerprint" -> DedupMode.FINGERPRINT;
+            case "bloom" -> DedupMode.BLOOM;
+            default -> throw new IllegalArgumentException("dedup must be 'set', 'fingerprint' or 'bloom'.");
+        };
+    }
+
+    private static ContentDedupMode parseContentDedupMode(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "off" -> ContentDedupMode.OFF;
+            case "exact" -> ContentDedupMode.EXACT;
+            case "near" -> ContentDedupMode.NEAR;
+            default -> throw new IllegalArgumentException("content-dedup must be 'off', 'exact' or 'near'.");
+        };
+    }
+
+    private static ConsolePrinter.Level parseLogLevel(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "info" -> ConsolePrinter.Level.INFO;
+            case "warn" -> ConsolePrinter.Level.WARN;
+            case "error" -> ConsolePrinter.Level.ERROR;
+            default -> throw new IllegalArgumentException("log-level must be 'info', 'warn' or 'error'.");
+        };
+    }
+
+    private static StorageType parseStorageType(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "files" -> StorageType.FILES;
+            case "files-sharded" -> StorageType.FILES_SHARDED;
+            case "archive" -> StorageType.ARCHIVE;
+            case "archive-gzip" -> StorageType.ARCHIVE_GZIP;
+            default -> throw new IllegalArgumentException(
+                    "storage must be 'files', 'files-sharded', 'archive' or 'archive-gzip'.");
+        };
+    }
+
+    private static HttpProtocol parseHttpProtocol(String value) {
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "2" -> HttpProtocol.HTTP_2;
+            case "1.1" -> HttpProtocol.HTTP_1_1;
+            default -> throw new IllegalArgumentException("http must be '2' or '1.1'.");
+        };
+    }
+
+    private static double parseProbabilityOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException(name + " must be a number.");
+        }
+        if (!(parsed > 0 && parsed < 1)) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1.");
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses a comma-separated list of tracking parameter names; {@code none} strips nothing.
+     */
+    private static List<String> parseTrackingParameters(String value) {
+        if (value == null) {
+            return UrlCanonicalizer.DEFAULT_TRACKING_PARAMETERS;
+        }
+        if (value.equalsIgnoreCase("none")) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (String name : value.split(",")) {
+            if (!name.isBlank() && !name.trim().equals("*")) {
+                names.add(name.trim());
+            }
+        }
+        if (names.isEmpty() || value.equals("true")) {
+            throw new IllegalArgumentException("tracking-params must list parameter names, or be 'none'.");
+        }
+        return names;
+    }
 
-        return new CliArguments(seedUrl, maxLinksPerPage, maxDepth, isUnique);
+    /**
+     * Parses the comma-separated {@code host:port} addresses of the cluster's nodes and this
+     * process's index among them.
+     */
+    private static ClusterConfig parseCluster(String nodes, String node) {
+        if (nodes == null) {
+            if (node != null) {
+                throw new IllegalArgumentException("node requires --cluster.");
+            }
+            return null;
+        }
+        if (node == null || node.equals("true")) {
+            throw new IllegalArgumentException("cluster requires --node with this process's index in the list.");
+        }
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String address : nodes.split(",")) {
+            String trimmed = address.trim();
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0 || colon == trimmed.length() - 1) {
+                throw new IllegalArgumentException("cluster must list nodes as host:port, separated by commas.");
+            }
+            String host = trimmed.substring(0, colon);
+            if (host.startsWith("[") && host.endsWith("]")) {
+                host = host.substring(1, host.length() - 1);
+            }
+            int port = parseNonNegativeInt(trimmed.substring(colon + 1), "cluster port");
+            if (port == 0 || port > 65535) {
+                throw new IllegalArgumentException("cluster port must be between 1 and 65535.");
+            }
+            addresses.add(new InetSocketAddress(host, port));
+        }
+        int index = parseNonNegativeInt(node, "node");
+        if (index >= addresses.size()) {
+            throw new IllegalArgumentException("node must be an index into the " + addresses.size()
+                    + " addresses of --cluster.");
+        }
+        return new ClusterConfig(addresses, index);
+    }
+
+    private static ClusterNode joinCluster(ClusterConfig cluster) throws IOException {
+        ConsolePrinter.info("Waiting for " + (cluster.size() - 1) + " other cluster nodes...");
+        ClusterNode node = ClusterNode.join(cluster);
+        ConsolePrinter.info("Cluster joined.");
+        return node;
+    }
+
+    /**
+     * Creates the crawl's configuration. The seed is canonicalized like the links found on pages,
+     * so a link back to it is recognized as visited.
+     */
+    private static CrawlerConfig createConfig(CliArguments cli) {
+        return new CrawlerConfig(cli.canonicalizer().canonicalize(cli.seedUrl()), cli.maxLinksPerPage(),
+                cli.maxDepth(), cli.isUnique(), cli.schedulingMode());
+    }
+
+    private static UrlDedupService createDedupService(DedupConfig dedup) {
+        return switch (dedup.mode()) {
+            case SET -> new ConcurrentDedupService();
+            case FINGERPRINT -> new FingerprintDedupService();
+            case BLOOM -> new BloomFilterDedupService(dedup.bloomCapacity(), dedup.bloomFalsePositiveRate());
+        };
+    }
+
+    /**
+     * Creates the fetcher, reporting its responses to the scheduler. Gzip-encoded bodies keep
+     * their encoded bytes only if asked to and if the storage can write them.
+     */
+    private static ContentFetcher createFetcher(CliArguments cli, ContentStorage storage, HostScheduler scheduler) {
+        HttpClientConfig http = cli.http();
+        if (http.keepGzipEncoding()
+                && !(storage instanceof ByteContentStorage byteStorage && byteStorage.storesGzipEncoding())) {
+            ConsolePrinter.warn("--store-compressed has no effect with storage " + cli.storage()
+                    + "; pages are stored decoded.");
+            http = new HttpClientConfig(http.protocol(), http.executorThreads(), false);
+        }
+        return new JavaHttpClientFetcher(BufferPool.shared(), http, cli.limits(), scheduler);
+    }
+
+    private static ContentStorage createStorage(CliArguments cli, Path outputDir) {
+        ByteContentStorage storage = switch (cli.storage()) {
+            case FILES -> new LocalFileStorage(outputDir.toString());
+            case FILES_SHARDED -> new LocalFileStorage(outputDir.toString(), true);
+            case ARCHIVE -> new ArchiveStorage(outputDir, false);
+            case ARCHIVE_GZIP -> new ArchiveStorage(outputDir, true);
+        };
+        return cli.storageWriters() > 0 ? new AsyncContentStorage(storage, cli.storageWriters()) : storage;
+    }
+
+    private static void closeStorage(ContentStorage storage) {
+        if (storage instanceof AsyncContentStorage asyncStorage) {
+            asyncStorage.close();
+        } else if (storage instanceof ArchiveStorage archive) {
+            archive.close();
+        } else if (storage instanceof LocalFileStorage files) {
+            files.close();
+        }
+    }
+
+    private static HtmlParser createParser(CliArguments cli) {
+        if (cli.parserType() == ParserType.JSOUP) {
+            return new JsoupHtmlParser(cli.canonicalizer());
+        }
+        return new StreamingHtmlParser(linkLimit(cli), cli.canonicalizer());
+    }
+
+    /**
+     * Returns the number of links the parser extracts per page (0 = all). Only the streaming
+     * parser of a crawl with {@code isUnique=false} and {@code --ignore-robots} stops early.
+     */
+    private static int linkLimit(CliArguments cli) {
+        if (cli.parserType() == ParserType.JSOUP) {
+            return 0;
+        }
+        // Without global uniqueness the manager keeps the first maxLinksPerPage links, so the
+        // parser can stop there. With it, or with robots.txt obeyed (the default), links are
+        // skipped during selection and how many more are needed is only known once they have
+        // been checked, so the whole page is read. A cap of 0 never reaches the parser: the
+        // manager does not extract links then.
+        return cli.isUnique() || cli.obeyRobots() ? 0 : cli.maxLinksPerPage();
     }
 
     private static int parseNonNegativeInt(String value, String name) {
@@ -121,30 +549,142 @@ public class CrawlerApplication {
         throw new IllegalArgumentException(name + " must be 'true' or 'false'.");
     }
 
-    private static String buildOutputDirName() {
+    /**
+     * Removes spill segments left behind by an interrupted crawl.
+     */
+    private static void deleteSpillSegments(Path spillDir) throws IOException {
+        if (!Files.isDirectory(spillDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(spillDir, "*.seg")) {
+            for (Path segment : segments) {
+                Files.delete(segment);
+            }
+        }
+    }
+
+    /**
+     * Starts a flight recording with the JDK's default settings, which include garbage
+     * collection and virtual-thread pinning, and the crawler's own events. The recording is
+     * written to the file when stopped.
+     */
+    private static Recording startRecording(Path file) throws IOException, ParseException {
+        Files.createDirectories(file.getParent());
+        Recording recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName("Voyager crawl");
+        recording.setToDisk(true);
+        recording.setDestination(file);
+        recording.start();
+        return recording;
+    }
+
+    private static void stopRecording(Recording recording) {
+        try {
+            recording.stop();
+        } catch (RuntimeException e) {
+            ConsolePrinter.warn("Failed to write flight recording to " + recording.getDestination() + ": " + e);
+        } finally {
+            recording.close();
+        }
+    }
+
+    private static void writeMetrics(CrawlMetrics metrics, Path file) {
+        try {
+            metrics.writeJson(file);
+        } catch (RuntimeException e) {
+            ConsolePrinter.warn(e.getMessage());
+        }
+    }
+
+    private static void deleteIfEmpty(Path dir) {
+        try {
+            Files.deleteIfExists(dir);
+        } catch (DirectoryNotEmptyException e) {
+            ConsolePrinter.warn("Frontier spill files left in " + dir);
+        } catch (Exception e) {
+            ConsolePrinter.warn("Failed to remove " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a timestamped directory name; nodes of a cluster started together on one machine
+     * get distinct names from their index.
+     */
+    private static String buildOutputDirName(ClusterConfig cluster) {
         String timestamp = OUTPUT_DIR_FORMATTER.format(LocalDateTime.now());
-        return Paths.get(OUTPUT_BASE_DIR, OUTPUT_DIR_PREFIX + timestamp).toString();
+        String suffix = cluster != null ? "_node" + cluster.nodeIndex() : "";
+        return Paths.get(OUTPUT_BASE_DIR, OUTPUT_DIR_PREFIX + timestamp + suffix).toString();
     }
 
-    private static void printBanner(URI seedUrl, int maxDepth, int maxLinksPerPage, boolean isUnique,
-            Path outputDir) {
+    private static String formatLimit(long bytes) {
+        if (bytes == Long.MAX_VALUE) {
+            return "unlimited";
+        }
+        return bytes % (1024 * 1024) == 0 ? bytes / (1024 * 1024) + " MiB" : bytes / 1024 + " KiB";
+    }
+
+    private static void printBanner(CliArguments cli, Path outputDir, Path recordingFile) {
         ConsolePrinter.info("Voyager Crawler");
         ConsolePrinter.info("----------------");
-        ConsolePrinter.infoKeyValue("Seed URL:", seedUrl);
-        ConsolePrinter.infoKeyValue("Max Depth:", maxDepth);
-        ConsolePrinter.infoKeyValue("Max Links/Page:", maxLinksPerPage);
-        ConsolePrinter.infoKeyValue("Unique:", isUnique);
+        ConsolePrinter.infoKeyValue("Seed URL:", cli.seedUrl());
+        ConsolePrinter.infoKeyValue("Max Depth:", cli.maxDepth());
+        ConsolePrinter.infoKeyValue("Max Links/Page:", cli.maxLinksPerPage());
+        ConsolePrinter.infoKeyValue("Unique:", cli.isUnique());
+        ConsolePrinter.infoKeyValue("Scheduling:", cli.schedulingMode());
+        ConsolePrinter.infoKeyValue("Parser:", cli.parserType() + (linkLimit(cli) > 0
+                ? " (stops after " + linkLimit(cli) + " links per page)"
+                : ""));
+        ConsolePrinter.infoKeyValue("Dedup:", cli.dedup().mode() == DedupMode.BLOOM
+                ? "BLOOM (" + cli.dedup().bloomCapacity() + " URLs, " + cli.dedup().bloomFalsePositiveRate()
+                        + " false-positive rate)"
+                : cli.dedup().mode());
+        ConsolePrinter.infoKeyValue("Content Dedup:", cli.contentDedup());
+        ConsolePrinter.infoKeyValue("Links:", "canonicalized, " + cli.canonicalizer());
+        ConsolePrinter.infoKeyValue("Robots:", cli.obeyRobots() ? "robots.txt and Crawl-delay obeyed" : "ignored");
+        ConsolePrinter.infoKeyValue("Storage:", cli.storage() + (cli.storageWriters() > 0
+                ? " (" + cli.storageWriters() + " async writers)"
+                : " (synchronous)")
+                + (cli.http().keepGzipEncoding() ? ", gzip bodies stored as received" : ""));
+        ConsolePrinter.infoKeyValue("Concurrency:", cli.politeness().maxConcurrentRequests() + " total, "
+                + cli.politeness().maxConcurrentPerHost() + " per host, "
+                + cli.politeness().minHostInterval().toMillis() + " ms host interval"
+                + (cli.politeness().concurrencyMode() == ConcurrencyMode.ADAPTIVE
+                        ? " (adaptive, as ceilings)"
+                        : " (fixed)"));
+        ConsolePrinter.infoKeyValue("HTTP:", cli.http().protocol() + (cli.http().executorThreads() > 0
+                ? " (" + cli.http().executorThreads() + " client threads)"
+                : " (default client executor)"));
+        ConsolePrinter.infoKeyValue("Body Memory:", formatLimit(cli.limits().maxInFlightBytes()) + " in flight, "
+                + formatLimit(cli.limits().maxResponseBytes()) + " per page");
+        if (cli.cluster() != null) {
+            InetSocketAddress self = cli.cluster().self();
+            ConsolePrinter.infoKeyValue("Cluster:", "node " + cli.cluster().nodeIndex() + " of " + cli.cluster().size()
+                    + " at " + self.getHostString() + ":" + self.getPort() + ", hosts partitioned by hash");
+        }
         ConsolePrinter.infoKeyValue("Output Directory:", outputDir);
+        if (cli.resumeDir() != null) {
+            ConsolePrinter.infoKeyValue("Resuming:", "from checkpoint in output directory");
+        }
+        if (cli.incrementalDir() != null) {
+            ConsolePrinter.infoKeyValue("Revalidating:", cli.incrementalDir());
+        }
+        if (recordingFile != null) {
+            ConsolePrinter.infoKeyValue("Flight Recording:", recordingFile);
+        }
         ConsolePrinter.blankLine();
     }
 
-    private static void printSummary(long durationMs, Path outputDir) {
+    private static void printSummary(long durationMs, Path outputDir, Path recordingFile) {
         double durationSeconds = durationMs / 1000.0;
         String durationText = String.format(Locale.US, "%.2f s (%d ms)", durationSeconds, durationMs);
         ConsolePrinter.info("Results:");
         ConsolePrinter.info("Crawl complete.");
         ConsolePrinter.info("Total execution time: " + durationText);
         ConsolePrinter.info("Output directory: " + outputDir);
+        ConsolePrinter.info("Metrics: " + outputDir.resolve(METRICS_FILE));
+        if (recordingFile != null) {
+            ConsolePrinter.info("Flight recording: " + recordingFile);
+        }
     }
 
     private static void printError(String message) {
@@ -156,7 +696,7 @@ public class CrawlerApplication {
     }
 
     private static void printUsage() {
-        ConsolePrinter.info("Usage: java -jar crawler.jar <seedUrl> <maxLinksPerPage> <maxDepth> <isUnique>");
+        ConsolePrinter.info("Usage: java -jar crawler.jar <seedUrl> <maxLinksPerPage> <maxDepth> <isUnique> [options]");
         ConsolePrinter.blankLine();
         ConsolePrinter.info("Arguments:");
         ConsolePrinter.info("  seedUrl          - The starting URL (e.g., https://example.com)");
@@ -164,10 +704,45 @@ public class CrawlerApplication {
         ConsolePrinter.info("  maxDepth         - Traversal depth (0 = only seed)");
         ConsolePrinter.info("  isUnique         - true for global uniqueness, false for per-level uniqueness");
         ConsolePrinter.blankLine();
+        ConsolePrinter.info("Options:");
+        ConsolePrinter.info("  --mode=<barrier|pipelined>  - Depth-by-depth or continuous scheduling (default: barrier)");
+        ConsolePrinter.info("  --parser=<jsoup|streaming>  - Link extractor implementation; streaming stops early only with isUnique=false and --ignore-robots (default: jsoup)");
+        ConsolePrinter.info("  --max-concurrency=<n>       - Requests in flight across all hosts (default: 256)");
+        ConsolePrinter.info("  --per-host-concurrency=<n>  - Requests in flight per host (default: 8)");
+        ConsolePrinter.info("  --concurrency=<adaptive|fixed> - Let both concurrency limits back off on latency and overload responses (default: adaptive)");
+        ConsolePrinter.info("  --host-interval-ms=<n>      - Minimum gap between request starts per host (default: 50)");
+        ConsolePrinter.info("  --http=<2|1.1>              - Prefer HTTP/2 multiplexing or use HTTP/1.1 only (default: 2)");
+        ConsolePrinter.info("  --http-threads=<n>          - HTTP client executor threads, 0 for the client's default (default: 0)");
+        ConsolePrinter.info("  --body-budget-mb=<n>        - Response body memory shared by all requests, 0 for no limit (default: 128)");
+        ConsolePrinter.info("  --max-page-kb=<n>           - Abandon pages larger than this, 0 for no limit (default: 8192)");
+        ConsolePrinter.info("  --dedup=<set|fingerprint|bloom> - Visited-URL store (default: set)");
+        ConsolePrinter.info("  --bloom-capacity=<n>        - URLs the Bloom filter is sized for (default: 10000000)");
+        ConsolePrinter.info("  --bloom-fpp=<p>             - Bloom filter false-positive rate (default: 0.001)");
+        ConsolePrinter.info("  --content-dedup=<off|exact|near> - Skip pages duplicating an earlier page's content (default: off)");
+        ConsolePrinter.info("  --storage=<files|files-sharded|archive|archive-gzip> - One file per page, in hashed subdirectories, or WARC segment files (default: files)");
+        ConsolePrinter.info("  --store-compressed=<true|false> - Store gzip-encoded pages as received, with --storage=archive-gzip (default: false)");
+        ConsolePrinter.info("  --storage-writers=<n>       - Background page writer threads, 0 to write on the crawl tasks (default: 2)");
+        ConsolePrinter.info("  --progress-interval-s=<n>   - Seconds between progress lines, 0 for none (default: 5)");
+        ConsolePrinter.info("  --log-level=<info|warn|error> - Lowest severity printed; repeated failures per host are rate-limited (default: info)");
+        ConsolePrinter.info("  --jfr[=<file>]              - Record a JDK Flight Recorder file of the crawl (default file: crawl.jfr in the output directory)");
+        ConsolePrinter.info("  --tracking-params=<a,b,c*|none> - Query parameters removed from links, * as a suffix matching a prefix (default: utm_*, gclid, fbclid and other click IDs)");
+        ConsolePrinter.info("  --sort-query                - Order query parameters of links by name");
+        ConsolePrinter.info("  --ignore-robots             - Crawl links that robots.txt disallows and ignore its Crawl-delay");
+        ConsolePrinter.info("  --resume=<outputDir>        - Continue an interrupted crawl from its checkpoint");
+        ConsolePrinter.info("  --incremental=<outputDir>   - Revalidate pages stored by a previous crawl instead of refetching them");
+        ConsolePrinter.info("  --frontier-memory=<n>       - URLs per depth kept in memory before spilling to disk, in barrier mode (default: 1000000)");
+        ConsolePrinter.info("  --cluster=<host:port,...>   - Split the crawl by host across processes listening on these addresses, with --node");
+        ConsolePrinter.info("  --node=<n>                  - Index of this process's address in --cluster, starting at 0");
+        ConsolePrinter.blankLine();
         ConsolePrinter.info("Example:");
         ConsolePrinter.info("  java -jar crawler.jar https://www.ynetnews.com 5 2 true");
     }
 
-    private record CliArguments(URI seedUrl, int maxLinksPerPage, int maxDepth, boolean isUnique) {
+    private record CliArguments(URI seedUrl, int maxLinksPerPage, int maxDepth, boolean isUnique,
+            SchedulingMode schedulingMode, ParserType parserType, PolitenessConfig politeness, DedupConfig dedup,
+            int frontierMemory, String resumeDir, String incrementalDir, ContentDedupMode contentDedup,
+            StorageType storage, int storageWriters, HttpClientConfig http,
+            FetchLimits limits, boolean obeyRobots, UrlCanonicalizer canonicalizer, ConsolePrinter.Level logLevel,
+            int progressIntervalSeconds, String jfr, ClusterConfig cluster) {
     }
 }
@@ -0,0 +1,44 @@
+package com.voyager.crawler.config;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Membership of a crawl split across several processes. Every node is started with the same
+ * list of node addresses and its own index into it; the URLs of a host are crawled only by the
+ * node its host hash selects.
+ *
+ * @param nodes     addresses the nodes listen on for links from each other, in the same order
+ *                  on every node.
+ * @param nodeIndex index of this process's node in {@code nodes}.
+ */
+public record ClusterConfig(List<InetSocketAddress> nodes, int nodeIndex) {
+    public ClusterConfig {
+        Objects.requireNonNull(nodes, "nodes must not be null");
+        nodes = List.copyOf(nodes);
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("nodes must not be empty");
+        }
+        if (nodeIndex < 0 || nodeIndex >= nodes.size()) {
+            throw new IllegalArgumentException("nodeIndex must be between 0 and " + (nodes.size() - 1));
+        }
+        if (nodes.stream().distinct().count() != nodes.size()) {
+            throw new IllegalArgumentException("nodes must not repeat an address");
+        }
+    }
+
+    /**
+     * @return the address this node listens on.
+     */
+    public InetSocketAddress self() {
+        return nodes.get(nodeIndex);
+    }
+
+    /**
+     * @return number of nodes in the cluster.
+     */
+    public int size() {
+        return nodes.size();
+    }
+}
@@ -0,0 +1,17 @@
+package com.voyager.crawler.config;
+
+/**
+ * How the host-aware scheduler sizes its concurrency limits.
+ */
+public enum ConcurrencyMode {
+    /**
+     * Keeps the configured global and per-host limits for the whole crawl.
+     */
+    FIXED,
+
+    /**
+     * Starts at the configured limits and moves them with the latency and overload responses
+     * observed by the fetcher.
+     */
+    ADAPTIVE
+}
@@ -0,0 +1,21 @@
+package com.voyager.crawler.config;
+
+/**
+ * Which pages with duplicate content are skipped instead of being stored and parsed again.
+ */
+public enum ContentDedupMode {
+    /**
+     * Every fetched page is stored and parsed.
+     */
+    OFF,
+
+    /**
+     * Pages byte-identical to an earlier page are skipped.
+     */
+    EXACT,
+
+    /**
+     * Pages byte-identical or near-identical (by SimHash) to an earlier page are skipped.
+     */
+    NEAR
+}
@@ -12,10 +12,13 @@ import java.util.Objects;
  * @param maxDepth        The maximum depth of the crawl (0-indexed).
  * @param isUnique        Whether to enforce uniqueness of visited URLs
  *                        globally.
+ * @param schedulingMode  How URLs are scheduled across depths.
  */
-public record CrawlerConfig(URI seedUrl, int maxLinksPerPage, int maxDepth, boolean isUnique) {
+public record CrawlerConfig(URI seedUrl, int maxLinksPerPage, int maxDepth, boolean isUnique,
+        SchedulingMode schedulingMode) {
     public CrawlerConfig {
         Objects.requireNonNull(seedUrl, "seedUrl must not be null");
+        Objects.requireNonNull(schedulingMode, "schedulingMode must not be null");
         if (maxLinksPerPage < 0) {
             throw new IllegalArgumentException("maxLinksPerPage must be non-negative");
         }
@@ -23,4 +26,11 @@ public record CrawlerConfig(URI seedUrl, int maxLinksPerPage, int maxDepth, bool
             throw new IllegalArgumentException("maxDepth must be non-negative");
         }
     }
+
+    /**
+     * Creates a configuration using depth-by-depth ({@link SchedulingMode#BARRIER}) scheduling.
+     */
+    public CrawlerConfig(URI seedUrl, int maxLinksPerPage, int maxDepth, boolean isUnique) {
+        this(seedUrl, maxLinksPerPage, maxDepth, isUnique, SchedulingMode.BARRIER);
+    }
 }
@@ -0,0 +1,35 @@
+package com.voyager.crawler.config;
+
+import java.util.Objects;
+
+/**
+ * Settings for the visited-URL store.
+ *
+ * @param mode                   data structure used to remember visited URLs.
+ * @param bloomCapacity          number of URLs the Bloom filter is sized for.
+ * @param bloomFalsePositiveRate accepted probability of the Bloom filter reporting a new URL
+ *                               as visited.
+ */
+public record DedupConfig(DedupMode mode, int bloomCapacity, double bloomFalsePositiveRate) {
+    public static final int DEFAULT_BLOOM_CAPACITY = 10_000_000;
+    public static final double DEFAULT_BLOOM_FALSE_POSITIVE_RATE = 0.001;
+
+    public DedupConfig {
+        Objects.requireNonNull(mode, "mode must not be null");
+        if (bloomCapacity <= 0) {
+            throw new IllegalArgumentException("bloomCapacity must be positive");
+        }
+        if (!(bloomFalsePositiveRate > 0 && bloomFalsePositiveRate < 1)) {
+            throw new IllegalArgumentException("bloomFalsePositiveRate must be between 0 and 1");
+        }
+    }
+
+    /**
+     * Returns the default settings: an exact set of URL strings.
+     *
+     * @return the default configuration.
+     */
+    public static DedupConfig defaults() {
+        return new DedupConfig(DedupMode.SET, DEFAULT_BLOOM_CAPACITY, DEFAULT_BLOOM_FALSE_POSITIVE_RATE);
+    }
+}
@@ -0,0 +1,21 @@
+package com.voyager.crawler.config;
+
+/**
+ * Data structure used to remember visited URLs when global uniqueness is enforced.
+ */
+public enum DedupMode {
+    /**
+     * Exact set of URL strings.
+     */
+    SET,
+
+    /**
+     * Exact set of 128-bit URL fingerprints in compact primitive tables.
+     */
+    FINGERPRINT,
+
+    /**
+     * Fixed-size Bloom filter; may skip a small fraction of new URLs as false positives.
+     */
+    BLOOM
+}
@@ -0,0 +1,39 @@
+package com.voyager.crawler.config;
+
+/**
+ * Memory limits for response bodies.
+ *
+ * @param maxInFlightBytes bytes of bodies that may be held in memory at once, across all fetches.
+ * @param maxResponseBytes size at which a single body is abandoned.
+ */
+public record FetchLimits(long maxInFlightBytes, long maxResponseBytes) {
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 128L * 1024 * 1024;
+    public static final long DEFAULT_MAX_RESPONSE_BYTES = 8L * 1024 * 1024;
+
+    public FetchLimits {
+        if (maxInFlightBytes <= 0) {
+            throw new IllegalArgumentException("maxInFlightBytes must be positive");
+        }
+        if (maxResponseBytes <= 0) {
+            throw new IllegalArgumentException("maxResponseBytes must be positive");
+        }
+    }
+
+    /**
+     * Returns a 128 MiB in-flight budget and an 8 MiB per-response cap.
+     *
+     * @return the default limits.
+     */
+    public static FetchLimits defaults() {
+        return new FetchLimits(DEFAULT_MAX_IN_FLIGHT_BYTES, DEFAULT_MAX_RESPONSE_BYTES);
+    }
+
+    /**
+     * Returns limits that never make a fetch wait or abort it.
+     *
+     * @return the unlimited limits.
+     */
+    public static FetchLimits unlimited() {
+        return new FetchLimits(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+}
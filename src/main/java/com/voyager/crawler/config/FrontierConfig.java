@@ -0,0 +1,31 @@
+package com.voyager.crawler.config;
+
+import java.nio.file.Path;
+
+/**
+ * Memory limits for the URLs waiting to be crawled at the next depth of a barrier crawl. Sets of
+ * visited or already queued URLs are not limited by it.
+ *
+ * @param maxUrlsInMemory number of URLs per depth kept on the heap before further URLs are
+ *                        spilled to disk.
+ * @param spillDirectory  directory for spill segment files, or {@code null} to keep every URL
+ *                        in memory.
+ */
+public record FrontierConfig(int maxUrlsInMemory, Path spillDirectory) {
+    public static final int DEFAULT_MAX_URLS_IN_MEMORY = 1_000_000;
+
+    public FrontierConfig {
+        if (maxUrlsInMemory <= 0) {
+            throw new IllegalArgumentException("maxUrlsInMemory must be positive");
+        }
+    }
+
+    /**
+     * Returns a configuration that never spills.
+     *
+     * @return the in-memory configuration.
+     */
+    public static FrontierConfig inMemory() {
+        return new FrontierConfig(Integer.MAX_VALUE, null);
+    }
+}
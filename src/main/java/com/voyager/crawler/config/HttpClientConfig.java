@@ -0,0 +1,43 @@
+package com.voyager.crawler.config;
+
+import java.util.Objects;
+
+/**
+ * Settings of the HTTP client used by the fetcher.
+ *
+ * @param protocol         HTTP version to ask for.
+ * @param executorThreads  number of threads the client uses for its asynchronous work, or
+ *                         {@code 0} for the client's default executor.
+ * @param keepGzipEncoding whether a gzip-encoded body keeps its encoded bytes next to the
+ *                         decoded ones, for a storage that can write them as they are.
+ */
+public record HttpClientConfig(HttpProtocol protocol, int executorThreads, boolean keepGzipEncoding) {
+    public static final HttpProtocol DEFAULT_PROTOCOL = HttpProtocol.HTTP_2;
+    public static final int DEFAULT_EXECUTOR_THREADS = 0;
+
+    public HttpClientConfig {
+        Objects.requireNonNull(protocol, "protocol must not be null");
+        if (executorThreads < 0) {
+            throw new IllegalArgumentException("executorThreads must be non-negative");
+        }
+    }
+
+    /**
+     * Creates settings that keep only decoded bodies.
+     *
+     * @param protocol        HTTP version to ask for.
+     * @param executorThreads number of client executor threads, or {@code 0} for the default.
+     */
+    public HttpClientConfig(HttpProtocol protocol, int executorThreads) {
+        this(protocol, executorThreads, false);
+    }
+
+    /**
+     * Returns HTTP/2 with the client's default executor.
+     *
+     * @return the default configuration.
+     */
+    public static HttpClientConfig defaults() {
+        return new HttpClientConfig(DEFAULT_PROTOCOL, DEFAULT_EXECUTOR_THREADS);
+    }
+}
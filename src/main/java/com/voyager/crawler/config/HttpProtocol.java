@@ -0,0 +1,17 @@
+package com.voyager.crawler.config;
+
+/**
+ * HTTP version the fetcher asks for.
+ */
+public enum HttpProtocol {
+    /**
+     * HTTP/1.1 only. Each request in flight to a host holds its own keep-alive connection.
+     */
+    HTTP_1_1,
+
+    /**
+     * HTTP/2 where the server supports it, falling back to HTTP/1.1. Requests to the same origin
+     * share one connection as multiplexed streams.
+     */
+    HTTP_2
+}
@@ -0,0 +1,16 @@
+package com.voyager.crawler.config;
+
+/**
+ * HTML parser implementation used for link extraction.
+ */
+public enum ParserType {
+    /**
+     * Builds a full Jsoup document and selects anchors from it.
+     */
+    JSOUP,
+
+    /**
+     * Scans the page with a single-pass tokenizer, without building a document.
+     */
+    STREAMING
+}
@@ -0,0 +1,60 @@
+package com.voyager.crawler.config;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Request pacing limits applied by the host-aware scheduler. The global limit is set high
+ * because the memory held by response bodies is bounded separately, by {@link FetchLimits}.
+ * <p>
+ * With {@link ConcurrencyMode#ADAPTIVE}, both concurrency limits are ceilings: each starts at
+ * its configured value, may fall to one request under overload, and grows back towards that
+ * value while responses stay fast.
+ *
+ * @param maxConcurrentRequests maximum number of requests in flight across all hosts.
+ * @param maxConcurrentPerHost  maximum number of requests in flight to a single host.
+ * @param minHostInterval       minimum time between the starts of two requests to the same
+ *                              host.
+ * @param concurrencyMode       whether the concurrency limits adapt to server feedback.
+ */
+public record PolitenessConfig(int maxConcurrentRequests, int maxConcurrentPerHost, Duration minHostInterval,
+        ConcurrencyMode concurrencyMode) {
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 256;
+    public static final int DEFAULT_MAX_CONCURRENT_PER_HOST = 8;
+    public static final Duration DEFAULT_MIN_HOST_INTERVAL = Duration.ofMillis(50);
+
+    public PolitenessConfig {
+        Objects.requireNonNull(minHostInterval, "minHostInterval must not be null");
+        Objects.requireNonNull(concurrencyMode, "concurrencyMode must not be null");
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+        }
+        if (maxConcurrentPerHost <= 0) {
+            throw new IllegalArgumentException("maxConcurrentPerHost must be positive");
+        }
+        if (minHostInterval.isNegative()) {
+            throw new IllegalArgumentException("minHostInterval must be non-negative");
+        }
+    }
+
+    /**
+     * Creates pacing limits that stay fixed.
+     *
+     * @param maxConcurrentRequests maximum number of requests in flight across all hosts.
+     * @param maxConcurrentPerHost  maximum number of requests in flight to a single host.
+     * @param minHostInterval       minimum time between request starts to the same host.
+     */
+    public PolitenessConfig(int maxConcurrentRequests, int maxConcurrentPerHost, Duration minHostInterval) {
+        this(maxConcurrentRequests, maxConcurrentPerHost, minHostInterval, ConcurrencyMode.FIXED);
+    }
+
+    /**
+     * Returns the default pacing limits, adapting to server feedback.
+     *
+     * @return the default configuration.
+     */
+    public static PolitenessConfig defaults() {
+        return new PolitenessConfig(DEFAULT_MAX_CONCURRENT_REQUESTS, DEFAULT_MAX_CONCURRENT_PER_HOST,
+                DEFAULT_MIN_HOST_INTERVAL, ConcurrencyMode.ADAPTIVE);
+    }
+}
@@ -0,0 +1,17 @@
+package com.voyager.crawler.config;
+
+/**
+ * Strategy used by the crawler manager to schedule URLs across depths.
+ */
+public enum SchedulingMode {
+    /**
+     * Processes every URL of a depth before starting the next depth.
+     */
+    BARRIER,
+
+    /**
+     * Schedules a page's children as soon as that page finishes, without waiting for the
+     * rest of its depth.
+     */
+    PIPELINED
+}
@@ -0,0 +1,27 @@
+package com.voyager.crawler.config;
+
+/**
+ * Where fetched pages are written.
+ */
+public enum StorageType {
+    /**
+     * One file per page, at {@code <depth>/<url>.html}.
+     */
+    FILES,
+
+    /**
+     * One file per page, at {@code <depth>/<xx>/<yy>/<url>-<hash>.html}, with a manifest of the
+     * saved URLs.
+     */
+    FILES_SHARDED,
+
+    /**
+     * WARC records appended to rolling segment files.
+     */
+    ARCHIVE,
+
+    /**
+     * WARC records appended to rolling segment files, each record gzip-compressed.
+     */
+    ARCHIVE_GZIP
+}
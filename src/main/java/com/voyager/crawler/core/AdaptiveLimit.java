@@ -0,0 +1,218 @@
+package com.voyager.crawler.core;
+
+import java.util.concurrent.locks.*;
+
+/**
+ * Concurrency limit that callers wait on like a fair semaphore, and whose size can follow the
+ * responses of the requests it admits (additive increase, multiplicative decrease).
+ * <p>
+ * Samples are judged per window of about {@code limit} responses, one round trip's worth. A
+ * window in which more than the overload threshold of responses signalled overload halves the
+ * limit. A window whose mean latency is more than {@value #LATENCY_TOLERANCE} times the
+ * baseline shrinks it by a tenth, since requests are queueing somewhere. Any other window grows
+ * it by one. Overload responses are left out of the latency mean: they tend to be answered
+ * fast, and would make an overloaded server look quick.
+ * <p>
+ * The baseline is the lowest window mean seen, and creeps up towards later means so a lasting
+ * change in a server's speed is eventually accepted. A limit shared by several servers can be
+ * fed {@link #relativeLatency relative latencies} instead, so its baseline does not depend on
+ * how fast each server is. Waiting uses a fair {@link ReentrantLock}, so waiting virtual
+ * threads do not pin their carrier.
+ */
+final class AdaptiveLimit {
+    static final double LATENCY_TOLERANCE = 2.0;
+    static final long RELATIVE_SCALE = 1024;
+    private static final int MIN_WINDOW = 4;
+    private static final double OVERLOAD_BACKOFF = 0.5;
+    private static final double LATENCY_BACKOFF = 0.9;
+    private static final int BASELINE_CREEP = 16;
+
+    private final boolean adaptive;
+    private final int maxLimit;
+    private final double overloadThreshold;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition room = lock.newCondition();
+    private double estimate;
+    private int inFlight;
+    private int lowestLimit;
+    private int highestLimit;
+    private int windowSamples;
+    private int windowOverloads;
+    private int windowLatencySamples;
+    private long windowLatencyNanos;
+    private long baselineNanos = Long.MAX_VALUE;
+
+    private AdaptiveLimit(int initialLimit, int maxLimit, double overloadThreshold, boolean adaptive) {
+        if (initialLimit <= 0 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("limits must satisfy 0 < initialLimit <= maxLimit");
+        }
+        this.adaptive = adaptive;
+        this.maxLimit = maxLimit;
+        this.overloadThreshold = overloadThreshold;
+        this.estimate = initialLimit;
+        this.lowestLimit = initialLimit;
+        this.highestLimit = initialLimit;
+    }
+
+    /**
+     * Returns a limit that never changes.
+     */
+    static AdaptiveLimit fixed(int limit) {
+        return new AdaptiveLimit(limit, limit, 0, false);
+    }
+
+    /**
+     * Returns a limit that moves between one and {@code maxLimit}.
+     *
+     * @param initialLimit      starting limit.
+     * @param maxLimit          highest the limit may grow.
+     * @param overloadThreshold fraction of a window's responses that may signal overload without
+     *                          halving the limit.
+     */
+    static AdaptiveLimit adaptive(int initialLimit, int maxLimit, double overloadThreshold) {
+        return new AdaptiveLimit(initialLimit, maxLimit, overloadThreshold, true);
+    }
+
+    /**
+     * Blocks until fewer than {@link #limit()} callers hold the limit.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit()) {
+                room.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            room.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the outcome of one request. Ignored by a fixed limit.
+     *
+     * @param latencyNanos time until the response headers arrived or the attempt failed, or a
+     *                     negative value if unknown.
+     * @param overloaded   whether the response signalled overload.
+     */
+    void record(long latencyNanos, boolean overloaded) {
+        if (!adaptive) {
+            return;
+        }
+        lock.lock();
+        try {
+            windowSamples++;
+            if (overloaded) {
+                windowOverloads++;
+            } else if (latencyNanos >= 0) {
+                windowLatencySamples++;
+                windowLatencyNanos += latencyNanos;
+            }
+            if (windowSamples >= Math.max(MIN_WINDOW, limit())) {
+                closeWindow();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeWindow() {
+        int before = limit();
+        long meanNanos = windowLatencySamples > 0 ? windowLatencyNanos / windowLatencySamples : -1;
+        if (windowOverloads > overloadThreshold * windowSamples) {
+            estimate = Math.max(1, estimate * OVERLOAD_BACKOFF);
+        } else if (meanNanos >= 0 && baselineNanos != Long.MAX_VALUE
+                && meanNanos > LATENCY_TOLERANCE * baselineNanos) {
+            estimate = Math.max(1, estimate * LATENCY_BACKOFF);
+        } else {
+            estimate = Math.min(maxLimit, estimate + 1);
+        }
+        if (meanNanos >= 0) {
+            baselineNanos = meanNanos < baselineNanos
+                    ? meanNanos
+                    : baselineNanos + (meanNanos - baselineNanos) / BASELINE_CREEP;
+        }
+        windowSamples = 0;
+        windowOverloads = 0;
+        windowLatencySamples = 0;
+        windowLatencyNanos = 0;
+
+        int after = limit();
+        lowestLimit = Math.min(lowestLimit, after);
+        highestLimit = Math.max(highestLimit, after);
+        if (after > before) {
+            room.signalAll();
+        }
+    }
+
+    /**
+     * Returns a latency in units of {@link #RELATIVE_SCALE} per baseline of this limit, or -1
+     * before a baseline was established.
+     */
+    long relativeLatency(long latencyNanos) {
+        lock.lock();
+        try {
+            return baselineNanos == Long.MAX_VALUE ? -1 : latencyNanos * RELATIVE_SCALE / Math.max(1, baselineNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of callers admitted at once.
+     */
+    int limit() {
+        lock.lock();
+        try {
+            return (int) estimate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how many more callers would be admitted without waiting.
+     */
+    int available() {
+        lock.lock();
+        try {
+            return Math.max(0, (int) estimate - inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int lowestLimit() {
+        lock.lock();
+        try {
+            return lowestLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int highestLimit() {
+        lock.lock();
+        try {
+            return highestLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isAdaptive() {
+        return adaptive;
+    }
+}
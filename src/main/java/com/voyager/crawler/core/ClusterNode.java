@@ -0,0 +1,472 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * One process of a crawl partitioned across several. Every host belongs to exactly one node,
+ * picked by the hash of its {@link HostScheduler#hostKey host key}, so only that node fetches
+ * the host's pages, paces requests to it and remembers which of its URLs were visited.
+ * <p>
+ * Each node listens on its configured address and opens one connection to every other node,
+ * over which it sends the links its pages have to that node's hosts, in batches of up to
+ * {@value #BATCH_SIZE}. The links of one page travel as a {@link ForwardedLinks group} with the
+ * number of them the page may still add to the next depth; the owning node checks them against
+ * {@code robots.txt} and its visited set and takes at most that many.
+ * <p>
+ * Once a node has collected every page of a depth it sends each peer a depth-done message after
+ * its last batch, carrying how many URLs it queued or forwarded for the next depth. A connection
+ * delivers in order, so when a node holds the depth-done message of every peer it also holds
+ * every link sent to it for the next depth, and the counts tell all nodes alike whether any of
+ * them has work left.
+ * <p>
+ * Messages are a type byte and big-endian fields: {@code HELLO} with the sender's index,
+ * {@code LINKS} with a depth and a group count, each group a budget, a count and that many
+ * length-prefixed UTF-8 URLs, and {@code DEPTH_DONE} with a depth and a URL count.
+ */
+public final class ClusterNode implements AutoCloseable {
+    /**
+     * Links buffered for a peer before they are sent without waiting for the end of the depth.
+     */
+    static final int BATCH_SIZE = 512;
+
+    /**
+     * How long {@link #join} waits for the other nodes to start.
+     */
+    static final Duration JOIN_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final byte HELLO = 1;
+    private static final byte LINKS = 2;
+    private static final byte DEPTH_DONE = 3;
+    private static final int MAX_URL_BYTES = 1 << 20;
+    private static final int MAX_GROUP_LINKS = 1 << 20;
+    private static final int CONNECT_RETRY_MILLIS = 100;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ClusterConfig config;
+    private final ServerSocket server;
+    private final Peer[] peers;
+    private final Object lock = new Object();
+    private final ConcurrentMap<Integer, Queue<ForwardedLinks>> received = new ConcurrentHashMap<>();
+    private final LongAdder forwardedSinceBarrier = new LongAdder();
+    private final LongAdder linksForwarded = new LongAdder();
+    private final LongAdder batchesSent = new LongAdder();
+    private final LongAdder linksReceived = new LongAdder();
+    private volatile boolean closed;
+
+    private ClusterNode(ClusterConfig config) throws IOException {
+        this.config = config;
+        this.peers = new Peer[config.size()];
+        for (int i = 0; i < peers.length; i++) {
+            if (i != config.nodeIndex()) {
+                peers[i] = new Peer(i, config.nodes().get(i));
+            }
+        }
+        this.server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(config.self());
+        Thread.ofPlatform().name("cluster-accept").daemon(true).start(this::acceptPeers);
+    }
+
+    /**
+     * Starts listening on this node's address and connects to every other node, waiting up to
+     * {@link #JOIN_TIMEOUT} for them to start and connect back.
+     *
+     * @param config cluster membership and this node's index.
+     * @return the connected node.
+     * @throws IOException if the address cannot be bound or a node does not join in time.
+     */
+    public static ClusterNode join(ClusterConfig config) throws IOException {
+        ClusterNode node = new ClusterNode(config);
+        try {
+            long deadline = System.nanoTime() + JOIN_TIMEOUT.toNanos();
+            for (Peer peer : node.peers) {
+                if (peer != null) {
+                    node.connect(peer, deadline);
+                }
+            }
+            node.awaitInbound(deadline);
+            return node;
+        } catch (IOException | RuntimeException e) {
+            node.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the node that crawls the host of a URI.
+     *
+     * @param uri       the URI.
+     * @param nodeCount number of nodes in the cluster.
+     * @return an index between 0 and {@code nodeCount - 1}, the same in every process.
+     */
+    public static int ownerOf(URI uri, int nodeCount) {
+        long hash = UrlFingerprint.of(HostScheduler.hostKey(uri)).high();
+        return (int) Long.remainderUnsigned(hash, nodeCount);
+    }
+
+    /**
+     * @return index of the node that crawls the host of {@code uri}.
+     */
+    public int ownerOf(URI uri) {
+        return ownerOf(uri, peers.length);
+    }
+
+    /**
+     * @return whether this node crawls the host of {@code uri}.
+     */
+    public boolean owns(URI uri) {
+        return ownerOf(uri) == config.nodeIndex();
+    }
+
+    /**
+     * @return this node's index in the cluster.
+     */
+    public int nodeIndex() {
+        return config.nodeIndex();
+    }
+
+    /**
+     * Queues the links one page has to other nodes' hosts, one group per owning node, sending a
+     * node's batch once it is full. Must not be called with links this node owns.
+     *
+     * @param links  the links in document order, not yet checked against {@code robots.txt} or
+     *               any visited set.
+     * @param budget how many of the links each owning node may take at most.
+     * @param depth  the depth the links are to be crawled at.
+     */
+    public void forward(List<URI> links, int budget, int depth) {
+        Map<Peer, List<URI>> byOwner = new LinkedHashMap<>();
+        for (URI link : links) {
+            Peer peer = peers[ownerOf(link)];
+            if (peer == null) {
+                throw new IllegalArgumentException(link + " belongs to this node");
+            }
+            byOwner.computeIfAbsent(peer, p -> new ArrayList<>()).add(link);
+        }
+        byOwner.forEach((peer, group) -> {
+            synchronized (peer) {
+                if (!peer.batch.isEmpty() && peer.batchDepth != depth) {
+                    sendBatch(peer);
+                }
+                peer.batchDepth = depth;
+                peer.batch.add(new ForwardedLinks(group, budget));
+                peer.batchLinks += group.size();
+                if (peer.batchLinks >= BATCH_SIZE) {
+                    sendBatch(peer);
+                }
+            }
+        });
+        forwardedSinceBarrier.add(links.size());
+        linksForwarded.add(links.size());
+    }
+
+    /**
+     * Passes the link groups other nodes have forwarded so far for a depth to {@code sink}, each
+     * once. Groups still in flight may arrive later; all of them are here once
+     * {@link #finishDepth(int, long)} for the previous depth has returned.
+     *
+     * @param depth the depth the links are to be crawled at.
+     * @param sink  receiver of the groups, called on the caller's thread.
+     */
+    public void drainReceived(int depth, Consumer<ForwardedLinks> sink) {
+        Queue<ForwardedLinks> groups = received.get(depth);
+        if (groups == null) {
+            return;
+        }
+        ForwardedLinks group;
+        while ((group = groups.poll()) != null) {
+            sink.accept(group);
+        }
+    }
+
+    /**
+     * Sends the remaining batches and this node's depth-done message to every peer, then waits
+     * until every peer has finished the same depth.
+     *
+     * @param depth              the depth whose pages this node has all collected.
+     * @param queuedForNextDepth URLs this node queued for its own hosts at the next depth; the
+     *                           links it forwarded are added to it.
+     * @return whether any node queued or forwarded URLs for the next depth.
+     * @throws IllegalStateException if a peer disconnected before finishing the depth.
+     */
+    public boolean finishDepth(int depth, long queuedForNextDepth) {
+        long own = queuedForNextDepth + forwardedSinceBarrier.sumThenReset();
+        long total = own;
+        for (Peer peer : peers) {
+            if (peer == null) {
+                continue;
+            }
+            synchronized (peer) {
+                try {
+                    if (!peer.batch.isEmpty()) {
+                        sendBatch(peer);
+                    }
+                    peer.out.writeByte(DEPTH_DONE);
+                    peer.out.writeInt(depth);
+                    peer.out.writeLong(own);
+                    peer.out.flush();
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to send depth " + depth + " done to cluster node "
+                            + peer.index, e);
+                }
+            }
+        }
+        synchronized (lock) {
+            for (Peer peer : peers) {
+                if (peer == null) {
+                    continue;
+                }
+                Long count;
+                while ((count = peer.doneCounts.remove(depth)) == null) {
+                    if (peer.disconnected) {
+                        throw new IllegalStateException("Cluster node " + peer.index
+                                + " disconnected before finishing depth " + depth);
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted waiting for cluster nodes to finish depth "
+                                + depth, e);
+                    }
+                }
+                total += count;
+            }
+        }
+        return total > 0;
+    }
+
+    private void connect(Peer peer, long deadline) throws IOException {
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(peer.address, CONNECT_RETRY_MILLIS * 10);
+                peer.outbound = socket;
+                peer.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                peer.out.writeByte(HELLO);
+                peer.out.writeInt(config.nodeIndex());
+                peer.out.flush();
+                return;
+            } catch (ConnectException | SocketTimeoutException e) {
+                socket.close();
+                if (System.nanoTime() > deadline) {
+                    throw new IOException("Cluster node " + peer.index + " at " + peer.address
+                            + " did not start within " + JOIN_TIMEOUT.toSeconds() + " s", e);
+                }
+                try {
+                    Thread.sleep(CONNECT_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted joining the cluster");
+                }
+            }
+        }
+    }
+
+    private void awaitInbound(long deadline) throws IOException {
+        synchronized (lock) {
+            for (Peer peer : peers) {
+                while (peer != null && peer.inbound == null) {
+                    long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                    if (remainingMillis <= 0) {
+                        throw new IOException("Cluster node " + peer.index + " did not connect within "
+                                + JOIN_TIMEOUT.toSeconds() + " s");
+                    }
+                    try {
+                        lock.wait(remainingMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted joining the cluster");
+                    }
+                }
+            }
+        }
+    }
+
+    private void acceptPeers() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                Thread.ofPlatform().name("cluster-reader").daemon(true).start(() -> readPeer(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    ConsolePrinter.warn("Cluster node stopped accepting connections: " + e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads one peer's messages until it disconnects.
+     */
+    private void readPeer(Socket socket) {
+        Peer peer = null;
+        try (socket; DataInputStream in = new DataInputStream(
+                new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE))) {
+            if (in.readByte() != HELLO) {
+                throw new IOException("expected a HELLO message");
+            }
+            int index = in.readInt();
+            if (index < 0 || index >= peers.length || peers[index] == null || peers[index].inbound != null) {
+                throw new IOException("unexpected node index " + index);
+            }
+            peer = peers[index];
+            synchronized (lock) {
+                peer.inbound = socket;
+                lock.notifyAll();
+            }
+            while (true) {
+                byte type = in.readByte();
+                if (type == LINKS) {
+                    readLinks(in);
+                } else if (type == DEPTH_DONE) {
+                    int depth = in.readInt();
+                    long count = in.readLong();
+                    synchronized (lock) {
+                        peer.doneCounts.put(depth, count);
+                        lock.notifyAll();
+                    }
+                } else {
+                    throw new IOException("unknown message type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            // The peer closed its connection.
+        } catch (IOException | IllegalArgumentException e) {
+            if (!closed) {
+                ConsolePrinter.warn("Lost connection to cluster node "
+                        + (peer != null ? peer.index : socket.getRemoteSocketAddress()) + ": " + e.getMessage());
+            }
+        } finally {
+            if (peer != null) {
+                synchronized (lock) {
+                    peer.disconnected = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void readLinks(DataInputStream in) throws IOException {
+        int depth = in.readInt();
+        int groupCount = in.readInt();
+        Queue<ForwardedLinks> groups = received.computeIfAbsent(depth, d -> new ConcurrentLinkedQueue<>());
+        for (int g = 0; g < groupCount; g++) {
+            int budget = in.readInt();
+            int count = in.readInt();
+            if (count < 0 || count > MAX_GROUP_LINKS) {
+                throw new IOException("invalid link count " + count);
+            }
+            List<URI> links = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_URL_BYTES) {
+                    throw new IOException("invalid URL length " + length);
+                }
+                links.add(URI.create(new String(in.readNBytes(length), StandardCharsets.UTF_8)));
+            }
+            groups.add(new ForwardedLinks(links, budget));
+            linksReceived.add(count);
+        }
+    }
+
+    private void sendBatch(Peer peer) {
+        try {
+            peer.out.writeByte(LINKS);
+            peer.out.writeInt(peer.batchDepth);
+            peer.out.writeInt(peer.batch.size());
+            for (ForwardedLinks group : peer.batch) {
+                peer.out.writeInt(group.budget());
+                peer.out.writeInt(group.links().size());
+                for (URI link : group.links()) {
+                    byte[] bytes = link.toString().getBytes(StandardCharsets.UTF_8);
+                    peer.out.writeInt(bytes.length);
+                    peer.out.write(bytes);
+                }
+            }
+            peer.out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to send links to cluster node " + peer.index, e);
+        }
+        peer.batch.clear();
+        peer.batchLinks = 0;
+        batchesSent.increment();
+    }
+
+    /**
+     * Closes the connections and stops listening. Links not yet sent are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(server);
+        for (Peer peer : peers) {
+            if (peer != null) {
+                closeQuietly(peer.outbound);
+                closeQuietly(peer.inbound);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing is left to send or receive.
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "node " + config.nodeIndex() + " of " + peers.length + ", " + linksForwarded.sum()
+                + " links forwarded in " + batchesSent.sum() + " batches, " + linksReceived.sum() + " received";
+    }
+
+    /**
+     * Links of one page to the hosts of one node, of which the node takes at most
+     * {@code budget}, in order, after dropping those {@code robots.txt} disallows and, with
+     * global uniqueness, those it already visited.
+     *
+     * @param links  the links in document order.
+     * @param budget the most links the group may add to the next depth.
+     */
+    public record ForwardedLinks(List<URI> links, int budget) {
+    }
+
+    /**
+     * Connections to another node and the depth-done counts it sent. The outbound side is used
+     * under the peer's monitor; the inbound side is read by one reader thread.
+     */
+    private static final class Peer {
+        private final int index;
+        private final InetSocketAddress address;
+        private final List<ForwardedLinks> batch = new ArrayList<>();
+        private final Map<Integer, Long> doneCounts = new HashMap<>();
+        private int batchDepth;
+        private int batchLinks;
+        private Socket outbound;
+        private DataOutputStream out;
+        private volatile Socket inbound;
+        private volatile boolean disconnected;
+
+        Peer(int index, InetSocketAddress address) {
+            this.index = index;
+            this.address = address;
+        }
+    }
+}
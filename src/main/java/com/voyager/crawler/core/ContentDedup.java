@@ -0,0 +1,456 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.io.*;
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Index of the page contents seen by a crawl, used to skip pages that duplicate an earlier one.
+ * <p>
+ * The first page with a given content becomes the canonical copy. A later page is a duplicate
+ * if its content hash matches a canonical page's, or, in {@link ContentDedupMode#NEAR} mode, if
+ * its SimHash is at most {@value #MAX_NEAR_DISTANCE} bits away from one. Near-duplicates are
+ * found without scanning every page: the 64-bit SimHash is split into four 16-bit blocks, two
+ * hashes within three bits of each other agree on at least one block, and each block value
+ * indexes a bucket of canonical pages. A lookup compares at most the
+ * {@value #MAX_BUCKET_SCAN} newest pages of a bucket. A canonical page costs a few dozen bytes
+ * of index plus its URI.
+ * <p>
+ * Content hashes are split over {@value #STRIPES} tables with a lock each, and every bucket is
+ * guarded by one of {@value #STRIPES} further locks, so concurrent checks of different pages
+ * rarely wait for each other.
+ * <p>
+ * A page {@link #check checked} as new holds its place as canonical copy while it is stored.
+ * Once stored it is {@link #confirm confirmed} and written to the content log, from which a
+ * resumed crawl rebuilds the index; if storing fails it is {@link #forget forgotten}, so a later
+ * duplicate is stored instead.
+ * <p>
+ * A page only duplicates canonical pages at the same or a lower depth, so skipping its links
+ * never loses a level of the crawl. Each duplicate is written to an alias file as
+ * {@code <url> <depth> <canonical url> <canonical depth> <exact|near>}.
+ */
+public class ContentDedup implements AutoCloseable {
+    static final int MAX_NEAR_DISTANCE = 3;
+
+    /**
+     * Pages with fewer shingles carry too little text for their SimHash to be meaningful.
+     */
+    static final int MIN_NEAR_SHINGLES = 16;
+
+    /**
+     * Largest number of pages of one bucket compared with a page. Text shared by many pages,
+     * such as a site's boilerplate, can fill a bucket far beyond what a lookup should scan.
+     */
+    static final int MAX_BUCKET_SCAN = 128;
+
+    private static final int STRIPES = 64;
+    private static final int BLOCKS = 4;
+    private static final int BLOCK_BITS = 16;
+
+    private final AsyncLineWriter aliasLog;
+    private final AsyncLineWriter contentLog;
+
+    private final ExactTable[] exactTables = new ExactTable[STRIPES];
+
+    // (block index, block value) -> canonical pages, oldest first, guarded by bucketLocks.
+    private final Canonical[][] nearBuckets;
+    private final int[] nearBucketSizes;
+    private final Object[] bucketLocks = new Object[STRIPES];
+
+    private final LongAdder pagesChecked = new LongAdder();
+    private final LongAdder exactDuplicates = new LongAdder();
+    private final LongAdder nearDuplicates = new LongAdder();
+
+    /**
+     * A canonical page that a duplicate stands for.
+     *
+     * @param uri   URL of the canonical page.
+     * @param depth depth the canonical page was stored at.
+     * @param exact whether the contents are byte-identical.
+     */
+    public record Alias(URI uri, int depth, boolean exact) {
+    }
+
+    /**
+     * Creates an index without a content log.
+     *
+     * @param mode      which duplicates to detect; must not be {@link ContentDedupMode#OFF}.
+     * @param aliasFile file receiving the alias records, or null. An existing file, left by an
+     *                  interrupted crawl, is continued.
+     */
+    public ContentDedup(ContentDedupMode mode, Path aliasFile) {
+        this(mode, aliasFile, null);
+    }
+
+    /**
+     * Creates an index.
+     *
+     * @param mode        which duplicates to detect; must not be {@link ContentDedupMode#OFF}.
+     * @param aliasFile   file receiving the alias records, or null. An existing file, left by
+     *                    an interrupted crawl, is continued.
+     * @param contentFile file receiving the fingerprints of stored pages, or null. An existing
+     *                    file, left by an interrupted crawl, is loaded into the index and
+     *                    continued.
+     */
+    public ContentDedup(ContentDedupMode mode, Path aliasFile, Path contentFile) {
+        if (mode == ContentDedupMode.OFF) {
+            throw new IllegalArgumentException("mode must not be OFF");
+        }
+        boolean near = mode == ContentDedupMode.NEAR;
+        this.nearBuckets = near ? new Canonical[BLOCKS << BLOCK_BITS][] : null;
+        this.nearBucketSizes = near ? new int[BLOCKS << BLOCK_BITS] : null;
+        for (int i = 0; i < STRIPES; i++) {
+            exactTables[i] = new ExactTable();
+            bucketLocks[i] = new Object();
+        }
+        this.aliasLog = aliasFile == null ? null : openLog(aliasFile, "alias log");
+        if (contentFile != null && Files.exists(contentFile)) {
+            load(contentFile);
+        }
+        this.contentLog = contentFile == null ? null : openLog(contentFile, "content log");
+    }
+
+    private static AsyncLineWriter openLog(Path file, String name) {
+        return Files.exists(file)
+                ? AsyncLineWriter.append(file, AsyncLineWriter.completeLength(file), name)
+                : AsyncLineWriter.create(file, name);
+    }
+
+    /**
+     * Checks a page against the index and, if it is new, holds its place as canonical copy until
+     * it is confirmed or forgotten. A page found under its own URL and depth, stored before an
+     * interrupted crawl was resumed, is new.
+     *
+     * @param uri         the page URL.
+     * @param depth       the page's crawl depth.
+     * @param fingerprint fingerprint of the page body.
+     * @return the canonical page it duplicates, or empty if the page should be stored.
+     */
+    public Optional<Alias> check(URI uri, int depth, ContentFingerprint fingerprint) {
+        pagesChecked.increment();
+        ExactTable table = exactTable(fingerprint);
+        Canonical page = new Canonical(uri, depth, fingerprint.simHash());
+        Alias alias = exactAlias(table, page, fingerprint, false);
+        if (alias == null && usesNear(fingerprint)) {
+            alias = findNear(page);
+        }
+        if (alias == null) {
+            // Another page with this content may have been reserved since the first lookup.
+            alias = exactAlias(table, page, fingerprint, true);
+        }
+        if (alias == null) {
+            if (usesNear(fingerprint)) {
+                addToBuckets(page);
+            }
+            return Optional.empty();
+        }
+
+        if (alias.exact()) {
+            exactDuplicates.increment();
+        } else {
+            nearDuplicates.increment();
+        }
+        if (aliasLog != null) {
+            aliasLog.write(uri + "\t" + depth + "\t" + alias.uri() + "\t" + alias.depth() + "\t"
+                    + (alias.exact() ? "exact" : "near"));
+        }
+        return Optional.of(alias);
+    }
+
+    /**
+     * Records that a page {@link #check checked} as new was stored, so a resumed crawl knows it.
+     *
+     * @param uri         the page URL.
+     * @param depth       the page's crawl depth.
+     * @param fingerprint fingerprint of the page body.
+     */
+    public void confirm(URI uri, int depth, ContentFingerprint fingerprint) {
+        if (contentLog != null) {
+            contentLog.write(uri + "\t" + depth + "\t" + Long.toHexString(fingerprint.high()) + "\t"
+                    + Long.toHexString(fingerprint.low()) + "\t" + Long.toHexString(fingerprint.simHash()) + "\t"
+                    + fingerprint.shingles());
+        }
+    }
+
+    /**
+     * Removes a page {@link #check checked} as new that could not be stored, so it is not given
+     * as the canonical copy of later pages.
+     *
+     * @param uri         the page URL.
+     * @param depth       the page's crawl depth.
+     * @param fingerprint fingerprint of the page body.
+     */
+    public void forget(URI uri, int depth, ContentFingerprint fingerprint) {
+        Canonical page = new Canonical(uri, depth, fingerprint.simHash());
+        ExactTable table = exactTable(fingerprint);
+        synchronized (table) {
+            table.remove(fingerprint.high(), fingerprint.low(), page);
+        }
+        if (usesNear(fingerprint)) {
+            for (int block = 0; block < BLOCKS; block++) {
+                int index = bucketIndex(block, page.simHash());
+                synchronized (bucketLock(index)) {
+                    removeFromBucket(index, page);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up the content hash, reserving the page as canonical if {@code reserve} is set and
+     * no page has the hash yet. Returns the exact alias, or null if the page is not one.
+     */
+    private Alias exactAlias(ExactTable table, Canonical page, ContentFingerprint fingerprint, boolean reserve) {
+        synchronized (table) {
+            Canonical existing = table.get(fingerprint.high(), fingerprint.low());
+            if (existing == null) {
+                if (reserve) {
+                    table.put(fingerprint.high(), fingerprint.low(), page);
+                }
+                return null;
+            }
+            if (existing.equals(page) || existing.depth() > page.depth()) {
+                return null;
+            }
+            return new Alias(existing.uri(), existing.depth(), true);
+        }
+    }
+
+    private Alias findNear(Canonical page) {
+        for (int block = 0; block < BLOCKS; block++) {
+            int index = bucketIndex(block, page.simHash());
+            synchronized (bucketLock(index)) {
+                Canonical[] bucket = nearBuckets[index];
+                int size = nearBucketSizes[index];
+                for (int i = size - 1; i >= Math.max(0, size - MAX_BUCKET_SCAN); i--) {
+                    Canonical candidate = bucket[i];
+                    if (Long.bitCount(candidate.simHash() ^ page.simHash()) <= MAX_NEAR_DISTANCE
+                            && candidate.depth() <= page.depth() && !candidate.equals(page)) {
+                        return new Alias(candidate.uri(), candidate.depth(), false);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addToBuckets(Canonical page) {
+        for (int block = 0; block < BLOCKS; block++) {
+            int index = bucketIndex(block, page.simHash());
+            synchronized (bucketLock(index)) {
+                Canonical[] bucket = nearBuckets[index];
+                int size = nearBucketSizes[index];
+                if (bucket == null) {
+                    bucket = nearBuckets[index] = new Canonical[2];
+                } else if (size == bucket.length) {
+                    bucket = nearBuckets[index] = Arrays.copyOf(bucket, size * 2);
+                }
+                bucket[size] = page;
+                nearBucketSizes[index] = size + 1;
+            }
+        }
+    }
+
+    private void removeFromBucket(int index, Canonical page) {
+        Canonical[] bucket = nearBuckets[index];
+        int size = nearBucketSizes[index];
+        for (int i = size - 1; i >= 0; i--) {
+            if (bucket[i].equals(page)) {
+                System.arraycopy(bucket, i + 1, bucket, i, size - i - 1);
+                bucket[size - 1] = null;
+                nearBucketSizes[index] = size - 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Registers the pages of a content log written before the crawl was interrupted. A partly
+     * written last line is ignored.
+     */
+    private void load(Path contentFile) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(contentFile), 64 * 1024)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String[] fields = line.toString(StandardCharsets.UTF_8).split("\t");
+                line.reset();
+                ContentFingerprint fingerprint = new ContentFingerprint(Long.parseUnsignedLong(fields[2], 16),
+                        Long.parseUnsignedLong(fields[3], 16), Long.parseUnsignedLong(fields[4], 16),
+                        Integer.parseInt(fields[5]));
+                Canonical page = new Canonical(URI.create(fields[0]), Integer.parseInt(fields[1]),
+                        fingerprint.simHash());
+                ExactTable table = exactTable(fingerprint);
+                synchronized (table) {
+                    Canonical existing = table.get(fingerprint.high(), fingerprint.low());
+                    if (existing == null) {
+                        table.put(fingerprint.high(), fingerprint.low(), page);
+                    }
+                }
+                if (usesNear(fingerprint)) {
+                    addToBuckets(page);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read content log " + contentFile, e);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed content log " + contentFile + ": " + e, e);
+        }
+    }
+
+    private boolean usesNear(ContentFingerprint fingerprint) {
+        return nearBuckets != null && fingerprint.shingles() >= MIN_NEAR_SHINGLES;
+    }
+
+    private ExactTable exactTable(ContentFingerprint fingerprint) {
+        return exactTables[(int) fingerprint.low() & (STRIPES - 1)];
+    }
+
+    private Object bucketLock(int index) {
+        return bucketLocks[index & (STRIPES - 1)];
+    }
+
+    private static int bucketIndex(int block, long simHash) {
+        return (block << BLOCK_BITS) | ((int) (simHash >>> (block * BLOCK_BITS)) & 0xFFFF);
+    }
+
+    /**
+     * @return number of pages checked.
+     */
+    public long pagesChecked() {
+        return pagesChecked.sum();
+    }
+
+    /**
+     * @return number of pages found byte-identical to a canonical page.
+     */
+    public long exactDuplicates() {
+        return exactDuplicates.sum();
+    }
+
+    /**
+     * @return number of pages found near-identical to a canonical page.
+     */
+    public long nearDuplicates() {
+        return nearDuplicates.sum();
+    }
+
+    /**
+     * @return the hit rates, for the crawl summary.
+     */
+    @Override
+    public String toString() {
+        long checked = pagesChecked();
+        long exact = exactDuplicates();
+        long near = nearDuplicates();
+        return String.format(Locale.ROOT,
+                "%d pages checked, %d exact duplicates (%.1f%%), %d near duplicates (%.1f%%)", checked,
+                exact, percent(exact, checked), near, percent(near, checked));
+    }
+
+    private static double percent(long count, long checked) {
+        return checked == 0 ? 0 : 100.0 * count / checked;
+    }
+
+    /**
+     * Writes the queued alias and content records.
+     */
+    @Override
+    public void close() {
+        if (aliasLog != null) {
+            aliasLog.close();
+        }
+        if (contentLog != null) {
+            contentLog.close();
+        }
+    }
+
+    /**
+     * A canonical page: its URL, the depth it was stored at, and its SimHash.
+     */
+    private record Canonical(URI uri, int depth, long simHash) {
+    }
+
+    /**
+     * Content hash -> canonical page, open-addressed with linear probing. Used under its own
+     * monitor.
+     */
+    private static final class ExactTable {
+        private long[] keys = new long[2 * 64];
+        private Canonical[] pages = new Canonical[64];
+        private int count;
+
+        Canonical get(long high, long low) {
+            return pages[slot(high, low)];
+        }
+
+        void put(long high, long low, Canonical page) {
+            int slot = slot(high, low);
+            keys[2 * slot] = high;
+            keys[2 * slot + 1] = low;
+            pages[slot] = page;
+            if (++count * 3 > pages.length * 2) {
+                grow();
+            }
+        }
+
+        void remove(long high, long low, Canonical page) {
+            int slot = slot(high, low);
+            if (!page.equals(pages[slot])) {
+                return;
+            }
+            pages[slot] = null;
+            count--;
+            // Reinserts the rest of the probe run, so lookups do not stop at the gap.
+            int mask = pages.length - 1;
+            for (int next = (slot + 1) & mask; pages[next] != null; next = (next + 1) & mask) {
+                Canonical moved = pages[next];
+                long movedHigh = keys[2 * next];
+                long movedLow = keys[2 * next + 1];
+                pages[next] = null;
+                int to = slot(movedHigh, movedLow);
+                keys[2 * to] = movedHigh;
+                keys[2 * to + 1] = movedLow;
+                pages[to] = moved;
+            }
+        }
+
+        /**
+         * Returns the slot holding the content hash, or the empty slot where it belongs.
+         */
+        private int slot(long high, long low) {
+            int mask = pages.length - 1;
+            int slot = (int) high & mask;
+            while (pages[slot] != null && (keys[2 * slot] != high || keys[2 * slot + 1] != low)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Canonical[] oldPages = pages;
+            keys = new long[oldKeys.length * 2];
+            pages = new Canonical[oldPages.length * 2];
+            for (int i = 0; i < oldPages.length; i++) {
+                if (oldPages[i] != null) {
+                    int slot = slot(oldKeys[2 * i], oldKeys[2 * i + 1]);
+                    keys[2 * slot] = oldKeys[2 * i];
+                    keys[2 * slot + 1] = oldKeys[2 * i + 1];
+                    pages[slot] = oldPages[i];
+                }
+            }
+        }
+    }
+}
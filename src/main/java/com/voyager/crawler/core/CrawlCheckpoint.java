@@ -0,0 +1,189 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * State of an interrupted crawl, rebuilt from a {@link CrawlJournal}.
+ * <p>
+ * A URL is scheduled at depth {@code d + 1} when a page at depth {@code d} contributed it (the
+ * seed is scheduled at depth 0), and pending when it is scheduled but not yet recorded as
+ * collected at that depth. A partially written last line is ignored.
+ */
+public class CrawlCheckpoint {
+    private final URI seedUrl;
+    private final int maxLinksPerPage;
+    private final int maxDepth;
+    private final boolean isUnique;
+    private final SchedulingMode schedulingMode;
+    private final List<Set<URI>> scheduledByDepth = new ArrayList<>();
+    private final List<Set<URI>> completedByDepth = new ArrayList<>();
+    private int pagesSaved;
+    private boolean finished;
+    private long validLength;
+
+    private CrawlCheckpoint(String[] header) {
+        if (header.length != 7 || !CrawlJournal.HEADER_TAG.equals(header[0])) {
+            throw new IllegalArgumentException("Not a crawl journal");
+        }
+        if (Integer.parseInt(header[1]) != CrawlJournal.FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported crawl journal version " + header[1]);
+        }
+        this.seedUrl = URI.create(header[2]);
+        this.maxLinksPerPage = Integer.parseInt(header[3]);
+        this.maxDepth = Integer.parseInt(header[4]);
+        this.isUnique = Boolean.parseBoolean(header[5]);
+        this.schedulingMode = SchedulingMode.valueOf(header[6]);
+        for (int depth = 0; depth <= maxDepth; depth++) {
+            scheduledByDepth.add(new LinkedHashSet<>());
+            completedByDepth.add(new HashSet<>());
+        }
+        URI seed = UrlUtils.normalize(seedUrl);
+        if (seed != null) {
+            scheduledByDepth.get(0).add(seed);
+        }
+    }
+
+    /**
+     * Reads a journal.
+     *
+     * @param journalFile file written by {@link CrawlJournal}.
+     * @return the checkpoint it describes.
+     * @throws IllegalArgumentException if the file is not a readable crawl journal.
+     */
+    public static CrawlCheckpoint load(Path journalFile) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(journalFile), 64 * 1024)) {
+            CrawlCheckpoint checkpoint = null;
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long offset = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                String[] fields = line.toString(StandardCharsets.UTF_8).split("\t");
+                line.reset();
+                if (checkpoint == null) {
+                    checkpoint = new CrawlCheckpoint(fields);
+                } else {
+                    checkpoint.apply(fields);
+                }
+                checkpoint.validLength = offset;
+            }
+            if (checkpoint == null) {
+                throw new IllegalArgumentException("Crawl journal " + journalFile + " has no header");
+            }
+            return checkpoint;
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("No crawl journal found at " + journalFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read crawl journal " + journalFile, e);
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IllegalArgumentException("Malformed crawl journal " + journalFile + ": " + e, e);
+        }
+    }
+
+    private void apply(String[] fields) {
+        switch (fields[0]) {
+            case CrawlJournal.PAGE_TAG -> {
+                int depth = Integer.parseInt(fields[1]);
+                if (fields[2].equals("1")) {
+                    pagesSaved++;
+                }
+                // Normalized again, as journals of older versions hold other spellings of the
+                // seed and links the crawl now canonicalizes.
+                completedByDepth.get(depth).add(UrlUtils.normalize(URI.create(fields[3])));
+                for (int i = 4; i < fields.length && depth < maxDepth; i++) {
+                    scheduledByDepth.get(depth + 1).add(UrlUtils.normalize(URI.create(fields[i])));
+                }
+            }
+            case CrawlJournal.FINISHED_TAG -> finished = true;
+            default -> throw new IllegalArgumentException("Unknown record " + fields[0]);
+        }
+    }
+
+    /**
+     * Verifies that the journal was written by a crawl with the same parameters.
+     *
+     * @param config parameters of the crawl to resume.
+     * @throws IllegalArgumentException on any mismatch.
+     */
+    public void requireCompatible(CrawlerConfig config) {
+        List<String> mismatches = new ArrayList<>();
+        if (!seedUrl.equals(config.seedUrl())) {
+            mismatches.add("seedUrl " + seedUrl);
+        }
+        if (maxLinksPerPage != config.maxLinksPerPage()) {
+            mismatches.add("maxLinksPerPage " + maxLinksPerPage);
+        }
+        if (maxDepth != config.maxDepth()) {
+            mismatches.add("maxDepth " + maxDepth);
+        }
+        if (isUnique != config.isUnique()) {
+            mismatches.add("isUnique " + isUnique);
+        }
+        if (schedulingMode != config.schedulingMode()) {
+            mismatches.add("mode " + schedulingMode.name().toLowerCase(Locale.ROOT));
+        }
+        if (!mismatches.isEmpty()) {
+            throw new IllegalArgumentException("Checkpoint belongs to a different crawl (" + String.join(", ", mismatches)
+                    + ").");
+        }
+    }
+
+    /**
+     * @param depth crawl depth.
+     * @return URLs scheduled at the depth, in the order they were first scheduled.
+     */
+    public Set<URI> scheduled(int depth) {
+        return Collections.unmodifiableSet(scheduledByDepth.get(depth));
+    }
+
+    /**
+     * @param depth crawl depth.
+     * @return URLs scheduled at the depth but not yet collected, in scheduling order.
+     */
+    public List<URI> pending(int depth) {
+        Set<URI> completed = completedByDepth.get(depth);
+        return scheduledByDepth.get(depth).stream().filter(uri -> !completed.contains(uri)).toList();
+    }
+
+    /**
+     * @return number of pages recorded as stored.
+     */
+    public int pagesSaved() {
+        return pagesSaved;
+    }
+
+    /**
+     * @return whether the crawl ran to completion.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return maximum depth of the journaled crawl.
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return number of bytes of the journal made of complete lines.
+     */
+    long validLength() {
+        return validLength;
+    }
+}
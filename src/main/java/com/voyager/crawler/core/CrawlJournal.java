@@ -0,0 +1,93 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.io.*;
+
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Append-only checkpoint journal of a crawl, read back by {@link CrawlCheckpoint}.
+ * <p>
+ * The first line identifies the crawl parameters. Each collected page then adds one
+ * tab-separated line with its depth, whether it was saved, its URL and the links it contributed
+ * to the next depth. The pending URLs, the visited set and the saved-page count are all derived
+ * from these lines, so the journal is a consistent checkpoint after every complete line.
+ * <p>
+ * Records are written by an {@link AsyncLineWriter}. A crash loses at most the records of its
+ * last flush interval; those pages are fetched again on resume.
+ */
+public class CrawlJournal implements AutoCloseable {
+    static final String HEADER_TAG = "voyager-journal";
+    static final String PAGE_TAG = "C";
+    static final String FINISHED_TAG = "E";
+    static final int FORMAT_VERSION = 1;
+
+    private final AsyncLineWriter log;
+
+    private CrawlJournal(AsyncLineWriter log) {
+        this.log = log;
+    }
+
+    /**
+     * Starts a new journal, replacing any existing file.
+     *
+     * @param file   journal file.
+     * @param config parameters of the crawl, recorded in the header.
+     * @return the open journal.
+     */
+    public static CrawlJournal create(Path file, CrawlerConfig config) {
+        CrawlJournal journal = new CrawlJournal(AsyncLineWriter.create(file, "crawl journal"));
+        journal.log.write(String.join("\t", HEADER_TAG, Integer.toString(FORMAT_VERSION),
+                config.seedUrl().toString(), Integer.toString(config.maxLinksPerPage()),
+                Integer.toString(config.maxDepth()), Boolean.toString(config.isUnique()),
+                config.schedulingMode().name()));
+        return journal;
+    }
+
+    /**
+     * Reopens a journal to continue it after {@code checkpoint} was loaded from it. A partially
+     * written last line is cut off first.
+     *
+     * @param file       journal file.
+     * @param checkpoint checkpoint loaded from the same file.
+     * @return the open journal.
+     */
+    public static CrawlJournal append(Path file, CrawlCheckpoint checkpoint) {
+        return new CrawlJournal(AsyncLineWriter.append(file, checkpoint.validLength(), "crawl journal"));
+    }
+
+    /**
+     * Records a collected page.
+     *
+     * @param uri      the page URL.
+     * @param depth    the page's crawl depth.
+     * @param saved    whether the page was stored.
+     * @param children links the page contributed to the next depth, in selection order.
+     */
+    public void recordPage(URI uri, int depth, boolean saved, List<URI> children) {
+        StringBuilder line = new StringBuilder(64 + children.size() * 48)
+                .append(PAGE_TAG).append('\t').append(depth).append('\t').append(saved ? '1' : '0')
+                .append('\t').append(uri);
+        for (URI child : children) {
+            line.append('\t').append(child);
+        }
+        log.write(line.toString());
+    }
+
+    /**
+     * Records that the crawl ran to completion.
+     */
+    public void recordFinished() {
+        log.write(FINISHED_TAG);
+    }
+
+    /**
+     * Writes all queued records, syncs the file and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        log.close();
+    }
+}
@@ -0,0 +1,351 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.io.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Metrics of one crawl: URLs added to each depth's frontier and completed there, the
+ * {@link StageStats} of every stage, the saved-page count, and, when the fetcher keeps them, its
+ * {@link TransferStats} and per-host {@link ResponseStats}. Counters are {@link LongAdder}s, so
+ * crawl tasks record without contending. Other components of the crawl register gauges and text
+ * summaries, read only when the metrics are written.
+ * <p>
+ * {@link #progress()} gives the live view a {@link ProgressReporter} prints, and
+ * {@link #writeJson(Path)} the machine-readable summary written when the crawl ends.
+ */
+public class CrawlMetrics {
+    private final StageStats stages;
+    private final AtomicInteger pagesSaved;
+    private final TransferStats transfer;
+    private final ResponseStats responses;
+    private final LongAdder[] scheduled;
+    private final LongAdder[] completed;
+    private final AtomicIntegerArray spilledSegments;
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+    private final List<Summary> summaries = new CopyOnWriteArrayList<>();
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+
+    /**
+     * Creates the metrics of a crawl.
+     *
+     * @param maxDepth   deepest depth crawled.
+     * @param stages     latencies of the crawl's stages.
+     * @param pagesSaved counter of saved pages.
+     * @param transfer   body byte counts of the fetcher, or null if it keeps none.
+     * @param responses  per-host response counts of the fetcher, or null if it keeps none.
+     */
+    public CrawlMetrics(int maxDepth, StageStats stages, AtomicInteger pagesSaved, TransferStats transfer,
+            ResponseStats responses) {
+        this.stages = Objects.requireNonNull(stages, "stages must not be null");
+        this.pagesSaved = Objects.requireNonNull(pagesSaved, "pagesSaved must not be null");
+        this.transfer = transfer;
+        this.responses = responses;
+        this.scheduled = newAdders(maxDepth + 1);
+        this.completed = newAdders(maxDepth + 1);
+        this.spilledSegments = new AtomicIntegerArray(maxDepth + 1);
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Records a URL added to a depth's frontier.
+     */
+    void recordScheduled(int depth) {
+        scheduled[depth].increment();
+    }
+
+    /**
+     * Records a URL of a depth whose task finished, whether or not its page was saved.
+     */
+    void recordCompleted(int depth) {
+        completed[depth].increment();
+    }
+
+    /**
+     * Records how many disk segments a depth's frontier was spilled to.
+     */
+    void recordSpilledSegments(int depth, int segments) {
+        spilledSegments.set(depth, segments);
+    }
+
+    /**
+     * Adds a value written to the JSON summary under {@code gauges}.
+     *
+     * @param name  key of the value.
+     * @param value reads the value when the metrics are written.
+     */
+    void addGauge(String name, LongSupplier value) {
+        gauges.add(new Gauge(name, value));
+    }
+
+    /**
+     * Adds a component's text summary written to the JSON summary under {@code components}.
+     *
+     * @param name    key of the component.
+     * @param summary reads the summary when the metrics are written.
+     */
+    void addSummary(String name, Supplier<String> summary) {
+        summaries.add(new Summary(name, summary));
+    }
+
+    /**
+     * Stops the crawl's clock.
+     */
+    void recordFinished() {
+        finishNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of URLs added to a depth's frontier.
+     */
+    public long scheduled(int depth) {
+        return scheduled[depth].sum();
+    }
+
+    /**
+     * Returns the number of URLs of a depth whose task finished.
+     */
+    public long completed(int depth) {
+        return completed[depth].sum();
+    }
+
+    /**
+     * Returns the number of disk segments a depth's frontier was spilled to.
+     */
+    public int spilledSegments(int depth) {
+        return spilledSegments.get(depth);
+    }
+
+    /**
+     * Returns the deepest depth crawled.
+     */
+    public int maxDepth() {
+        return scheduled.length - 1;
+    }
+
+    /**
+     * Returns the time since the crawl started, or its duration once it has finished.
+     */
+    public long elapsedNanos() {
+        long finish = finishNanos;
+        return (finish != 0 ? finish : System.nanoTime()) - startNanos;
+    }
+
+    public StageStats stages() {
+        return stages;
+    }
+
+    /**
+     * Returns the fetcher's per-host response counts, or null if it keeps none.
+     */
+    public ResponseStats responses() {
+        return responses;
+    }
+
+    /**
+     * Returns the current state of the crawl. The current depth is the shallowest one with
+     * unfinished URLs, or the deepest one reached when all are finished.
+     */
+    public Progress progress() {
+        int depth = 0;
+        long lastScheduled = 0;
+        long totalCompleted = 0;
+        for (int d = 0; d < scheduled.length; d++) {
+            totalCompleted += completed(d);
+        }
+        for (int d = 0; d < scheduled.length; d++) {
+            long urls = scheduled(d);
+            if (urls == 0) {
+                break;
+            }
+            depth = d;
+            lastScheduled = urls;
+            if (completed(d) < urls) {
+                break;
+            }
+        }
+        return new Progress(depth, maxDepth(), lastScheduled, Math.min(lastScheduled, completed(depth)),
+                spilledSegments(depth), totalCompleted, pagesSaved.get(), stages.fetch());
+    }
+
+    /**
+     * Returns the URLs scheduled per depth as text, up to the deepest depth reached.
+     */
+    public String frontierSummary() {
+        StringJoiner depths = new StringJoiner(", ");
+        for (int d = 0; d < scheduled.length && scheduled(d) > 0; d++) {
+            depths.add("depth " + d + ": " + scheduled(d) + " URLs");
+        }
+        return depths.toString();
+    }
+
+    /**
+     * Writes the metrics as a JSON object.
+     *
+     * @param file the file to write, replaced if it exists.
+     */
+    public void writeJson(Path file) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(file, toJson(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write metrics to " + file, e);
+        }
+    }
+
+    /**
+     * Returns the metrics as a JSON object.
+     */
+    public String toJson() {
+        long elapsed = elapsedNanos();
+        int saved = pagesSaved.get();
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n");
+        json.append("  \"elapsedMs\": ").append(elapsed / 1_000_000).append(",\n");
+        json.append("  \"pagesSaved\": ").append(saved).append(",\n");
+        json.append("  \"pagesPerSecond\": ").append(number(elapsed == 0 ? 0 : saved * 1e9 / elapsed)).append(",\n");
+
+        json.append("  \"depths\": [");
+        for (int d = 0; d < scheduled.length && scheduled(d) > 0; d++) {
+            json.append(d == 0 ? "\n" : ",\n").append("    {\"depth\": ").append(d)
+                    .append(", \"scheduled\": ").append(scheduled(d))
+                    .append(", \"completed\": ").append(completed(d))
+                    .append(", \"spilledSegments\": ").append(spilledSegments(d)).append('}');
+        }
+        json.append(scheduled(0) > 0 ? "\n  ],\n" : "],\n");
+
+        json.append("  \"stages\": {\n");
+        appendStage(json, "fetch", stages.fetch(), ",\n");
+        appendStage(json, "save", stages.save(), ",\n");
+        appendStage(json, "parseWait", stages.parseWait(), ",\n");
+        appendStage(json, "parse", stages.parse(), "\n");
+        json.append("  },\n");
+
+        json.append("  \"bytes\": {");
+        if (transfer != null) {
+            TransferStats.Snapshot bytes = transfer.snapshot();
+            json.append("\"received\": ").append(bytes.bytesReceived())
+                    .append(", \"decoded\": ").append(bytes.bytesDecoded()).append(", ");
+        }
+        json.append("\"saved\": ").append(stages.bytesSaved()).append('}');
+
+        if (!gauges.isEmpty()) {
+            json.append(",\n  \"gauges\": {");
+            String separator = "\n";
+            for (Gauge gauge : gauges) {
+                json.append(separator).append("    ").append(string(gauge.name())).append(": ")
+                        .append(gauge.value().getAsLong());
+                separator = ",\n";
+            }
+            json.append("\n  }");
+        }
+        if (!summaries.isEmpty()) {
+            json.append(",\n  \"components\": {");
+            String separator = "\n";
+            for (Summary summary : summaries) {
+                json.append(separator).append("    ").append(string(summary.name())).append(": ")
+                        .append(string(summary.text().get()));
+                separator = ",\n";
+            }
+            json.append("\n  }");
+        }
+
+        if (responses != null) {
+            json.append(",\n  \"responses\": {\n    \"total\": ");
+            appendResponses(json, responses.total());
+            json.append(",\n    \"hosts\": {");
+            String separator = "\n";
+            for (Map.Entry<String, ResponseStats.HostSnapshot> host : responses.snapshot().entrySet()) {
+                json.append(separator).append("      ").append(string(host.getKey())).append(": ");
+                appendResponses(json, host.getValue());
+                separator = ",\n";
+            }
+            json.append(separator.equals("\n") ? "}\n  }" : "\n    }\n  }");
+        }
+        json.append("\n}\n");
+        return json.toString();
+    }
+
+    private static void appendStage(StringBuilder json, String name, StageStats.Snapshot stage, String end) {
+        json.append("    \"").append(name).append("\": {\"count\": ").append(stage.count())
+                .append(", \"avgMs\": ").append(number(stage.averageMillis()))
+                .append(", \"p50Ms\": ").append(number(stage.p50Millis()))
+                .append(", \"p99Ms\": ").append(number(stage.p99Millis()))
+                .append(", \"maxMs\": ").append(number(stage.maxMillis())).append('}').append(end);
+    }
+
+    private static void appendResponses(StringBuilder json, ResponseStats.HostSnapshot host) {
+        json.append("{\"statuses\": {");
+        String separator = "";
+        for (Map.Entry<Integer, Long> status : host.statuses().entrySet()) {
+            json.append(separator).append('"').append(status.getKey()).append("\": ").append(status.getValue());
+            separator = ", ";
+        }
+        json.append("}, \"retries\": ").append(host.retries()).append(", \"errors\": ").append(host.errors())
+                .append('}');
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    private static String string(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private record Gauge(String name, LongSupplier value) {
+    }
+
+    private record Summary(String name, Supplier<String> text) {
+    }
+
+    /**
+     * Point-in-time state of a crawl.
+     *
+     * @param depth           current depth.
+     * @param maxDepth        deepest depth crawled.
+     * @param depthScheduled  URLs added to the current depth's frontier so far.
+     * @param depthCompleted  URLs of the current depth whose task finished.
+     * @param spilledSegments disk segments the current depth's frontier was spilled to.
+     * @param totalCompleted  URLs of all depths whose task finished.
+     * @param pagesSaved      pages saved.
+     * @param fetch           fetch latencies so far.
+     */
+    public record Progress(int depth, int maxDepth, long depthScheduled, long depthCompleted, int spilledSegments,
+            long totalCompleted, int pagesSaved, StageStats.Snapshot fetch) {
+        /**
+         * Returns the URLs of the current depth still to finish.
+         */
+        public long depthRemaining() {
+            return depthScheduled - depthCompleted;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.io.*;
+
+import java.util.*;
+
+/**
+ * Optional components of a {@link CrawlerManager}. Start from {@link #defaults()} and replace
+ * the components a crawl uses with the {@code with} methods.
+ *
+ * @param scheduler      host-aware scheduler pacing outgoing requests.
+ * @param frontierConfig memory limits for the URLs of the next depth.
+ * @param journal        checkpoint journal receiving collected pages, or {@code null}.
+ * @param pageIndex      index of stored pages, used for incremental recrawls, or {@code null}.
+ * @param contentDedup   index of page contents for skipping duplicate pages, or {@code null}.
+ * @param robots         {@code robots.txt} rules to obey, or {@code null} to crawl every link.
+ * @param cluster        joined node of a partitioned crawl, or {@code null} to crawl every host.
+ */
+public record CrawlOptions(HostScheduler scheduler, FrontierConfig frontierConfig, CrawlJournal journal,
+        PageIndex pageIndex, ContentDedup contentDedup, RobotsCache robots, ClusterNode cluster) {
+    public CrawlOptions {
+        Objects.requireNonNull(scheduler, "scheduler must not be null");
+        Objects.requireNonNull(frontierConfig, "frontierConfig must not be null");
+    }
+
+    /**
+     * Returns the options of a plain crawl: default politeness limits, an in-memory frontier, and
+     * no other components.
+     *
+     * @return the default options.
+     */
+    public static CrawlOptions defaults() {
+        return new CrawlOptions(new HostScheduler(PolitenessConfig.defaults()), FrontierConfig.inMemory(), null, null,
+                null, null, null);
+    }
+
+    public CrawlOptions withScheduler(HostScheduler scheduler) {
+        return new CrawlOptions(scheduler, frontierConfig, journal, pageIndex, contentDedup, robots, cluster);
+    }
+
+    public CrawlOptions withFrontierConfig(FrontierConfig frontierConfig) {
+        return new CrawlOptions(scheduler, frontierConfig, journal, pageIndex, contentDedup, robots, cluster);
+    }
+
+    public CrawlOptions withJournal(CrawlJournal journal) {
+        return new CrawlOptions(scheduler, frontierConfig, journal, pageIndex, contentDedup, robots, cluster);
+    }
+
+    public CrawlOptions withPageIndex(PageIndex pageIndex) {
+        return new CrawlOptions(scheduler, frontierConfig, journal, pageIndex, contentDedup, robots, cluster);
+    }
+
+    public CrawlOptions withContentDedup(ContentDedup contentDedup) {
+        return new CrawlOptions(scheduler, frontierConfig, journal, pageIndex, contentDedup, robots, cluster);
+    }
+
+    public CrawlOptions withRobots(RobotsCache robots) {
+        return new CrawlOptions(scheduler, frontierConfig, journal, pageIndex, contentDedup, robots, cluster);
+    }
+
+    public CrawlOptions withCluster(ClusterNode cluster) {
+        return new CrawlOptions(scheduler, frontierConfig, journal, pageIndex, contentDedup, robots, cluster);
+    }
+}
@@ -1,10 +1,12 @@
 package com.voyager.crawler.core;
 
 import com.voyager.crawler.io.*;
-import com.voyager.crawler.parser.HtmlParser;
-import com.voyager.crawler.util.ConsolePrinter;
+import com.voyager.crawler.util.*;
 
+import java.io.*;
 import java.net.URI;
+import java.nio.charset.*;
+import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
@@ -12,15 +14,41 @@ import java.util.concurrent.atomic.*;
 /**
  * A Callable task responsible for processing a single URL.
  * Steps: Fetch -> Save -> Extract Links.
+ * <p>
+ * The host permit from the {@link HostScheduler} is held only while fetching. Saving happens
+ * after it is released, and link extraction is handed to the {@link ParseStage}, whose
+ * platform threads do the CPU-bound work while this task's virtual thread waits.
+ * <p>
+ * When the fetcher is a {@link ByteContentFetcher}, the body stays in pooled buffers: storage
+ * and parser read the same bytes and the buffers are released once the page is parsed.
+ * <p>
+ * With a {@link PageIndex}, each stored page is recorded with its validators and links. When
+ * the index has a previous crawl and the fetcher is a {@link ConditionalContentFetcher}, a page
+ * the previous crawl stored is revalidated; on {@code 304} its file is reused and its cached
+ * links are returned without parsing.
+ * <p>
+ * With a {@link ContentDedup}, a fetched page whose content duplicates an earlier page is
+ * neither stored nor parsed.
+ * <p>
+ * With an {@link AsyncContentStorage}, the task waits for queue room before fetching, queues the
+ * page for writing, and parses it while it is written. The page only counts as saved once the
+ * write is durable.
  */
 public class CrawlTask implements Callable<Set<URI>> {
     private final URI uri;
     private final int depth;
     private final ContentFetcher fetcher;
-    private final HtmlParser parser;
     private final ContentStorage storage;
+    private final HostScheduler scheduler;
+    private final ParseStage parseStage;
     private final boolean extractLinks;
     private final AtomicInteger pagesSaved;
+    private final StageStats stats;
+    private final PageIndex pageIndex;
+    private final ContentDedup contentDedup;
+    private volatile boolean saved;
+    // Fingerprint the page holds its place in contentDedup with until it is stored, or null.
+    private ContentFingerprint registered;
 
     /**
      * Creates a crawling task for a single URI.
@@ -28,21 +56,51 @@ public class CrawlTask implements Callable<Set<URI>> {
      * @param uri           the target URI.
      * @param depth         the crawl depth for the URI.
      * @param fetcher       component responsible for fetching content.
-     * @param parser        HTML parser used for link extraction.
      * @param storage       storage backend for saving fetched pages.
+     * @param scheduler     host-aware scheduler admitting the request.
+     * @param parseStage    stage performing link extraction.
      * @param extractLinks  flag indicating whether to extract links from the
      *                      fetched content.
      * @param pagesSaved    shared counter for successful saves.
+     * @param stats         statistics receiving fetch and save latencies.
      */
-    public CrawlTask(URI uri, int depth, ContentFetcher fetcher, HtmlParser parser, ContentStorage storage,
-            boolean extractLinks, AtomicInteger pagesSaved) {
+    public CrawlTask(URI uri, int depth, ContentFetcher fetcher, ContentStorage storage, HostScheduler scheduler,
+            ParseStage parseStage, boolean extractLinks, AtomicInteger pagesSaved, StageStats stats) {
+        this(uri, depth, fetcher, storage, scheduler, parseStage, extractLinks, pagesSaved, stats, null, null);
+    }
+
+    /**
+     * Creates a crawling task that records the page in a {@link PageIndex}, revalidates it
+     * against the previous crawl of an incremental crawl, and skips it if its content duplicates
+     * an earlier page.
+     *
+     * @param uri           the target URI.
+     * @param depth         the crawl depth for the URI.
+     * @param fetcher       component responsible for fetching content.
+     * @param storage       storage backend for saving fetched pages.
+     * @param scheduler     host-aware scheduler admitting the request.
+     * @param parseStage    stage performing link extraction.
+     * @param extractLinks  flag indicating whether to extract links from the
+     *                      fetched content.
+     * @param pagesSaved    shared counter for successful saves.
+     * @param stats         statistics receiving fetch and save latencies.
+     * @param pageIndex     index of stored pages, or null.
+     * @param contentDedup  index of page contents for skipping duplicates, or null.
+     */
+    public CrawlTask(URI uri, int depth, ContentFetcher fetcher, ContentStorage storage, HostScheduler scheduler,
+            ParseStage parseStage, boolean extractLinks, AtomicInteger pagesSaved, StageStats stats,
+            PageIndex pageIndex, ContentDedup contentDedup) {
         this.uri = uri;
         this.depth = depth;
         this.fetcher = fetcher;
-        this.parser = parser;
         this.storage = storage;
+        this.scheduler = scheduler;
+        this.parseStage = parseStage;
         this.extractLinks = extractLinks;
         this.pagesSaved = pagesSaved;
+        this.stats = stats;
+        this.pageIndex = pageIndex;
+        this.contentDedup = contentDedup;
     }
 
     /**
@@ -54,24 +112,216 @@ public class CrawlTask implements Callable<Set<URI>> {
     @Override
     public Set<URI> call() {
         try {
-            var contentOpt = fetcher.fetch(uri);
+            if (fetcher instanceof ByteContentFetcher byteFetcher) {
+                return processBody(byteFetcher);
+            }
+
+            awaitStorageCapacity();
+            Optional<String> contentOpt;
+            long fetchStartNs;
+            HostScheduler.Permit permit = scheduler.acquire(uri);
+            try {
+                fetchStartNs = System.nanoTime();
+                contentOpt = fetcher.fetch(uri);
+            } finally {
+                permit.close();
+            }
+            stats.recordFetch(System.nanoTime() - fetchStartNs);
             if (contentOpt.isEmpty()) {
                 return Collections.emptySet();
             }
             String content = contentOpt.get();
+            if (contentDedup != null && isDuplicate(ContentFingerprint.of(content.getBytes(StandardCharsets.UTF_8)))) {
+                return Collections.emptySet();
+            }
 
-            storage.save(uri, content, depth);
-            pagesSaved.incrementAndGet();
-
+            CompletableFuture<Void> write = startSave(content);
             if (!extractLinks) {
+                awaitSave(write);
                 return Collections.emptySet();
             }
 
-            return parser.extractLinks(uri, content);
+            Set<URI> links = parseStage.submit(uri, content).get();
+            awaitSave(write);
+            return links;
 
         } catch (Exception e) {
-            ConsolePrinter.error("Task failed for " + uri + ": " + e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (registered != null && !saved) {
+                contentDedup.forget(uri, depth, registered);
+            }
+            ConsolePrinter.error(UrlUtils.hostKey(uri) + " " + e.getClass().getSimpleName(),
+                    "Task failed for " + uri + ": " + e);
+            return Collections.emptySet();
+        }
+    }
+
+    /**
+     * @return whether {@link #call()} stored the page.
+     */
+    public boolean wasSaved() {
+        return saved;
+    }
+
+    private Set<URI> processBody(ByteContentFetcher byteFetcher) throws InterruptedException, ExecutionException {
+        Optional<PageIndex.CachedPage> cached = Optional.empty();
+        if (pageIndex != null && byteFetcher instanceof ConditionalContentFetcher) {
+            cached = pageIndex.previous(uri, extractLinks);
+        }
+
+        awaitStorageCapacity();
+        Optional<ConditionalResponse> responseOpt;
+        long fetchStartNs;
+        HostScheduler.Permit permit = scheduler.acquire(uri);
+        try {
+            fetchStartNs = System.nanoTime();
+            if (byteFetcher instanceof ConditionalContentFetcher conditionalFetcher) {
+                PageValidators validators = cached.map(PageIndex.CachedPage::validators).orElse(PageValidators.NONE);
+                responseOpt = conditionalFetcher.fetchConditional(uri, validators);
+            } else {
+                responseOpt = byteFetcher.fetchBody(uri)
+                        .map(body -> ConditionalResponse.modified(body, PageValidators.NONE));
+            }
+        } finally {
+            permit.close();
+        }
+        stats.recordFetch(System.nanoTime() - fetchStartNs);
+        if (responseOpt.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        ConditionalResponse response = responseOpt.get();
+        if (response.isNotModified()) {
+            return reuse(cached.orElseThrow(), response.validators());
+        }
+
+        PageBody body = response.body();
+        if (contentDedup != null && isDuplicate(ContentFingerprint.of(body.asByteBuffers()))) {
+            body.close();
+            return Collections.emptySet();
+        }
+        CompletableFuture<Void> write;
+        try {
+            write = startSave(body);
+        } catch (InterruptedException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+
+        if (!extractLinks) {
+            body.close();
+            awaitSave(write);
+            recordIndex(response.validators(), null);
             return Collections.emptySet();
         }
+
+        // The parse stage owns the body from here and releases it after parsing.
+        Set<URI> links = parseStage.submit(uri, body).get();
+        awaitSave(write);
+        recordIndex(response.validators(), links);
+        return links;
+    }
+
+    private void awaitStorageCapacity() throws InterruptedException {
+        if (storage instanceof AsyncContentStorage asyncStorage) {
+            asyncStorage.awaitCapacity();
+        }
+    }
+
+    /**
+     * Saves the body, or queues it with an {@link AsyncContentStorage}. The caller keeps its
+     * handle either way.
+     *
+     * @return future completed once the page is stored.
+     */
+    private CompletableFuture<Void> startSave(PageBody body) throws InterruptedException {
+        long saveStartNs = System.nanoTime();
+        stats.recordBytesSaved(body.length());
+        if (storage instanceof AsyncContentStorage asyncStorage) {
+            return timed(asyncStorage.saveAsync(uri, body, depth), saveStartNs);
+        }
+        if (storage instanceof ByteContentStorage byteStorage) {
+            byteStorage.save(uri, body, depth);
+        } else {
+            storage.save(uri, body.decode(), depth);
+        }
+        stats.recordSave(System.nanoTime() - saveStartNs);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Void> startSave(String content) throws InterruptedException {
+        long saveStartNs = System.nanoTime();
+        if (storage instanceof AsyncContentStorage asyncStorage) {
+            return timed(asyncStorage.saveAsync(uri, content, depth), saveStartNs);
+        }
+        storage.save(uri, content, depth);
+        stats.recordSave(System.nanoTime() - saveStartNs);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Records the save latency, including time spent queued, when the write completes.
+     */
+    private CompletableFuture<Void> timed(CompletableFuture<Void> write, long saveStartNs) {
+        return write.thenRun(() -> stats.recordSave(System.nanoTime() - saveStartNs));
+    }
+
+    /**
+     * Waits for a write, counts the page as saved, and confirms it as canonical copy of its
+     * content.
+     *
+     * @throws ExecutionException if the write failed.
+     */
+    private void awaitSave(CompletableFuture<Void> write) throws InterruptedException, ExecutionException {
+        write.get();
+        pagesSaved.incrementAndGet();
+        saved = true;
+        if (registered != null) {
+            contentDedup.confirm(uri, depth, registered);
+        }
+    }
+
+    /**
+     * Stores a page the server reported as unchanged from the previous crawl's file, and returns
+     * the links cached for it.
+     */
+    private Set<URI> reuse(PageIndex.CachedPage cached, PageValidators validators)
+            throws InterruptedException, ExecutionException {
+        long saveStartNs = System.nanoTime();
+        if (storage instanceof AsyncContentStorage asyncStorage) {
+            asyncStorage.saveCopyAsync(uri, cached.file(), depth).get();
+        } else if (storage instanceof ByteContentStorage byteStorage) {
+            byteStorage.saveCopy(uri, cached.file(), depth);
+        } else {
+            try {
+                storage.save(uri, new String(Files.readAllBytes(cached.file()), StandardCharsets.UTF_8), depth);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read " + cached.file(), e);
+            }
+        }
+        stats.recordSave(System.nanoTime() - saveStartNs);
+        pagesSaved.incrementAndGet();
+        saved = true;
+        pageIndex.recordReused();
+
+        Set<URI> links = extractLinks ? new LinkedHashSet<>(cached.links()) : Collections.emptySet();
+        recordIndex(validators, cached.links());
+        return links;
+    }
+
+    private boolean isDuplicate(ContentFingerprint fingerprint) {
+        if (contentDedup.check(uri, depth, fingerprint).isPresent()) {
+            return true;
+        }
+        registered = fingerprint;
+        return false;
+    }
+
+    private void recordIndex(PageValidators validators, Collection<URI> links) {
+        if (pageIndex != null) {
+            pageIndex.record(uri, depth, validators, links);
+        }
     }
 }
@@ -9,23 +9,60 @@ import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
+import java.util.function.*;
 
 /**
- * Coordinates crawling across depths using concurrent tasks and a bounded I/O rate.
+ * Coordinates crawling across depths using concurrent tasks paced by a {@link HostScheduler}.
+ * Fetching runs on virtual threads; link extraction runs on a {@link ParseStage} sized to the
+ * available processors. With a {@link RobotsCache}, links disallowed by their site's
+ * {@code robots.txt} are skipped while a page's links are selected, so they never take up the
+ * branching limit, and no {@code robots.txt} is fetched for links past that limit. Each task
+ * checks its page's links on its own thread, so {@code robots.txt} files of different hosts are
+ * fetched concurrently rather than one at a time by the thread collecting the results.
+ * <p>
+ * With a {@link ClusterNode}, the crawl is one partition of a crawl spread over several
+ * processes: links to hosts of other nodes are forwarded to them unchecked instead of being
+ * queued, the links they forward are checked against {@code robots.txt} and the visited set and
+ * queued here, and each depth ends when every node has finished it.
+ * <p>
+ * Every URL added to a depth and every finished task is counted in the crawl's
+ * {@link CrawlMetrics}, which a {@link ProgressReporter} can watch while the crawl runs. The
+ * statistics of the other components are registered with the metrics, so the crawl itself only
+ * prints one line when it finishes.
  */
 public class CrawlerManager {
+    /**
+     * Maximum number of tasks of a depth submitted but not yet collected. Bounds the futures held
+     * by the crawl loop regardless of how many URLs a depth has.
+     */
+    static final int MAX_PENDING_TASKS = 4096;
+
+    /**
+     * Number of URLs of a depth read from the frontier at a time and submitted grouped by host.
+     */
+    static final int HOST_BATCH_SIZE = 1024;
+
     private final CrawlerConfig config;
     private final ContentFetcher fetcher;
-    private final HtmlParser parser;
     private final ContentStorage storage;
     private final UrlDedupService dedupService;
+    private final HostScheduler scheduler;
+    private final FrontierConfig frontierConfig;
+    private final CrawlJournal journal;
+    private final PageIndex pageIndex;
+    private final ContentDedup contentDedup;
+    private final RobotsCache robots;
+    private final ClusterNode cluster;
     private final ExecutorService executor;
+    private final StageStats stageStats = new StageStats();
+    private final ParseStage parseStage;
 
     private final AtomicInteger pagesSaved = new AtomicInteger(0);
-    private final Semaphore rateLimiter = new Semaphore(50);
+    private final CrawlMetrics metrics;
 
     /**
-     * Creates a crawler manager backed by a virtual-thread executor for I/O-bound work.
+     * Creates a crawler manager backed by a virtual-thread executor for I/O-bound work, using the
+     * default politeness limits.
      *
      * @param config       configuration parameters.
      * @param fetcher      component to fetch web content.
@@ -35,17 +72,77 @@ public class CrawlerManager {
      */
     public CrawlerManager(CrawlerConfig config, ContentFetcher fetcher, HtmlParser parser, ContentStorage storage,
             UrlDedupService dedupService) {
+        this(config, fetcher, parser, storage, dedupService, CrawlOptions.defaults());
+    }
+
+    /**
+     * Creates a crawler manager backed by a virtual-thread executor for I/O-bound work.
+     *
+     * @param config       configuration parameters.
+     * @param fetcher      component to fetch web content.
+     * @param parser       component to parse HTML.
+     * @param storage      component to save content to disk.
+     * @param dedupService component to manage visited URLs.
+     * @param options      scheduler, frontier limits, and optional components of the crawl.
+     * @throws IllegalArgumentException if a cluster crawl is not scheduled depth by depth.
+     */
+    public CrawlerManager(CrawlerConfig config, ContentFetcher fetcher, HtmlParser parser, ContentStorage storage,
+            UrlDedupService dedupService, CrawlOptions options) {
+        ClusterNode cluster = options.cluster();
+        if (cluster != null && config.schedulingMode() != SchedulingMode.BARRIER) {
+            throw new IllegalArgumentException("A cluster crawl requires barrier scheduling");
+        }
         this.config = config;
         this.fetcher = fetcher;
-        this.parser = parser;
         this.storage = storage;
         this.dedupService = dedupService;
+        this.scheduler = options.scheduler();
+        this.frontierConfig = options.frontierConfig();
+        this.journal = options.journal();
+        this.pageIndex = options.pageIndex();
+        this.contentDedup = options.contentDedup();
+        this.robots = options.robots();
+        this.cluster = cluster;
         this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.parseStage = new ParseStage(parser, stageStats);
+        this.metrics = fetcher instanceof JavaHttpClientFetcher httpFetcher
+                ? new CrawlMetrics(config.maxDepth(), stageStats, pagesSaved, httpFetcher.transferStats(),
+                        httpFetcher.responseStats())
+                : new CrawlMetrics(config.maxDepth(), stageStats, pagesSaved, null, null);
+        registerComponentMetrics();
+    }
+
+    private void registerComponentMetrics() {
+        metrics.addGauge("parseQueuePeak", parseStage::peakQueueDepth);
+        if (storage instanceof AsyncContentStorage asyncStorage) {
+            metrics.addGauge("pendingWritesPeak", asyncStorage::peakPendingWrites);
+        }
+        if (fetcher instanceof JavaHttpClientFetcher httpFetcher) {
+            ByteBudget budget = httpFetcher.byteBudget();
+            metrics.addGauge("bodyMemoryPeakBytes", budget::peakBytes);
+            metrics.addGauge("bodyMemoryMaxBytes", budget::maxBytes);
+            metrics.addGauge("bodyMemoryWaits", budget::waits);
+            metrics.addSummary("transfer", () -> httpFetcher.transferStats().snapshot().toString());
+        }
+        if (pageIndex != null && pageIndex.isIncremental()) {
+            metrics.addGauge("pagesReused", pageIndex::reusedPages);
+        }
+        metrics.addSummary("concurrency", scheduler::limitSummary);
+        if (contentDedup != null) {
+            metrics.addSummary("contentDedup", contentDedup::toString);
+        }
+        if (robots != null) {
+            metrics.addSummary("robots", robots::toString);
+        }
+        if (cluster != null) {
+            metrics.addSummary("cluster", cluster::toString);
+        }
     }
 
     /**
      * Executes the crawl from the configured seed URL, enforcing depth and branching
-     * limits while optionally deduplicating URLs.
+     * limits while optionally deduplicating URLs. In a cluster, only the node owning the seed's
+     * host starts from it; the others start from the links forwarded to them.
      */
     public void crawl() {
         URI seed = UrlUtils.normalize(config.seedUrl());
@@ -54,84 +151,518 @@ public class CrawlerManager {
             return;
         }
 
-        Set<URI> currentDepthUrls = new HashSet<>();
+        Set<URI> seedUrls = new HashSet<>();
+        if (cluster != null && !cluster.owns(seed)) {
+            ConsolePrinter.info("Seed URL belongs to cluster node " + cluster.ownerOf(seed)
+                    + "; crawling the links it forwards.");
+        } else if (robots != null && !robots.isAllowed(seed)) {
+            ConsolePrinter.warn("Seed URL is disallowed by robots.txt. Aborting crawl.");
+            if (cluster == null) {
+                return;
+            }
+            // The other nodes still wait for this one to finish depth 0.
+        } else if (!config.isUnique() || dedupService.visit(seed)) {
+            seedUrls.add(seed);
+        }
+
+        if (config.schedulingMode() == SchedulingMode.PIPELINED) {
+            crawlPipelined(new PipelinedFrontier(), seedUrls, 0);
+        } else {
+            crawlByDepth(0, seedUrls, List.of());
+        }
+        finish();
+    }
+
+    /**
+     * Continues an interrupted crawl from its checkpoint. Pages already collected are not
+     * fetched again; the visited set and the saved-page count are restored from the checkpoint.
+     *
+     * @param checkpoint state loaded from the crawl's journal.
+     * @throws IllegalArgumentException if the checkpoint was written for different parameters,
+     *                                  or this is a cluster crawl.
+     */
+    public void resume(CrawlCheckpoint checkpoint) {
+        if (cluster != null) {
+            throw new IllegalArgumentException("A cluster crawl cannot be resumed");
+        }
+        checkpoint.requireCompatible(config);
+        pagesSaved.set(checkpoint.pagesSaved());
         if (config.isUnique()) {
-            if (dedupService.visit(seed)) {
-                currentDepthUrls.add(seed);
+            for (int depth = 0; depth <= config.maxDepth(); depth++) {
+                checkpoint.scheduled(depth).forEach(dedupService::visit);
             }
+        }
+
+        int firstPendingDepth = 0;
+        while (firstPendingDepth <= config.maxDepth() && checkpoint.pending(firstPendingDepth).isEmpty()) {
+            firstPendingDepth++;
+        }
+        if (firstPendingDepth > config.maxDepth()) {
+            ConsolePrinter.info("Checkpoint has no pending URLs; nothing to resume.");
         } else {
-            currentDepthUrls.add(seed);
-        }
-
-        int currentDepth = 0;
-
-        while (currentDepth <= config.maxDepth() && !currentDepthUrls.isEmpty()) {
-            ConsolePrinter.info("Processing Depth " + currentDepth + "/" + config.maxDepth() + ": "
-                    + currentDepthUrls.size() + " URLs");
-
-            int finalDepth = currentDepth;
-            boolean shouldExtractLinks = finalDepth < config.maxDepth();
-
-            List<CompletableFuture<Set<URI>>> futures = currentDepthUrls.stream()
-                    .map(uri -> {
-                        CrawlTask task = new CrawlTask(uri, finalDepth, fetcher, parser, storage, shouldExtractLinks,
-                                pagesSaved);
-                        return CompletableFuture.supplyAsync(() -> {
-                            try {
-                                rateLimiter.acquire();
-                                try {
-                                    return task.call();
-                                } finally {
-                                    rateLimiter.release();
-                                }
-                            } catch (Exception e) {
-                                if (e instanceof InterruptedException) {
-                                    Thread.currentThread().interrupt();
-                                }
-                                throw new CompletionException(e);
-                            }
-                        }, executor);
-                    })
-                    .toList();
-
-            CompletableFuture<Void> allDone = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-            try {
-                allDone.join();
-            } catch (Exception e) {
-                ConsolePrinter.error("Error waiting for depth " + currentDepth + " completion: " + e);
+            ConsolePrinter.info("Resuming from depth " + firstPendingDepth + " with " + pagesSaved.get()
+                    + " pages already saved");
+            if (config.schedulingMode() == SchedulingMode.PIPELINED) {
+                PipelinedFrontier frontier = new PipelinedFrontier();
+                for (int depth = 0; depth <= config.maxDepth(); depth++) {
+                    frontier.markScheduled(checkpoint.scheduled(depth), depth);
+                }
+                crawlPipelined(frontier, Set.of(), firstPendingDepth, checkpoint);
+            } else {
+                // A barrier crawl has pending URLs at the depth in progress and, from the pages
+                // already collected there, at the next one.
+                List<URI> nextDepthUrls = firstPendingDepth < config.maxDepth()
+                        ? checkpoint.pending(firstPendingDepth + 1)
+                        : List.of();
+                crawlByDepth(firstPendingDepth, checkpoint.pending(firstPendingDepth), nextDepthUrls);
             }
+        }
+        finish();
+    }
+
+    private void finish() {
+        metrics.recordFinished();
+        if (journal != null) {
+            journal.recordFinished();
+        }
+        ConsolePrinter.info("Crawl finished. Total pages successfully processed: " + pagesSaved.get());
+    }
 
-            if (currentDepth < config.maxDepth()) {
-                Set<URI> nextDepthUrls = new LinkedHashSet<>();
+    /**
+     * @return metrics of the crawl, updated while it runs.
+     */
+    public CrawlMetrics metrics() {
+        return metrics;
+    }
 
-                futures.forEach(f -> {
-                    try {
-                        Set<URI> links = f.join();
+    /**
+     * @return latencies recorded for the fetch, save, and parse stages.
+     */
+    public StageStats stageStats() {
+        return stageStats;
+    }
 
-                        links.stream()
-                                .filter(link -> !config.isUnique() || dedupService.visit(link))
-                                .limit(config.maxLinksPerPage())
-                                .forEach(nextDepthUrls::add);
+    /**
+     * @return number of fetched pages currently waiting to be parsed.
+     */
+    public int parseQueueDepth() {
+        return parseStage.queueDepth();
+    }
 
-                    } catch (Exception e) {
-                        ConsolePrinter.warn("Failed to get results from a task: " + e);
-                    }
-                });
+    /**
+     * Crawls depth by depth starting at {@code startDepth}. {@code nextDepthPrefix} holds links
+     * already selected for the following depth, which is only non-empty when resuming. In a
+     * cluster every node takes part in every depth, even with no URLs of its own, until no node
+     * has URLs for the next one.
+     */
+    private void crawlByDepth(int startDepth, Collection<URI> startUrls, Collection<URI> nextDepthPrefix) {
+        SpillingFrontier currentDepthUrls = newFrontier(startDepth);
+        for (URI url : startUrls) {
+            currentDepthUrls.add(url);
+            metrics.recordScheduled(startDepth);
+        }
+        int currentDepth = startDepth;
 
-                currentDepthUrls = nextDepthUrls;
-            } else {
-                currentDepthUrls = Collections.emptySet();
+        while (currentDepth <= config.maxDepth() && (cluster != null || !currentDepthUrls.isEmpty())) {
+            metrics.recordSpilledSegments(currentDepth, currentDepthUrls.segmentCount());
+
+            SpillingFrontier nextDepthUrls = currentDepth < config.maxDepth() ? newFrontier(currentDepth + 1) : null;
+            // Within a depth, duplicates are collapsed even when revisits across depths are allowed.
+            UrlDedupService seenAtNextDepth = config.isUnique() ? null : new FingerprintDedupService();
+            if (currentDepth == startDepth && nextDepthUrls != null) {
+                addToNextDepth(nextDepthPrefix, currentDepth + 1, nextDepthUrls, seenAtNextDepth);
+            }
+
+            // Tasks are collected in frontier order, so links are selected in the same order
+            // whether or not the window is full and however a batch was grouped.
+            Deque<CompletableFuture<PageResult>> pending = new ArrayDeque<>();
+            try {
+                Iterator<URI> urls = currentDepthUrls.iterator();
+                List<URI> batch = new ArrayList<>(HOST_BATCH_SIZE);
+                while (urls.hasNext()) {
+                    batch.clear();
+                    while (batch.size() < HOST_BATCH_SIZE && urls.hasNext()) {
+                        batch.add(urls.next());
+                    }
+                    while (pending.size() + batch.size() > MAX_PENDING_TASKS) {
+                        collect(pending.poll(), currentDepth + 1, nextDepthUrls, seenAtNextDepth);
+                    }
+                    pending.addAll(submitByHost(batch, currentDepth));
+                }
+                while (!pending.isEmpty()) {
+                    collect(pending.poll(), currentDepth + 1, nextDepthUrls, seenAtNextDepth);
+                }
+            } finally {
+                currentDepthUrls.close();
             }
 
+            long queuedForNextDepth = nextDepthUrls != null ? nextDepthUrls.size() : 0;
+            if (cluster != null && !cluster.finishDepth(currentDepth, queuedForNextDepth)) {
+                // No node has URLs for the next depth.
+                if (nextDepthUrls != null) {
+                    nextDepthUrls.close();
+                }
+                break;
+            }
+            if (nextDepthUrls == null) {
+                break;
+            }
+            if (cluster != null) {
+                addReceived(currentDepth + 1, nextDepthUrls, seenAtNextDepth);
+            }
+            currentDepthUrls = nextDepthUrls;
             currentDepth++;
         }
+        currentDepthUrls.close();
+    }
 
-        ConsolePrinter.info("Crawl finished. Total pages successfully processed: " + pagesSaved.get());
+    /**
+     * Submits a batch of URLs host by host, so requests to the same origin start together and
+     * share its warm connection. Returns the futures in the order of {@code batch}.
+     */
+    private List<CompletableFuture<PageResult>> submitByHost(List<URI> batch, int depth) {
+        List<CompletableFuture<PageResult>> futures = new ArrayList<>(Collections.nCopies(batch.size(), null));
+        for (int index : hostOrder(batch)) {
+            futures.set(index, submitTask(batch.get(index), depth));
+        }
+        return futures;
+    }
+
+    /**
+     * Returns the indexes of {@code uris} grouped by {@link HostScheduler#hostKey host}, hosts in
+     * order of first appearance and URLs of a host in their original order.
+     */
+    static int[] hostOrder(List<URI> uris) {
+        Map<String, List<Integer>> byHost = new LinkedHashMap<>();
+        for (int i = 0; i < uris.size(); i++) {
+            byHost.computeIfAbsent(HostScheduler.hostKey(uris.get(i)), host -> new ArrayList<>()).add(i);
+        }
+        int[] order = new int[uris.size()];
+        int next = 0;
+        for (List<Integer> indexes : byHost.values()) {
+            for (int index : indexes) {
+                order[next++] = index;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Waits for a task, adds the links it selects to the next depth's frontier and journals the
+     * page. In a cluster, also queues the links other nodes have forwarded so far, so they do
+     * not pile up in memory until the end of the depth.
+     */
+    private void collect(CompletableFuture<PageResult> future, int nextDepth, SpillingFrontier nextDepthUrls,
+            UrlDedupService seenAtNextDepth) {
+        try {
+            PageResult result = future.join();
+            List<URI> selected = List.of();
+            if (nextDepthUrls != null) {
+                selected = selectLinks(result.links(), config.maxLinksPerPage(), dedupService::visit);
+                addToNextDepth(selected, nextDepth, nextDepthUrls, seenAtNextDepth);
+                if (cluster != null) {
+                    forward(result.links(), config.maxLinksPerPage() - selected.size(), nextDepth);
+                    addReceived(nextDepth, nextDepthUrls, seenAtNextDepth);
+                }
+            }
+            journalPage(result, selected);
+        } catch (Exception e) {
+            ConsolePrinter.warn("Failed to get results from a task: " + e);
+        }
+    }
+
+    /**
+     * Queues selected links for the next depth.
+     */
+    private void addToNextDepth(Collection<URI> links, int nextDepth, SpillingFrontier nextDepthUrls,
+            UrlDedupService seenAtNextDepth) {
+        for (URI link : links) {
+            if (seenAtNextDepth == null || seenAtNextDepth.visit(link)) {
+                nextDepthUrls.add(link);
+                metrics.recordScheduled(nextDepth);
+            }
+        }
+    }
+
+    /**
+     * Forwards a page's links to other cluster nodes' hosts to their owners, with the places the
+     * page's own links left under the branching limit. Nothing is forwarded once its own links
+     * filled the limit, since a single process would not have followed the later links either.
+     */
+    private void forward(CheckedLinks links, int budget, int nextDepth) {
+        if (budget <= 0) {
+            return;
+        }
+        List<URI> foreign = links.links().stream().filter(link -> !cluster.owns(link)).toList();
+        if (!foreign.isEmpty()) {
+            cluster.forward(foreign, budget, nextDepth);
+        }
+    }
+
+    /**
+     * Queues the links other cluster nodes have forwarded for the next depth. Each group is
+     * selected like a page's own links, with its budget as the limit; the groups are checked
+     * against {@code robots.txt} in parallel on the executor.
+     */
+    private void addReceived(int nextDepth, SpillingFrontier nextDepthUrls, UrlDedupService seenAtNextDepth) {
+        List<ClusterNode.ForwardedLinks> groups = new ArrayList<>();
+        List<CompletableFuture<CheckedLinks>> checks = new ArrayList<>();
+        cluster.drainReceived(nextDepth, group -> {
+            groups.add(group);
+            checks.add(CompletableFuture.supplyAsync(() -> checkRobots(group.links(), group.budget()), executor));
+        });
+        for (int i = 0; i < groups.size(); i++) {
+            List<URI> selected = selectLinks(checks.get(i).join(), groups.get(i).budget(), dedupService::visit);
+            addToNextDepth(selected, nextDepth, nextDepthUrls, seenAtNextDepth);
+        }
+    }
+
+    private void journalPage(PageResult result, List<URI> selected) {
+        if (journal != null) {
+            journal.recordPage(result.uri(), result.depth(), result.saved(), selected);
+        }
+    }
+
+    private SpillingFrontier newFrontier(int depth) {
+        return new SpillingFrontier(frontierConfig.maxUrlsInMemory(), frontierConfig.spillDirectory(),
+                "depth-" + depth);
+    }
+
+    private void crawlPipelined(PipelinedFrontier frontier, Set<URI> seedUrls, int startDepth) {
+        crawlPipelined(frontier, seedUrls, startDepth, null);
+    }
+
+    /**
+     * Runs a pipelined crawl from the seeds, or from the pending URLs of {@code checkpoint} when
+     * resuming.
+     */
+    private void crawlPipelined(PipelinedFrontier frontier, Set<URI> seedUrls, int startDepth,
+            CrawlCheckpoint checkpoint) {
+        if (seedUrls.isEmpty() && checkpoint == null) {
+            return;
+        }
+        // Holds the frontier open while the initial URLs are submitted, so early completions
+        // cannot drain it.
+        frontier.hold();
+        frontier.markScheduled(seedUrls, 0);
+        seedUrls.forEach(seed -> frontier.dispatch(seed, 0));
+        if (checkpoint != null) {
+            for (int depth = startDepth; depth <= config.maxDepth(); depth++) {
+                int finalDepth = depth;
+                checkpoint.pending(depth).forEach(uri -> frontier.dispatch(uri, finalDepth));
+            }
+        }
+        frontier.release();
+        frontier.awaitDrained();
+    }
+
+    /**
+     * Runs a crawl task for the URI on the executor. The task waits for the scheduler to admit
+     * its host before fetching. Links are only extracted if some may be followed.
+     */
+    private CompletableFuture<PageResult> submitTask(URI uri, int depth) {
+        boolean shouldExtractLinks = depth < config.maxDepth() && config.maxLinksPerPage() > 0;
+        CrawlTask task = new CrawlTask(uri, depth, fetcher, storage, scheduler, parseStage, shouldExtractLinks,
+                pagesSaved, stageStats, pageIndex, contentDedup);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Set<URI> links = task.call();
+                return new PageResult(uri, depth, task.wasSaved(), checkRobots(links, config.maxLinksPerPage()));
+            } finally {
+                metrics.recordCompleted(depth);
+            }
+        }, executor);
+    }
+
+    /**
+     * Outcome of one crawl task.
+     */
+    private record PageResult(URI uri, int depth, boolean saved, CheckedLinks links) {
+    }
+
+    /**
+     * Links in document order. Those among the first {@code robotsChecked} that this node
+     * crawls are known to be allowed by {@code robots.txt}; the others have not been checked.
+     */
+    private record CheckedLinks(List<URI> links, int robotsChecked) {
+    }
+
+    /**
+     * Checks links against {@code robots.txt} in document order until {@code wanted} are
+     * allowed, and drops the disallowed ones. Links to other cluster nodes' hosts are left to
+     * their owners. Runs on a task thread; the links checked are the ones {@link #selectLinks}
+     * would check first anyway.
+     */
+    private CheckedLinks checkRobots(Collection<URI> links, int wanted) {
+        if (robots == null) {
+            return new CheckedLinks(List.copyOf(links), links.size());
+        }
+        List<URI> remaining = new ArrayList<>(links.size());
+        int allowed = 0;
+        int checked = 0;
+        for (URI link : links) {
+            if (allowed < wanted) {
+                boolean own = cluster == null || cluster.owns(link);
+                if (own && !robots.isAllowed(link)) {
+                    continue;
+                }
+                allowed += own ? 1 : 0;
+                checked++;
+            }
+            remaining.add(link);
+        }
+        return new CheckedLinks(remaining, checked);
+    }
+
+    /**
+     * Picks the links a page contributes to the next depth: in document order, skipping links
+     * disallowed by {@code robots.txt} and, when uniqueness is enforced, links {@code unvisited}
+     * rejects, capped at {@code limit}. Links are checked lazily, so once the cap is filled no
+     * further {@code robots.txt} is fetched for the page. The task already checked the first links
+     * against {@code robots.txt}; only when {@code unvisited} rejects some of them are further
+     * links checked here.
+     * <p>
+     * In a cluster, only links to this node's hosts are picked; the others are
+     * {@link #forward forwarded} to their owners, which pick from them the same way.
+     */
+    private List<URI> selectLinks(CheckedLinks links, int limit, Predicate<URI> unvisited) {
+        List<URI> candidates = links.links();
+        List<URI> selected = new ArrayList<>();
+        for (int i = 0; i < candidates.size() && selected.size() < limit; i++) {
+            URI link = candidates.get(i);
+            if (cluster != null && !cluster.owns(link)) {
+                continue;
+            }
+            if ((i < links.robotsChecked() || robots == null || robots.isAllowed(link))
+                    && (!config.isUnique() || unvisited.test(link))) {
+                selected.add(link);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Frontier for {@link SchedulingMode#PIPELINED} crawls. Each page's children are selected
+     * and submitted, grouped by host, from the completion of that page, so no depth waits for a
+     * slow sibling. At most {@link #MAX_PENDING_TASKS} tasks run or wait for their host at a
+     * time; a page whose children do not fit waits with them until running tasks finish, so at
+     * most {@code maxLinksPerPage} URLs per task wait to be submitted.
+     * <p>
+     * With global uniqueness, URLs are deduplicated by the crawl's {@link UrlDedupService} and
+     * each is crawled once, at the depth it was first reached. A URL reached first on a longer
+     * path, before a slow page on a shorter one finishes, therefore keeps the deeper depth.
+     * Otherwise URLs are only collapsed within a depth, by fingerprint, so revisits only happen
+     * across depths.
+     */
+    private final class PipelinedFrontier {
+        private final List<UrlDedupService> seenByDepth = new ArrayList<>();
+        private final Semaphore taskSlots = new Semaphore(MAX_PENDING_TASKS);
+        private final AtomicInteger pending = new AtomicInteger(0);
+        private final CompletableFuture<Void> drained = new CompletableFuture<>();
+
+        PipelinedFrontier() {
+            // With global uniqueness the dedup service already rejects repeats.
+            if (!config.isUnique()) {
+                for (int depth = 0; depth <= config.maxDepth(); depth++) {
+                    seenByDepth.add(new FingerprintDedupService());
+                }
+            }
+        }
+
+        /**
+         * Marks URLs as already scheduled at a depth, so links to them are collapsed. With global
+         * uniqueness they are already in the dedup service.
+         */
+        void markScheduled(Collection<URI> uris, int depth) {
+            if (!config.isUnique()) {
+                uris.forEach(seenByDepth.get(depth)::visit);
+            }
+        }
+
+        void schedule(URI uri, int depth) {
+            if (!config.isUnique() && !seenByDepth.get(depth).visit(uri)) {
+                return;
+            }
+            dispatch(uri, depth);
+        }
+
+        /**
+         * Submits a URL without checking whether it was already scheduled at its depth, waiting
+         * for a task slot first.
+         */
+        void dispatch(URI uri, int depth) {
+            try {
+                taskSlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ConsolePrinter.warn("Interrupted scheduling " + uri);
+                return;
+            }
+            metrics.recordScheduled(depth);
+            pending.incrementAndGet();
+            CompletableFuture<PageResult> future;
+            try {
+                future = submitTask(uri, depth);
+            } catch (RejectedExecutionException e) {
+                ConsolePrinter.warn("Failed to schedule " + uri + ": " + e);
+                taskSlots.release();
+                metrics.recordCompleted(depth);
+                complete();
+                return;
+            }
+
+            future.whenComplete((result, error) -> {
+                // Released before the children are scheduled, which may wait for slots.
+                taskSlots.release();
+                try {
+                    if (error != null) {
+                        ConsolePrinter.warn("Failed to get results from a task: " + error);
+                    } else {
+                        List<URI> selected = depth < config.maxDepth()
+                                ? selectLinks(result.links(), config.maxLinksPerPage(), dedupService::visit)
+                                : List.of();
+                        // Journaled before the links are scheduled, so a child is never
+                        // recorded ahead of the page that scheduled it.
+                        journalPage(result, selected);
+                        for (int index : hostOrder(selected)) {
+                            schedule(selected.get(index), depth + 1);
+                        }
+                    }
+                } catch (Exception e) {
+                    ConsolePrinter.warn("Failed to schedule links of " + uri + ": " + e);
+                } finally {
+                    complete();
+                }
+            });
+        }
+
+        void hold() {
+            pending.incrementAndGet();
+        }
+
+        void release() {
+            complete();
+        }
+
+        void awaitDrained() {
+            try {
+                drained.join();
+            } catch (Exception e) {
+                ConsolePrinter.error("Error waiting for crawl completion: " + e);
+            }
+        }
+
+        private void complete() {
+            if (pending.decrementAndGet() == 0) {
+                drained.complete(null);
+            }
+        }
     }
 
     /**
      * Shuts down the executor service backing the crawler, waiting for tasks to
-     * complete and forcing termination if needed.
+     * complete and forcing termination if needed, then stops the parse stage and flushes
+     * queued console output.
      */
     public void shutdown() {
         if (executor != null) {
@@ -147,5 +678,7 @@ public class CrawlerManager {
                 Thread.currentThread().interrupt();
             }
         }
+        parseStage.close();
+        ConsolePrinter.flush();
     }
 }
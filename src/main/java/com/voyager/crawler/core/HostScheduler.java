@@ -0,0 +1,318 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.io.*;
+import com.voyager.crawler.util.*;
+
+import java.net.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Host-aware request scheduler. Combines a global in-flight cap with a per-host concurrency
+ * limit and a minimum interval between request starts to the same host.
+ * <p>
+ * Callers wait on their own (virtual) thread: first for a slot of their host, then for their
+ * host's next start time, and only then for a global permit. A slow or heavily linked host can
+ * therefore hold at most {@code maxConcurrentPerHost} global permits, and requests to different
+ * hosts never wait on each other's delays.
+ * <p>
+ * With {@link ConcurrencyMode#ADAPTIVE}, the scheduler is the fetcher's {@link FetchFeedback}:
+ * each host's limit follows that host's latency and overload responses, and the global limit
+ * follows all of them, never rising above the configured values. The global limit only backs
+ * off when more than {@value #GLOBAL_OVERLOAD_THRESHOLD} of a window's responses signal
+ * overload, so one fragile host among many does not slow the others down; that host's own
+ * limit does. It judges latency relative to each host's own baseline, so a shift towards
+ * slower hosts in the mix is not taken for queueing.
+ * <p>
+ * The state of a host is dropped once no request to it has run for {@link #IDLE_HOST_TIMEOUT},
+ * so a crawl over many hosts does not keep one entry per host it ever contacted. Hosts that
+ * carry more than the configured limits, a {@code Crawl-delay} or a backed-off adaptive limit,
+ * are kept.
+ */
+public class HostScheduler implements FetchFeedback {
+    public static final Duration MAX_CRAWL_DELAY = Duration.ofSeconds(30);
+    static final double GLOBAL_OVERLOAD_THRESHOLD = 0.1;
+    static final Duration IDLE_HOST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final PolitenessConfig politeness;
+    private final long intervalNanos;
+    private final long idleHostNanos;
+    private final AdaptiveLimit globalLimit;
+    private final ConcurrentMap<String, HostState> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime());
+    private final AtomicInteger evictedBackedOffHosts = new AtomicInteger();
+
+    /**
+     * Creates a scheduler enforcing the given limits.
+     *
+     * @param politeness pacing limits.
+     */
+    public HostScheduler(PolitenessConfig politeness) {
+        this(politeness, IDLE_HOST_TIMEOUT);
+    }
+
+    /**
+     * Creates a scheduler that drops the state of hosts idle for {@code idleHostTimeout}.
+     */
+    HostScheduler(PolitenessConfig politeness, Duration idleHostTimeout) {
+        this.politeness = Objects.requireNonNull(politeness, "politeness must not be null");
+        this.intervalNanos = politeness.minHostInterval().toNanos();
+        this.idleHostNanos = idleHostTimeout.toNanos();
+        this.globalLimit = newLimit(politeness.maxConcurrentRequests(), GLOBAL_OVERLOAD_THRESHOLD);
+    }
+
+    private AdaptiveLimit newLimit(int configured, double overloadThreshold) {
+        return politeness.concurrencyMode() == ConcurrencyMode.ADAPTIVE
+                ? AdaptiveLimit.adaptive(configured, configured, overloadThreshold)
+                : AdaptiveLimit.fixed(configured);
+    }
+
+    /**
+     * Blocks until a request to the URI's host may start.
+     *
+     * @param uri the URI about to be requested.
+     * @return a permit that must be closed once the request has finished.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public Permit acquire(URI uri) throws InterruptedException {
+        PermitWaitEvent event = new PermitWaitEvent();
+        event.begin();
+        evictIdleHosts();
+        // Counted as a user while the map's lock is held, so the state cannot be evicted under it.
+        HostState host = hosts.compute(hostKey(uri), (key, state) -> {
+            state = state != null ? state : newHostState();
+            state.users.incrementAndGet();
+            return state;
+        });
+
+        try {
+            host.slots.acquire();
+        } catch (InterruptedException e) {
+            host.release();
+            throw e;
+        }
+        try {
+            host.awaitTurn();
+            globalLimit.acquire();
+        } catch (InterruptedException e) {
+            host.slots.release();
+            host.release();
+            throw e;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.host = hostKey(uri);
+            event.hostLimit = host.slots.limit();
+            event.commit();
+        }
+        return new Permit(host);
+    }
+
+    private HostState hostState(URI uri) {
+        return hosts.computeIfAbsent(hostKey(uri), key -> newHostState());
+    }
+
+    private HostState newHostState() {
+        return new HostState(newLimit(politeness.maxConcurrentPerHost(), 0), intervalNanos);
+    }
+
+    /**
+     * Blocks until a retry of a request to the URI's host may start: the retry keeps the
+     * caller's permit, but takes a new start time of the host, as if it were another request.
+     */
+    @Override
+    public void awaitRetry(URI uri) throws InterruptedException {
+        hostState(uri).awaitTurn();
+    }
+
+    /**
+     * Drops the state of hosts that were idle for the timeout and only carry the configured
+     * limits. Runs at most once per timeout, by the caller that finds it due.
+     */
+    private void evictIdleHosts() {
+        long now = System.nanoTime();
+        long last = lastEvictionNanos.get();
+        if (now - last < idleHostNanos || !lastEvictionNanos.compareAndSet(last, now)) {
+            return;
+        }
+        for (String key : hosts.keySet()) {
+            hosts.computeIfPresent(key, (k, host) -> {
+                if (!host.isIdleSince(now - idleHostNanos) || host.intervalNanos != intervalNanos
+                        || host.slots.limit() < politeness.maxConcurrentPerHost()) {
+                    return host;
+                }
+                if (host.slots.lowestLimit() < politeness.maxConcurrentPerHost()) {
+                    evictedBackedOffHosts.incrementAndGet();
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Returns the number of hosts whose state is kept.
+     */
+    int trackedHosts() {
+        return hosts.size();
+    }
+
+    /**
+     * Spaces requests to the URI's host by a site-requested delay, such as a {@code robots.txt}
+     * {@code Crawl-delay}, when it is longer than the configured interval. Delays are capped at
+     * {@link #MAX_CRAWL_DELAY}.
+     *
+     * @param uri   a URI of the host.
+     * @param delay the requested minimum time between request starts.
+     */
+    public void setCrawlDelay(URI uri, Duration delay) {
+        long delayNanos = Math.min(delay.toNanos(), MAX_CRAWL_DELAY.toNanos());
+        // Set under the map's lock, so an eviction cannot drop the state while it changes.
+        hosts.compute(hostKey(uri), (key, host) -> {
+            host = host != null ? host : newHostState();
+            host.intervalNanos = Math.max(intervalNanos, delayNanos);
+            return host;
+        });
+    }
+
+    /**
+     * Returns the minimum time between request starts to the URI's host.
+     */
+    public Duration hostInterval(URI uri) {
+        HostState host = hosts.get(hostKey(uri));
+        return Duration.ofNanos(host != null ? host.intervalNanos : intervalNanos);
+    }
+
+    /**
+     * Adjusts the limits of the URI's host and the global limit to a response. Ignored with
+     * fixed limits.
+     */
+    @Override
+    public void onResponse(URI uri, long latencyNanos, boolean overloaded) {
+        AdaptiveLimit hostLimit = hostState(uri).slots;
+        // Judged against the host's baseline before this response moves it.
+        long relativeLatency = hostLimit.relativeLatency(latencyNanos);
+        hostLimit.record(latencyNanos, overloaded);
+        globalLimit.record(relativeLatency, overloaded);
+    }
+
+    /**
+     * Returns the number of global permits currently available.
+     */
+    public int availableGlobalPermits() {
+        return globalLimit.available();
+    }
+
+    /**
+     * Returns the current global concurrency limit.
+     */
+    public int globalLimit() {
+        return globalLimit.limit();
+    }
+
+    /**
+     * Returns the current concurrency limit of the URI's host.
+     */
+    public int hostLimit(URI uri) {
+        HostState host = hosts.get(hostKey(uri));
+        return host != null ? host.slots.limit() : politeness.maxConcurrentPerHost();
+    }
+
+    /**
+     * Returns how the limits moved during the crawl, or an empty string with fixed limits.
+     */
+    public String limitSummary() {
+        if (!globalLimit.isAdaptive()) {
+            return "";
+        }
+        int backedOff = evictedBackedOffHosts.get();
+        for (HostState host : hosts.values()) {
+            if (host.slots.lowestLimit() < politeness.maxConcurrentPerHost()) {
+                backedOff++;
+            }
+        }
+        return "global limit " + globalLimit.limit() + " (range " + globalLimit.lowestLimit() + "-"
+                + globalLimit.highestLimit() + "), " + backedOff + " hosts backed off below "
+                + politeness.maxConcurrentPerHost();
+    }
+
+    /**
+     * Returns the key under which politeness limits are tracked, as {@link UrlUtils#hostKey}.
+     *
+     * @param uri the URI.
+     * @return the host key, or an empty string if the URI has no host.
+     */
+    public static String hostKey(URI uri) {
+        return UrlUtils.hostKey(uri);
+    }
+
+    /**
+     * Per-host state. Start times are reserved with a lock-free "next free slot" counter so each
+     * caller knows exactly how long to wait without holding a lock while it sleeps.
+     */
+    private static final class HostState {
+        private final AdaptiveLimit slots;
+        private final AtomicLong nextStartNanos = new AtomicLong(Long.MIN_VALUE);
+        // Callers waiting for or holding a permit of the host.
+        private final AtomicInteger users = new AtomicInteger();
+        private volatile long lastReleaseNanos = System.nanoTime();
+        private volatile long intervalNanos;
+
+        HostState(AdaptiveLimit slots, long intervalNanos) {
+            this.slots = slots;
+            this.intervalNanos = intervalNanos;
+        }
+
+        void release() {
+            lastReleaseNanos = System.nanoTime();
+            users.decrementAndGet();
+        }
+
+        boolean isIdleSince(long sinceNanos) {
+            return users.get() == 0 && lastReleaseNanos - sinceNanos <= 0 && nextStartNanos.get() <= sinceNanos;
+        }
+
+        void awaitTurn() throws InterruptedException {
+            long intervalNanos = this.intervalNanos;
+            if (intervalNanos == 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            long start;
+            while (true) {
+                long next = nextStartNanos.get();
+                start = Math.max(now, next);
+                if (nextStartNanos.compareAndSet(next, start + intervalNanos)) {
+                    break;
+                }
+            }
+            long waitNanos = start - System.nanoTime();
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+
+    /**
+     * Permission to run one request. Closing it returns both the global and the host permit.
+     */
+    public final class Permit implements AutoCloseable {
+        private final HostState host;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(HostState host) {
+            this.host = host;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                globalLimit.release();
+                host.slots.release();
+                host.release();
+            }
+        }
+    }
+}
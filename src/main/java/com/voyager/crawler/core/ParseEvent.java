@@ -0,0 +1,25 @@
+package com.voyager.crawler.core;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for extracting the links of one page on the {@link ParseStage}.
+ */
+@Name("com.voyager.crawler.Parse")
+@Label("Parse")
+@Category({"Voyager Crawler", "Pipeline"})
+@Description("Link extraction of one page")
+@StackTrace(false)
+final class ParseEvent extends Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Links")
+    @Description("Number of links extracted")
+    int links;
+
+    @Label("Queue Wait")
+    @Description("Time the page waited for a parse worker")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueWait;
+}
@@ -0,0 +1,186 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.io.*;
+import com.voyager.crawler.parser.*;
+import com.voyager.crawler.util.*;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * CPU-bound link extraction stage. Fetched pages are queued and parsed by a fixed set of
+ * platform threads, so parsing never occupies the virtual threads that perform network I/O.
+ * <p>
+ * The queue is bounded: when parsing falls behind, {@link #submit} blocks the submitting fetch
+ * task, which stops it from starting its next request while its body still holds buffers.
+ */
+public class ParseStage implements AutoCloseable {
+    private final HtmlParser parser;
+    private final StageStats stats;
+    private final BlockingQueue<Job> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicInteger peakQueueDepth = new AtomicInteger(0);
+    private volatile boolean closed;
+
+    /**
+     * Creates a parse stage with one worker per available processor.
+     *
+     * @param parser HTML parser used by the workers.
+     * @param stats  statistics receiving queue wait and parse latencies.
+     */
+    public ParseStage(HtmlParser parser, StageStats stats) {
+        this(parser, stats, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Creates a parse stage.
+     *
+     * @param parser        HTML parser used by the workers.
+     * @param stats         statistics receiving queue wait and parse latencies.
+     * @param workerCount   number of parsing threads.
+     * @param queueCapacity number of pages that may wait for a worker.
+     */
+    public ParseStage(HtmlParser parser, StageStats stats, int workerCount, int queueCapacity) {
+        if (workerCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("workerCount and queueCapacity must be positive");
+        }
+        this.parser = parser;
+        this.stats = stats;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = Thread.ofPlatform().name("parse-" + i).daemon(true).unstarted(this::runWorker);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queues a fetched body for link extraction. The stage takes ownership of the body and
+     * closes it once parsed.
+     *
+     * @param uri  URI the body was fetched from.
+     * @param body the fetched body.
+     * @return future completed with the extracted links.
+     * @throws InterruptedException if interrupted while waiting for queue space.
+     */
+    public CompletableFuture<Set<URI>> submit(URI uri, PageBody body) throws InterruptedException {
+        try {
+            return enqueue(new Job(uri, body, null, System.nanoTime(), new CompletableFuture<>()));
+        } catch (InterruptedException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues fetched HTML for link extraction.
+     *
+     * @param uri  URI the HTML was fetched from.
+     * @param html the fetched HTML.
+     * @return future completed with the extracted links.
+     * @throws InterruptedException if interrupted while waiting for queue space.
+     */
+    public CompletableFuture<Set<URI>> submit(URI uri, String html) throws InterruptedException {
+        return enqueue(new Job(uri, null, html, System.nanoTime(), new CompletableFuture<>()));
+    }
+
+    /**
+     * @return number of pages currently waiting for a worker.
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return largest number of pages that waited for a worker at the same time.
+     */
+    public int peakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    /**
+     * Stops the workers. Pages still queued are released and complete with no links.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.forEach(Thread::interrupt);
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Job job;
+        while ((job = queue.poll()) != null) {
+            job.discard();
+        }
+    }
+
+    private CompletableFuture<Set<URI>> enqueue(Job job) throws InterruptedException {
+        if (closed) {
+            throw new RejectedExecutionException("Parse stage is closed");
+        }
+        queue.put(job);
+        peakQueueDepth.accumulateAndGet(queue.size(), Math::max);
+        return job.result();
+    }
+
+    private void runWorker() {
+        while (!closed) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            process(job);
+        }
+    }
+
+    private void process(Job job) {
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long startNs = System.nanoTime();
+        stats.recordParseWait(startNs - job.enqueuedNanos());
+        int linkCount = 0;
+        try {
+            Set<URI> links = job.body() != null
+                    ? parser.extractLinks(job.uri(), job.body())
+                    : parser.extractLinks(job.uri(), job.html());
+            linkCount = links.size();
+            job.result().complete(links);
+        } catch (Exception e) {
+            ConsolePrinter.error(UrlUtils.hostKey(job.uri()) + " " + e.getClass().getSimpleName(),
+                    "Parsing failed for " + job.uri() + ": " + e);
+            job.result().complete(Collections.emptySet());
+        } finally {
+            if (job.body() != null) {
+                job.body().close();
+            }
+            stats.recordParse(System.nanoTime() - startNs);
+            event.end();
+            if (event.shouldCommit()) {
+                event.uri = job.uri().toString();
+                event.links = linkCount;
+                event.queueWait = startNs - job.enqueuedNanos();
+                event.commit();
+            }
+        }
+    }
+
+    private record Job(URI uri, PageBody body, String html, long enqueuedNanos,
+            CompletableFuture<Set<URI>> result) {
+        void discard() {
+            if (body != null) {
+                body.close();
+            }
+            result.complete(Collections.emptySet());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.voyager.crawler.core;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for the time a crawl task waited for the {@link HostScheduler} to admit
+ * its request.
+ */
+@Name("com.voyager.crawler.PermitWait")
+@Label("Permit Wait")
+@Category({"Voyager Crawler", "Pipeline"})
+@Description("Wait for the host and global request limits and the host interval")
+@StackTrace(false)
+final class PermitWaitEvent extends Event {
+    @Label("Host")
+    String host;
+
+    @Label("Host Limit")
+    @Description("Requests the host was allowed in flight when the wait ended")
+    int hostLimit;
+}
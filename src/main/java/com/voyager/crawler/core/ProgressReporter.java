@@ -0,0 +1,100 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.util.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Prints a progress line for a running crawl at a fixed interval: the current depth, how much
+ * of it is done and how many disk segments its frontier spilled to, the rate at which URLs
+ * finished since the previous line, fetch latency percentiles, and the time left for the current
+ * depth at that rate.
+ * <p>
+ * Lines are printed from one daemon thread, so a crawl that hangs cannot be kept alive by its
+ * reporter. Closing the reporter stops it.
+ */
+public class ProgressReporter implements AutoCloseable {
+    public static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(5);
+
+    private final CrawlMetrics metrics;
+    private final ScheduledExecutorService timer;
+    private long lastCompleted;
+    private long lastNanos;
+
+    /**
+     * Starts printing progress lines.
+     *
+     * @param metrics  metrics of the crawl.
+     * @param interval time between two lines.
+     */
+    public ProgressReporter(CrawlMetrics metrics, Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.metrics = Objects.requireNonNull(metrics, "metrics must not be null");
+        this.lastNanos = System.nanoTime();
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawl-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = interval.toNanos();
+        timer.scheduleAtFixedRate(this::report, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void report() {
+        try {
+            CrawlMetrics.Progress progress = metrics.progress();
+            long now = System.nanoTime();
+            double rate = (progress.totalCompleted() - lastCompleted) * 1e9 / (now - lastNanos);
+            lastCompleted = progress.totalCompleted();
+            lastNanos = now;
+            ConsolePrinter.info(format(progress, rate));
+        } catch (RuntimeException e) {
+            ConsolePrinter.warn("Failed to report progress: " + e);
+        }
+    }
+
+    /**
+     * Formats a progress line.
+     *
+     * @param progress state of the crawl.
+     * @param rate     URLs finished per second over the last interval.
+     */
+    static String format(CrawlMetrics.Progress progress, double rate) {
+        long percent = progress.depthScheduled() == 0 ? 0 : progress.depthCompleted() * 100 / progress.depthScheduled();
+        String eta;
+        if (progress.depthRemaining() == 0) {
+            eta = "depth done";
+        } else if (rate > 0) {
+            eta = "ETA " + formatDuration(Math.round(progress.depthRemaining() / rate));
+        } else {
+            eta = "ETA unknown";
+        }
+        String spilled = progress.spilledSegments() > 0 ? ", " + progress.spilledSegments() + " spilled segments" : "";
+        return String.format(Locale.US, "Progress: depth %d/%d, %d of %d URLs (%d%%)%s, %d pages saved, %.1f pages/s,"
+                        + " fetch p50 %.1f ms p99 %.1f ms, %s",
+                progress.depth(), progress.maxDepth(), progress.depthCompleted(), progress.depthScheduled(), percent,
+                spilled, progress.pagesSaved(), rate, progress.fetch().p50Millis(), progress.fetch().p99Millis(), eta);
+    }
+
+    private static String formatDuration(long seconds) {
+        if (seconds < 60) {
+            return seconds + " s";
+        }
+        if (seconds < 3600) {
+            return seconds / 60 + " min " + seconds % 60 + " s";
+        }
+        return seconds / 3600 + " h " + seconds % 3600 / 60 + " min";
+    }
+
+    /**
+     * Stops printing progress lines.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+}
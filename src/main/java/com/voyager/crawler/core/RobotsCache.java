@@ -0,0 +1,191 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.io.*;
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Per-origin cache of {@code robots.txt} rules.
+ * <p>
+ * The first lookup for an origin fetches its {@code robots.txt}; lookups that arrive meanwhile
+ * wait for that fetch instead of starting their own. Rules are kept for the cache's time to
+ * live and then fetched again on the next lookup. Following RFC 9309, a missing file (4xx)
+ * allows everything, and an unreachable one (5xx or a network error) disallows everything; the
+ * latter is only cached for {@link #UNREACHABLE_TTL}, so the site gets another chance soon.
+ * <p>
+ * The {@code robots.txt} request is paced by the {@link HostScheduler} like any other request
+ * to its host, and a {@code Crawl-delay} is passed to the scheduler as the host's minimum
+ * interval between requests when the rules are fetched.
+ */
+public class RobotsCache {
+    public static final Duration DEFAULT_TTL = Duration.ofHours(24);
+    public static final Duration UNREACHABLE_TTL = Duration.ofMinutes(1);
+    public static final String PRODUCT_TOKEN = "VoyagerCrawler";
+
+    // RFC 9309 asks crawlers to parse at least 500 KiB; the rest of a larger file is ignored.
+    static final int MAX_ROBOTS_BYTES = 500 * 1024;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient client;
+    private final HostScheduler scheduler;
+    private final long ttlNanos;
+    private final ConcurrentMap<String, Entry> origins = new ConcurrentHashMap<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicLong disallowed = new AtomicLong();
+
+    /**
+     * Creates a cache keeping rules for {@link #DEFAULT_TTL}.
+     *
+     * @param scheduler scheduler receiving each host's {@code Crawl-delay}.
+     */
+    public RobotsCache(HostScheduler scheduler) {
+        this(scheduler, DEFAULT_TTL);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param scheduler scheduler receiving each host's {@code Crawl-delay}.
+     * @param ttl       how long fetched rules are used before fetching them again.
+     */
+    public RobotsCache(HostScheduler scheduler, Duration ttl) {
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(TIMEOUT)
+                .build();
+    }
+
+    /**
+     * Checks whether a URI may be crawled, fetching its origin's {@code robots.txt} first if it
+     * is not cached.
+     *
+     * @param uri the URI.
+     * @return whether the rules of its origin allow it.
+     */
+    public boolean isAllowed(URI uri) {
+        boolean allowed = rules(uri).isAllowed(uri);
+        if (!allowed) {
+            disallowed.incrementAndGet();
+        }
+        return allowed;
+    }
+
+    /**
+     * Returns the rules of a URI's origin, fetching them if they are not cached or have expired.
+     *
+     * @param uri a URI of the origin.
+     * @return the rules that apply to this crawler.
+     */
+    public RobotsRules rules(URI uri) {
+        String origin = uri.getScheme() + "://" + uri.getRawAuthority();
+        long now = System.nanoTime();
+        Entry entry = origins.get(origin);
+        while (entry == null || entry.isExpired(now)) {
+            Entry loading = new Entry(new CompletableFuture<>());
+            boolean claimed = entry == null
+                    ? origins.putIfAbsent(origin, loading) == null
+                    : origins.replace(origin, entry, loading);
+            if (claimed) {
+                load(uri, origin, loading);
+                entry = loading;
+            } else {
+                entry = origins.get(origin);
+            }
+        }
+        return entry.rules.join();
+    }
+
+    private void load(URI uri, String origin, Entry entry) {
+        fetches.incrementAndGet();
+        RobotsRules rules;
+        long ttl = ttlNanos;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(origin + "/robots.txt"))
+                    .GET()
+                    .timeout(TIMEOUT)
+                    .header("User-Agent", JavaHttpClientFetcher.USER_AGENT)
+                    .build();
+            HttpResponse<InputStream> response;
+            HostScheduler.Permit permit = scheduler.acquire(uri);
+            try {
+                response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            } finally {
+                permit.close();
+            }
+            int status = response.statusCode();
+            try (InputStream body = response.body()) {
+                if (status >= 200 && status < 300) {
+                    String text = new String(body.readNBytes(MAX_ROBOTS_BYTES), StandardCharsets.UTF_8);
+                    rules = RobotsRules.parse(text, PRODUCT_TOKEN);
+                } else if (status >= 400 && status < 500) {
+                    rules = RobotsRules.allowAll();
+                } else {
+                    ConsolePrinter.warn("robots.txt of " + origin + " answered " + status
+                            + "; not crawling the host for now.");
+                    rules = RobotsRules.disallowAll();
+                    ttl = Math.min(ttl, UNREACHABLE_TTL.toNanos());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rules = RobotsRules.disallowAll();
+            ttl = 0;
+        } catch (IOException | RuntimeException e) {
+            ConsolePrinter.warn("Could not fetch robots.txt of " + origin + ": " + e
+                    + "; not crawling the host for now.");
+            rules = RobotsRules.disallowAll();
+            ttl = Math.min(ttl, UNREACHABLE_TTL.toNanos());
+        }
+        rules.crawlDelay().ifPresent(delay -> scheduler.setCrawlDelay(uri, delay));
+        entry.expiresAtNanos = System.nanoTime() + ttl;
+        entry.rules.complete(rules);
+    }
+
+    /**
+     * Returns the number of {@code robots.txt} files fetched, including refetches after expiry.
+     */
+    public int fetchCount() {
+        return fetches.get();
+    }
+
+    /**
+     * Returns the number of lookups that found the URI disallowed.
+     */
+    public long disallowedCount() {
+        return disallowed.get();
+    }
+
+    @Override
+    public String toString() {
+        return fetchCount() + " robots.txt fetched, " + disallowedCount() + " URLs disallowed";
+    }
+
+    /**
+     * Rules of an origin, complete once fetched. An entry being loaded never expires.
+     */
+    private static final class Entry {
+        private final CompletableFuture<RobotsRules> rules;
+        private volatile long expiresAtNanos;
+
+        Entry(CompletableFuture<RobotsRules> rules) {
+            this.rules = rules;
+        }
+
+        boolean isExpired(long nowNanos) {
+            return rules.isDone() && nowNanos - expiresAtNanos >= 0;
+        }
+    }
+}
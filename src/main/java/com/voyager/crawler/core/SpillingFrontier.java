@@ -0,0 +1,285 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * First-in, first-out list of the URLs of one crawl depth that keeps a bounded number of them on
+ * the heap.
+ * <p>
+ * URLs are buffered in memory until {@code maxInMemory} are held; the buffer is then appended to
+ * memory-mapped segment files in the spill directory and cleared. Iteration reads the segments
+ * back sequentially, one mapping at a time, followed by the URLs still in memory, so URLs come
+ * back in the order they were added.
+ * <p>
+ * Mappings are released as soon as a segment has been read and on {@link #close()}, rather
+ * than when the garbage collector gets to them, so that the files can be deleted on every
+ * platform. Iterators fail once the frontier is closed.
+ * <p>
+ * Not thread-safe. All URLs must be added before iteration starts.
+ */
+public class SpillingFrontier implements Iterable<URI>, AutoCloseable {
+    static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final MethodHandle UNMAPPER = findUnmapper();
+
+    private final int maxInMemory;
+    private final Path spillDirectory;
+    private final String segmentPrefix;
+    private final int segmentBytes;
+    private final List<URI> buffer = new ArrayList<>();
+    private final List<Path> segments = new ArrayList<>();
+    private final Set<ByteBuffer> readMappings = Collections.newSetFromMap(new IdentityHashMap<>());
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segmentBuffer;
+    private long size;
+    private boolean sealed;
+    private boolean closed;
+
+    /**
+     * Creates a frontier that spills to {@code spillDirectory} beyond {@code maxInMemory} URLs.
+     *
+     * @param maxInMemory    number of URLs held on the heap before spilling.
+     * @param spillDirectory directory for segment files, or {@code null} to never spill.
+     * @param segmentPrefix  file name prefix identifying this frontier's segments.
+     */
+    public SpillingFrontier(int maxInMemory, Path spillDirectory, String segmentPrefix) {
+        this(maxInMemory, spillDirectory, segmentPrefix, DEFAULT_SEGMENT_BYTES);
+    }
+
+    SpillingFrontier(int maxInMemory, Path spillDirectory, String segmentPrefix, int segmentBytes) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("maxInMemory must be positive");
+        }
+        this.maxInMemory = maxInMemory;
+        this.spillDirectory = spillDirectory;
+        this.segmentPrefix = segmentPrefix;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Appends a URL.
+     *
+     * @param uri the URL to add.
+     * @throws IllegalStateException if iteration has already started.
+     */
+    public void add(URI uri) {
+        if (sealed) {
+            throw new IllegalStateException("Frontier is sealed for reading");
+        }
+        buffer.add(uri);
+        size++;
+        if (spillDirectory != null && buffer.size() >= maxInMemory) {
+            spill();
+        }
+    }
+
+    /**
+     * @return number of URLs added.
+     */
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of segment files written so far.
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Seals the frontier and iterates its URLs in insertion order.
+     */
+    @Override
+    public Iterator<URI> iterator() {
+        seal();
+        return new Iterator<>() {
+            private int segmentIndex;
+            private ByteBuffer segment;
+            private Iterator<URI> memory;
+
+            @Override
+            public boolean hasNext() {
+                if (closed) {
+                    throw new IllegalStateException("Frontier is closed");
+                }
+                while (memory == null) {
+                    if (segment != null && segment.hasRemaining()) {
+                        return true;
+                    }
+                    if (segment != null) {
+                        readMappings.remove(segment);
+                        unmap(segment);
+                        segment = null;
+                    }
+                    if (segmentIndex < segments.size()) {
+                        segment = mapForReading(segments.get(segmentIndex++));
+                        readMappings.add(segment);
+                    } else {
+                        memory = buffer.iterator();
+                    }
+                }
+                return memory.hasNext();
+            }
+
+            @Override
+            public URI next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (memory != null) {
+                    return memory.next();
+                }
+                byte[] bytes = new byte[segment.getInt()];
+                segment.get(bytes);
+                return URI.create(new String(bytes, StandardCharsets.UTF_8));
+            }
+        };
+    }
+
+    /**
+     * Releases the in-memory URLs and the mappings, and deletes the segment files. A segment that
+     * cannot be deleted is reported and left behind.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        releaseSegmentChannel();
+        for (ByteBuffer mapping : readMappings) {
+            unmap(mapping);
+        }
+        readMappings.clear();
+        buffer.clear();
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                ConsolePrinter.warn("Failed to delete frontier segment " + segment + ": " + e);
+            }
+        }
+        segments.clear();
+    }
+
+    private void spill() {
+        try {
+            for (URI uri : buffer) {
+                byte[] bytes = uri.toString().getBytes(StandardCharsets.UTF_8);
+                int recordBytes = Integer.BYTES + bytes.length;
+                if (segmentBuffer == null || segmentBuffer.remaining() < recordBytes) {
+                    openSegment(Math.max(segmentBytes, recordBytes));
+                }
+                segmentBuffer.putInt(bytes.length);
+                segmentBuffer.put(bytes);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to spill frontier to " + spillDirectory, e);
+        }
+        buffer.clear();
+    }
+
+    private void openSegment(int capacity) throws IOException {
+        closeSegmentChannel();
+        Files.createDirectories(spillDirectory);
+        Path segment = spillDirectory.resolve(segmentPrefix + "-" + segments.size() + ".seg");
+        segments.add(segment);
+        segmentChannel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentBuffer = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void seal() {
+        if (!sealed) {
+            sealed = true;
+            closeSegmentChannel();
+        }
+    }
+
+    /**
+     * Trims the segment being written to its used length and closes it.
+     */
+    private void closeSegmentChannel() {
+        if (segmentChannel == null) {
+            return;
+        }
+        int used = segmentBuffer.position();
+        unmap(segmentBuffer);
+        try (FileChannel channel = segmentChannel) {
+            channel.truncate(used);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close frontier segment", e);
+        } finally {
+            segmentChannel = null;
+            segmentBuffer = null;
+        }
+    }
+
+    /**
+     * Closes the segment being written without trimming it, since it is about to be deleted.
+     */
+    private void releaseSegmentChannel() {
+        if (segmentChannel == null) {
+            return;
+        }
+        unmap(segmentBuffer);
+        try {
+            segmentChannel.close();
+        } catch (IOException e) {
+            ConsolePrinter.warn("Failed to close frontier segment: " + e);
+        } finally {
+            segmentChannel = null;
+            segmentBuffer = null;
+        }
+    }
+
+    /**
+     * Releases a mapping now. The buffer must not be used afterwards.
+     */
+    private static void unmap(ByteBuffer mapping) {
+        if (UNMAPPER == null) {
+            return;
+        }
+        try {
+            UNMAPPER.invokeExact(mapping);
+        } catch (Throwable e) {
+            ConsolePrinter.warn("Failed to release frontier segment mapping: " + e);
+        }
+    }
+
+    /**
+     * Looks up {@code Unsafe.invokeCleaner}, the only way to release a mapping before it is
+     * garbage collected. Without it, mappings are left to the collector.
+     */
+    private static MethodHandle findUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer mapForReading(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read frontier segment " + segment, e);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.voyager.crawler.core;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Latency statistics for the stages of a crawl: fetching (while the host permit is held),
+ * saving, waiting in the parse queue, and parsing, plus the body bytes handed to storage. Safe
+ * for concurrent recording.
+ * <p>
+ * Each stage keeps a log-linear histogram with eight buckets per power of two, so percentiles
+ * are within an eighth of the recorded value. Counts and buckets are {@link LongAdder}s, so
+ * tasks recording at the same time rarely contend.
+ */
+public class StageStats {
+    private final Latency fetch = new Latency();
+    private final Latency save = new Latency();
+    private final Latency parseWait = new Latency();
+    private final Latency parse = new Latency();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    void recordFetch(long nanos) {
+        fetch.record(nanos);
+    }
+
+    void recordSave(long nanos) {
+        save.record(nanos);
+    }
+
+    void recordParseWait(long nanos) {
+        parseWait.record(nanos);
+    }
+
+    void recordParse(long nanos) {
+        parse.record(nanos);
+    }
+
+    void recordBytesSaved(long bytes) {
+        bytesSaved.add(bytes);
+    }
+
+    public Snapshot fetch() {
+        return fetch.snapshot();
+    }
+
+    public Snapshot save() {
+        return save.snapshot();
+    }
+
+    public Snapshot parseWait() {
+        return parseWait.snapshot();
+    }
+
+    public Snapshot parse() {
+        return parse.snapshot();
+    }
+
+    /**
+     * Returns the number of fetched body bytes passed to storage.
+     */
+    public long bytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Point-in-time view of one stage.
+     *
+     * @param count      number of recorded operations.
+     * @param totalNanos sum of their durations.
+     * @param maxNanos   longest duration.
+     * @param p50Nanos   median duration.
+     * @param p99Nanos   99th percentile duration.
+     */
+    public record Snapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p99Nanos) {
+        public double averageMillis() {
+            return count == 0 ? 0 : totalNanos / (double) count / 1_000_000;
+        }
+
+        public double maxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        public double p50Millis() {
+            return p50Nanos / 1_000_000.0;
+        }
+
+        public double p99Millis() {
+            return p99Nanos / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d ops, avg %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    count, averageMillis(), p50Millis(), p99Millis(), maxMillis());
+        }
+    }
+
+    /**
+     * Latency counters and histogram of one stage.
+     */
+    static final class Latency {
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        // Durations of 2^41 ns (about 37 minutes) and more share the last bucket.
+        private static final int MAX_EXPONENT = 40;
+        static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Latency() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            buckets[bucketOf(nanos)].increment();
+        }
+
+        Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            long max = maxNanos.get();
+            return new Snapshot(count.sum(), totalNanos.sum(), max,
+                    percentile(counts, total, 0.5, max), percentile(counts, total, 0.99, max));
+        }
+
+        /**
+         * Returns the bucket of a duration: the duration itself below eight, and otherwise its
+         * power of two and the three bits below the leading one.
+         */
+        static int bucketOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) Math.max(0, nanos);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            if (exponent > MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * Returns the middle of the bucket holding the given fraction of the recorded durations,
+         * capped at the longest one.
+         */
+        private static long percentile(long[] counts, long total, double fraction, long max) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(max, bucketMiddle(i));
+                }
+            }
+            return max;
+        }
+
+        private static long bucketMiddle(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            int shift = exponent - SUB_BUCKET_BITS;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + ((1L << shift) >> 1);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.voyager.crawler.io;
+
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Read access to the segments written by {@link ArchiveStorage}.
+ * <p>
+ * The offset index is loaded into primitive arrays keyed by a fingerprint of the URL and depth,
+ * a few dozen bytes per page, so single pages can be read back without scanning the segments. The
+ * {@code main} method exports an archive to the {@code <depth>/<url>.html} layout of
+ * {@link LocalFileStorage}.
+ */
+public class ArchiveReader implements AutoCloseable {
+    private final Path archiveDir;
+    private final Map<Integer, Segment> segments = new HashMap<>();
+
+    // Records, by id.
+    private int[] recordSegments = new int[1024];
+    private long[] recordOffsets = new long[1024];
+    private int[] recordLengths = new int[1024];
+    private int recordCount;
+
+    // Fingerprint of depth and URL -> record id, open-addressed with linear probing.
+    private long[] keys = new long[2 * 2048];
+    private int[] ids = new int[2048];
+    private int keyCount;
+
+    /**
+     * Opens the archive of a crawl and loads its index.
+     *
+     * @param outputDir output directory of the crawl.
+     * @throws IllegalArgumentException if the directory holds no archive.
+     */
+    public ArchiveReader(Path outputDir) {
+        this.archiveDir = outputDir.resolve(ArchiveStorage.ARCHIVE_DIR);
+        Path indexFile = archiveDir.resolve(ArchiveStorage.INDEX_FILE);
+        if (!Files.isRegularFile(indexFile)) {
+            throw new IllegalArgumentException("No archive index found at " + indexFile);
+        }
+        Arrays.fill(ids, -1);
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                IndexEntry entry = IndexEntry.parse(line);
+                if (entry != null) {
+                    add(entry);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read archive index " + indexFile, e);
+        }
+    }
+
+    /**
+     * A line of the index.
+     */
+    private record IndexEntry(String url, int depth, int segment, long offset, int length) {
+        static IndexEntry parse(String line) {
+            String[] fields = line.split("\t");
+            if (fields.length != 5) {
+                return null;
+            }
+            try {
+                return new IndexEntry(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                        Long.parseLong(fields[3]), Integer.parseInt(fields[4]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private void add(IndexEntry entry) {
+        if (recordCount == recordSegments.length) {
+            int capacity = recordCount * 2;
+            recordSegments = Arrays.copyOf(recordSegments, capacity);
+            recordOffsets = Arrays.copyOf(recordOffsets, capacity);
+            recordLengths = Arrays.copyOf(recordLengths, capacity);
+        }
+        int id = recordCount++;
+        recordSegments[id] = entry.segment();
+        recordOffsets[id] = entry.offset();
+        recordLengths[id] = entry.length();
+
+        // A page stored again, by a resumed crawl, replaces the earlier record.
+        UrlFingerprint key = key(entry.url(), entry.depth());
+        int slot = slot(key.high(), key.low());
+        boolean newKey = ids[slot] < 0;
+        keys[2 * slot] = key.high();
+        keys[2 * slot + 1] = key.low();
+        ids[slot] = id;
+        if (newKey && ++keyCount * 3 > ids.length * 2) {
+            grow();
+        }
+    }
+
+    private static UrlFingerprint key(String url, int depth) {
+        return UrlFingerprint.of(depth + "\t" + url);
+    }
+
+    /**
+     * Returns the slot holding the key, or the empty slot where it belongs.
+     */
+    private int slot(long high, long low) {
+        int mask = ids.length - 1;
+        int slot = (int) high & mask;
+        while (ids[slot] >= 0 && (keys[2 * slot] != high || keys[2 * slot + 1] != low)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldIds = ids;
+        keys = new long[oldKeys.length * 2];
+        ids = new int[oldIds.length * 2];
+        Arrays.fill(ids, -1);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] >= 0) {
+                int slot = slot(oldKeys[2 * i], oldKeys[2 * i + 1]);
+                keys[2 * slot] = oldKeys[2 * i];
+                keys[2 * slot + 1] = oldKeys[2 * i + 1];
+                ids[slot] = oldIds[i];
+            }
+        }
+    }
+
+    /**
+     * @return number of records in the index.
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Reads a stored page.
+     *
+     * @param uri   the page URL.
+     * @param depth the depth it was stored at.
+     * @return the page content, or empty if the archive does not hold it.
+     */
+    public synchronized Optional<byte[]> read(URI uri, int depth) {
+        UrlFingerprint key = key(uri.toString(), depth);
+        int id = ids[slot(key.high(), key.low())];
+        if (id < 0) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(readPayload(recordSegments[id], recordOffsets[id], recordLengths[id]));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read archive record for " + uri, e);
+        }
+    }
+
+    /**
+     * Writes every archived page to {@code <targetDir>/<depth>/<url>.html}, the layout
+     * {@link LocalFileStorage} produces.
+     *
+     * @param targetDir directory to export to.
+     * @return number of pages written.
+     */
+    public synchronized int exportTo(Path targetDir) {
+        Path indexFile = archiveDir.resolve(ArchiveStorage.INDEX_FILE);
+        int exported = 0;
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                IndexEntry entry = IndexEntry.parse(line);
+                if (entry == null) {
+                    continue;
+                }
+                Path file = targetDir.resolve(LocalFileStorage.relativePath(URI.create(entry.url()), entry.depth()));
+                Files.createDirectories(file.getParent());
+                Files.write(file, readPayload(entry.segment(), entry.offset(), entry.length()));
+                exported++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export archive " + archiveDir + " to " + targetDir, e);
+        }
+        return exported;
+    }
+
+    private record Segment(FileChannel channel, boolean gzipped) {
+    }
+
+    private byte[] readPayload(int number, long offset, int length) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(length);
+        Segment segment = segment(number);
+        while (record.hasRemaining()) {
+            if (segment.channel().read(record, offset + record.position()) < 0) {
+                throw new EOFException("Archive record truncated in segment " + number);
+            }
+        }
+        byte[] bytes = record.array();
+        if (segment.gzipped()) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                bytes = in.readAllBytes();
+            }
+        }
+        return payloadOf(bytes);
+    }
+
+    /**
+     * Extracts the content block of a WARC record.
+     */
+    static byte[] payloadOf(byte[] record) throws IOException {
+        int headerEnd = -1;
+        for (int i = 0; i + 3 < record.length; i++) {
+            if (record[i] == '\r' && record[i + 1] == '\n' && record[i + 2] == '\r' && record[i + 3] == '\n') {
+                headerEnd = i + 4;
+                break;
+            }
+        }
+        if (headerEnd < 0) {
+            throw new IOException("Malformed archive record");
+        }
+        long contentLength = -1;
+        for (String header : new String(record, 0, headerEnd, StandardCharsets.UTF_8).split("\r\n")) {
+            if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Long.parseLong(header.substring(15).trim());
+            }
+        }
+        if (contentLength < 0 || headerEnd + contentLength > record.length) {
+            throw new IOException("Malformed archive record");
+        }
+        return Arrays.copyOfRange(record, headerEnd, headerEnd + (int) contentLength);
+    }
+
+    private Segment segment(int number) throws IOException {
+        Segment segment = segments.get(number);
+        if (segment == null) {
+            Path gzipped = archiveDir.resolve(ArchiveStorage.segmentName(number, true));
+            boolean isGzipped = Files.exists(gzipped);
+            Path file = isGzipped ? gzipped : archiveDir.resolve(ArchiveStorage.segmentName(number, false));
+            segment = new Segment(FileChannel.open(file, StandardOpenOption.READ), isGzipped);
+            segments.put(number, segment);
+        }
+        return segment;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel().close();
+            } catch (IOException e) {
+                ConsolePrinter.warn("Failed to close archive segment: " + e.getMessage());
+            }
+        }
+        segments.clear();
+    }
+
+    /**
+     * Exports the archive of a crawl to the per-page file layout.
+     *
+     * @param args the crawl output directory and the directory to export to.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            ConsolePrinter.error("Expected 2 arguments.");
+            ConsolePrinter.info("Usage: java -cp crawler.jar " + ArchiveReader.class.getName()
+                    + " <outputDir> <targetDir>");
+            System.exit(1);
+        }
+        try (ArchiveReader reader = new ArchiveReader(Paths.get(args[0]))) {
+            int exported = reader.exportTo(Paths.get(args[1]));
+            ConsolePrinter.info("Exported " + exported + " pages to " + Paths.get(args[1]).toAbsolutePath());
+        } catch (RuntimeException e) {
+            ConsolePrinter.error(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
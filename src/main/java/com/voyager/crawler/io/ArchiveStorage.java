@@ -0,0 +1,329 @@
+package com.voyager.crawler.io;
+
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
+import java.time.temporal.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+import java.util.zip.*;
+
+/**
+ * {@link ByteContentStorage} that appends pages to rolling segment files instead of writing one
+ * file per page.
+ * <p>
+ * Each page is a WARC/1.1 {@code resource} record, so segments can be read by standard WARC
+ * tools. With compression, every record is its own gzip member, as in {@code .warc.gz} files,
+ * and can be decompressed without reading the rest of the segment. A body that kept the gzip
+ * member it was sent as is written with that member as its payload, between small members for
+ * the record header and trailer, so the page is not compressed twice. A segment is closed once
+ * it reaches the configured size and the next one is started.
+ * <p>
+ * Every record is also listed in {@code archive/index.tsv} as
+ * {@code <url> <depth> <segment> <offset> <length>}, which {@link ArchiveReader} uses for
+ * random access and for exporting the {@code <depth>/<url>.html} layout of
+ * {@link LocalFileStorage}. Records are assembled and compressed by the calling thread; only
+ * the append itself is serialized. Each append is emitted as a flight recorder event naming the
+ * segment and offset.
+ */
+public class ArchiveStorage implements ByteContentStorage, AutoCloseable {
+    public static final String ARCHIVE_DIR = "archive";
+    public static final String INDEX_FILE = "index.tsv";
+    public static final long DEFAULT_SEGMENT_BYTES = 1L << 30;
+
+    static final String DEPTH_FIELD = "Voyager-Crawl-Depth";
+
+    private static final byte[] RECORD_TRAILER = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final Path archiveDir;
+    private final boolean compress;
+    private final long segmentBytes;
+    private final AsyncLineWriter index;
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final byte[] gzippedTrailer;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private FileChannel segment;
+    private int segmentNumber;
+    private long segmentPosition;
+    private boolean closed;
+
+    /**
+     * Creates an archive with segments of {@link #DEFAULT_SEGMENT_BYTES}.
+     *
+     * @param rootDir  output directory of the crawl; segments go to {@code <rootDir>/archive}.
+     * @param compress whether to gzip each record.
+     */
+    public ArchiveStorage(Path rootDir, boolean compress) {
+        this(rootDir, compress, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Creates an archive. An archive left in the directory by an interrupted crawl is continued
+     * in a new segment.
+     *
+     * @param rootDir      output directory of the crawl; segments go to {@code <rootDir>/archive}.
+     * @param compress     whether to gzip each record.
+     * @param segmentBytes size after which a segment is closed and the next one started.
+     */
+    public ArchiveStorage(Path rootDir, boolean compress, long segmentBytes) {
+        if (segmentBytes <= 0) {
+            throw new IllegalArgumentException("segmentBytes must be positive");
+        }
+        this.archiveDir = rootDir.resolve(ARCHIVE_DIR);
+        this.compress = compress;
+        this.segmentBytes = segmentBytes;
+        this.gzippedTrailer = compress ? gzip(ByteBuffer.wrap(RECORD_TRAILER)) : null;
+        try {
+            Files.createDirectories(archiveDir);
+            this.segmentNumber = nextSegmentNumber(archiveDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create archive directory " + archiveDir, e);
+        }
+        Path indexFile = archiveDir.resolve(INDEX_FILE);
+        this.index = Files.exists(indexFile)
+                ? AsyncLineWriter.append(indexFile, AsyncLineWriter.completeLength(indexFile), "archive index")
+                : AsyncLineWriter.create(indexFile, "archive index");
+    }
+
+    /**
+     * Returns the file name of a segment.
+     *
+     * @param number   segment number.
+     * @param compress whether the segment holds gzip members.
+     */
+    static String segmentName(int number, boolean compress) {
+        return String.format(Locale.ROOT, "segment-%05d.warc%s", number, compress ? ".gz" : "");
+    }
+
+    private static int nextSegmentNumber(Path archiveDir) throws IOException {
+        int next = 0;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(archiveDir, "segment-*.warc*")) {
+            for (Path existing : segments) {
+                String name = existing.getFileName().toString();
+                next = Math.max(next, Integer.parseInt(name.substring(8, name.indexOf('.'))) + 1);
+            }
+        }
+        return next;
+    }
+
+    @Override
+    public void save(URI uri, String content, int depth) {
+        Objects.requireNonNull(uri, "uri must not be null");
+        Objects.requireNonNull(content, "content must not be null");
+
+        ByteBuffer payload = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+        append(uri, depth, StandardCharsets.UTF_8, new ByteBuffer[] {payload}, payload.remaining());
+    }
+
+    @Override
+    public void save(URI uri, PageBody body, int depth) {
+        Objects.requireNonNull(uri, "uri must not be null");
+        Objects.requireNonNull(body, "body must not be null");
+
+        Charset charset = body.declaredCharset().orElse(null);
+        if (compress && body.hasGzipEncoding()) {
+            ByteBuffer[] encoded = body.gzipEncodedByteBuffers();
+            ByteBuffer[] record = new ByteBuffer[encoded.length + 2];
+            record[0] = ByteBuffer.wrap(gzip(ByteBuffer.wrap(recordHeader(uri, depth, charset, body.length()))));
+            System.arraycopy(encoded, 0, record, 1, encoded.length);
+            record[record.length - 1] = ByteBuffer.wrap(gzippedTrailer);
+            write(uri, depth, record);
+            return;
+        }
+        append(uri, depth, charset, body.asByteBuffers(), body.length());
+    }
+
+    @Override
+    public boolean storesGzipEncoding() {
+        return compress;
+    }
+
+    @Override
+    public void saveCopy(URI uri, Path source, int depth) {
+        Objects.requireNonNull(uri, "uri must not be null");
+        Objects.requireNonNull(source, "source must not be null");
+
+        try {
+            ByteBuffer payload = ByteBuffer.wrap(Files.readAllBytes(source));
+            append(uri, depth, null, new ByteBuffer[] {payload}, payload.remaining());
+        } catch (IOException e) {
+            ConsolePrinter.error("Failed to save content for " + uri + ": " + e);
+            throw new RuntimeException("Storage failure", e);
+        }
+    }
+
+    private void append(URI uri, int depth, Charset charset, ByteBuffer[] payload, long payloadLength) {
+        ByteBuffer[] record = withHeaderAndTrailer(recordHeader(uri, depth, charset, payloadLength), payload);
+        write(uri, depth, compress ? new ByteBuffer[] {ByteBuffer.wrap(gzip(record))} : record);
+    }
+
+    private void write(URI uri, int depth, ByteBuffer[] record) {
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        long recordLength = 0;
+        for (ByteBuffer buffer : record) {
+            recordLength += buffer.remaining();
+        }
+
+        int recordSegment;
+        long offset;
+        appendLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Archive is closed");
+            }
+            if (segment != null && segmentPosition > 0 && segmentPosition + recordLength > segmentBytes) {
+                // A later flush only syncs the current segment, so this one is synced now.
+                segment.force(false);
+                segment.close();
+                segment = null;
+                segmentNumber++;
+            }
+            if (segment == null) {
+                segment = FileChannel.open(archiveDir.resolve(segmentName(segmentNumber, compress)),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                segmentPosition = 0;
+            }
+            recordSegment = segmentNumber;
+            offset = segmentPosition;
+            long remaining = recordLength;
+            while (remaining > 0) {
+                remaining -= segment.write(record);
+            }
+            segmentPosition += recordLength;
+        } catch (IOException e) {
+            ConsolePrinter.error("Failed to save content for " + uri + ": " + e);
+            throw new RuntimeException("Storage failure", e);
+        } finally {
+            appendLock.unlock();
+        }
+        index.write(uri + "\t" + depth + "\t" + recordSegment + "\t" + offset + "\t" + recordLength);
+        event.end();
+        if (event.shouldCommit()) {
+            event.uri = uri.toString();
+            event.path = archiveDir.resolve(segmentName(recordSegment, compress)) + "@" + offset;
+            event.bytes = recordLength;
+            event.commit();
+        }
+    }
+
+    private static byte[] recordHeader(URI uri, int depth, Charset charset, long payloadLength) {
+        String header = "WARC/1.1\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + ">\r\n"
+                + "WARC-Date: " + Instant.now().truncatedTo(ChronoUnit.SECONDS) + "\r\n"
+                + "WARC-Target-URI: " + uri + "\r\n"
+                + DEPTH_FIELD + ": " + depth + "\r\n"
+                + "Content-Type: text/html" + (charset != null ? "; charset=" + charset.name() : "") + "\r\n"
+                + "Content-Length: " + payloadLength + "\r\n"
+                + "\r\n";
+        return header.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer[] withHeaderAndTrailer(byte[] header, ByteBuffer[] payload) {
+        ByteBuffer[] record = new ByteBuffer[payload.length + 2];
+        record[0] = ByteBuffer.wrap(header);
+        System.arraycopy(payload, 0, record, 1, payload.length);
+        record[record.length - 1] = ByteBuffer.wrap(RECORD_TRAILER);
+        return record;
+    }
+
+    /**
+     * Compresses the buffers into a single gzip member with a pooled deflater, at the fastest
+     * level: pages are small and compress well even so.
+     */
+    private byte[] gzip(ByteBuffer... inputs) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+        }
+        try {
+            CRC32 crc = new CRC32();
+            long inputLength = 0;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            byte[] chunk = new byte[16 * 1024];
+
+            for (ByteBuffer buffer : inputs) {
+                ByteBuffer input = buffer.duplicate();
+                inputLength += input.remaining();
+                crc.update(input.duplicate());
+                deflater.setInput(input);
+                while (!deflater.needsInput()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+
+            writeIntLittleEndian(out, (int) crc.getValue());
+            writeIntLittleEndian(out, (int) inputLength);
+            return out.toByteArray();
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * Syncs the current segment and then the index, making every record appended so far durable
+     * and findable.
+     */
+    @Override
+    public void flush() {
+        appendLock.lock();
+        try {
+            if (segment != null) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            ConsolePrinter.error("Failed to sync archive segment in " + archiveDir + ": " + e);
+            throw new RuntimeException("Storage failure", e);
+        } finally {
+            appendLock.unlock();
+        }
+        index.flush();
+    }
+
+    /**
+     * Syncs and closes the current segment and writes the queued index lines.
+     */
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            closed = true;
+            if (segment != null) {
+                segment.force(false);
+                segment.close();
+                segment = null;
+            }
+        } catch (IOException e) {
+            ConsolePrinter.warn("Failed to close archive segment in " + archiveDir + ": " + e.getMessage());
+        } finally {
+            appendLock.unlock();
+        }
+        index.close();
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.voyager.crawler.io;
+
+import com.voyager.crawler.util.*;
+
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * {@link ByteContentStorage} decorator that moves page writes off the crawl tasks onto a few
+ * writer threads.
+ * <p>
+ * {@code saveAsync} queues a page and returns a future that completes once the page is durable:
+ * each writer takes up to {@value #MAX_BATCH} queued pages, writes them through the delegate,
+ * calls {@link ByteContentStorage#flush()} once for the whole batch, and only then completes
+ * their futures. A body is queued as a {@link PageBody#retain() retained} handle, so the parser
+ * can read the same chunks while the page is written.
+ * <p>
+ * At most {@code capacity} pages are queued or being written. When the disk falls behind,
+ * {@code saveAsync} blocks, and {@link #awaitCapacity()} lets a task wait for room before it
+ * starts a fetch, so bodies do not pile up in memory.
+ */
+public class AsyncContentStorage implements ByteContentStorage, AutoCloseable {
+    public static final int DEFAULT_WRITERS = 2;
+    public static final int DEFAULT_PAGES_PER_WRITER = 32;
+
+    static final int MAX_BATCH = 32;
+
+    private static final Write STOP = new Write(null, 0, null, null, null, null);
+
+    private final ByteContentStorage delegate;
+    private final int capacity;
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private int pending;
+    private int peakPending;
+    private boolean closed;
+
+    /**
+     * Creates an asynchronous storage with {@value #DEFAULT_PAGES_PER_WRITER} pages of capacity
+     * per writer.
+     *
+     * @param delegate    storage performing the writes.
+     * @param writerCount number of writer threads.
+     */
+    public AsyncContentStorage(ByteContentStorage delegate, int writerCount) {
+        this(delegate, writerCount, writerCount * DEFAULT_PAGES_PER_WRITER);
+    }
+
+    /**
+     * Creates an asynchronous storage.
+     *
+     * @param delegate    storage performing the writes.
+     * @param writerCount number of writer threads.
+     * @param capacity    number of pages that may be queued or being written.
+     */
+    public AsyncContentStorage(ByteContentStorage delegate, int writerCount, int capacity) {
+        if (writerCount < 1 || capacity < 1) {
+            throw new IllegalArgumentException("writerCount and capacity must be positive");
+        }
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.capacity = capacity;
+        for (int i = 0; i < writerCount; i++) {
+            Thread writer = Thread.ofPlatform().name("storage-writer-" + i).daemon(true).unstarted(this::runWriter);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    /**
+     * A queued page: a body, decoded content, or a file of an earlier crawl.
+     */
+    private record Write(URI uri, int depth, PageBody body, String content, Path source,
+            CompletableFuture<Void> done) {
+        void performOn(ByteContentStorage storage) {
+            if (body != null) {
+                storage.save(uri, body, depth);
+            } else if (source != null) {
+                storage.saveCopy(uri, source, depth);
+            } else {
+                storage.save(uri, content, depth);
+            }
+        }
+    }
+
+    /**
+     * Queues a body for writing. The caller keeps its own handle and may close it at once.
+     *
+     * @param uri   the source URI (used for naming).
+     * @param body  the response body.
+     * @param depth the current depth level (used for directory structure).
+     * @return future completed once the page is durable, or exceptionally if writing fails.
+     * @throws InterruptedException if interrupted while waiting for queue space.
+     */
+    public CompletableFuture<Void> saveAsync(URI uri, PageBody body, int depth) throws InterruptedException {
+        Objects.requireNonNull(uri, "uri must not be null");
+        Objects.requireNonNull(body, "body must not be null");
+        PageBody handle = body.retain();
+        try {
+            return enqueue(new Write(uri, depth, handle, null, null, new CompletableFuture<>()));
+        } catch (InterruptedException | RuntimeException e) {
+            handle.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues decoded content for writing.
+     *
+     * @param uri     the source URI (used for naming).
+     * @param content the HTML content.
+     * @param depth   the current depth level (used for directory structure).
+     * @return future completed once the page is durable, or exceptionally if writing fails.
+     * @throws InterruptedException if interrupted while waiting for queue space.
+     */
+    public CompletableFuture<Void> saveAsync(URI uri, String content, int depth) throws InterruptedException {
+        Objects.requireNonNull(uri, "uri must not be null");
+        Objects.requireNonNull(content, "content must not be null");
+        return enqueue(new Write(uri, depth, null, content, null, new CompletableFuture<>()));
+    }
+
+    /**
+     * Queues a page of an earlier crawl for storing with {@link ByteContentStorage#saveCopy}.
+     *
+     * @param uri    the source URI (used for naming).
+     * @param source the file saved by the earlier crawl.
+     * @param depth  the current depth level (used for directory structure).
+     * @return future completed once the page is durable, or exceptionally if writing fails.
+     * @throws InterruptedException if interrupted while waiting for queue space.
+     */
+    public CompletableFuture<Void> saveCopyAsync(URI uri, Path source, int depth) throws InterruptedException {
+        Objects.requireNonNull(uri, "uri must not be null");
+        Objects.requireNonNull(source, "source must not be null");
+        return enqueue(new Write(uri, depth, null, null, source, new CompletableFuture<>()));
+    }
+
+    @Override
+    public void save(URI uri, String content, int depth) {
+        try {
+            await(saveAsync(uri, content, depth));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Storage failure", e);
+        }
+    }
+
+    @Override
+    public void save(URI uri, PageBody body, int depth) {
+        try {
+            await(saveAsync(uri, body, depth));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Storage failure", e);
+        }
+    }
+
+    @Override
+    public void saveCopy(URI uri, Path source, int depth) {
+        try {
+            await(saveCopyAsync(uri, source, depth));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Storage failure", e);
+        }
+    }
+
+    @Override
+    public boolean storesGzipEncoding() {
+        return delegate.storesGzipEncoding();
+    }
+
+    private static void await(CompletableFuture<Void> done) throws InterruptedException {
+        try {
+            done.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException("Storage failure", e.getCause());
+        }
+    }
+
+    /**
+     * Blocks while the queue is full. Crawl tasks call this before fetching so that no new body
+     * is downloaded while the disk is behind.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitCapacity() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (pending >= capacity && !closed) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of pages queued or being written.
+     */
+    public int pendingWrites() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return largest number of pages that were queued or being written at the same time.
+     */
+    public int peakPendingWrites() {
+        lock.lock();
+        try {
+            return peakPending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Write write) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (pending >= capacity && !closed) {
+                notFull.await();
+            }
+            if (closed) {
+                throw new RejectedExecutionException("Storage is closed");
+            }
+            pending++;
+            peakPending = Math.max(peakPending, pending);
+            queue.add(write);
+        } finally {
+            lock.unlock();
+        }
+        return write.done();
+    }
+
+    private void runWriter() {
+        List<Write> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            boolean stop = batch.removeIf(write -> write == STOP);
+            writeBatch(batch);
+            batch.clear();
+            if (stop) {
+                // Leave the marker for the other writers.
+                queue.add(STOP);
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<Write> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        RuntimeException[] failures = new RuntimeException[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            Write write = batch.get(i);
+            try {
+                write.performOn(delegate);
+            } catch (RuntimeException e) {
+                failures[i] = e;
+            } finally {
+                if (write.body() != null) {
+                    write.body().close();
+                }
+            }
+        }
+        RuntimeException flushFailure = null;
+        try {
+            delegate.flush();
+        } catch (RuntimeException e) {
+            flushFailure = e;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            RuntimeException failure = failures[i] != null ? failures[i] : flushFailure;
+            if (failure != null) {
+                batch.get(i).done().completeExceptionally(failure);
+            } else {
+                batch.get(i).done().complete(null);
+            }
+        }
+
+        lock.lock();
+        try {
+            pending -= batch.size();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every queued page, stops the writers, and closes the delegate if it is closeable.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(STOP);
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread writer : writers) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ConsolePrinter.warn("Interrupted while waiting for storage writers to finish");
+                break;
+            }
+        }
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                ConsolePrinter.warn("Failed to close storage: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.voyager.crawler.io;
+
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Append-only text file whose lines are written by a background thread.
+ * <p>
+ * {@link #write(String)} only queues the line, so callers on the crawl path never wait for the
+ * disk. The writer thread flushes and syncs the file about once per {@link #FLUSH_INTERVAL_MS};
+ * a crash loses at most the lines of that interval, and a partially written last line is cut
+ * off by {@link #append(Path, long, String)}. {@link #flush()} syncs the lines queued so far
+ * without waiting for the interval. Write failures are logged once and disable the writer
+ * without failing the crawl.
+ */
+public class AsyncLineWriter implements AutoCloseable {
+    public static final long FLUSH_INTERVAL_MS = 1000;
+
+    private static final String CLOSE_MARKER = new String("close");
+    private static final String SYNC_MARKER = new String("sync");
+
+    private final Path file;
+    private final String name;
+    private final FileChannel channel;
+    private final Writer writer;
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+    private final Queue<CountDownLatch> syncRequests = new ConcurrentLinkedQueue<>();
+    private final Thread writerThread;
+    private volatile boolean failed;
+
+    private AsyncLineWriter(Path file, String name, FileChannel channel) {
+        this.file = file;
+        this.name = name;
+        this.channel = channel;
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), 64 * 1024);
+        this.writerThread = Thread.ofPlatform().name(name.replace(' ', '-')).daemon(true)
+                .unstarted(this::runWriter);
+        writerThread.start();
+    }
+
+    /**
+     * Starts a new file, replacing any existing one.
+     *
+     * @param file the file to write.
+     * @param name name used for the writer thread and in log messages.
+     * @return the open writer.
+     */
+    public static AsyncLineWriter create(Path file, String name) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            return new AsyncLineWriter(file, name, channel);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create " + name + " " + file, e);
+        }
+    }
+
+    /**
+     * Reopens a file to continue it, cutting it to {@code validLength} bytes first.
+     *
+     * @param file        the file to continue.
+     * @param validLength length of its complete lines, e.g. from {@link #completeLength(Path)}.
+     * @param name        name used for the writer thread and in log messages.
+     * @return the open writer.
+     */
+    public static AsyncLineWriter append(Path file, long validLength, String name) {
+        try {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            channel.truncate(validLength);
+            channel.position(validLength);
+            return new AsyncLineWriter(file, name, channel);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to reopen " + name + " " + file, e);
+        }
+    }
+
+    /**
+     * Returns the length of a file up to and including its last line break.
+     *
+     * @param file the file to inspect.
+     * @return the number of bytes made of complete lines.
+     */
+    public static long completeLength(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long end = channel.size();
+            while (end > 0) {
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - start));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+                end = start;
+            }
+            return 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + file, e);
+        }
+    }
+
+    /**
+     * Queues a line. The line must not contain line breaks.
+     *
+     * @param line the line, without its terminator.
+     */
+    public void write(String line) {
+        if (!failed) {
+            lines.add(line);
+        }
+    }
+
+    /**
+     * Waits until the lines queued so far are written and synced.
+     */
+    public void flush() {
+        CountDownLatch synced = new CountDownLatch(1);
+        syncRequests.add(synced);
+        lines.add(SYNC_MARKER);
+        try {
+            while (!synced.await(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                if (!writerThread.isAlive()) {
+                    // Closed meanwhile; close() synced the lines and the marker is never read.
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes all queued lines, syncs the file and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        lines.add(CLOSE_MARKER);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            ConsolePrinter.warn("Failed to close " + name + " " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void runWriter() {
+        List<String> batch = new ArrayList<>();
+        long lastFlushNs = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            String line;
+            try {
+                line = lines.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                line = CLOSE_MARKER;
+            }
+            if (line != null) {
+                batch.add(line);
+                lines.drainTo(batch);
+            }
+            boolean closing = false;
+            for (String pending : batch) {
+                if (pending == CLOSE_MARKER) {
+                    closing = true;
+                } else if (pending == SYNC_MARKER) {
+                    if (dirty) {
+                        sync();
+                        dirty = false;
+                        lastFlushNs = System.nanoTime();
+                    }
+                    // Requests are queued before their markers, so the oldest one is satisfied.
+                    syncRequests.remove().countDown();
+                } else if (!failed) {
+                    dirty |= writeLine(pending);
+                }
+            }
+            batch.clear();
+            long nowNs = System.nanoTime();
+            if (dirty && (closing || line == null
+                    || nowNs - lastFlushNs >= TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS))) {
+                sync();
+                dirty = false;
+                lastFlushNs = nowNs;
+            }
+            if (closing) {
+                syncRequests.forEach(CountDownLatch::countDown);
+                return;
+            }
+        }
+    }
+
+    private boolean writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+            return true;
+        } catch (IOException e) {
+            fail(e);
+            return false;
+        }
+    }
+
+    private void sync() {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.flush();
+            channel.force(false);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        ConsolePrinter.error(Character.toUpperCase(name.charAt(0)) + name.substring(1)
+                + " disabled after write failure on " + file + ": " + e.getMessage());
+    }
+}
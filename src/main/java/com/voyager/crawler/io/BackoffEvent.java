@@ -0,0 +1,20 @@
+package com.voyager.crawler.io;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for the sleep before retrying a fetch.
+ */
+@Name("com.voyager.crawler.RetryBackoff")
+@Label("Retry Backoff")
+@Category({"Voyager Crawler", "Pipeline"})
+@Description("Sleep before retrying a fetch")
+@StackTrace(false)
+final class BackoffEvent extends Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Attempt")
+    @Description("The attempt about to be made")
+    int attempt;
+}
@@ -0,0 +1,15 @@
+package com.voyager.crawler.io;
+
+import java.io.*;
+
+/**
+ * Thrown when a response body exceeds the configured maximum size. Reading stops as soon as the
+ * limit is passed, or before reading when {@code Content-Length} already exceeds it.
+ */
+public class BodyTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public BodyTooLargeException(long maxBytes) {
+        super("Response body exceeds " + maxBytes + " bytes");
+    }
+}
@@ -0,0 +1,87 @@
+package com.voyager.crawler.io;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Bounded pool of fixed-size byte chunks used to hold response bodies.
+ * Chunks are reused across pages so large bodies do not allocate fresh arrays for every fetch.
+ * Only up to {@code maxPooledChunks} idle chunks are retained; extra chunks are left to the GC.
+ */
+public final class BufferPool {
+    public static final int DEFAULT_CHUNK_SIZE = 32 * 1024;
+    public static final int DEFAULT_MAX_POOLED_CHUNKS = 1024;
+
+    private static final BufferPool SHARED = new BufferPool(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED_CHUNKS);
+
+    private final int chunkSize;
+    private final int maxPooledChunks;
+    private final Queue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger(0);
+
+    /**
+     * Creates a pool.
+     *
+     * @param chunkSize       size of every chunk in bytes.
+     * @param maxPooledChunks maximum number of idle chunks kept for reuse.
+     */
+    public BufferPool(int chunkSize, int maxPooledChunks) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        if (maxPooledChunks < 0) {
+            throw new IllegalArgumentException("maxPooledChunks must be non-negative");
+        }
+        this.chunkSize = chunkSize;
+        this.maxPooledChunks = maxPooledChunks;
+    }
+
+    /**
+     * Returns the process-wide pool used by default.
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Takes a chunk from the pool, allocating a new one if none is idle.
+     *
+     * @return a chunk of {@link #chunkSize()} bytes with unspecified content.
+     */
+    public byte[] acquire() {
+        byte[] chunk = free.poll();
+        if (chunk != null) {
+            pooled.decrementAndGet();
+            return chunk;
+        }
+        return new byte[chunkSize];
+    }
+
+    /**
+     * Returns a chunk to the pool. Chunks of a different size are ignored.
+     *
+     * @param chunk the chunk to recycle.
+     */
+    public void release(byte[] chunk) {
+        if (chunk == null || chunk.length != chunkSize) {
+            return;
+        }
+        if (pooled.incrementAndGet() <= maxPooledChunks) {
+            free.offer(chunk);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the number of idle chunks currently held.
+     */
+    public int pooledChunks() {
+        return pooled.get();
+    }
+}
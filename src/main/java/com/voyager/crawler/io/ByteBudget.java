@@ -0,0 +1,178 @@
+package com.voyager.crawler.io;
+
+import java.util.concurrent.locks.*;
+
+/**
+ * Global budget for the bytes of response bodies held in memory.
+ * <p>
+ * A fetch {@link #reserve reserves} its expected size, the {@code Content-Length} when the
+ * response has one, and waits while the reservations of other bodies would exceed the budget.
+ * While the body streams in, every chunk beyond the reservation is {@linkplain Reservation#charge
+ * charged} without waiting, so a body that is already downloading always finishes and no two
+ * fetches can wait on each other. The bytes go back to the budget when the body is closed.
+ * <p>
+ * The budget therefore bounds how many bodies are admitted rather than how far a single body may
+ * grow; {@link Reservation#maxBytes()} caps that separately. Waiting uses a
+ * {@link ReentrantLock}, so waiting virtual threads do not pin their carrier.
+ */
+public final class ByteBudget {
+    private final long maxBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long usedBytes;
+    private long peakBytes;
+    private long waits;
+
+    /**
+     * Creates a budget.
+     *
+     * @param maxBytes bytes of bodies that may be held at once.
+     */
+    public ByteBudget(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a budget that never makes a fetch wait.
+     */
+    public static ByteBudget unlimited() {
+        return new ByteBudget(Long.MAX_VALUE);
+    }
+
+    /**
+     * Reserves room for a body, waiting until the bodies held by others leave enough of the
+     * budget. A body larger than the whole budget is admitted once nothing else is held.
+     *
+     * @param expectedBytes expected size of the body.
+     * @param maxBytes      size at which reading the body is aborted.
+     * @return the reservation, to be closed when the body is released.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public Reservation reserve(long expectedBytes, long maxBytes) throws InterruptedException {
+        long expected = Math.max(0, Math.min(expectedBytes, maxBytes));
+        lock.lockInterruptibly();
+        try {
+            if (usedBytes > 0 && usedBytes + expected > this.maxBytes) {
+                waits++;
+                while (usedBytes > 0 && usedBytes + expected > this.maxBytes) {
+                    released.await();
+                }
+            }
+            add(expected);
+        } finally {
+            lock.unlock();
+        }
+        return new Reservation(expected, maxBytes);
+    }
+
+    private void add(long bytes) {
+        usedBytes += bytes;
+        peakBytes = Math.max(peakBytes, usedBytes);
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            usedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return bytes of bodies that may be held at once.
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return bytes currently reserved or charged.
+     */
+    public long usedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return largest number of bytes reserved or charged at the same time.
+     */
+    public long peakBytes() {
+        lock.lock();
+        try {
+            return peakBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of reservations that had to wait for room.
+     */
+    public long waits() {
+        lock.lock();
+        try {
+            return waits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bytes held for one body. Not thread-safe: a body is read by one thread.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final long maxBytes;
+        private long reservedBytes;
+        private boolean closed;
+
+        private Reservation(long reservedBytes, long maxBytes) {
+            this.reservedBytes = reservedBytes;
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Accounts for a body that has grown to {@code totalBytes}, charging any excess over the
+         * reservation to the budget without waiting.
+         */
+        public void charge(long totalBytes) {
+            if (closed || totalBytes <= reservedBytes) {
+                return;
+            }
+            lock.lock();
+            try {
+                add(totalBytes - reservedBytes);
+            } finally {
+                lock.unlock();
+            }
+            reservedBytes = totalBytes;
+        }
+
+        /**
+         * @return size at which reading the body is aborted.
+         */
+        public long maxBytes() {
+            return maxBytes;
+        }
+
+        /**
+         * Returns the reserved and charged bytes to the budget.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            release(reservedBytes);
+        }
+    }
+}
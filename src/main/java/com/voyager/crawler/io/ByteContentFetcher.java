@@ -0,0 +1,19 @@
+package com.voyager.crawler.io;
+
+import java.net.URI;
+import java.util.Optional;
+
+/**
+ * A {@link ContentFetcher} that can hand out the raw response body without decoding it.
+ */
+public interface ByteContentFetcher extends ContentFetcher {
+    /**
+     * Fetches the body of a URL into pooled buffers.
+     *
+     * @param uri the URI to fetch.
+     * @return Optional containing the body, or empty if fetch failed. The caller owns the body
+     *         and must close it.
+     * @throws NullPointerException if uri is null (Precondition).
+     */
+    Optional<PageBody> fetchBody(URI uri);
+}
@@ -0,0 +1,49 @@
+package com.voyager.crawler.io;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * A {@link ContentStorage} that can persist a response body as received, without decoding it.
+ */
+public interface ByteContentStorage extends ContentStorage {
+    /**
+     * Saves the body bytes to a file structure. The body is not closed by this method.
+     *
+     * @param uri   the source URI (used for naming).
+     * @param body  the response body.
+     * @param depth the current depth level (used for directory structure).
+     * @throws NullPointerException if inputs are null (Precondition).
+     * @throws RuntimeException     runtime wrapper for IO issues (Postcondition).
+     */
+    void save(URI uri, PageBody body, int depth);
+
+    /**
+     * Stores a page that is unchanged since an earlier crawl saved it, reusing that crawl's file.
+     * The earlier file is never modified, even if the page is saved again later.
+     *
+     * @param uri    the source URI (used for naming).
+     * @param source the file saved by the earlier crawl.
+     * @param depth  the current depth level (used for directory structure).
+     * @throws NullPointerException if inputs are null (Precondition).
+     * @throws RuntimeException     runtime wrapper for IO issues (Postcondition).
+     */
+    void saveCopy(URI uri, Path source, int depth);
+
+    /**
+     * Forces the pages saved so far to durable storage. The default does nothing and leaves
+     * written pages to the operating system's cache.
+     *
+     * @throws RuntimeException runtime wrapper for IO issues (Postcondition).
+     */
+    default void flush() {
+    }
+
+    /**
+     * Returns whether {@link #save(URI, PageBody, int)} writes the gzip member a body was sent as,
+     * when the body kept it, instead of compressing the page itself. The default is false.
+     */
+    default boolean storesGzipEncoding() {
+        return false;
+    }
+}
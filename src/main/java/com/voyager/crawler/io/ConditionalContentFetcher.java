@@ -0,0 +1,22 @@
+package com.voyager.crawler.io;
+
+import java.net.URI;
+import java.util.Optional;
+
+/**
+ * A {@link ByteContentFetcher} that reports cache validators and can revalidate a page from an
+ * earlier crawl instead of downloading it again.
+ */
+public interface ConditionalContentFetcher extends ByteContentFetcher {
+    /**
+     * Fetches a URL, sending {@code If-None-Match} and {@code If-Modified-Since} for the given
+     * validators.
+     *
+     * @param uri        the URI to fetch.
+     * @param validators validators of the cached copy, or {@link PageValidators#NONE}.
+     * @return Optional containing the new body or a not-modified confirmation, or empty if
+     *         fetch failed.
+     * @throws NullPointerException if uri or validators is null (Precondition).
+     */
+    Optional<ConditionalResponse> fetchConditional(URI uri, PageValidators validators);
+}
@@ -0,0 +1,35 @@
+package com.voyager.crawler.io;
+
+/**
+ * Outcome of a conditional fetch: either a new body, or confirmation that the copy the
+ * validators describe is still current.
+ *
+ * @param body       the new body, or null if the page was not modified. The caller owns it.
+ * @param validators validators of the page as returned by the server.
+ */
+public record ConditionalResponse(PageBody body, PageValidators validators) {
+
+    /**
+     * @param body       the fetched body.
+     * @param validators validators returned with it.
+     * @return a response carrying a new body.
+     */
+    public static ConditionalResponse modified(PageBody body, PageValidators validators) {
+        return new ConditionalResponse(body, validators);
+    }
+
+    /**
+     * @param validators validators returned with the {@code 304} response.
+     * @return a response confirming the cached copy.
+     */
+    public static ConditionalResponse notModified(PageValidators validators) {
+        return new ConditionalResponse(null, validators);
+    }
+
+    /**
+     * @return whether the server confirmed the cached copy instead of sending a body.
+     */
+    public boolean isNotModified() {
+        return body == null;
+    }
+}
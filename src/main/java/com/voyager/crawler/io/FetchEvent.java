@@ -0,0 +1,33 @@
+package com.voyager.crawler.io;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for one HTTP attempt of a fetch, from sending the request until the body
+ * was read or the attempt failed.
+ */
+@Name("com.voyager.crawler.Fetch")
+@Label("Fetch")
+@Category({"Voyager Crawler", "Pipeline"})
+@Description("One HTTP attempt, retries included")
+@StackTrace(false)
+final class FetchEvent extends Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Host")
+    String host;
+
+    @Label("Attempt")
+    @Description("1 for the first attempt")
+    int attempt;
+
+    @Label("Status")
+    @Description("HTTP status code, or 0 if no response arrived")
+    int status;
+
+    @Label("Body Size")
+    @Description("Decoded body bytes read")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,36 @@
+package com.voyager.crawler.io;
+
+import java.net.URI;
+
+/**
+ * Receives the outcome of every HTTP attempt a fetcher makes, including retries, so request
+ * limits can follow how the servers respond, and paces the retries.
+ */
+public interface FetchFeedback {
+    /**
+     * Feedback that is discarded.
+     */
+    FetchFeedback NONE = (uri, latencyNanos, overloaded) -> {
+    };
+
+    /**
+     * Records one attempt.
+     *
+     * @param uri          the requested URI.
+     * @param latencyNanos time from sending the request until the response headers arrived, or
+     *                     until the attempt failed.
+     * @param overloaded   whether the server signalled overload: a retryable status such as 429
+     *                     or 503, a timeout, or a connection failure.
+     */
+    void onResponse(URI uri, long latencyNanos, boolean overloaded);
+
+    /**
+     * Blocks until a retry of a request to the URI may start. The fetcher calls it after its
+     * backoff, while still holding the permit of the first attempt. Returns at once by default.
+     *
+     * @param uri the URI about to be requested again.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    default void awaitRetry(URI uri) throws InterruptedException {
+    }
+}
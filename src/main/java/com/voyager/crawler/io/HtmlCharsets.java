@@ -0,0 +1,61 @@
+package com.voyager.crawler.io;
+
+import java.nio.charset.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * Helpers for determining the character encoding of an HTML response.
+ */
+public final class HtmlCharsets {
+    /**
+     * Number of leading bytes inspected for a {@code <meta>} charset declaration.
+     */
+    public static final int META_SNIFF_LIMIT = 1024;
+
+    private static final Pattern CONTENT_TYPE_CHARSET = Pattern.compile("charset\\s*=\\s*[\"']?([^\\s;\"']+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta[^>]+charset\\s*=\\s*[\"']?([^\\s;\"'/>]+)", Pattern.CASE_INSENSITIVE);
+
+    private HtmlCharsets() {
+    }
+
+    /**
+     * Extracts the charset parameter of a {@code Content-Type} header value.
+     *
+     * @param contentType the header value, may be null.
+     * @return the charset, or empty if absent or unsupported.
+     */
+    public static Optional<Charset> fromContentType(String contentType) {
+        if (contentType == null) {
+            return Optional.empty();
+        }
+        Matcher matcher = CONTENT_TYPE_CHARSET.matcher(contentType);
+        return matcher.find() ? lookup(matcher.group(1)) : Optional.empty();
+    }
+
+    /**
+     * Looks for a {@code <meta charset>} or {@code <meta http-equiv="Content-Type">} declaration
+     * in the first {@link #META_SNIFF_LIMIT} bytes of a document.
+     *
+     * @param head   the leading bytes of the document.
+     * @param length number of valid bytes in {@code head}.
+     * @return the declared charset, or empty if none is found or it is unsupported.
+     */
+    public static Optional<Charset> fromMeta(byte[] head, int length) {
+        int limit = Math.min(length, META_SNIFF_LIMIT);
+        // ISO-8859-1 maps bytes 1:1 to chars, which is enough to find an ASCII declaration.
+        String prefix = new String(head, 0, limit, StandardCharsets.ISO_8859_1);
+        Matcher matcher = META_CHARSET.matcher(prefix);
+        return matcher.find() ? lookup(matcher.group(1)) : Optional.empty();
+    }
+
+    private static Optional<Charset> lookup(String name) {
+        try {
+            return Optional.of(Charset.forName(name));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+}
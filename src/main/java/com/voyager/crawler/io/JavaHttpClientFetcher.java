@@ -1,55 +1,273 @@
 package com.voyager.crawler.io;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
+import java.nio.charset.Charset;
 import java.time.Duration;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
+import com.voyager.crawler.config.FetchLimits;
+import com.voyager.crawler.config.HttpClientConfig;
+import com.voyager.crawler.config.HttpProtocol;
 import com.voyager.crawler.util.ConsolePrinter;
+import com.voyager.crawler.util.UrlUtils;
 
 /**
- * Implementation of {@link ContentFetcher} using Java's {@link HttpClient}.
- * Adds exponential backoff and a small politeness delay between requests.
+ * Implementation of {@link ConditionalContentFetcher} using Java's {@link HttpClient}.
+ * Bodies are streamed into pooled {@link PageBody} chunks rather than materialized as strings.
+ * Retries retryable failures with exponential backoff. Per-host pacing is left to the
+ * caller's scheduler, which each retry also waits on through {@link FetchFeedback#awaitRetry}.
+ * <p>
+ * By default the client prefers HTTP/2: requests to an origin that supports it are multiplexed
+ * as streams on a single connection, while HTTP/1.1 origins get one keep-alive connection per
+ * request in flight. Either way the number of connections to a host is bounded by the
+ * scheduler's per-host concurrency.
+ * <p>
+ * The client only learns that an origin speaks HTTP/2 from its first response, and requests sent
+ * before then each open a connection of their own. In HTTP/2 mode the first request to an origin
+ * therefore goes alone, and the others wait for it and then share its connection. An origin not
+ * contacted for {@link #IDLE_ORIGIN_TIMEOUT} is forgotten: by then the client has usually closed
+ * its idle connection, so the next request goes alone again.
+ * <p>
+ * Requests accept gzip and deflate encoding, and encoded bodies are inflated while they are read
+ * into the pooled chunks. {@link #transferStats()} counts the bytes received and decoded, and
+ * {@link #responseStats()} the status codes, retries and errors per host.
+ * <p>
+ * Bodies are admitted through a {@link ByteBudget}: a fetch reserves the {@code Content-Length},
+ * or one chunk when it is unknown, and waits while the bodies held by other tasks leave no room.
+ * A body larger than the per-response maximum is abandoned, before reading when its
+ * {@code Content-Length} already says so.
+ * <p>
+ * Every attempt, retries included, is reported to a {@link FetchFeedback} with its time to the
+ * response headers and whether it signalled overload, so the scheduler can adapt its limits.
+ * Attempts and retry backoff sleeps are also emitted as flight recorder events.
  */
-public class JavaHttpClientFetcher implements ContentFetcher {
+public class JavaHttpClientFetcher implements ConditionalContentFetcher {
+    public static final String USER_AGENT = "VoyagerCrawler/1.0 (Student Project)";
+
     private static final int MAX_RETRIES = 3;
-    private static final int BASE_DELAY_MS = 50;
+    private static final int BASE_BACKOFF_MS = 500;
 
     private static final Duration TIMEOUT = Duration.ofSeconds(15);
+    static final Duration IDLE_ORIGIN_TIMEOUT = Duration.ofSeconds(60);
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final int INFLATE_BUFFER_SIZE = 8 * 1024;
 
     private final HttpClient client;
+    private final BufferPool bufferPool;
+    private final boolean keepGzipEncoding;
+    private final long maxResponseBytes;
+    private final ByteBudget byteBudget;
+    private final FetchFeedback feedback;
+    private final TransferStats transferStats = new TransferStats();
+    private final ResponseStats responseStats = new ResponseStats();
+    // Origin -> its first request and last use; only used in HTTP/2 mode.
+    private final ConcurrentMap<String, Origin> contactedOrigins;
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime());
 
     public JavaHttpClientFetcher() {
-        this.client = HttpClient.newBuilder()
+        this(BufferPool.shared());
+    }
+
+    /**
+     * Creates a fetcher that buffers bodies in the given pool.
+     *
+     * @param bufferPool pool supplying body chunks.
+     */
+    public JavaHttpClientFetcher(BufferPool bufferPool) {
+        this(bufferPool, HttpClientConfig.defaults());
+    }
+
+    /**
+     * Creates a fetcher with the given client settings.
+     *
+     * @param bufferPool   pool supplying body chunks.
+     * @param clientConfig protocol and executor of the HTTP client.
+     */
+    public JavaHttpClientFetcher(BufferPool bufferPool, HttpClientConfig clientConfig) {
+        this(bufferPool, clientConfig, FetchLimits.defaults());
+    }
+
+    /**
+     * Creates a fetcher with the given client settings and body memory limits.
+     *
+     * @param bufferPool   pool supplying body chunks.
+     * @param clientConfig protocol and executor of the HTTP client.
+     * @param limits       in-flight byte budget and per-response maximum.
+     */
+    public JavaHttpClientFetcher(BufferPool bufferPool, HttpClientConfig clientConfig, FetchLimits limits) {
+        this(bufferPool, clientConfig, limits, FetchFeedback.NONE);
+    }
+
+    /**
+     * Creates a fetcher that reports every attempt to the given feedback.
+     *
+     * @param bufferPool   pool supplying body chunks.
+     * @param clientConfig protocol and executor of the HTTP client.
+     * @param limits       in-flight byte budget and per-response maximum.
+     * @param feedback     receiver of each attempt's latency and overload signal.
+     */
+    public JavaHttpClientFetcher(BufferPool bufferPool, HttpClientConfig clientConfig, FetchLimits limits,
+            FetchFeedback feedback) {
+        this.bufferPool = Objects.requireNonNull(bufferPool, "bufferPool must not be null");
+        Objects.requireNonNull(clientConfig, "clientConfig must not be null");
+        Objects.requireNonNull(limits, "limits must not be null");
+        this.feedback = Objects.requireNonNull(feedback, "feedback must not be null");
+        this.maxResponseBytes = limits.maxResponseBytes();
+        this.byteBudget = new ByteBudget(limits.maxInFlightBytes());
+        this.keepGzipEncoding = clientConfig.keepGzipEncoding();
+        this.contactedOrigins = clientConfig.protocol() == HttpProtocol.HTTP_2 ? new ConcurrentHashMap<>() : null;
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(clientConfig.protocol() == HttpProtocol.HTTP_1_1
+                        ? HttpClient.Version.HTTP_1_1
+                        : HttpClient.Version.HTTP_2)
                 .followRedirects(HttpClient.Redirect.NORMAL)
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
+                .connectTimeout(Duration.ofSeconds(10));
+        if (clientConfig.executorThreads() > 0) {
+            builder.executor(clientExecutor(clientConfig.executorThreads()));
+        }
+        this.client = builder.build();
+    }
+
+    /**
+     * Creates the pool the client runs its response handling on. The threads are daemons, so
+     * the pool never keeps the JVM alive.
+     */
+    private static ExecutorService clientExecutor(int threads) {
+        ThreadFactory factory = Thread.ofPlatform().name("http-client-", 0).daemon(true).factory();
+        return Executors.newFixedThreadPool(threads, factory);
     }
 
     @Override
     public Optional<String> fetch(URI uri) {
+        return fetchBody(uri).map(body -> {
+            try (body) {
+                return body.decode();
+            }
+        });
+    }
+
+    @Override
+    public Optional<PageBody> fetchBody(URI uri) {
+        return fetchConditional(uri, PageValidators.NONE).map(ConditionalResponse::body);
+    }
+
+    @Override
+    public Optional<ConditionalResponse> fetchConditional(URI uri, PageValidators validators) {
         Objects.requireNonNull(uri, "URI must not be null");
+        Objects.requireNonNull(validators, "validators must not be null");
 
+        CompletableFuture<Void> firstContact = null;
+        if (contactedOrigins != null) {
+            evictIdleOrigins();
+            Origin opened = new Origin();
+            Origin earlier = contactedOrigins.putIfAbsent(originOf(uri), opened);
+            if (earlier == null) {
+                firstContact = opened.firstContact;
+            } else {
+                earlier.lastUseNanos = System.nanoTime();
+                if (!awaitFirstContact(earlier.firstContact, uri)) {
+                    return Optional.empty();
+                }
+            }
+        }
+        try {
+            return send(uri, validators);
+        } finally {
+            if (firstContact != null) {
+                firstContact.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Forgets origins whose first request has finished and that were not contacted for the
+     * timeout. Runs at most once per timeout, by the caller that finds it due.
+     */
+    private void evictIdleOrigins() {
+        long now = System.nanoTime();
+        long last = lastEvictionNanos.get();
+        if (now - last < IDLE_ORIGIN_TIMEOUT.toNanos() || !lastEvictionNanos.compareAndSet(last, now)) {
+            return;
+        }
+        contactedOrigins.values().removeIf(origin -> origin.firstContact.isDone()
+                && now - origin.lastUseNanos >= IDLE_ORIGIN_TIMEOUT.toNanos());
+    }
+
+    private static String originOf(URI uri) {
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    /**
+     * Waits for the first request to an origin to finish. Returns false if interrupted.
+     */
+    private static boolean awaitFirstContact(CompletableFuture<Void> firstContact, URI uri) {
+        try {
+            firstContact.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ConsolePrinter.warn("Fetch interrupted for URI: " + uri);
+            return false;
+        } catch (ExecutionException e) {
+            // Never completed exceptionally.
+            return true;
+        }
+    }
+
+    private Optional<ConditionalResponse> send(URI uri, PageValidators validators) {
         int attempt = 0;
         while (attempt < MAX_RETRIES) {
+            FetchEvent event = new FetchEvent();
             try {
-                applyPolitenessDelay(attempt, uri);
+                applyBackoff(uri, attempt);
+                event.begin();
+                event.attempt = attempt + 1;
 
-                HttpRequest request = HttpRequest.newBuilder()
+                HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                         .uri(uri)
                         .GET()
                         .timeout(TIMEOUT)
-                        .header("User-Agent", "VoyagerCrawler/1.0 (Student Project)")
-                        .build();
+                        .header("User-Agent", USER_AGENT)
+                        .header("Accept-Encoding", ACCEPT_ENCODING);
+                if (validators.etag() != null) {
+                    requestBuilder.header("If-None-Match", validators.etag());
+                }
+                if (validators.lastModified() != null) {
+                    requestBuilder.header("If-Modified-Since", validators.lastModified());
+                }
 
-                HttpResponse<InputStream> response = client.send(request,
-                        HttpResponse.BodyHandlers.ofInputStream());
+                long sentNs = System.nanoTime();
+                HttpResponse<InputStream> response;
+                try {
+                    response = client.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofInputStream());
+                } catch (IOException e) {
+                    feedback.onResponse(uri, System.nanoTime() - sentNs, true);
+                    throw e;
+                }
                 int status = response.statusCode();
+                event.status = status;
+                feedback.onResponse(uri, System.nanoTime() - sentNs, isRetryable(status));
+                responseStats.recordStatus(uri, status);
 
                 try (InputStream bodyStream = response.body()) {
                     if (status >= 200 && status < 300) {
@@ -59,46 +277,238 @@ public class JavaHttpClientFetcher implements ContentFetcher {
                             return Optional.empty();
                         }
 
-                        String body = new String(bodyStream.readAllBytes(), StandardCharsets.UTF_8);
-                        return Optional.of(body);
+                        String encoding = response.headers().firstValue("Content-Encoding")
+                                .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                                .orElse("identity");
+                        if (!isSupportedEncoding(encoding)) {
+                            ConsolePrinter.warn("Unsupported Content-Encoding '" + encoding + "' for URI: " + uri);
+                            return Optional.empty();
+                        }
+
+                        Charset declaredCharset = contentTypeOpt.flatMap(HtmlCharsets::fromContentType).orElse(null);
+                        long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+                        if (contentLength > maxResponseBytes) {
+                            ConsolePrinter.warn("Skipping URI: " + uri + ". Content-Length " + contentLength
+                                    + " exceeds " + maxResponseBytes + " bytes.");
+                            return Optional.empty();
+                        }
+                        ByteBudget.Reservation reservation = byteBudget.reserve(
+                                contentLength >= 0 ? contentLength : bufferPool.chunkSize(), maxResponseBytes);
+                        PageBody body = readBody(bodyStream, encoding, declaredCharset, reservation);
+                        event.bytes = body.length();
+                        PageValidators received = validatorsOf(response, PageValidators.NONE);
+                        return Optional.of(ConditionalResponse.modified(body, received));
+                    }
 
+                    if (status == 304 && !validators.isEmpty()) {
+                        return Optional.of(ConditionalResponse.notModified(validatorsOf(response, validators)));
                     }
 
                     if (isRetryable(status)) {
-                        ConsolePrinter.warn(
+                        ConsolePrinter.warn(UrlUtils.hostKey(uri) + " " + status,
                                 "Fetch failed for URI: " + uri + ". Status code: " + status + ". Retrying...");
                         attempt++;
+                        recordRetry(uri, attempt);
                         continue;
                     }
 
-                    ConsolePrinter.warn(
+                    ConsolePrinter.warn(UrlUtils.hostKey(uri) + " " + status,
                             "Fetch failed for URI: " + uri + ". Status code: " + status + ". Aborting task.");
                     return Optional.empty();
                 }
 
+            } catch (BodyTooLargeException e) {
+                ConsolePrinter.warn("Skipping URI: " + uri + ". " + e.getMessage() + ".");
+                return Optional.empty();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 ConsolePrinter.warn("Fetch interrupted for URI: " + uri);
                 return Optional.empty();
             } catch (Exception e) {
-                ConsolePrinter.error("Error fetching URI: " + uri + ". Error: " + e);
+                ConsolePrinter.error(UrlUtils.hostKey(uri) + " " + e.getClass().getSimpleName(),
+                        "Error fetching URI: " + uri + ". Error: " + e);
+                responseStats.recordError(uri);
                 attempt++;
+                recordRetry(uri, attempt);
+            } finally {
+                commit(event, uri);
             }
         }
 
-        ConsolePrinter.error("Dropping URL after " + MAX_RETRIES + " attempts: " + uri);
+        ConsolePrinter.error(UrlUtils.hostKey(uri) + " dropped",
+                "Dropping URL after " + MAX_RETRIES + " attempts: " + uri);
         return Optional.empty();
     }
 
-    private void applyPolitenessDelay(int attempt, URI uri) throws InterruptedException {
-        long delay = BASE_DELAY_MS + (long) (Math.random() * 100);
-        if (attempt > 0) {
-            delay = (long) Math.pow(2, attempt) * 500; // Exponential backoff
+    private void recordRetry(URI uri, int attempt) {
+        if (attempt < MAX_RETRIES) {
+            responseStats.recordRetry(uri);
+        }
+    }
+
+    /**
+     * Returns the counts of body bytes received and decoded so far.
+     */
+    public TransferStats transferStats() {
+        return transferStats;
+    }
+
+    /**
+     * Returns the status codes, retries and errors recorded so far, per host.
+     */
+    public ResponseStats responseStats() {
+        return responseStats;
+    }
+
+    private static boolean isSupportedEncoding(String encoding) {
+        return switch (encoding) {
+            case "identity", "", "gzip", "x-gzip", "deflate" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Returns the budget bodies are admitted through.
+     */
+    public ByteBudget byteBudget() {
+        return byteBudget;
+    }
+
+    /**
+     * Reads a body into pooled chunks, inflating it on the way when it is encoded. The body takes
+     * over the reservation; it is closed here if reading fails before that.
+     */
+    private PageBody readBody(InputStream wire, String encoding, Charset declaredCharset,
+            ByteBudget.Reservation reservation) throws IOException {
+        CountingInputStream received = new CountingInputStream(wire);
+        PageBody body;
+        try {
+            body = switch (encoding) {
+                case "gzip", "x-gzip" -> {
+                    if (keepGzipEncoding) {
+                        yield PageBody.readGzip(received, bufferPool, declaredCharset, reservation);
+                    }
+                    try (InputStream decoded = new GZIPInputStream(received, INFLATE_BUFFER_SIZE)) {
+                        yield PageBody.read(decoded, bufferPool, declaredCharset, reservation);
+                    }
+                }
+                case "deflate" -> readDeflate(received, declaredCharset, reservation);
+                default -> PageBody.read(received, bufferPool, declaredCharset, reservation);
+            };
+        } catch (IOException | RuntimeException e) {
+            reservation.close();
+            throw e;
         }
+        transferStats.record(received.count, body.length(), !encoding.equals("identity") && !encoding.isEmpty());
+        return body;
+    }
+
+    /**
+     * Reads a {@code deflate} body. The encoding is meant to be zlib-wrapped, but some servers
+     * send a raw deflate stream, so the wrapper is detected from the first two bytes.
+     */
+    private PageBody readDeflate(InputStream in, Charset declaredCharset, ByteBudget.Reservation reservation)
+            throws IOException {
+        PushbackInputStream peekable = new PushbackInputStream(in, 2);
+        byte[] head = peekable.readNBytes(2);
+        peekable.unread(head);
+        Inflater inflater = new Inflater(!isZlibHeader(head));
+        try (InputStream decoded = new InflaterInputStream(peekable, inflater, INFLATE_BUFFER_SIZE)) {
+            return PageBody.read(decoded, bufferPool, declaredCharset, reservation);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Checks for a zlib header: the deflate method and a check value making the pair a multiple
+     * of 31.
+     */
+    private static boolean isZlibHeader(byte[] head) {
+        return head.length == 2 && (head[0] & 0x0F) == 8 && (((head[0] & 0xFF) << 8) | (head[1] & 0xFF)) % 31 == 0;
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Reads the validators of a response. A {@code 304} may omit them, in which case the ones
+     * that were sent still describe the page.
+     */
+    private static PageValidators validatorsOf(HttpResponse<?> response, PageValidators fallback) {
+        String etag = response.headers().firstValue("ETag").orElse(fallback.etag());
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(fallback.lastModified());
+        return new PageValidators(etag, lastModified);
+    }
+
+    private void applyBackoff(URI uri, int attempt) throws InterruptedException {
+        if (attempt == 0) {
+            return;
+        }
+        long delay = (1L << attempt) * BASE_BACKOFF_MS; // Exponential backoff
+        BackoffEvent event = new BackoffEvent();
+        event.begin();
         Thread.sleep(delay);
+        feedback.awaitRetry(uri);
+        event.end();
+        if (event.shouldCommit()) {
+            event.uri = uri.toString();
+            event.attempt = attempt + 1;
+            event.commit();
+        }
+    }
+
+    /**
+     * Commits the flight recorder event of an attempt, unless it was interrupted before it began.
+     */
+    private static void commit(FetchEvent event, URI uri) {
+        if (event.attempt == 0) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.uri = uri.toString();
+            event.host = UrlUtils.hostKey(uri);
+            event.commit();
+        }
     }
 
     private boolean isRetryable(int status) {
         return status == 429 || status == 503 || status == 500 || status == 502;
     }
+
+    /**
+     * An origin contacted in HTTP/2 mode: completion of its first request, and when a request
+     * to it last started.
+     */
+    private static final class Origin {
+        private final CompletableFuture<Void> firstContact = new CompletableFuture<>();
+        private volatile long lastUseNanos = System.nanoTime();
+    }
 }
@@ -4,19 +4,87 @@ import com.voyager.crawler.util.*;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.nio.charset.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
 
 /**
- * Implementation of {@link ContentStorage} that saves pages to the local filesystem.
- * Directory structure: {@code <root>/<depth>/<safe_filename>}.
+ * Implementation of {@link ByteContentStorage} that saves pages to the local filesystem.
+ * Directory structure: {@code <root>/<depth>/<safe_filename>}, or with the sharded layout
+ * {@code <root>/<depth>/<xx>/<yy>/<safe_prefix>-<hash>.html}.
+ * <p>
+ * The flat layout cuts names at {@link UrlUtils#MAX_FILENAME_LENGTH} and maps every unsafe
+ * character to {@code _}, so distinct URLs can share a file, and a depth directory holds every
+ * page of its depth. The sharded layout spreads pages over 65536 directories per depth by the
+ * URL's {@link UrlFingerprint} and ends each name with 64 further bits of it, so names only
+ * collide if 80 bits of two 128-bit fingerprints do. It writes each saved URL and its path,
+ * relative to the root, to the {@link #MANIFEST_FILE}.
+ * <p>
+ * Byte bodies are written as received with a gathering channel write. Unchanged pages are
+ * hard-linked to the earlier crawl's file where the filesystem allows it, and copied otherwise;
+ * saving over a linked file replaces the link instead of writing through it. Directories are
+ * created once and then remembered. Every file written is emitted as a flight recorder
+ * event.
+ * <p>
+ * Files and directories written since the last {@link #flush()} are remembered, and the flush
+ * syncs them, so a batch of pages costs one pass over its files instead of a sync per save.
+ * Flushes run one at a time: a flush that finds the queues drained by another one still waits
+ * for that one's syncs, so it never returns before the pages saved ahead of it are durable.
  */
-public class LocalFileStorage implements ContentStorage {
+public class LocalFileStorage implements ByteContentStorage, AutoCloseable {
+    /**
+     * Tab-separated URL and relative path of every page saved with the sharded layout.
+     */
+    public static final String MANIFEST_FILE = ".index/files.tsv";
+
+    /**
+     * Longest URL-derived prefix of a sharded file name, which keeps names within the 255
+     * bytes most filesystems allow.
+     */
+    static final int SHARDED_PREFIX_LENGTH = 100;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     private final Path rootDir;
+    private final boolean sharded;
+    private final AsyncLineWriter manifest;
+    private final Set<Integer> createdDirs = ConcurrentHashMap.newKeySet();
+    private final Queue<Path> unsyncedFiles = new ConcurrentLinkedQueue<>();
+    private final Queue<Path> unsyncedDirs = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
 
     public LocalFileStorage(String rootPath) {
+        this(rootPath, false);
+    }
+
+    /**
+     * Creates a storage under a root directory.
+     *
+     * @param rootPath root directory.
+     * @param sharded  whether to use the sharded layout. An existing manifest is continued.
+     */
+    public LocalFileStorage(String rootPath, boolean sharded) {
         this.rootDir = Paths.get(rootPath);
+        this.sharded = sharded;
+        if (!sharded) {
+            this.manifest = null;
+        } else {
+            Path manifestFile = rootDir.resolve(MANIFEST_FILE);
+            this.manifest = Files.exists(manifestFile)
+                    ? AsyncLineWriter.append(manifestFile, AsyncLineWriter.completeLength(manifestFile),
+                            "file manifest")
+                    : AsyncLineWriter.create(manifestFile, "file manifest");
+        }
+    }
+
+    /**
+     * Returns whether an output directory was written with the sharded layout.
+     */
+    public static boolean isSharded(Path rootDir) {
+        return Files.isRegularFile(rootDir.resolve(MANIFEST_FILE));
     }
 
     @Override
@@ -24,20 +92,222 @@ public class LocalFileStorage implements ContentStorage {
         Objects.requireNonNull(uri, "uri must not be null");
         Objects.requireNonNull(content, "content must not be null");
 
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        try {
+            String relative = prepare(uri, depth);
+            Path filePath = rootDir.resolve(relative);
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            try {
+                Files.write(filePath, bytes, StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException e) {
+                Files.delete(filePath);
+                Files.write(filePath, bytes, StandardOpenOption.CREATE_NEW);
+            }
+            record(uri, relative);
+            commit(event, uri, filePath, bytes.length);
+
+        } catch (IOException e) {
+            ConsolePrinter.error("Failed to save content for " + uri + ": " + e);
+            throw new RuntimeException("Storage failure", e);
+        }
+    }
+
+    @Override
+    public void save(URI uri, PageBody body, int depth) {
+        Objects.requireNonNull(uri, "uri must not be null");
+        Objects.requireNonNull(body, "body must not be null");
+
+        SaveEvent event = new SaveEvent();
+        event.begin();
         try {
-            Path depthDir = rootDir.resolve(String.valueOf(depth));
-            if (!Files.exists(depthDir)) {
-                Files.createDirectories(depthDir);
+            String relative = prepare(uri, depth);
+            Path filePath = rootDir.resolve(relative);
+            try (FileChannel channel = openNew(filePath)) {
+                body.writeTo(channel);
             }
+            record(uri, relative);
+            commit(event, uri, filePath, body.length());
 
-            String filename = UrlUtils.toFilename(uri) + ".html";
-            Path filePath = depthDir.resolve(filename);
+        } catch (IOException e) {
+            ConsolePrinter.error("Failed to save content for " + uri + ": " + e);
+            throw new RuntimeException("Storage failure", e);
+        }
+    }
+
+    @Override
+    public void saveCopy(URI uri, Path source, int depth) {
+        Objects.requireNonNull(uri, "uri must not be null");
+        Objects.requireNonNull(source, "source must not be null");
 
-            Files.writeString(filePath, content, StandardCharsets.UTF_8);
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        try {
+            String relative = prepare(uri, depth);
+            Path filePath = rootDir.resolve(relative);
+            Files.deleteIfExists(filePath);
+            try {
+                Files.createLink(filePath, source);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(source, filePath);
+            }
+            record(uri, relative);
+            commit(event, uri, filePath, event.isEnabled() ? Files.size(filePath) : 0);
 
         } catch (IOException e) {
             ConsolePrinter.error("Failed to save content for " + uri + ": " + e);
             throw new RuntimeException("Storage failure", e);
         }
     }
+
+    private static void commit(SaveEvent event, URI uri, Path filePath, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.uri = uri.toString();
+            event.path = filePath.toString();
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns the path of a page relative to the storage root, in the flat layout.
+     */
+    static Path relativePath(URI uri, int depth) {
+        return relativePath(uri, depth, false);
+    }
+
+    /**
+     * Returns the path of a page relative to the storage root.
+     */
+    static Path relativePath(URI uri, int depth, boolean sharded) {
+        return Paths.get(relativeName(uri, depth, sharded));
+    }
+
+    /**
+     * Builds the relative path of a page, with {@code /} separators, in one builder.
+     */
+    static String relativeName(URI uri, int depth, boolean sharded) {
+        if (!sharded) {
+            return depth + "/" + UrlUtils.toFilename(uri) + ".html";
+        }
+        UrlFingerprint fingerprint = UrlFingerprint.of(uri);
+        StringBuilder name = new StringBuilder(SHARDED_PREFIX_LENGTH + 40);
+        name.append(depth).append('/');
+        appendHex(fingerprint.high() >>> 56, 2, name).append('/');
+        appendHex(fingerprint.high() >>> 48, 2, name).append('/');
+        UrlUtils.appendFilename(uri, SHARDED_PREFIX_LENGTH, name);
+        name.append('-');
+        appendHex(fingerprint.low(), 16, name);
+        return name.append(".html").toString();
+    }
+
+    private static StringBuilder appendHex(long value, int digits, StringBuilder out) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            out.append(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+        }
+        return out;
+    }
+
+    /**
+     * Creates a file for writing. An existing file may be a hard link into an earlier crawl, so
+     * it is unlinked rather than truncated.
+     */
+    private static FileChannel openNew(Path filePath) throws IOException {
+        try {
+            return FileChannel.open(filePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        } catch (FileAlreadyExistsException e) {
+            Files.delete(filePath);
+            return FileChannel.open(filePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+    }
+
+    /**
+     * Returns the relative path of a page, creating its directory the first time it is used.
+     */
+    private String prepare(URI uri, int depth) throws IOException {
+        String relative = relativeName(uri, depth, sharded);
+        int directory = depth;
+        if (sharded) {
+            // The shard digits follow "<depth>/" and are separated by one '/'.
+            int start = relative.indexOf('/') + 1;
+            directory = depth << 16 | Integer.parseInt(relative, start, start + 2, 16) << 8
+                    | Integer.parseInt(relative, start + 3, start + 5, 16);
+        }
+        if (!createdDirs.contains(directory)) {
+            Path dir = rootDir.resolve(relative).getParent();
+            Files.createDirectories(dir);
+            createdDirs.add(directory);
+            // New directory entries are only durable once their parents are synced.
+            for (Path parent = dir.getParent(); parent != null && parent.startsWith(rootDir);
+                    parent = parent.getParent()) {
+                unsyncedDirs.add(parent);
+            }
+        }
+        return relative;
+    }
+
+    private void record(URI uri, String relative) {
+        unsyncedFiles.add(rootDir.resolve(relative));
+        if (manifest != null) {
+            manifest.write(uri + "\t" + relative);
+        }
+    }
+
+    /**
+     * Syncs the files saved since the last flush and the directories holding them.
+     */
+    @Override
+    public void flush() {
+        flushLock.lock();
+        try {
+            Set<Path> dirs = new HashSet<>();
+            try {
+                Path file;
+                while ((file = unsyncedFiles.poll()) != null) {
+                    try {
+                        syncFile(file);
+                    } catch (NoSuchFileException e) {
+                        // Replaced by a later save of the same name, which is queued itself.
+                    }
+                    dirs.add(file.getParent());
+                }
+                Path dir;
+                while ((dir = unsyncedDirs.poll()) != null) {
+                    dirs.add(dir);
+                }
+            } catch (IOException e) {
+                ConsolePrinter.error("Failed to sync pages in " + rootDir + ": " + e);
+                throw new RuntimeException("Storage failure", e);
+            }
+            dirs.forEach(LocalFileStorage::syncDirectory);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    void syncFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.force(false);
+        }
+    }
+
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory for syncing; the files themselves are synced.
+        }
+    }
+
+    /**
+     * Syncs the pages not flushed yet and writes the queued manifest lines.
+     */
+    @Override
+    public void close() {
+        flush();
+        if (manifest != null) {
+            manifest.close();
+        }
+    }
 }
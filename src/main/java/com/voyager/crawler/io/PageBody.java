@@ -0,0 +1,441 @@
+package com.voyager.crawler.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+/**
+ * A fetched response body held in pooled chunks from a {@link BufferPool}.
+ * <p>
+ * The same bytes are written to storage and read by the parser, so a page is never copied into
+ * an intermediate {@code byte[]} or {@code String} on the byte-oriented path. Closing the body
+ * returns its chunks to the pool; it must not be used afterwards. A consumer that finishes
+ * independently, such as an asynchronous writer, takes its own handle with {@link #retain()}, and
+ * the chunks are returned once every handle is closed.
+ * <p>
+ * A body read with a {@link ByteBudget.Reservation} charges its chunks to the budget as they are
+ * filled, stops with a {@link BodyTooLargeException} once it passes the reservation's maximum, and
+ * closes the reservation together with the chunks.
+ * <p>
+ * A body read with {@link #readGzip} can also keep the gzip member it was sent as, so a storage
+ * that compresses pages anyway can write those bytes instead of compressing the page again.
+ */
+public final class PageBody implements AutoCloseable {
+    private final BufferPool pool;
+    private final AtomicInteger openHandles;
+    private List<byte[]> chunks = new ArrayList<>();
+    private int length;
+    private List<byte[]> gzipChunks = List.of();
+    private int gzipLength;
+    private long heldBytes;
+    private ByteBudget.Reservation reservation;
+    private Charset declaredCharset;
+    private boolean closed;
+
+    private PageBody(BufferPool pool) {
+        this.pool = pool;
+        this.openHandles = new AtomicInteger(1);
+    }
+
+    private PageBody(PageBody shared) {
+        this.pool = shared.pool;
+        this.openHandles = shared.openHandles;
+        this.chunks = shared.chunks;
+        this.length = shared.length;
+        this.gzipChunks = shared.gzipChunks;
+        this.gzipLength = shared.gzipLength;
+        this.heldBytes = shared.heldBytes;
+        this.reservation = shared.reservation;
+        this.declaredCharset = shared.declaredCharset;
+    }
+
+    /**
+     * Reads a stream to its end into pooled chunks.
+     *
+     * @param in              the body stream; not closed by this method.
+     * @param pool            pool supplying the chunks.
+     * @param declaredCharset charset from the {@code Content-Type} header, or null. When null, a
+     *                        {@code <meta>} declaration is looked up in the body.
+     * @return the buffered body.
+     * @throws IOException if reading fails.
+     */
+    public static PageBody read(InputStream in, BufferPool pool, Charset declaredCharset) throws IOException {
+        return read(in, pool, declaredCharset, null);
+    }
+
+    /**
+     * Reads a stream to its end into pooled chunks, charging them to a byte budget. The body
+     * takes over the reservation, including when reading fails.
+     *
+     * @param in              the body stream; not closed by this method.
+     * @param pool            pool supplying the chunks.
+     * @param declaredCharset charset from the {@code Content-Type} header, or null.
+     * @param reservation     reservation to charge, or null to read without limits.
+     * @return the buffered body.
+     * @throws BodyTooLargeException if the body exceeds the reservation's maximum size.
+     * @throws IOException           if reading fails.
+     */
+    public static PageBody read(InputStream in, BufferPool pool, Charset declaredCharset,
+            ByteBudget.Reservation reservation) throws IOException {
+        PageBody body = new PageBody(pool);
+        body.reservation = reservation;
+        try {
+            body.fill(in, reservation, 0);
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+        body.declaredCharset = declaredCharset != null
+                ? declaredCharset
+                : body.sniffMetaCharset();
+        return body;
+    }
+
+    /**
+     * Reads a gzip-encoded stream to its end, keeping both the encoded and the decoded bytes in
+     * pooled chunks. The encoded bytes are only kept if they form exactly one gzip member of the
+     * decoded bytes; otherwise just the decoded body is returned.
+     *
+     * @param in              the encoded body stream; not closed by this method.
+     * @param pool            pool supplying the chunks.
+     * @param declaredCharset charset from the {@code Content-Type} header, or null.
+     * @return the decoded body.
+     * @throws IOException if reading fails or the stream is not valid gzip.
+     */
+    public static PageBody readGzip(InputStream in, BufferPool pool, Charset declaredCharset) throws IOException {
+        return readGzip(in, pool, declaredCharset, null);
+    }
+
+    /**
+     * Like {@link #readGzip(InputStream, BufferPool, Charset)}, charging both the encoded and the
+     * decoded chunks to a byte budget. Each is limited to the reservation's maximum size. The
+     * body takes over the reservation, including when reading fails.
+     *
+     * @param in              the encoded body stream; not closed by this method.
+     * @param pool            pool supplying the chunks.
+     * @param declaredCharset charset from the {@code Content-Type} header, or null.
+     * @param reservation     reservation to charge, or null to read without limits.
+     * @return the decoded body.
+     * @throws BodyTooLargeException if a form of the body exceeds the reservation's maximum size.
+     * @throws IOException           if reading fails or the stream is not valid gzip.
+     */
+    public static PageBody readGzip(InputStream in, BufferPool pool, Charset declaredCharset,
+            ByteBudget.Reservation reservation) throws IOException {
+        PageBody encoded = new PageBody(pool);
+        PageBody body = new PageBody(pool);
+        body.reservation = reservation;
+        try {
+            encoded.fill(in, reservation, 0);
+            try (InputStream decoded = new GZIPInputStream(encoded.newInputStream())) {
+                body.fill(decoded, reservation, encoded.heldBytes);
+            }
+        } catch (IOException | RuntimeException e) {
+            encoded.close();
+            body.close();
+            throw e;
+        }
+        body.declaredCharset = declaredCharset != null
+                ? declaredCharset
+                : body.sniffMetaCharset();
+        if (!encoded.isSingleGzipMemberOf(body.length)) {
+            encoded.close();
+            return body;
+        }
+        body.gzipChunks = encoded.chunks;
+        body.gzipLength = encoded.length;
+        body.heldBytes += encoded.heldBytes;
+        // The chunks now belong to the body.
+        encoded.chunks = List.of();
+        encoded.closed = true;
+        return body;
+    }
+
+    /**
+     * Checks that the bytes end with the trailer of a member holding {@code decodedLength} bytes,
+     * which rules out trailing garbage and further members.
+     */
+    private boolean isSingleGzipMemberOf(int decodedLength) {
+        if (length < 18) {
+            return false;
+        }
+        int size = 0;
+        for (int i = 0; i < 4; i++) {
+            size |= (byteAt(length - 4 + i) & 0xFF) << (8 * i);
+        }
+        return size == decodedLength;
+    }
+
+    private byte byteAt(int position) {
+        int chunkSize = chunks.get(0).length;
+        return chunks.get(position / chunkSize)[position % chunkSize];
+    }
+
+    /**
+     * Wraps bytes that are already in memory. The array is not copied and never pooled.
+     *
+     * @param bytes   the body bytes.
+     * @param charset the charset of the bytes, or null if unknown.
+     * @return the body.
+     */
+    public static PageBody wrap(byte[] bytes, Charset charset) {
+        PageBody body = new PageBody((BufferPool) null);
+        body.chunks.add(bytes);
+        body.length = bytes.length;
+        body.declaredCharset = charset;
+        return body;
+    }
+
+    /**
+     * Reads the stream into chunks. {@code chargedElsewhere} is the number of bytes of the same
+     * reservation held by another body, added to this body's chunks when charging.
+     */
+    private void fill(InputStream in, ByteBudget.Reservation reservation, long chargedElsewhere) throws IOException {
+        long maxBytes = reservation != null ? reservation.maxBytes() : Long.MAX_VALUE;
+        byte[] chunk = null;
+        int used = 0;
+        while (true) {
+            if (chunk == null || used == chunk.length) {
+                chunk = pool.acquire();
+                chunks.add(chunk);
+                heldBytes += chunk.length;
+                if (reservation != null) {
+                    reservation.charge(chargedElsewhere + heldBytes);
+                }
+                used = 0;
+            }
+            int read = in.read(chunk, used, chunk.length - used);
+            if (read < 0) {
+                return;
+            }
+            used += read;
+            length += read;
+            if (length > maxBytes) {
+                throw new BodyTooLargeException(maxBytes);
+            }
+        }
+    }
+
+    private Charset sniffMetaCharset() {
+        int headLength = Math.min(length, HtmlCharsets.META_SNIFF_LIMIT);
+        byte[] first = chunks.isEmpty() ? new byte[0] : chunks.get(0);
+        if (first.length >= headLength) {
+            return HtmlCharsets.fromMeta(first, headLength).orElse(null);
+        }
+
+        byte[] head = new byte[headLength];
+        int copied = 0;
+        for (byte[] chunk : chunks) {
+            int size = Math.min(chunk.length, headLength - copied);
+            System.arraycopy(chunk, 0, head, copied, size);
+            copied += size;
+            if (copied == headLength) {
+                break;
+            }
+        }
+        return HtmlCharsets.fromMeta(head, headLength).orElse(null);
+    }
+
+    /**
+     * Returns the number of body bytes.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns whether the gzip member the body was sent as is kept.
+     */
+    public boolean hasGzipEncoding() {
+        return gzipLength > 0;
+    }
+
+    /**
+     * Returns the length of the kept gzip member, or 0 if there is none.
+     */
+    public int gzipEncodedLength() {
+        return gzipLength;
+    }
+
+    /**
+     * Returns read-only views over the kept gzip member, in order; empty if there is none.
+     */
+    public ByteBuffer[] gzipEncodedByteBuffers() {
+        ensureOpen();
+        return byteBuffers(gzipChunks, gzipLength);
+    }
+
+    /**
+     * Returns the charset declared by the response header or the document's {@code <meta>} tag.
+     */
+    public Optional<Charset> declaredCharset() {
+        return Optional.ofNullable(declaredCharset);
+    }
+
+    /**
+     * Returns the charset used to decode the body: the declared one, or UTF-8.
+     */
+    public Charset charset() {
+        return declaredCharset != null ? declaredCharset : StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Returns a stream over the body bytes. The stream reads the pooled chunks directly.
+     */
+    public InputStream newInputStream() {
+        ensureOpen();
+        return new ChunkInputStream();
+    }
+
+    /**
+     * Writes the whole body to a channel with a single gathering write where supported.
+     *
+     * @param channel the destination.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ensureOpen();
+        ByteBuffer[] buffers = asByteBuffers();
+        if (channel instanceof GatheringByteChannel gathering) {
+            long remaining = length;
+            while (remaining > 0) {
+                remaining -= gathering.write(buffers);
+            }
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns read-only views over the valid bytes of each chunk, in order.
+     */
+    public ByteBuffer[] asByteBuffers() {
+        ensureOpen();
+        return byteBuffers(chunks, length);
+    }
+
+    private static ByteBuffer[] byteBuffers(List<byte[]> chunks, int length) {
+        ByteBuffer[] buffers = new ByteBuffer[chunks.size()];
+        int remaining = length;
+        for (int i = 0; i < buffers.length; i++) {
+            byte[] chunk = chunks.get(i);
+            int size = Math.min(chunk.length, remaining);
+            buffers[i] = ByteBuffer.wrap(chunk, 0, size).asReadOnlyBuffer();
+            remaining -= size;
+        }
+        return buffers;
+    }
+
+    /**
+     * Decodes the body with {@link #charset()}. Used by consumers that only accept strings.
+     */
+    public String decode() {
+        ensureOpen();
+        if (chunks.size() == 1) {
+            return new String(chunks.get(0), 0, length, charset());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        int remaining = length;
+        for (byte[] chunk : chunks) {
+            int size = Math.min(chunk.length, remaining);
+            out.write(chunk, 0, size);
+            remaining -= size;
+        }
+        return out.toString(charset());
+    }
+
+    /**
+     * Returns another handle to the same bytes, to be closed by its new holder. Each handle may be
+     * used by a different thread.
+     *
+     * @return the new handle.
+     */
+    public PageBody retain() {
+        ensureOpen();
+        openHandles.incrementAndGet();
+        return new PageBody(this);
+    }
+
+    /**
+     * Closes this handle, returning the chunks to the pool if it was the last open one.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        List<byte[]> released = chunks;
+        List<byte[]> releasedGzip = gzipChunks;
+        chunks = List.of();
+        gzipChunks = List.of();
+        if (openHandles.decrementAndGet() == 0) {
+            if (pool != null) {
+                released.forEach(pool::release);
+                releasedGzip.forEach(pool::release);
+            }
+            if (reservation != null) {
+                reservation.close();
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("PageBody has been released");
+        }
+    }
+
+    private final class ChunkInputStream extends InputStream {
+        private int chunkIndex;
+        private int offset;
+        private int remaining = length;
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+            byte[] chunk = chunks.get(chunkIndex);
+            int value = chunk[offset++] & 0xFF;
+            remaining--;
+            if (offset == chunk.length) {
+                chunkIndex++;
+                offset = 0;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] target, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+            byte[] chunk = chunks.get(chunkIndex);
+            int count = Math.min(len, Math.min(chunk.length - offset, remaining));
+            System.arraycopy(chunk, offset, target, off, count);
+            offset += count;
+            remaining -= count;
+            if (offset == chunk.length) {
+                chunkIndex++;
+                offset = 0;
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return remaining;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.voyager.crawler.io;
+
+import com.voyager.crawler.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Sidecar index of the pages stored by a crawl, kept in {@code <output>/.index/pages.tsv}.
+ * <p>
+ * Each stored page adds one tab-separated line with its URL, depth, {@link PageValidators} and,
+ * if the page was parsed, the links extracted from it. An incremental crawl opens the index of
+ * a previous output directory: a page with validators there is revalidated with a conditional
+ * request, and on {@code 304 Not Modified} the previous file is reused and the cached links
+ * feed the frontier without downloading or parsing the page again.
+ * <p>
+ * Only the offset of each previous line is kept in memory; lines are read back on lookup.
+ */
+public class PageIndex implements AutoCloseable {
+    public static final String INDEX_FILE = ".index/pages.tsv";
+
+    static final String HEADER_TAG = "voyager-index";
+    static final int FORMAT_VERSION = 1;
+
+    private final AsyncLineWriter log;
+    private final Previous previous;
+    private final AtomicInteger reusedPages = new AtomicInteger();
+
+    /**
+     * A page stored by the previous crawl.
+     *
+     * @param file       the stored file.
+     * @param validators validators the server returned for it.
+     * @param links      links extracted from it, or null if it was not parsed.
+     */
+    public record CachedPage(Path file, PageValidators validators, List<URI> links) {
+    }
+
+    private PageIndex(AsyncLineWriter log, Previous previous) {
+        this.log = log;
+        this.previous = previous;
+    }
+
+    /**
+     * Starts the index of a new crawl.
+     *
+     * @param outputDir         output directory of the crawl.
+     * @param previousOutputDir output directory of the crawl to revalidate against, or null.
+     * @param linkLimit         link limit of the parser (0 = unlimited), recorded so that a later
+     *                          crawl only reuses link sets that are complete enough for it.
+     * @return the open index.
+     * @throws IllegalArgumentException if the previous directory has no readable index, or its
+     *                                  pages were stored in an archive.
+     */
+    public static PageIndex create(Path outputDir, Path previousOutputDir, int linkLimit) {
+        Previous previous = previousOutputDir != null ? Previous.load(previousOutputDir, linkLimit) : null;
+        AsyncLineWriter log = AsyncLineWriter.create(outputDir.resolve(INDEX_FILE), "page index");
+        log.write(HEADER_TAG + "\t" + FORMAT_VERSION + "\t" + linkLimit);
+        return new PageIndex(log, previous);
+    }
+
+    /**
+     * Reopens the index of an interrupted crawl to continue it, or starts one if it is missing.
+     *
+     * @param outputDir         output directory of the crawl.
+     * @param previousOutputDir output directory of the crawl to revalidate against, or null.
+     * @param linkLimit         link limit of the parser (0 = unlimited).
+     * @return the open index.
+     * @throws IllegalArgumentException if the previous directory has no readable index, or its
+     *                                  pages were stored in an archive.
+     */
+    public static PageIndex append(Path outputDir, Path previousOutputDir, int linkLimit) {
+        Path file = outputDir.resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return create(outputDir, previousOutputDir, linkLimit);
+        }
+        Previous previous = previousOutputDir != null ? Previous.load(previousOutputDir, linkLimit) : null;
+        AsyncLineWriter log = AsyncLineWriter.append(file, AsyncLineWriter.completeLength(file), "page index");
+        return new PageIndex(log, previous);
+    }
+
+    /**
+     * @return whether this crawl revalidates against a previous one.
+     */
+    public boolean isIncremental() {
+        return previous != null;
+    }
+
+    /**
+     * Looks up a page of the previous crawl that can stand in for a download.
+     *
+     * @param uri       the page URL.
+     * @param needLinks whether the caller needs the page's links.
+     * @return the cached page, or empty if there is none with validators, its file is gone, or
+     *         its links are needed but were not recorded in full.
+     */
+    public Optional<CachedPage> previous(URI uri, boolean needLinks) {
+        if (previous == null) {
+            return Optional.empty();
+        }
+        return previous.lookup(uri, needLinks);
+    }
+
+    /**
+     * Records a stored page.
+     *
+     * @param uri        the page URL.
+     * @param depth      the depth it was stored at.
+     * @param validators validators returned by the server.
+     * @param links      links extracted from the page, or null if it was not parsed.
+     */
+    public void record(URI uri, int depth, PageValidators validators, Collection<URI> links) {
+        StringBuilder line = new StringBuilder(96 + (links == null ? 0 : links.size() * 48))
+                .append(uri).append('\t').append(depth)
+                .append('\t').append(field(validators.etag()))
+                .append('\t').append(field(validators.lastModified()))
+                .append('\t').append(links == null ? '0' : '1');
+        if (links != null) {
+            for (URI link : links) {
+                line.append('\t').append(link);
+            }
+        }
+        log.write(line.toString());
+    }
+
+    /**
+     * Counts a page served from the previous crawl after a {@code 304}.
+     */
+    public void recordReused() {
+        reusedPages.incrementAndGet();
+    }
+
+    /**
+     * @return number of pages served from the previous crawl.
+     */
+    public int reusedPages() {
+        return reusedPages.get();
+    }
+
+    /**
+     * Writes all queued records and closes the previous crawl's index.
+     */
+    @Override
+    public void close() {
+        log.close();
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    private static String field(String value) {
+        return value == null || value.indexOf('\t') >= 0 || value.indexOf('\n') >= 0 ? "" : value;
+    }
+
+    private static String valueOf(String field) {
+        return field.isEmpty() ? null : field;
+    }
+
+    /**
+     * Read-only view of a previous crawl's index.
+     */
+    private static final class Previous {
+        private final Path outputDir;
+        private final boolean sharded;
+        private final FileChannel channel;
+        private final Map<UrlFingerprint, Long> offsets;
+        private final boolean linksComplete;
+
+        private Previous(Path outputDir, FileChannel channel, Map<UrlFingerprint, Long> offsets,
+                boolean linksComplete) {
+            this.outputDir = outputDir;
+            this.sharded = LocalFileStorage.isSharded(outputDir);
+            this.channel = channel;
+            this.offsets = offsets;
+            this.linksComplete = linksComplete;
+        }
+
+        static Previous load(Path outputDir, int linkLimit) {
+            Path file = outputDir.resolve(INDEX_FILE);
+            if (!Files.isRegularFile(file)) {
+                throw new IllegalArgumentException("No page index found at " + file);
+            }
+            // Lookups only find per-page files, so every page of an archive would miss.
+            if (Files.isDirectory(outputDir.resolve(ArchiveStorage.ARCHIVE_DIR))) {
+                throw new IllegalArgumentException("incremental only reuses pages of a crawl with 'files' or "
+                        + "'files-sharded' storage, and " + outputDir + " holds an archive.");
+            }
+            Map<UrlFingerprint, Long> offsets = new HashMap<>();
+            int previousLimit = -1;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+                // Only the URL field of each line is decoded.
+                ByteArrayOutputStream field = new ByteArrayOutputStream(256);
+                long offset = 0;
+                long lineStart = 0;
+                boolean inFirstField = true;
+                int b;
+                while ((b = in.read()) != -1) {
+                    offset++;
+                    if (b == '\n') {
+                        if (lineStart == 0) {
+                            previousLimit = parseHeader(field.toString(StandardCharsets.UTF_8), file);
+                        } else {
+                            offsets.put(UrlFingerprint.of(field.toString(StandardCharsets.UTF_8)), lineStart);
+                        }
+                        field.reset();
+                        lineStart = offset;
+                        inFirstField = true;
+                    } else if (b == '\t' && lineStart != 0) {
+                        inFirstField = false;
+                    } else if (inFirstField) {
+                        field.write(b);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read page index " + file, e);
+            }
+            if (previousLimit < 0) {
+                throw new IllegalArgumentException("Not a page index: " + file);
+            }
+
+            try {
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                // Link sets cut off at a limit are complete only for crawls that stop earlier.
+                boolean linksComplete = previousLimit == 0 || (linkLimit != 0 && linkLimit <= previousLimit);
+                return new Previous(outputDir, channel, offsets, linksComplete);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open page index " + file, e);
+            }
+        }
+
+        private static int parseHeader(String line, Path file) {
+            String[] header = line.split("\t");
+            try {
+                if (header.length == 3 && HEADER_TAG.equals(header[0])
+                        && Integer.parseInt(header[1]) == FORMAT_VERSION) {
+                    return Integer.parseInt(header[2]);
+                }
+            } catch (NumberFormatException e) {
+                // Reported below.
+            }
+            throw new IllegalArgumentException("Not a page index: " + file);
+        }
+
+        Optional<CachedPage> lookup(URI uri, boolean needLinks) {
+            if (needLinks && !linksComplete) {
+                return Optional.empty();
+            }
+            Long offset = offsets.get(UrlFingerprint.of(uri));
+            if (offset == null) {
+                return Optional.empty();
+            }
+            String[] fields;
+            try {
+                fields = readLineAt(offset).split("\t", -1);
+            } catch (IOException e) {
+                ConsolePrinter.warn("Failed to read page index entry for " + uri + ": " + e);
+                return Optional.empty();
+            }
+            if (fields.length < 5 || !fields[0].equals(uri.toString()) || (needLinks && fields[4].equals("0"))) {
+                return Optional.empty();
+            }
+            PageValidators validators = new PageValidators(valueOf(fields[2]), valueOf(fields[3]));
+            Path file = outputDir.resolve(LocalFileStorage.relativePath(uri, Integer.parseInt(fields[1]), sharded));
+            if (validators.isEmpty() || !Files.isRegularFile(file)) {
+                return Optional.empty();
+            }
+            List<URI> links = null;
+            if (fields[4].equals("1")) {
+                links = new ArrayList<>(fields.length - 5);
+                for (int i = 5; i < fields.length; i++) {
+                    links.add(URI.create(fields[i]));
+                }
+            }
+            return Optional.of(new CachedPage(file, validators, links));
+        }
+
+        private String readLineAt(long offset) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(4096);
+            long position = offset;
+            while (true) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    return line.toString(StandardCharsets.UTF_8);
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        line.write(buffer.array(), 0, i);
+                        return line.toString(StandardCharsets.UTF_8);
+                    }
+                }
+                line.write(buffer.array(), 0, read);
+                position += read;
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                ConsolePrinter.warn("Failed to close page index: " + e.getMessage());
+            }
+        }
+    }
+}
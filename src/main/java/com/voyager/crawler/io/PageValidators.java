@@ -0,0 +1,18 @@
+package com.voyager.crawler.io;
+
+/**
+ * HTTP cache validators of a fetched page, sent back on the next crawl to revalidate it.
+ *
+ * @param etag         the {@code ETag} response header, or null.
+ * @param lastModified the {@code Last-Modified} response header, or null.
+ */
+public record PageValidators(String etag, String lastModified) {
+    public static final PageValidators NONE = new PageValidators(null, null);
+
+    /**
+     * @return whether neither validator is present.
+     */
+    public boolean isEmpty() {
+        return etag == null && lastModified == null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.voyager.crawler.io;
+
+import com.voyager.crawler.util.*;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Per-host outcomes of the HTTP attempts a fetcher made: the status codes received, the retries
+ * scheduled, and the attempts that failed without a response. Safe for concurrent recording.
+ */
+public class ResponseStats {
+    private final ConcurrentMap<String, HostCounters> hosts = new ConcurrentHashMap<>();
+
+    void recordStatus(URI uri, int status) {
+        host(uri).statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+    }
+
+    void recordRetry(URI uri) {
+        host(uri).retries.increment();
+    }
+
+    void recordError(URI uri) {
+        host(uri).errors.increment();
+    }
+
+    private HostCounters host(URI uri) {
+        return hosts.computeIfAbsent(UrlUtils.hostKey(uri), key -> new HostCounters());
+    }
+
+    /**
+     * Returns the counts of every host, ordered by host key.
+     */
+    public SortedMap<String, HostSnapshot> snapshot() {
+        SortedMap<String, HostSnapshot> snapshot = new TreeMap<>();
+        hosts.forEach((host, counters) -> snapshot.put(host, counters.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * Returns the counts summed over all hosts.
+     */
+    public HostSnapshot total() {
+        SortedMap<Integer, Long> statuses = new TreeMap<>();
+        long retries = 0;
+        long errors = 0;
+        for (HostSnapshot host : snapshot().values()) {
+            host.statuses().forEach((status, count) -> statuses.merge(status, count, Long::sum));
+            retries += host.retries();
+            errors += host.errors();
+        }
+        return new HostSnapshot(statuses, retries, errors);
+    }
+
+    /**
+     * Point-in-time view of one host's counts.
+     *
+     * @param statuses number of responses per status code, ordered by code.
+     * @param retries  number of attempts retried after a retryable status or an error.
+     * @param errors   number of attempts that failed without a response.
+     */
+    public record HostSnapshot(SortedMap<Integer, Long> statuses, long retries, long errors) {
+        @Override
+        public String toString() {
+            StringJoiner codes = new StringJoiner(", ");
+            statuses.forEach((status, count) -> codes.add(status + " x" + count));
+            return (statuses.isEmpty() ? "no responses" : codes.toString()) + "; " + retries + " retries, "
+                    + errors + " errors";
+        }
+    }
+
+    private static final class HostCounters {
+        private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        HostSnapshot snapshot() {
+            SortedMap<Integer, Long> counts = new TreeMap<>();
+            statuses.forEach((status, count) -> counts.put(status, count.sum()));
+            return new HostSnapshot(counts, retries.sum(), errors.sum());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.voyager.crawler.io;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder event for one page written by a storage backend.
+ */
+@Name("com.voyager.crawler.Save")
+@Label("Save")
+@Category({"Voyager Crawler", "Pipeline"})
+@Description("One page written to storage")
+@StackTrace(false)
+final class SaveEvent extends Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Path")
+    @Description("File written, with the record offset for archive segments")
+    String path;
+
+    @Label("Size")
+    @Description("Bytes written")
+    @DataAmount
+    long bytes;
+}
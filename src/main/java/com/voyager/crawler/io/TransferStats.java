@@ -0,0 +1,51 @@
+package com.voyager.crawler.io;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Byte counts of the response bodies a fetcher read: bytes received on the wire and bytes after
+ * decoding the {@code Content-Encoding}. Safe for concurrent recording.
+ */
+public class TransferStats {
+    private final LongAdder bodies = new LongAdder();
+    private final LongAdder encodedBodies = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesDecoded = new LongAdder();
+
+    void record(long received, long decoded, boolean encoded) {
+        bodies.increment();
+        if (encoded) {
+            encodedBodies.increment();
+        }
+        bytesReceived.add(received);
+        bytesDecoded.add(decoded);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(bodies.sum(), encodedBodies.sum(), bytesReceived.sum(), bytesDecoded.sum());
+    }
+
+    /**
+     * Point-in-time view of the counts.
+     *
+     * @param bodies        number of bodies read.
+     * @param encodedBodies number of them sent with gzip or deflate encoding.
+     * @param bytesReceived body bytes received on the wire.
+     * @param bytesDecoded  body bytes after decoding.
+     */
+    public record Snapshot(long bodies, long encodedBodies, long bytesReceived, long bytesDecoded) {
+        /**
+         * Returns decoded bytes per received byte, or 1 if nothing was received.
+         */
+        public double compressionRatio() {
+            return bytesReceived == 0 ? 1 : bytesDecoded / (double) bytesReceived;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d bodies (%d compressed), %d bytes received, %d bytes decoded (%.2fx)",
+                    bodies, encodedBodies, bytesReceived, bytesDecoded, compressionRatio());
+        }
+    }
+}
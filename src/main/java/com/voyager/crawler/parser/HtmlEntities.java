@@ -0,0 +1,171 @@
+package com.voyager.crawler.parser;
+
+import java.util.*;
+
+/**
+ * Decodes character references in attribute values following the HTML5 rules used by Jsoup.
+ * Numeric references and the legacy named references (which may omit the semicolon) are
+ * supported, plus a few common named references; other names are left as written.
+ */
+final class HtmlEntities {
+    private static final String[] LATIN1_NAMES = {
+            "nbsp", "iexcl", "cent", "pound", "curren", "yen", "brvbar", "sect", "uml", "copy", "ordf", "laquo",
+            "not", "shy", "reg", "macr", "deg", "plusmn", "sup2", "sup3", "acute", "micro", "para", "middot",
+            "cedil", "sup1", "ordm", "raquo", "frac14", "frac12", "frac34", "iquest", "Agrave", "Aacute", "Acirc",
+            "Atilde", "Auml", "Aring", "AElig", "Ccedil", "Egrave", "Eacute", "Ecirc", "Euml", "Igrave", "Iacute",
+            "Icirc", "Iuml", "ETH", "Ntilde", "Ograve", "Oacute", "Ocirc", "Otilde", "Ouml", "times", "Oslash",
+            "Ugrave", "Uacute", "Ucirc", "Uuml", "Yacute", "THORN", "szlig", "agrave", "aacute", "acirc", "atilde",
+            "auml", "aring", "aelig", "ccedil", "egrave", "eacute", "ecirc", "euml", "igrave", "iacute", "icirc",
+            "iuml", "eth", "ntilde", "ograve", "oacute", "ocirc", "otilde", "ouml", "divide", "oslash", "ugrave",
+            "uacute", "ucirc", "uuml", "yacute", "thorn", "yuml"
+    };
+    private static final int[] WINDOWS_1252 = {
+            0x20AC, 0x81, 0x201A, 0x0192, 0x201E, 0x2026, 0x2020, 0x2021, 0x02C6, 0x2030, 0x0160, 0x2039, 0x0152,
+            0x8D, 0x017D, 0x8F, 0x90, 0x2018, 0x2019, 0x201C, 0x201D, 0x2022, 0x2013, 0x2014, 0x02DC, 0x2122,
+            0x0161, 0x203A, 0x0153, 0x9D, 0x017E, 0x0178
+    };
+
+    /**
+     * Named references that may appear without a trailing semicolon.
+     */
+    private static final Map<String, Integer> LEGACY = new HashMap<>();
+    /**
+     * Named references that are only recognized with a trailing semicolon.
+     */
+    private static final Map<String, Integer> SEMICOLON_ONLY = new HashMap<>();
+
+    static {
+        for (int i = 0; i < LATIN1_NAMES.length; i++) {
+            LEGACY.put(LATIN1_NAMES[i], 160 + i);
+        }
+        LEGACY.put("amp", (int) '&');
+        LEGACY.put("AMP", (int) '&');
+        LEGACY.put("lt", (int) '<');
+        LEGACY.put("LT", (int) '<');
+        LEGACY.put("gt", (int) '>');
+        LEGACY.put("GT", (int) '>');
+        LEGACY.put("quot", (int) '"');
+        LEGACY.put("QUOT", (int) '"');
+        LEGACY.put("COPY", 0xA9);
+        LEGACY.put("REG", 0xAE);
+
+        SEMICOLON_ONLY.put("apos", (int) '\'');
+        SEMICOLON_ONLY.put("sol", (int) '/');
+        SEMICOLON_ONLY.put("quest", (int) '?');
+        SEMICOLON_ONLY.put("equals", (int) '=');
+        SEMICOLON_ONLY.put("num", (int) '#');
+        SEMICOLON_ONLY.put("percnt", (int) '%');
+        SEMICOLON_ONLY.put("colon", (int) ':');
+        SEMICOLON_ONLY.put("period", (int) '.');
+        SEMICOLON_ONLY.put("hellip", 0x2026);
+        SEMICOLON_ONLY.put("ndash", 0x2013);
+        SEMICOLON_ONLY.put("mdash", 0x2014);
+        SEMICOLON_ONLY.put("lsquo", 0x2018);
+        SEMICOLON_ONLY.put("rsquo", 0x2019);
+        SEMICOLON_ONLY.put("ldquo", 0x201C);
+        SEMICOLON_ONLY.put("rdquo", 0x201D);
+        SEMICOLON_ONLY.put("trade", 0x2122);
+        SEMICOLON_ONLY.put("euro", 0x20AC);
+    }
+
+    private HtmlEntities() {
+    }
+
+    /**
+     * Decodes character references in an attribute value.
+     *
+     * @param value the raw attribute value.
+     * @return the decoded value.
+     */
+    static String decodeAttribute(String value) {
+        StringBuilder out = new StringBuilder(value.length());
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c != '&') {
+                out.append(c);
+                i++;
+                continue;
+            }
+            int consumed = value.startsWith("#", i + 1) ? decodeNumeric(value, i, out) : decodeNamed(value, i, out);
+            if (consumed == 0) {
+                out.append(c);
+                i++;
+            } else {
+                i += consumed;
+            }
+        }
+        return out.toString();
+    }
+
+    private static int decodeNumeric(String value, int start, StringBuilder out) {
+        int i = start + 2;
+        boolean hex = i < value.length() && (value.charAt(i) == 'x' || value.charAt(i) == 'X');
+        if (hex) {
+            i++;
+        }
+        int digitsStart = i;
+        long codePoint = 0;
+        while (i < value.length() && Character.digit(value.charAt(i), hex ? 16 : 10) >= 0) {
+            if (codePoint <= 0x10FFFF) {
+                codePoint = codePoint * (hex ? 16 : 10) + Character.digit(value.charAt(i), hex ? 16 : 10);
+            }
+            i++;
+        }
+        if (i == digitsStart) {
+            return 0;
+        }
+        if (i < value.length() && value.charAt(i) == ';') {
+            i++;
+        }
+
+        int cp = (int) codePoint;
+        if (codePoint > 0x10FFFF || codePoint == 0 || (cp >= 0xD800 && cp <= 0xDFFF)) {
+            cp = 0xFFFD;
+        } else if (cp >= 0x80 && cp <= 0x9F) {
+            cp = WINDOWS_1252[cp - 0x80];
+        }
+        out.appendCodePoint(cp);
+        return i - start;
+    }
+
+    private static int decodeNamed(String value, int start, StringBuilder out) {
+        int i = start + 1;
+        while (i < value.length() && isAsciiLetter(value.charAt(i))) {
+            i++;
+        }
+        while (i < value.length() && isAsciiDigit(value.charAt(i))) {
+            i++;
+        }
+        if (i == start + 1) {
+            return 0;
+        }
+        String name = value.substring(start + 1, i);
+        boolean semicolon = i < value.length() && value.charAt(i) == ';';
+
+        Integer codePoint = LEGACY.get(name);
+        if (codePoint == null && semicolon) {
+            codePoint = SEMICOLON_ONLY.get(name);
+        }
+        if (codePoint == null) {
+            return 0;
+        }
+        if (!semicolon && i < value.length()) {
+            // In attributes, "&copy=1" or "&not-x" are left alone (legacy query string rule).
+            char next = value.charAt(i);
+            if (isAsciiLetter(next) || isAsciiDigit(next) || next == '=' || next == '-' || next == '_') {
+                return 0;
+            }
+        }
+        out.appendCodePoint(codePoint);
+        return i - start + (semicolon ? 1 : 0);
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
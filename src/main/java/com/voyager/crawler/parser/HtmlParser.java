@@ -1,5 +1,7 @@
 package com.voyager.crawler.parser;
 
+import com.voyager.crawler.io.PageBody;
+
 import java.net.URI;
 import java.util.Set;
 
@@ -13,4 +15,17 @@ public interface HtmlParser {
      * @throws NullPointerException if baseUri or html is null (Precondition).
      */
     Set<URI> extractLinks(URI baseUri, String html);
+
+    /**
+     * Extracts all unique hyperlinks from a fetched body. The default implementation decodes the
+     * body with its charset and delegates to {@link #extractLinks(URI, String)}.
+     *
+     * @param baseUri the base URI to resolve relative links.
+     * @param body    the response body; not closed by this method.
+     * @return A set of valid, absolute URIs.
+     * @throws NullPointerException if baseUri or body is null (Precondition).
+     */
+    default Set<URI> extractLinks(URI baseUri, PageBody body) {
+        return extractLinks(baseUri, body.decode());
+    }
 }
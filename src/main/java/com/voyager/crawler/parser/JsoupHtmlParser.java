@@ -1,46 +1,88 @@
 package com.voyager.crawler.parser;
 
+import com.voyager.crawler.io.*;
 import com.voyager.crawler.util.*;
 import org.jsoup.*;
 import org.jsoup.nodes.*;
 import org.jsoup.select.*;
 
+import java.io.*;
 import java.net.*;
+import java.nio.charset.*;
 import java.util.*;
 
 /**
  * Implementation of {@link HtmlParser} using Jsoup.
- * Extracts absolute, normalized HTTP(S) links from HTML content.
+ * Extracts absolute HTTP(S) links from HTML content, canonicalized with a
+ * {@link UrlCanonicalizer}.
+ * Byte bodies are parsed straight from their buffers; when no charset was declared by the
+ * response, Jsoup detects it from the document's BOM or {@code <meta>} tag.
  */
 public class JsoupHtmlParser implements HtmlParser {
+    private final UrlCanonicalizer canonicalizer;
+
+    /**
+     * Creates a parser that canonicalizes links with {@link UrlCanonicalizer#DEFAULT}.
+     */
+    public JsoupHtmlParser() {
+        this(UrlCanonicalizer.DEFAULT);
+    }
+
+    /**
+     * Creates a parser.
+     *
+     * @param canonicalizer canonicalizer applied to every extracted link.
+     */
+    public JsoupHtmlParser(UrlCanonicalizer canonicalizer) {
+        this.canonicalizer = Objects.requireNonNull(canonicalizer, "canonicalizer must not be null");
+    }
+
     @Override
     public Set<URI> extractLinks(URI baseUri, String html) {
         Objects.requireNonNull(baseUri, "baseUri must not be null");
         Objects.requireNonNull(html, "html must not be null");
 
-        Set<URI> links = new LinkedHashSet<>();
         try {
-            Document doc = Jsoup.parse(html, baseUri.toString());
-            Elements anchors = doc.select("a[href]");
-
-            for (Element anchor : anchors) {
-                String absUrl = anchor.attr("abs:href");
-                if (absUrl.isEmpty())
-                    continue;
-
-                try {
-                    URI uri = URI.create(absUrl);
-                    URI normalized = UrlUtils.normalize(uri);
-                    if (normalized != null
-                            && (normalized.getScheme().equals("http") || normalized.getScheme().equals("https"))) {
-                        links.add(normalized);
-                    }
-                } catch (IllegalArgumentException e) {
-                    // Ignore malformed URLs
-                }
-            }
+            return collectLinks(Jsoup.parse(html, baseUri.toString()));
+        } catch (Exception e) {
+            ConsolePrinter.error("Failed to parse HTML from " + baseUri + ": " + e);
+            return new LinkedHashSet<>();
+        }
+    }
+
+    @Override
+    public Set<URI> extractLinks(URI baseUri, PageBody body) {
+        Objects.requireNonNull(baseUri, "baseUri must not be null");
+        Objects.requireNonNull(body, "body must not be null");
+
+        String charsetName = body.declaredCharset().map(Charset::name).orElse(null);
+        try (InputStream in = body.newInputStream()) {
+            return collectLinks(Jsoup.parse(in, charsetName, baseUri.toString()));
         } catch (Exception e) {
             ConsolePrinter.error("Failed to parse HTML from " + baseUri + ": " + e);
+            return new LinkedHashSet<>();
+        }
+    }
+
+    private Set<URI> collectLinks(Document doc) {
+        Set<URI> links = new LinkedHashSet<>();
+        Elements anchors = doc.select("a[href]");
+
+        for (Element anchor : anchors) {
+            String absUrl = anchor.attr("abs:href");
+            if (absUrl.isEmpty())
+                continue;
+
+            try {
+                URI uri = URI.create(absUrl);
+                URI normalized = canonicalizer.canonicalize(uri);
+                if (normalized != null
+                        && (normalized.getScheme().equals("http") || normalized.getScheme().equals("https"))) {
+                    links.add(normalized);
+                }
+            } catch (IllegalArgumentException e) {
+                // Ignore malformed URLs
+            }
         }
 
         return links;
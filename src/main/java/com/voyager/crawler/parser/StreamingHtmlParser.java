@@ -0,0 +1,542 @@
+package com.voyager.crawler.parser;
+
+import com.voyager.crawler.io.*;
+import com.voyager.crawler.util.*;
+
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Lightweight {@link HtmlParser} built on a single-pass tokenizer instead of a DOM.
+ * <p>
+ * Only {@code <a href>} and the first {@code <base href>} are inspected. Comments, markup
+ * declarations and the contents of raw-text elements such as {@code <script>} and
+ * {@code <textarea>} are skipped the way an HTML5 tokenizer skips them, so the extracted links
+ * match {@link JsoupHtmlParser} for regular documents. Links are resolved with {@link UrlUtils},
+ * canonicalized with a {@link UrlCanonicalizer}, and only HTTP(S) links are kept.
+ * <p>
+ * Byte bodies in ASCII-compatible encodings are tokenized straight from their buffers; only
+ * {@code href} values are decoded.
+ * <p>
+ * Being single-pass, it differs from a tree builder on some malformed markup: a {@code <base>}
+ * tag that appears after anchors only affects the anchors that follow it, an unclosed
+ * {@code <title>} or {@code <textarea>} swallows the rest of the document, and foreign content
+ * such as {@code <svg>} is not treated specially.
+ */
+public class StreamingHtmlParser implements HtmlParser {
+    private static final Map<Charset, Boolean> ASCII_COMPATIBLE = new ConcurrentHashMap<>();
+    private static final String ASCII_PROBE = "<>=/!-'\" \t\n\r&#;?abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private final int linkLimit;
+    private final UrlCanonicalizer canonicalizer;
+
+    /**
+     * Creates a parser that extracts every link of a page.
+     */
+    public StreamingHtmlParser() {
+        this(0);
+    }
+
+    /**
+     * Creates a parser that stops reading a page once {@code linkLimit} distinct links have been
+     * found. The result is then the first {@code linkLimit} links in document order.
+     *
+     * @param linkLimit number of links after which parsing stops, or 0 for no limit.
+     */
+    public StreamingHtmlParser(int linkLimit) {
+        this(linkLimit, UrlCanonicalizer.DEFAULT);
+    }
+
+    /**
+     * Creates a parser that stops after {@code linkLimit} distinct links, as canonicalized by
+     * {@code canonicalizer}.
+     *
+     * @param linkLimit     number of links after which parsing stops, or 0 for no limit.
+     * @param canonicalizer canonicalizer applied to every extracted link.
+     */
+    public StreamingHtmlParser(int linkLimit, UrlCanonicalizer canonicalizer) {
+        if (linkLimit < 0) {
+            throw new IllegalArgumentException("linkLimit must not be negative");
+        }
+        this.linkLimit = linkLimit;
+        this.canonicalizer = Objects.requireNonNull(canonicalizer, "canonicalizer must not be null");
+    }
+
+    @Override
+    public Set<URI> extractLinks(URI baseUri, String html) {
+        Objects.requireNonNull(baseUri, "baseUri must not be null");
+        Objects.requireNonNull(html, "html must not be null");
+
+        Tokenizer tokenizer = new Tokenizer(baseUri, linkLimit, canonicalizer, null);
+        for (int i = 0; i < html.length() && !tokenizer.done; i++) {
+            tokenizer.accept(html.charAt(i));
+        }
+        return tokenizer.links;
+    }
+
+    @Override
+    public Set<URI> extractLinks(URI baseUri, PageBody body) {
+        Objects.requireNonNull(baseUri, "baseUri must not be null");
+        Objects.requireNonNull(body, "body must not be null");
+
+        Charset charset = body.charset();
+        if (!isAsciiCompatible(charset)) {
+            return extractLinks(baseUri, body.decode());
+        }
+
+        Tokenizer tokenizer = new Tokenizer(baseUri, linkLimit, canonicalizer, charset);
+        boolean first = true;
+        for (ByteBuffer buffer : body.asByteBuffers()) {
+            if (first && StandardCharsets.UTF_8.equals(charset)) {
+                skipUtf8Bom(buffer);
+            }
+            first = false;
+            while (buffer.hasRemaining() && !tokenizer.done) {
+                tokenizer.accept((char) (buffer.get() & 0xFF));
+            }
+        }
+        return tokenizer.links;
+    }
+
+    private static void skipUtf8Bom(ByteBuffer buffer) {
+        if (buffer.remaining() >= 3 && (buffer.get(buffer.position()) & 0xFF) == 0xEF
+                && (buffer.get(buffer.position() + 1) & 0xFF) == 0xBB
+                && (buffer.get(buffer.position() + 2) & 0xFF) == 0xBF) {
+            buffer.position(buffer.position() + 3);
+        }
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return ASCII_COMPATIBLE.computeIfAbsent(charset, cs -> {
+            if (!cs.canEncode()) {
+                return false;
+            }
+            byte[] encoded = ASCII_PROBE.getBytes(cs);
+            return Arrays.equals(encoded, ASCII_PROBE.getBytes(StandardCharsets.US_ASCII));
+        });
+    }
+
+    private enum State {
+        DATA, TAG_OPEN, END_TAG_OPEN, TAG_NAME, BEFORE_ATTR_NAME, ATTR_NAME, AFTER_ATTR_NAME, BEFORE_ATTR_VALUE,
+        ATTR_VALUE_DOUBLE, ATTR_VALUE_SINGLE, ATTR_VALUE_UNQUOTED, AFTER_ATTR_VALUE, SELF_CLOSING,
+        MARKUP_DECLARATION, MARKUP_DECLARATION_DASH, COMMENT_START, COMMENT_START_DASH, COMMENT, COMMENT_END_DASH,
+        COMMENT_END, COMMENT_END_BANG, BOGUS_COMMENT, RAW_TEXT, RAW_TEXT_LESS_THAN, RAW_TEXT_END_TAG, PLAIN_TEXT
+    }
+
+    /**
+     * Subset of the HTML5 tokenizer state machine. Input is fed one code unit at a time: chars
+     * for string input, or bytes widened to chars for ASCII-compatible byte input, in which case
+     * {@code valueCharset} is used to decode collected {@code href} values.
+     */
+    private static final class Tokenizer {
+        private static final int MAX_NAME = 16;
+
+        private final URI documentUri;
+        private final int limit;
+        private final UrlCanonicalizer canonicalizer;
+        private final Charset valueCharset;
+        private final Set<URI> links = new LinkedHashSet<>();
+        private URI base;
+        private boolean baseFromDocument;
+        private boolean done;
+
+        private State state = State.DATA;
+        private final char[] tagName = new char[MAX_NAME];
+        private int tagNameLength;
+        private boolean endTag;
+        private final char[] attrName = new char[MAX_NAME];
+        private int attrNameLength;
+        private final StringBuilder value = new StringBuilder();
+        private boolean collectingHref;
+        private String href;
+        private String rawTextEnd;
+        private int rawTextMatched;
+
+        Tokenizer(URI documentUri, int limit, UrlCanonicalizer canonicalizer, Charset valueCharset) {
+            this.documentUri = documentUri;
+            this.base = documentUri;
+            this.limit = limit;
+            this.canonicalizer = canonicalizer;
+            this.valueCharset = valueCharset;
+        }
+
+        void accept(char c) {
+            switch (state) {
+                case DATA -> {
+                    if (c == '<') {
+                        state = State.TAG_OPEN;
+                    }
+                }
+                case TAG_OPEN -> {
+                    if (isAsciiLetter(c)) {
+                        startTag(false, c);
+                    } else if (c == '/') {
+                        state = State.END_TAG_OPEN;
+                    } else if (c == '!') {
+                        state = State.MARKUP_DECLARATION;
+                    } else if (c == '?') {
+                        state = State.BOGUS_COMMENT;
+                    } else {
+                        state = State.DATA;
+                        accept(c);
+                    }
+                }
+                case END_TAG_OPEN -> {
+                    if (isAsciiLetter(c)) {
+                        startTag(true, c);
+                    } else if (c == '>') {
+                        state = State.DATA;
+                    } else {
+                        state = State.BOGUS_COMMENT;
+                    }
+                }
+                case TAG_NAME -> {
+                    if (isWhitespace(c)) {
+                        state = State.BEFORE_ATTR_NAME;
+                    } else if (c == '/') {
+                        state = State.SELF_CLOSING;
+                    } else if (c == '>' || c == '<') {
+                        // Like Jsoup, a '<' inside a tag name closes the tag and starts a new one.
+                        emitTag();
+                        if (c == '<') {
+                            accept(c);
+                        }
+                    } else if (tagNameLength < MAX_NAME) {
+                        tagName[tagNameLength++] = toLower(c);
+                    } else {
+                        tagNameLength = MAX_NAME + 1;
+                    }
+                }
+                case BEFORE_ATTR_NAME -> {
+                    if (c == '/') {
+                        state = State.SELF_CLOSING;
+                    } else if (c == '>' || c == '<') {
+                        emitTag();
+                        if (c == '<') {
+                            accept(c);
+                        }
+                    } else if (!isWhitespace(c)) {
+                        startAttribute(c);
+                    }
+                }
+                case ATTR_NAME -> {
+                    if (isWhitespace(c)) {
+                        state = State.AFTER_ATTR_NAME;
+                    } else if (c == '/') {
+                        finishAttribute(false);
+                        state = State.SELF_CLOSING;
+                    } else if (c == '=') {
+                        beginValue();
+                        state = State.BEFORE_ATTR_VALUE;
+                    } else if (c == '>') {
+                        finishAttribute(false);
+                        emitTag();
+                    } else if (attrNameLength < MAX_NAME) {
+                        attrName[attrNameLength++] = toLower(c);
+                    } else {
+                        attrNameLength = MAX_NAME + 1;
+                    }
+                }
+                case AFTER_ATTR_NAME -> {
+                    if (c == '/') {
+                        finishAttribute(false);
+                        state = State.SELF_CLOSING;
+                    } else if (c == '=') {
+                        beginValue();
+                        state = State.BEFORE_ATTR_VALUE;
+                    } else if (c == '>') {
+                        finishAttribute(false);
+                        emitTag();
+                    } else if (!isWhitespace(c)) {
+                        finishAttribute(false);
+                        startAttribute(c);
+                    }
+                }
+                case BEFORE_ATTR_VALUE -> {
+                    if (c == '"') {
+                        state = State.ATTR_VALUE_DOUBLE;
+                    } else if (c == '\'') {
+                        state = State.ATTR_VALUE_SINGLE;
+                    } else if (c == '>') {
+                        finishAttribute(true);
+                        emitTag();
+                    } else if (!isWhitespace(c)) {
+                        state = State.ATTR_VALUE_UNQUOTED;
+                        accept(c);
+                    }
+                }
+                case ATTR_VALUE_DOUBLE -> {
+                    if (c == '"') {
+                        finishAttribute(true);
+                        state = State.AFTER_ATTR_VALUE;
+                    } else {
+                        appendValue(c);
+                    }
+                }
+                case ATTR_VALUE_SINGLE -> {
+                    if (c == '\'') {
+                        finishAttribute(true);
+                        state = State.AFTER_ATTR_VALUE;
+                    } else {
+                        appendValue(c);
+                    }
+                }
+                case ATTR_VALUE_UNQUOTED -> {
+                    if (isWhitespace(c)) {
+                        finishAttribute(true);
+                        state = State.BEFORE_ATTR_NAME;
+                    } else if (c == '>') {
+                        finishAttribute(true);
+                        emitTag();
+                    } else {
+                        appendValue(c);
+                    }
+                }
+                case AFTER_ATTR_VALUE -> {
+                    if (isWhitespace(c)) {
+                        state = State.BEFORE_ATTR_NAME;
+                    } else if (c == '/') {
+                        state = State.SELF_CLOSING;
+                    } else if (c == '>') {
+                        emitTag();
+                    } else {
+                        state = State.BEFORE_ATTR_NAME;
+                        accept(c);
+                    }
+                }
+                case SELF_CLOSING -> {
+                    if (c == '>') {
+                        emitTag();
+                    } else {
+                        state = State.BEFORE_ATTR_NAME;
+                        accept(c);
+                    }
+                }
+                case MARKUP_DECLARATION -> {
+                    if (c == '-') {
+                        state = State.MARKUP_DECLARATION_DASH;
+                    } else {
+                        state = State.BOGUS_COMMENT;
+                        accept(c);
+                    }
+                }
+                case MARKUP_DECLARATION_DASH -> {
+                    if (c == '-') {
+                        state = State.COMMENT_START;
+                    } else {
+                        state = State.BOGUS_COMMENT;
+                        accept(c);
+                    }
+                }
+                case COMMENT_START -> {
+                    // "<!-->" is an empty comment.
+                    state = c == '-' ? State.COMMENT_START_DASH : c == '>' ? State.DATA : State.COMMENT;
+                }
+                case COMMENT_START_DASH -> {
+                    // "<!--->" is an empty comment.
+                    state = c == '-' ? State.COMMENT_END : c == '>' ? State.DATA : State.COMMENT;
+                }
+                case COMMENT -> {
+                    if (c == '-') {
+                        state = State.COMMENT_END_DASH;
+                    }
+                }
+                case COMMENT_END_DASH -> state = c == '-' ? State.COMMENT_END : State.COMMENT;
+                case COMMENT_END -> {
+                    if (c == '>') {
+                        state = State.DATA;
+                    } else if (c == '!') {
+                        state = State.COMMENT_END_BANG;
+                    } else if (c != '-') {
+                        state = State.COMMENT;
+                    }
+                }
+                case COMMENT_END_BANG -> {
+                    state = c == '>' ? State.DATA : c == '-' ? State.COMMENT_END_DASH : State.COMMENT;
+                }
+                case BOGUS_COMMENT -> {
+                    if (c == '>') {
+                        state = State.DATA;
+                    }
+                }
+                case RAW_TEXT -> {
+                    if (c == '<') {
+                        state = State.RAW_TEXT_LESS_THAN;
+                    }
+                }
+                case RAW_TEXT_LESS_THAN -> {
+                    if (c == '/') {
+                        rawTextMatched = 0;
+                        state = State.RAW_TEXT_END_TAG;
+                    } else {
+                        state = State.RAW_TEXT;
+                        accept(c);
+                    }
+                }
+                case RAW_TEXT_END_TAG -> {
+                    if (rawTextMatched < rawTextEnd.length()) {
+                        if (toLower(c) == rawTextEnd.charAt(rawTextMatched)) {
+                            rawTextMatched++;
+                        } else {
+                            state = State.RAW_TEXT;
+                            accept(c);
+                        }
+                    } else if (isWhitespace(c) || c == '/' || c == '>') {
+                        endTag = true;
+                        tagNameLength = 0;
+                        state = State.BEFORE_ATTR_NAME;
+                        accept(c);
+                    } else {
+                        state = State.RAW_TEXT;
+                        accept(c);
+                    }
+                }
+                case PLAIN_TEXT -> done = true;
+            }
+        }
+
+        private void startTag(boolean isEnd, char first) {
+            endTag = isEnd;
+            tagNameLength = 0;
+            tagName[tagNameLength++] = toLower(first);
+            href = null;
+            collectingHref = false;
+            state = State.TAG_NAME;
+        }
+
+        private void startAttribute(char first) {
+            attrNameLength = 0;
+            attrName[attrNameLength++] = toLower(first);
+            state = State.ATTR_NAME;
+        }
+
+        private void beginValue() {
+            value.setLength(0);
+            collectingHref = !endTag && href == null && isHrefAttribute() && isLinkTag();
+        }
+
+        private void appendValue(char c) {
+            if (collectingHref) {
+                value.append(c);
+            }
+        }
+
+        private void finishAttribute(boolean hasValue) {
+            if (endTag || href != null || !isHrefAttribute() || !isLinkTag()) {
+                collectingHref = false;
+                return;
+            }
+            // The first href wins; an attribute without a value is an empty href.
+            href = hasValue && collectingHref ? decodeValue() : "";
+            collectingHref = false;
+        }
+
+        private void emitTag() {
+            state = State.DATA;
+            if (endTag) {
+                return;
+            }
+            if (nameIs(tagName, tagNameLength, "a")) {
+                if (href != null) {
+                    addLink(href);
+                }
+            } else if (nameIs(tagName, tagNameLength, "base")) {
+                if (href != null && !baseFromDocument) {
+                    URI resolved = UrlUtils.resolve(documentUri, href);
+                    if (resolved != null) {
+                        base = resolved;
+                        baseFromDocument = true;
+                    }
+                }
+            } else {
+                enterRawTextIfNeeded();
+            }
+            href = null;
+        }
+
+        private void enterRawTextIfNeeded() {
+            String name = tagNameLength <= MAX_NAME ? new String(tagName, 0, tagNameLength) : "";
+            switch (name) {
+                case "script", "style", "textarea", "title", "xmp", "iframe", "noembed", "noframes" -> {
+                    rawTextEnd = name;
+                    state = State.RAW_TEXT;
+                }
+                case "plaintext" -> {
+                    state = State.PLAIN_TEXT;
+                    done = true;
+                }
+                default -> {
+                }
+            }
+        }
+
+        private void addLink(String rawHref) {
+            URI resolved = UrlUtils.resolve(base, rawHref);
+            if (resolved == null) {
+                return;
+            }
+            URI normalized = canonicalizer.canonicalize(resolved);
+            if (normalized == null || normalized.getScheme() == null) {
+                return;
+            }
+            if (normalized.getScheme().equals("http") || normalized.getScheme().equals("https")) {
+                links.add(normalized);
+                if (limit > 0 && links.size() >= limit) {
+                    done = true;
+                }
+            }
+        }
+
+        private boolean isHrefAttribute() {
+            return nameIs(attrName, attrNameLength, "href");
+        }
+
+        private boolean isLinkTag() {
+            return nameIs(tagName, tagNameLength, "a") || nameIs(tagName, tagNameLength, "base");
+        }
+
+        private String decodeValue() {
+            String raw = value.toString();
+            if (valueCharset != null && !StandardCharsets.ISO_8859_1.equals(valueCharset) && hasNonAscii(raw)) {
+                raw = new String(raw.getBytes(StandardCharsets.ISO_8859_1), valueCharset);
+            }
+            return raw.indexOf('&') < 0 ? raw : HtmlEntities.decodeAttribute(raw);
+        }
+
+        private static boolean hasNonAscii(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) > 0x7F) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean nameIs(char[] name, int length, String expected) {
+            if (length != expected.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (name[i] != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isAsciiLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+        }
+
+        private static char toLower(char c) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.voyager.crawler.util;
+
+import java.io.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Bounded, lock-free queue of console lines, written by one background thread.
+ * <p>
+ * Any number of threads offer lines; each claims a slot of a power-of-two ring with one CAS and
+ * publishes it through the slot's sequence number, so producers never take the lock of
+ * {@link System#err} or wait for the terminal. When the ring is full the line is dropped and
+ * counted, and the count is reported once space frees up. The writer joins consecutive lines
+ * for the same stream into one write, and parks while the ring is empty.
+ */
+final class AsyncConsole {
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private static final long IDLE_PARK_NANOS = 10_000_000;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<Line> lines;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writerThread;
+    private volatile boolean parked;
+    private volatile boolean stopping;
+    private long head;
+
+    private record Line(boolean error, String text) {
+    }
+
+    AsyncConsole(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        this.lines = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.writerThread = Thread.ofPlatform().name("console-writer").daemon(true).unstarted(this::runWriter);
+        writerThread.start();
+    }
+
+    /**
+     * Queues a line for standard error or standard output. Never blocks.
+     *
+     * @return false if the ring was full and the line was dropped.
+     */
+    boolean offer(boolean error, String text) {
+        Line line = new Line(error, text);
+        while (true) {
+            long slot = tail.get();
+            int index = (int) slot & mask;
+            long sequence = sequences.get(index);
+            if (sequence == slot) {
+                if (tail.compareAndSet(slot, slot + 1)) {
+                    lines.set(index, line);
+                    sequences.set(index, slot + 1);
+                    if (parked) {
+                        LockSupport.unpark(writerThread);
+                    }
+                    return true;
+                }
+            } else if (sequence < slot) {
+                dropped.increment();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Waits until every line queued before the call has been written.
+     */
+    void flush() {
+        long target = tail.get();
+        while (written.get() < target && writerThread.isAlive()) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    /**
+     * Writes the queued lines and stops the writer thread.
+     */
+    void close() {
+        flush();
+        stopping = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        StringBuilder batch = new StringBuilder(8192);
+        boolean batchError = false;
+        while (true) {
+            int index = (int) head & mask;
+            if (sequences.get(index) == head + 1) {
+                Line line = lines.getAndSet(index, null);
+                if (batch.length() > 0 && line.error() != batchError) {
+                    write(batch, batchError);
+                }
+                sequences.set(index, head + mask + 1);
+                head++;
+                batchError = line.error();
+                batch.append(line.text()).append(System.lineSeparator());
+                if (batch.length() >= 8192) {
+                    write(batch, batchError);
+                }
+                continue;
+            }
+            if (batch.length() > 0) {
+                write(batch, batchError);
+            }
+            long lost = dropped.sumThenReset();
+            if (lost > 0) {
+                batch.append("[WARN] ").append(lost).append(" log lines dropped, the console could not keep up")
+                        .append(System.lineSeparator());
+                write(batch, true);
+            }
+            if (stopping && tail.get() == head) {
+                return;
+            }
+            parked = true;
+            if (tail.get() == head) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            parked = false;
+        }
+    }
+
+    private void write(StringBuilder batch, boolean error) {
+        PrintStream stream = error ? System.err : System.out;
+        stream.print(batch);
+        stream.flush();
+        written.set(head);
+        batch.setLength(0);
+    }
+}
@@ -0,0 +1,96 @@
+package com.voyager.crawler.util;
+
+import java.net.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Probabilistic {@link UrlDedupService} backed by a Bloom filter.
+ * <p>
+ * Memory is fixed up front from the expected number of URLs and the accepted false-positive
+ * rate, e.g. about 1.8 MB per million URLs at 0.1%. A false positive makes the crawler treat a
+ * new URL as already visited and skip it; a visited URL is never reported as new. Beyond the
+ * expected number of URLs the false-positive rate rises.
+ * <p>
+ * Bits are set with atomic updates. Visits of the same URL are serialized by a lock stripe
+ * chosen from its fingerprint, so two threads can never both see it as new.
+ * Assumes input URIs are already normalized by {@link UrlUtils}.
+ */
+public class BloomFilterDedupService implements UrlDedupService {
+    private static final int LOCK_STRIPES = 256;
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    /**
+     * Creates a filter sized for the given capacity and false-positive rate.
+     *
+     * @param expectedUrls      number of URLs the filter is sized for.
+     * @param falsePositiveRate accepted probability of reporting a new URL as visited, in (0, 1).
+     */
+    public BloomFilterDedupService(long expectedUrls, double falsePositiveRate) {
+        if (expectedUrls <= 0) {
+            throw new IllegalArgumentException("expectedUrls must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        long optimalBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long words = Math.max(1, (optimalBits + 63) / 64);
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bloom filter too large for " + expectedUrls + " URLs");
+        }
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedUrls * Math.log(2)));
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public boolean visit(URI uri) {
+        if (uri == null)
+            return false;
+        UrlFingerprint fingerprint = UrlFingerprint.of(uri);
+        boolean added = false;
+        synchronized (locks[(int) (fingerprint.low() >>> 56) & (LOCK_STRIPES - 1)]) {
+            // Double hashing: index_i = h1 + i * h2 (Kirsch and Mitzenmacher).
+            long combined = fingerprint.high();
+            for (int i = 0; i < hashCount; i++) {
+                long index = Math.floorMod(combined, bitCount);
+                long mask = 1L << (index & 63);
+                long previous = bits.getAndAccumulate((int) (index >>> 6), mask, (word, bit) -> word | bit);
+                if ((previous & mask) == 0) {
+                    added = true;
+                }
+                combined += fingerprint.low();
+            }
+        }
+        if (added) {
+            size.incrementAndGet();
+        }
+        return added;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return number of hash functions used per URL.
+     */
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return size of the filter in bits.
+     */
+    public long bitCount() {
+        return bitCount;
+    }
+}
@@ -1,8 +1,19 @@
 package com.voyager.crawler.util;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
 /**
  * Lightweight console output helper for consistent CLI messaging.
  * Adds severity prefixes and truncates long warning/error messages for readability.
+ * <p>
+ * Lines below the current {@link Level} are skipped. Warnings and errors given a key, such as a
+ * host and status code, are rate-limited per key: at most {@link #RATE_LIMIT_BURST} per
+ * {@link #RATE_LIMIT_WINDOW_SECONDS} seconds are printed, and the number of suppressed ones is
+ * reported when the key's next window starts or on {@link #flush()}. After
+ * {@link #startAsync()}, lines are queued in a lock-free ring and printed by a background
+ * thread, so callers never wait on the console; {@link #flush()} waits for the queued lines.
  */
 public final class ConsolePrinter {
     private static final String INFO_PREFIX = "[INFO] ";
@@ -11,16 +22,86 @@ public final class ConsolePrinter {
     private static final int KEY_WIDTH = 18;
     private static final int MAX_MESSAGE_LENGTH = 200;
 
+    static final int RATE_LIMIT_BURST = 5;
+    static final int RATE_LIMIT_WINDOW_SECONDS = 10;
+
+    private static final ConcurrentMap<String, RateWindow> RATE_WINDOWS = new ConcurrentHashMap<>();
+    private static volatile Level level = Level.INFO;
+    private static volatile AsyncConsole async;
+
+    /**
+     * Lowest severity that is printed.
+     */
+    public enum Level {
+        INFO,
+        WARN,
+        ERROR
+    }
+
     private ConsolePrinter() {
     }
 
+    /**
+     * Sets the lowest severity that is printed.
+     *
+     * @param newLevel the level.
+     */
+    public static void setLevel(Level newLevel) {
+        level = Objects.requireNonNull(newLevel, "level must not be null");
+    }
+
+    /**
+     * Returns the lowest severity that is printed.
+     */
+    public static Level level() {
+        return level;
+    }
+
+    /**
+     * Prints through a background writer from now on. Does nothing if it already does.
+     */
+    public static synchronized void startAsync() {
+        if (async == null) {
+            async = new AsyncConsole(AsyncConsole.DEFAULT_CAPACITY);
+        }
+    }
+
+    /**
+     * Reports suppressed messages and waits until every line queued so far is printed.
+     */
+    public static void flush() {
+        for (Map.Entry<String, RateWindow> entry : RATE_WINDOWS.entrySet()) {
+            entry.getValue().reportSuppressed(entry.getKey());
+        }
+        AsyncConsole current = async;
+        if (current != null) {
+            current.flush();
+        }
+    }
+
+    /**
+     * Flushes, stops the background writer and prints synchronously again. Lines printed by
+     * other threads while it stops may be lost, so call it once the crawl has finished.
+     */
+    public static synchronized void stopAsync() {
+        flush();
+        RATE_WINDOWS.clear();
+        AsyncConsole current = async;
+        async = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
     /**
      * Prints an info-level message to standard output.
      *
      * @param message the message to print.
      */
     public static void info(String message) {
-        System.out.println(INFO_PREFIX + safe(message));
+        if (level == Level.INFO) {
+            print(false, INFO_PREFIX + safe(message));
+        }
     }
 
     /**
@@ -29,7 +110,22 @@ public final class ConsolePrinter {
      * @param message the message to print.
      */
     public static void warn(String message) {
-        System.err.println(WARN_PREFIX + truncate(safe(message)));
+        if (level != Level.ERROR) {
+            print(true, WARN_PREFIX + truncate(safe(message)));
+        }
+    }
+
+    /**
+     * Prints a warning-level message to standard error, unless messages with the same key are
+     * over their rate limit.
+     *
+     * @param key     what the message is about, e.g. a host and status code.
+     * @param message the message to print.
+     */
+    public static void warn(String key, String message) {
+        if (level != Level.ERROR && admit(key, WARN_PREFIX)) {
+            print(true, WARN_PREFIX + truncate(safe(message)));
+        }
     }
 
     /**
@@ -38,7 +134,20 @@ public final class ConsolePrinter {
      * @param message the message to print.
      */
     public static void error(String message) {
-        System.err.println(ERROR_PREFIX + truncate(safe(message)));
+        print(true, ERROR_PREFIX + truncate(safe(message)));
+    }
+
+    /**
+     * Prints an error-level message to standard error, unless messages with the same key are
+     * over their rate limit.
+     *
+     * @param key     what the message is about, e.g. a host and exception type.
+     * @param message the message to print.
+     */
+    public static void error(String key, String message) {
+        if (admit(key, ERROR_PREFIX)) {
+            print(true, ERROR_PREFIX + truncate(safe(message)));
+        }
     }
 
     /**
@@ -48,14 +157,33 @@ public final class ConsolePrinter {
      * @param value the value to display.
      */
     public static void infoKeyValue(String key, Object value) {
-        System.out.printf(INFO_PREFIX + "%-" + KEY_WIDTH + "s %s%n", safe(key), safeValue(value));
+        if (level == Level.INFO) {
+            print(false, String.format(INFO_PREFIX + "%-" + KEY_WIDTH + "s %s", safe(key), safeValue(value)));
+        }
     }
 
     /**
      * Prints a blank line to standard output.
      */
     public static void blankLine() {
-        System.out.println();
+        if (level == Level.INFO) {
+            print(false, "");
+        }
+    }
+
+    private static void print(boolean error, String line) {
+        AsyncConsole current = async;
+        if (current != null) {
+            current.offer(error, line);
+        } else if (error) {
+            System.err.println(line);
+        } else {
+            System.out.println(line);
+        }
+    }
+
+    private static boolean admit(String key, String prefix) {
+        return RATE_WINDOWS.computeIfAbsent(safe(key), k -> new RateWindow(prefix)).admit(safe(key));
     }
 
     private static String safe(String value) {
@@ -72,4 +200,42 @@ public final class ConsolePrinter {
         }
         return value.substring(0, MAX_MESSAGE_LENGTH - 3) + "...";
     }
+
+    /**
+     * Messages printed and suppressed for one key in the current window. Counts are updated
+     * without locking; a race at a window boundary can let a message more through.
+     */
+    private static final class RateWindow {
+        private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(RATE_LIMIT_WINDOW_SECONDS);
+
+        private final String prefix;
+        private final AtomicLong startNs = new AtomicLong(System.nanoTime());
+        private final AtomicInteger printed = new AtomicInteger();
+        private final AtomicInteger suppressed = new AtomicInteger();
+
+        RateWindow(String prefix) {
+            this.prefix = prefix;
+        }
+
+        boolean admit(String key) {
+            long now = System.nanoTime();
+            long start = startNs.get();
+            if (now - start >= WINDOW_NANOS && startNs.compareAndSet(start, now)) {
+                printed.set(0);
+                reportSuppressed(key);
+            }
+            if (printed.incrementAndGet() <= RATE_LIMIT_BURST) {
+                return true;
+            }
+            suppressed.incrementAndGet();
+            return false;
+        }
+
+        void reportSuppressed(String key) {
+            int count = suppressed.getAndSet(0);
+            if (count > 0) {
+                print(true, prefix + "Suppressed " + count + " similar messages for " + key);
+            }
+        }
+    }
 }
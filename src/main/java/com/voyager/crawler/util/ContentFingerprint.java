@@ -0,0 +1,236 @@
+package com.voyager.crawler.util;
+
+import java.nio.*;
+
+/**
+ * Fingerprint of a page body, computed in a single pass over its bytes.
+ * <p>
+ * {@code high}/{@code low} are MurmurHash3 (x64, 128-bit variant) of the raw bytes and identify
+ * byte-identical bodies. {@code simHash} is a 64-bit SimHash over shingles of
+ * {@value #SHINGLE_SIZE} consecutive words of the text outside tags: bodies that differ only in
+ * a few words (session parameters, timestamps, tracking snippets) have SimHashes a few bits
+ * apart. Words are runs of ASCII letters and digits, compared case-insensitively, or of
+ * non-ASCII bytes, so no charset decoding is needed.
+ *
+ * @param high     upper 64 bits of the content hash.
+ * @param low      lower 64 bits of the content hash.
+ * @param simHash  SimHash of the word shingles.
+ * @param shingles number of shingles the SimHash was computed from.
+ */
+public record ContentFingerprint(long high, long low, long simHash, int shingles) {
+    public static final int SHINGLE_SIZE = 4;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Maps a byte to a long holding each of its bits in a separate byte, so eight bit counters
+     * can be incremented with one addition.
+     */
+    private static final long[] SPREAD_BITS = new long[256];
+
+    static {
+        for (int value = 0; value < 256; value++) {
+            long spread = 0;
+            for (int bit = 0; bit < 8; bit++) {
+                spread |= (long) ((value >>> bit) & 1) << (8 * bit);
+            }
+            SPREAD_BITS[value] = spread;
+        }
+    }
+
+    /**
+     * Fingerprints content split across buffers, such as the chunks of a fetched body, without
+     * copying it. The buffers' positions are not changed.
+     *
+     * @param buffers the content, in order.
+     * @return its fingerprint.
+     */
+    public static ContentFingerprint of(ByteBuffer... buffers) {
+        Hasher hasher = new Hasher();
+        for (ByteBuffer buffer : buffers) {
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                hasher.update(buffer.get(i));
+            }
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Fingerprints a byte array.
+     *
+     * @param bytes the content.
+     * @return its fingerprint.
+     */
+    public static ContentFingerprint of(byte[] bytes) {
+        Hasher hasher = new Hasher();
+        for (byte b : bytes) {
+            hasher.update(b);
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * @param other another fingerprint.
+     * @return the number of differing SimHash bits.
+     */
+    public int distance(ContentFingerprint other) {
+        return Long.bitCount(simHash ^ other.simHash);
+    }
+
+    private static final class Hasher {
+        // Content hash state.
+        private long h1;
+        private long h2;
+        private long k1;
+        private long k2;
+        private int blockFill;
+        private long length;
+
+        // SimHash state: per-bit counts of shingles with the bit set. Eight counts share a long
+        // and are folded into the int counts before their bytes can overflow.
+        private final long[] packedOnes = new long[8];
+        private final int[] ones = new int[64];
+        private final long[] recentWords = new long[SHINGLE_SIZE];
+        private int words;
+        private int shingles;
+        private long wordHash = FNV_OFFSET;
+        private int wordLength;
+        private boolean inTag;
+
+        void update(byte b) {
+            hashByte(b);
+
+            int c = b & 0xFF;
+            if (c == '<') {
+                endWord();
+                inTag = true;
+            } else if (c == '>') {
+                inTag = false;
+            } else if (!inTag && isWordByte(c)) {
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                wordHash = (wordHash ^ c) * FNV_PRIME;
+                wordLength++;
+            } else {
+                endWord();
+            }
+        }
+
+        private static boolean isWordByte(int c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c >= 0x80;
+        }
+
+        private void hashByte(byte b) {
+            long value = b & 0xFFL;
+            if (blockFill < 8) {
+                k1 |= value << (8 * blockFill);
+            } else {
+                k2 |= value << (8 * (blockFill - 8));
+            }
+            length++;
+            if (++blockFill == 16) {
+                h1 ^= mixK1(k1);
+                h1 = Long.rotateLeft(h1, 27);
+                h1 += h2;
+                h1 = h1 * 5 + 0x52dce729;
+
+                h2 ^= mixK2(k2);
+                h2 = Long.rotateLeft(h2, 31);
+                h2 += h1;
+                h2 = h2 * 5 + 0x38495ab5;
+
+                k1 = 0;
+                k2 = 0;
+                blockFill = 0;
+            }
+        }
+
+        private void endWord() {
+            if (wordLength == 0) {
+                return;
+            }
+            recentWords[words % SHINGLE_SIZE] = wordHash;
+            words++;
+            wordHash = FNV_OFFSET;
+            wordLength = 0;
+            if (words < SHINGLE_SIZE) {
+                return;
+            }
+
+            long shingle = 0;
+            for (int i = words - SHINGLE_SIZE; i < words; i++) {
+                shingle = shingle * 0x9E3779B97F4A7C15L + recentWords[i % SHINGLE_SIZE];
+            }
+            shingle = fmix(shingle);
+            for (int i = 0; i < 8; i++) {
+                packedOnes[i] += SPREAD_BITS[(int) (shingle >>> (8 * i)) & 0xFF];
+            }
+            if (++shingles % 255 == 0) {
+                foldCounts();
+            }
+        }
+
+        private void foldCounts() {
+            for (int i = 0; i < 8; i++) {
+                long packed = packedOnes[i];
+                for (int bit = 0; bit < 8; bit++) {
+                    ones[8 * i + bit] += (int) (packed >>> (8 * bit)) & 0xFF;
+                }
+                packedOnes[i] = 0;
+            }
+        }
+
+        ContentFingerprint finish() {
+            endWord();
+            foldCounts();
+            // A bit is set when most shingles have it set.
+            long simHash = 0;
+            for (int bit = 0; bit < 64; bit++) {
+                if (2 * ones[bit] > shingles) {
+                    simHash |= 1L << bit;
+                }
+            }
+
+            if (blockFill > 8) {
+                h2 ^= mixK2(k2);
+            }
+            if (blockFill > 0) {
+                h1 ^= mixK1(k1);
+            }
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix(h1);
+            h2 = fmix(h2);
+            h1 += h2;
+            h2 += h1;
+            return new ContentFingerprint(h1, h2, simHash, shingles);
+        }
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
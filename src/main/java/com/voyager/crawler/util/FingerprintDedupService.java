@@ -0,0 +1,135 @@
+package com.voyager.crawler.util;
+
+import java.net.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Memory-compact {@link UrlDedupService} that stores a 128-bit {@link UrlFingerprint} per URL
+ * instead of the URL itself.
+ * <p>
+ * Fingerprints live in open-addressed {@code long[]} tables (two longs per entry, linear
+ * probing) split into independently locked stripes. Tables grow at two-thirds full, so a
+ * visited URL costs about 24 to 48 bytes of heap instead of a {@code String} plus a hash map
+ * node. Two distinct URLs are treated as the
+ * same only if their 128-bit fingerprints collide, which is negligible at crawl scale.
+ * Assumes input URIs are already normalized by {@link UrlUtils}.
+ */
+public class FingerprintDedupService implements UrlDedupService {
+    private static final int DEFAULT_STRIPES = 64;
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final Stripe[] stripes;
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    /**
+     * Creates a service with default sizing; tables grow as URLs are added.
+     */
+    public FingerprintDedupService() {
+        this(0);
+    }
+
+    /**
+     * Creates a service presized for the expected number of URLs.
+     *
+     * @param expectedUrls number of URLs expected to be visited.
+     */
+    public FingerprintDedupService(long expectedUrls) {
+        if (expectedUrls < 0) {
+            throw new IllegalArgumentException("expectedUrls must not be negative");
+        }
+        stripes = new Stripe[DEFAULT_STRIPES];
+        long perStripe = expectedUrls / DEFAULT_STRIPES + 1;
+        int capacity = MIN_STRIPE_CAPACITY;
+        while (capacity < perStripe * 3 / 2 && capacity < (1 << 29)) {
+            capacity <<= 1;
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    @Override
+    public boolean visit(URI uri) {
+        if (uri == null)
+            return false;
+        UrlFingerprint fingerprint = UrlFingerprint.of(uri);
+        // The low word picks the stripe, the high word the slot, so both use independent bits.
+        Stripe stripe = stripes[(int) (fingerprint.low() >>> 58) & (stripes.length - 1)];
+        boolean added;
+        synchronized (stripe) {
+            added = stripe.add(fingerprint.high(), fingerprint.low());
+        }
+        if (added) {
+            size.incrementAndGet();
+        }
+        return added;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * One open-addressed table. Entry {@code i} occupies {@code table[2i]} (high word) and
+     * {@code table[2i + 1]} (low word); an all-zero entry marks a free slot.
+     */
+    private static final class Stripe {
+        private long[] table;
+        private int count;
+
+        Stripe(int capacity) {
+            table = new long[capacity * 2];
+        }
+
+        boolean add(long high, long low) {
+            if (high == 0 && low == 0) {
+                // Reserve the all-zero entry for free slots.
+                low = 1;
+            }
+            int mask = table.length / 2 - 1;
+            int slot = (int) mix(high) & mask;
+            while (true) {
+                long slotHigh = table[slot * 2];
+                long slotLow = table[slot * 2 + 1];
+                if (slotHigh == 0 && slotLow == 0) {
+                    break;
+                }
+                if (slotHigh == high && slotLow == low) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot * 2] = high;
+            table[slot * 2 + 1] = low;
+            count++;
+            if (count * 3L > (table.length / 2) * 2L) {
+                grow();
+            }
+            return true;
+        }
+
+        private void grow() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            int mask = table.length / 2 - 1;
+            for (int i = 0; i < old.length; i += 2) {
+                long high = old[i];
+                long low = old[i + 1];
+                if (high == 0 && low == 0) {
+                    continue;
+                }
+                int slot = (int) mix(high) & mask;
+                while (table[slot * 2] != 0 || table[slot * 2 + 1] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot * 2] = high;
+                table[slot * 2 + 1] = low;
+            }
+        }
+
+        private static long mix(long value) {
+            return value ^ (value >>> 32);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.voyager.crawler.util;
+
+import java.net.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+
+/**
+ * The {@code robots.txt} rules that apply to one crawler, compiled for matching every extracted
+ * link.
+ * <p>
+ * Parsing follows RFC 9309: the groups naming the crawler's product token are merged, and the
+ * {@code *} groups are used only when none does. A path is matched against the rules in order of
+ * decreasing pattern length, so the first match is the most specific one, and an {@code Allow}
+ * wins a tie with a {@code Disallow} of the same length. Patterns without {@code *} or a
+ * trailing {@code $} are plain prefix checks; the others use a wildcard matcher without
+ * exponential backtracking, whose worst case is O(n*m) for a path of length n and a pattern of
+ * length m. Percent-escapes are compared with
+ * upper-case hex digits, and non-ASCII characters in patterns are percent-encoded as UTF-8, as
+ * they are in URIs.
+ * <p>
+ * {@code Crawl-delay}, which RFC 9309 does not define but many sites use, is read from the same
+ * groups; the largest value wins.
+ */
+public final class RobotsRules {
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(new Rule[0], null);
+    private static final RobotsRules DISALLOW_ALL = new RobotsRules(new Rule[] {new Rule("/", false)}, null);
+    private static final String ROBOTS_PATH = "/robots.txt";
+
+    // Ordered by decreasing pattern length, Allow before Disallow.
+    private final Rule[] rules;
+    private final Duration crawlDelay;
+
+    private RobotsRules(Rule[] rules, Duration crawlDelay) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+    }
+
+    /**
+     * Returns rules that allow every path, as for a site without {@code robots.txt}.
+     */
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Returns rules that disallow every path, as for a site whose {@code robots.txt} could not
+     * be reached.
+     */
+    public static RobotsRules disallowAll() {
+        return DISALLOW_ALL;
+    }
+
+    /**
+     * Parses a {@code robots.txt} file.
+     *
+     * @param text         contents of the file.
+     * @param productToken the crawler's name in {@code User-agent} lines, matched ignoring case.
+     * @return the rules that apply to the crawler.
+     */
+    public static RobotsRules parse(String text, String productToken) {
+        Objects.requireNonNull(text, "text must not be null");
+        String token = productToken.toLowerCase(Locale.ROOT);
+
+        List<Rule> ownRules = new ArrayList<>();
+        List<Rule> wildcardRules = new ArrayList<>();
+        Duration ownDelay = null;
+        Duration wildcardDelay = null;
+        boolean ownGroupFound = false;
+        boolean wildcardGroupFound = false;
+
+        boolean groupIsOwn = false;
+        boolean groupIsWildcard = false;
+        boolean groupHasRecords = false;
+        for (String rawLine : text.split("\r\n|\r|\n")) {
+            int comment = rawLine.indexOf('#');
+            String line = comment >= 0 ? rawLine.substring(0, comment) : rawLine;
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (key) {
+                case "user-agent" -> {
+                    if (groupHasRecords) {
+                        groupIsOwn = false;
+                        groupIsWildcard = false;
+                        groupHasRecords = false;
+                    }
+                    String agent = agentToken(value);
+                    if (agent.equals(token)) {
+                        groupIsOwn = true;
+                        ownGroupFound = true;
+                    } else if (agent.equals("*")) {
+                        groupIsWildcard = true;
+                        wildcardGroupFound = true;
+                    }
+                }
+                case "allow", "disallow" -> {
+                    groupHasRecords = true;
+                    if (value.isEmpty()) {
+                        // An empty Disallow allows everything; an empty Allow means nothing.
+                        continue;
+                    }
+                    Rule rule = new Rule(normalizePattern(value), key.equals("allow"));
+                    if (groupIsOwn) {
+                        ownRules.add(rule);
+                    }
+                    if (groupIsWildcard) {
+                        wildcardRules.add(rule);
+                    }
+                }
+                case "crawl-delay" -> {
+                    groupHasRecords = true;
+                    Duration delay = parseDelay(value);
+                    if (groupIsOwn) {
+                        ownDelay = max(ownDelay, delay);
+                    }
+                    if (groupIsWildcard) {
+                        wildcardDelay = max(wildcardDelay, delay);
+                    }
+                }
+                default -> {
+                    // Sitemap and unknown records belong to no group.
+                }
+            }
+        }
+
+        if (ownGroupFound) {
+            return compile(ownRules, ownDelay);
+        }
+        if (wildcardGroupFound) {
+            return compile(wildcardRules, wildcardDelay);
+        }
+        return ALLOW_ALL;
+    }
+
+    private static RobotsRules compile(List<Rule> rules, Duration crawlDelay) {
+        if (rules.isEmpty() && crawlDelay == null) {
+            return ALLOW_ALL;
+        }
+        Rule[] ordered = rules.toArray(new Rule[0]);
+        Arrays.sort(ordered, Comparator.comparingInt((Rule rule) -> rule.pattern.length()).reversed()
+                .thenComparing(rule -> !rule.allow));
+        return new RobotsRules(ordered, crawlDelay);
+    }
+
+    /**
+     * Returns the product token of a {@code User-agent} value: the name before any version or
+     * comment, in lower case.
+     */
+    private static String agentToken(String value) {
+        int end = 0;
+        while (end < value.length() && value.charAt(end) != '/' && !Character.isWhitespace(value.charAt(end))) {
+            end++;
+        }
+        return value.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static Duration parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            if (!(seconds >= 0) || seconds > Long.MAX_VALUE / 1000.0) {
+                return null;
+            }
+            return Duration.ofMillis((long) (seconds * 1000));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Duration max(Duration current, Duration candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.compareTo(current) > 0 ? candidate : current;
+    }
+
+    /**
+     * Checks whether the crawler may fetch a URI. {@code /robots.txt} itself is always allowed.
+     *
+     * @param uri the URI.
+     * @return whether its path and query are allowed.
+     */
+    public boolean isAllowed(URI uri) {
+        if (rules.length == 0) {
+            return true;
+        }
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        if (path.equals(ROBOTS_PATH)) {
+            return true;
+        }
+        String query = uri.getRawQuery();
+        return isAllowed(query != null ? path + "?" + query : path);
+    }
+
+    /**
+     * Checks whether the crawler may fetch a path.
+     *
+     * @param pathAndQuery raw (percent-encoded) path, with the query if there is one.
+     * @return whether it is allowed.
+     */
+    public boolean isAllowed(String pathAndQuery) {
+        String path = upperCaseEscapes(pathAndQuery);
+        for (Rule rule : rules) {
+            if (rule.matches(path)) {
+                return rule.allow;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the delay the site asks for between requests, if any.
+     */
+    public Optional<Duration> crawlDelay() {
+        return Optional.ofNullable(crawlDelay);
+    }
+
+    /**
+     * Returns the number of {@code Allow} and {@code Disallow} rules that apply.
+     */
+    public int ruleCount() {
+        return rules.length;
+    }
+
+    /**
+     * Percent-encodes a pattern's non-ASCII and control characters as UTF-8, upper-cases its
+     * escapes, and makes it start with {@code /} unless it starts with a wildcard.
+     */
+    static String normalizePattern(String pattern) {
+        StringBuilder normalized = new StringBuilder(pattern.length() + 1);
+        if (pattern.charAt(0) != '/' && pattern.charAt(0) != '*') {
+            normalized.append('/');
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c > 0x20 && c < 0x7F) {
+                normalized.append(c);
+                continue;
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < pattern.length() ? i + 2 : i + 1;
+            for (byte b : pattern.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                normalized.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+            }
+            i = end - 1;
+        }
+        return upperCaseEscapes(normalized.toString());
+    }
+
+    /**
+     * Upper-cases the hex digits of percent-escapes. Returns the string itself when it has none
+     * in lower case, which is the usual case.
+     */
+    static String upperCaseEscapes(String value) {
+        int percent = value.indexOf('%');
+        if (percent < 0) {
+            return value;
+        }
+        char[] chars = null;
+        for (int i = percent; i >= 0 && i + 2 < value.length(); i = value.indexOf('%', i + 1)) {
+            for (int j = i + 1; j <= i + 2; j++) {
+                char c = value.charAt(j);
+                if (c >= 'a' && c <= 'f') {
+                    if (chars == null) {
+                        chars = value.toCharArray();
+                    }
+                    chars[j] = (char) (c - ('a' - 'A'));
+                }
+            }
+        }
+        return chars == null ? value : new String(chars);
+    }
+
+    /**
+     * One {@code Allow} or {@code Disallow} line.
+     */
+    private static final class Rule {
+        private final String pattern;
+        private final boolean allow;
+        private final boolean literal;
+        private final boolean anchored;
+
+        Rule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.anchored = pattern.endsWith("$");
+            this.literal = !anchored && pattern.indexOf('*') < 0;
+        }
+
+        boolean matches(String path) {
+            if (literal) {
+                return path.startsWith(pattern);
+            }
+            return matchesWildcard(path, anchored ? pattern.length() - 1 : pattern.length());
+        }
+
+        /**
+         * Matches {@code *} against any run of characters by returning to the last star on a
+         * mismatch, which never needs more than one pass per star.
+         */
+        private boolean matchesWildcard(String path, int patternLength) {
+            int p = 0;
+            int s = 0;
+            int starP = -1;
+            int starS = 0;
+            while (s < path.length()) {
+                if (p < patternLength && pattern.charAt(p) == '*') {
+                    starP = p++;
+                    starS = s;
+                } else if (p < patternLength && pattern.charAt(p) == path.charAt(s)) {
+                    p++;
+                    s++;
+                } else if (p == patternLength && !anchored) {
+                    return true;
+                } else if (starP >= 0) {
+                    p = starP + 1;
+                    s = ++starS;
+                } else {
+                    return false;
+                }
+            }
+            while (p < patternLength && pattern.charAt(p) == '*') {
+                p++;
+            }
+            return p == patternLength;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.voyager.crawler.util;
+
+import java.net.*;
+import java.util.*;
+
+/**
+ * Rewrites URIs to one canonical form, so that spellings of the same page deduplicate to one
+ * URL. Following RFC 3986 section 6, it lower-cases the scheme and host, drops the port when it
+ * is the scheme's default, gives an empty HTTP path the root {@code /}, removes {@code .} and
+ * {@code ..} segments, upper-cases the hex digits of percent-escapes and decodes those of
+ * unreserved characters, and drops the fragment. On top of that it can remove tracking
+ * parameters from the query and sort the remaining parameters by name.
+ * <p>
+ * The URI's parsed components are read without copying and the canonical form is written in one
+ * pass into a single builder; a URI that is already canonical is returned as it is, so most
+ * links cost no more than that builder. Instances are immutable and safe to share.
+ */
+public final class UrlCanonicalizer {
+    /**
+     * Query parameters added by analytics and ad click tracking. Names ending in {@code *} are
+     * prefixes.
+     */
+    public static final List<String> DEFAULT_TRACKING_PARAMETERS = List.of("utm_*", "gclid", "dclid", "gbraid",
+            "wbraid", "fbclid", "msclkid", "yclid", "mc_cid", "mc_eid", "igshid", "_hsenc", "_hsmi");
+
+    /**
+     * Canonicalizes syntax only, keeping every query parameter in its place.
+     */
+    public static final UrlCanonicalizer SYNTAX_ONLY = new UrlCanonicalizer(List.of(), false);
+
+    /**
+     * Canonicalizes syntax and removes {@link #DEFAULT_TRACKING_PARAMETERS}.
+     */
+    public static final UrlCanonicalizer DEFAULT = new UrlCanonicalizer(DEFAULT_TRACKING_PARAMETERS, false);
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final String[] strippedNames;
+    private final String[] strippedPrefixes;
+    private final boolean sortQuery;
+
+    /**
+     * Creates a canonicalizer.
+     *
+     * @param trackingParameters names of query parameters to remove, matched case-sensitively;
+     *                           a name ending in {@code *} removes every parameter starting with
+     *                           the rest of it.
+     * @param sortQuery          whether to order query parameters by name. Parameters of the same
+     *                           name keep their relative order.
+     */
+    public UrlCanonicalizer(Collection<String> trackingParameters, boolean sortQuery) {
+        List<String> names = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String parameter : trackingParameters) {
+            if (parameter == null || parameter.isEmpty() || parameter.equals("*")) {
+                throw new IllegalArgumentException("tracking parameter names must not be empty");
+            }
+            if (parameter.endsWith("*")) {
+                prefixes.add(parameter.substring(0, parameter.length() - 1));
+            } else {
+                names.add(parameter);
+            }
+        }
+        this.strippedNames = names.toArray(new String[0]);
+        this.strippedPrefixes = prefixes.toArray(new String[0]);
+        this.sortQuery = sortQuery;
+    }
+
+    /**
+     * Returns the canonical form of a URI. Opaque and relative URIs, and URIs without an
+     * authority, only lose their fragment.
+     *
+     * @param uri the URI, or null.
+     * @return the canonical URI, {@code uri} itself if it already is canonical, or null if
+     *         {@code uri} is null.
+     */
+    public URI canonicalize(URI uri) {
+        if (uri == null) {
+            return null;
+        }
+        String original = uri.toString();
+        StringBuilder canonical = new StringBuilder(original.length());
+        if (uri.isOpaque() || uri.getScheme() == null || uri.getRawAuthority() == null) {
+            if (uri.getRawFragment() == null) {
+                return uri;
+            }
+            canonical.append(original, 0, original.lastIndexOf('#'));
+        } else {
+            appendCanonical(uri, canonical);
+        }
+        if (original.contentEquals(canonical)) {
+            return uri;
+        }
+        try {
+            return new URI(canonical.toString());
+        } catch (URISyntaxException e) {
+            return uri;
+        }
+    }
+
+    private void appendCanonical(URI uri, StringBuilder out) {
+        String scheme = uri.getScheme();
+        appendLowerCase(scheme, out);
+        out.append("://");
+
+        String host = uri.getHost();
+        if (host == null) {
+            // A registry-based authority, such as a host name with an underscore.
+            out.append(uri.getRawAuthority());
+        } else {
+            if (uri.getRawUserInfo() != null) {
+                out.append(uri.getRawUserInfo()).append('@');
+            }
+            appendLowerCase(host, out);
+            int port = uri.getPort();
+            if (port != -1 && port != defaultPort(scheme)) {
+                out.append(':').append(port);
+            }
+        }
+
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            if (isHttp(scheme)) {
+                out.append('/');
+            }
+        } else {
+            appendPath(path, out);
+        }
+
+        String query = uri.getRawQuery();
+        if (query != null) {
+            appendQuery(query, out);
+        }
+    }
+
+    /**
+     * Appends an absolute path with its escapes normalized, removing dot segments as each
+     * segment is written (RFC 3986 section 5.2.4).
+     */
+    private static void appendPath(String path, StringBuilder out) {
+        int root = out.length();
+        out.append('/');
+        int start = path.charAt(0) == '/' ? 1 : 0;
+        while (true) {
+            int end = path.indexOf('/', start);
+            boolean last = end < 0;
+            if (last) {
+                end = path.length();
+            }
+            int segment = out.length();
+            appendEscapesNormalized(path, start, end, out);
+            int length = out.length() - segment;
+            if (length == 1 && out.charAt(segment) == '.') {
+                out.setLength(segment);
+            } else if (length == 2 && out.charAt(segment) == '.' && out.charAt(segment + 1) == '.') {
+                out.setLength(segment);
+                if (segment - 1 > root) {
+                    out.setLength(lastIndexOf(out, '/', segment - 2) + 1);
+                }
+            } else if (!last) {
+                out.append('/');
+            }
+            if (last) {
+                return;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Appends a query with its escapes normalized, leaving out empty and tracking parameters,
+     * and sorts it if requested. Nothing, not even {@code ?}, is appended for an empty query.
+     */
+    private void appendQuery(String query, StringBuilder out) {
+        int questionMark = out.length();
+        out.append('?');
+        int parameters = 0;
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            if (end > start) {
+                int parameter = out.length();
+                if (parameters > 0) {
+                    out.append('&');
+                    parameter++;
+                }
+                appendEscapesNormalized(query, start, end, out);
+                if (isTracking(out, parameter, nameEnd(out, parameter, out.length()))) {
+                    out.setLength(parameters > 0 ? parameter - 1 : parameter);
+                } else {
+                    parameters++;
+                }
+            }
+            start = end + 1;
+        }
+        if (parameters == 0) {
+            out.setLength(questionMark);
+        } else if (sortQuery && parameters > 1) {
+            sortParameters(out, questionMark + 1);
+        }
+    }
+
+    /**
+     * Sorts the {@code &}-separated parameters from {@code start} to the end of the builder by
+     * name, keeping parameters of the same name in order. Does not allocate when they are
+     * already sorted.
+     */
+    private static void sortParameters(StringBuilder out, int start) {
+        boolean sorted = true;
+        int previous = start;
+        for (int next = indexOf(out, '&', start); next >= 0 && sorted; next = indexOf(out, '&', next + 1)) {
+            sorted = compareNames(out, previous, next + 1) <= 0;
+            previous = next + 1;
+        }
+        if (sorted) {
+            return;
+        }
+        String[] parameters = out.substring(start).split("&");
+        Arrays.sort(parameters, (a, b) -> compareNames(a, 0, b, 0));
+        out.setLength(start);
+        out.append(String.join("&", parameters));
+    }
+
+    private static int compareNames(CharSequence out, int a, int b) {
+        return compareNames(out, a, out, b);
+    }
+
+    private static int compareNames(CharSequence first, int a, CharSequence second, int b) {
+        int aEnd = nameEnd(first, a, first.length());
+        int bEnd = nameEnd(second, b, second.length());
+        while (a < aEnd && b < bEnd) {
+            int diff = first.charAt(a++) - second.charAt(b++);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (aEnd - a) - (bEnd - b);
+    }
+
+    /**
+     * Returns the end of the name of the parameter starting at {@code start}: its {@code =}, or
+     * the {@code &} or end that follows it.
+     */
+    private static int nameEnd(CharSequence chars, int start, int limit) {
+        for (int i = start; i < limit; i++) {
+            char c = chars.charAt(i);
+            if (c == '=' || c == '&') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private boolean isTracking(CharSequence chars, int start, int end) {
+        int length = end - start;
+        for (String name : strippedNames) {
+            if (name.length() == length && regionMatches(chars, start, name)) {
+                return true;
+            }
+        }
+        for (String prefix : strippedPrefixes) {
+            if (prefix.length() <= length && regionMatches(chars, start, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence chars, int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (chars.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends {@code value[start, end)}, decoding escapes of unreserved characters and
+     * upper-casing the hex digits of the others. Malformed escapes are copied unchanged.
+     */
+    private static void appendEscapesNormalized(String value, int start, int end, StringBuilder out) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c != '%' || i + 2 >= end) {
+                out.append(c);
+                continue;
+            }
+            int high = Character.digit(value.charAt(i + 1), 16);
+            int low = Character.digit(value.charAt(i + 2), 16);
+            if (high < 0 || low < 0) {
+                out.append(c);
+                continue;
+            }
+            char decoded = (char) (high << 4 | low);
+            if (isUnreserved(decoded)) {
+                out.append(decoded);
+            } else {
+                out.append('%').append(HEX_DIGITS[high]).append(HEX_DIGITS[low]);
+            }
+            i += 2;
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static void appendLowerCase(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            out.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+    }
+
+    private static boolean isHttp(String scheme) {
+        return scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https");
+    }
+
+    private static int defaultPort(String scheme) {
+        if (scheme.equalsIgnoreCase("http")) {
+            return 80;
+        }
+        return scheme.equalsIgnoreCase("https") ? 443 : -1;
+    }
+
+    private static int indexOf(StringBuilder chars, char c, int from) {
+        for (int i = from; i < chars.length(); i++) {
+            if (chars.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(StringBuilder chars, char c, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (chars.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        int stripped = strippedNames.length + strippedPrefixes.length;
+        return (stripped == 0 ? "no tracking parameters stripped" : stripped + " tracking parameters stripped")
+                + (sortQuery ? ", query sorted" : "");
+    }
+}
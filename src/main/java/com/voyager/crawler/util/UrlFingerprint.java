@@ -0,0 +1,101 @@
+package com.voyager.crawler.util;
+
+import java.net.*;
+
+/**
+ * 128-bit fingerprint of a URL: MurmurHash3 (x64, 128-bit variant) over the UTF-16LE code units
+ * of its string form. The string is hashed in place, without encoding it to bytes first.
+ *
+ * @param high upper 64 bits.
+ * @param low  lower 64 bits.
+ */
+public record UrlFingerprint(long high, long low) {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * Fingerprints the string form of a URI.
+     *
+     * @param uri the URI, expected to be normalized.
+     * @return its fingerprint.
+     */
+    public static UrlFingerprint of(URI uri) {
+        return of(uri.toString());
+    }
+
+    /**
+     * Fingerprints a character sequence.
+     *
+     * @param value the characters to hash.
+     * @return their fingerprint.
+     */
+    public static UrlFingerprint of(CharSequence value) {
+        int length = value.length();
+        long h1 = 0;
+        long h2 = 0;
+
+        int blockEnd = length - (length & 7);
+        for (int i = 0; i < blockEnd; i += 8) {
+            long k1 = pack(value, i, 4);
+            long k2 = pack(value, i + 4, 4);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int remaining = length - blockEnd;
+        if (remaining > 4) {
+            h2 ^= mixK2(pack(value, blockEnd + 4, remaining - 4));
+        }
+        if (remaining > 0) {
+            h1 ^= mixK1(pack(value, blockEnd, Math.min(remaining, 4)));
+        }
+
+        long byteLength = 2L * length;
+        h1 ^= byteLength;
+        h2 ^= byteLength;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new UrlFingerprint(h1, h2);
+    }
+
+    private static long pack(CharSequence value, int from, int count) {
+        long packed = 0;
+        for (int i = 0; i < count; i++) {
+            packed |= (long) value.charAt(from + i) << (16 * i);
+        }
+        return packed;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -1,14 +1,17 @@
 package com.voyager.crawler.util;
 
 import java.net.*;
-import java.util.regex.*;
+import java.util.*;
 
 /**
- * Utility helpers for URL normalization and filename sanitization.
+ * Utility helpers for URL resolution, normalization and filename sanitization.
  */
 public final class UrlUtils {
 
-    private static final Pattern INVALID_FILENAME_CHARS = Pattern.compile("[^a-zA-Z0-9.-]");
+    /**
+     * Longest name {@link #toFilename(URI)} returns.
+     */
+    public static final int MAX_FILENAME_LENGTH = 200;
 
     private UrlUtils() {
     }
@@ -25,41 +28,207 @@ public final class UrlUtils {
         if (uri == null) {
             throw new IllegalArgumentException("URI must not be null");
         }
+        StringBuilder name = new StringBuilder(Math.min(uri.toString().length(), MAX_FILENAME_LENGTH));
+        appendFilename(uri, MAX_FILENAME_LENGTH, name);
+        return name.toString();
+    }
 
-        String fullUrl = uri.toString();
-
-        String cleanUrl = fullUrl.replace("://", "_");
-
-        String safeName = INVALID_FILENAME_CHARS.matcher(cleanUrl).replaceAll("_");
-
-        if (safeName.isEmpty()) {
-            safeName = "index";
+    /**
+     * Appends the filesystem-safe name of a URI, cut to {@code maxLength} characters: each
+     * {@code ://} becomes one {@code _}, and every character other than ASCII letters, digits,
+     * {@code .} and {@code -} becomes {@code _}, a surrogate pair counting as one character. The
+     * URI's string form is scanned once, without a regular expression or intermediate strings.
+     *
+     * @param uri       the URI to convert.
+     * @param maxLength longest name to append.
+     * @param out       builder the name is appended to.
+     */
+    public static void appendFilename(URI uri, int maxLength, StringBuilder out) {
+        String url = uri.toString();
+        if (url.isEmpty()) {
+            out.append("index", 0, Math.min(5, maxLength));
+            return;
         }
-
-        if (safeName.length() > 200) {
-            safeName = safeName.substring(0, 200);
+        int written = 0;
+        for (int i = 0; i < url.length() && written < maxLength; i++, written++) {
+            char c = url.charAt(i);
+            if (isFilenameChar(c)) {
+                out.append(c);
+                continue;
+            }
+            out.append('_');
+            if (url.startsWith("://", i)) {
+                i += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < url.length()
+                    && Character.isLowSurrogate(url.charAt(i + 1))) {
+                i++;
+            }
         }
-
-        return safeName;
     }
 
+    private static boolean isFilenameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-';
+    }
 
     /**
-     * Normalizes a URL by stripping fragments.
+     * Normalizes a URL to its canonical syntax: lower-case scheme and host, no default port or
+     * dot segments, normalized percent-escapes, and no fragment. The query is kept as it is; see
+     * {@link UrlCanonicalizer} for removing tracking parameters.
      *
      * @param uri the URI to normalize.
      * @return the normalized URI, or null if input is null.
      */
     public static URI normalize(URI uri) {
-        if (uri == null) {
+        return UrlCanonicalizer.SYNTAX_ONLY.canonicalize(uri);
+    }
+
+    /**
+     * Returns the key identifying a URI's host: the lower-cased host, plus the port when one is
+     * given explicitly.
+     *
+     * @param uri the URI.
+     * @return the host key, or an empty string if the URI has no host.
+     */
+    public static String hostKey(URI uri) {
+        String host = uri.getHost();
+        if (host == null) {
+            return "";
+        }
+        host = host.toLowerCase(Locale.ROOT);
+        return uri.getPort() == -1 ? host : host + ":" + uri.getPort();
+    }
+
+    /**
+     * Resolves an {@code href} attribute value against a base URI the way browsers (and Jsoup's
+     * {@code abs:} attribute prefix) do: control characters are stripped, surrounding whitespace
+     * is trimmed, the scheme is lower-cased, a same-scheme reference without an authority is
+     * treated as relative, and a query-only reference keeps the base path.
+     *
+     * @param base the base URI.
+     * @param href the raw attribute value.
+     * @return the absolute URI, or null if the value cannot be parsed as a URI.
+     */
+    public static URI resolve(URI base, String href) {
+        if (base == null || href == null) {
             return null;
         }
+        String ref = stripControlChars(href).trim();
+        if (ref.isEmpty()) {
+            return base;
+        }
+
         try {
-            return new URI(uri.getScheme(), uri.getUserInfo(), uri.getHost(), uri.getPort(), uri.getPath(),
-                    uri.getQuery(), null);
-        } catch (URISyntaxException e) {
+            int colon = schemeLength(ref);
+            if (colon > 0) {
+                String scheme = ref.substring(0, colon).toLowerCase(Locale.ROOT);
+                String rest = ref.substring(colon + 1);
+                boolean sameHierarchicalScheme = scheme.equalsIgnoreCase(base.getScheme())
+                        && base.getRawPath() != null && base.getRawPath().startsWith("/");
+                if (!sameHierarchicalScheme || rest.startsWith("//")) {
+                    return stripUnrequestableParts(new URI(scheme + ":" + rest));
+                }
+                ref = rest;
+                if (ref.isEmpty()) {
+                    return base;
+                }
+            }
+
+            if (ref.charAt(0) == '#') {
+                return base.resolve(new URI(ref));
+            }
+
+            URI resolved;
+            boolean emptyBasePath = base.getRawAuthority() != null
+                    && (base.getRawPath() == null || base.getRawPath().isEmpty());
+            if (emptyBasePath && ref.charAt(0) != '/' && ref.charAt(0) != '?') {
+                // Relative to an authority-only base such as "http://host": browsers append the
+                // reference to "/" after dropping leading dot segments, without further merging.
+                while (ref.startsWith("./") || ref.startsWith("../")) {
+                    ref = ref.substring(ref.indexOf('/') + 1);
+                }
+                resolved = new URI(base.getScheme() + "://" + base.getRawAuthority() + "/" + ref);
+            } else {
+                URI effectiveBase = emptyBasePath
+                        ? new URI(base.getScheme(), base.getRawAuthority(), "/", null, null)
+                        : base;
+                if (ref.charAt(0) == '?') {
+                    ref = effectiveBase.getRawPath() + ref;
+                }
+                resolved = effectiveBase.resolve(new URI(ref));
+            }
+
+            return stripUnrequestableParts(resolved);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops user info and {@code ..} segments that would climb above the root, matching what
+     * browsers actually request.
+     */
+    private static URI stripUnrequestableParts(URI uri) throws URISyntaxException {
+        String path = uri.getRawPath();
+        boolean leadingParent = path != null && path.startsWith("/../");
+        if (uri.getRawAuthority() == null || uri.getHost() == null
+                || (!leadingParent && uri.getRawUserInfo() == null)) {
             return uri;
         }
+
+        while (path.startsWith("/../")) {
+            path = path.substring(3);
+        }
+        StringBuilder sb = new StringBuilder(uri.getScheme()).append("://").append(uri.getHost());
+        if (uri.getPort() != -1) {
+            sb.append(':').append(uri.getPort());
+        }
+        sb.append(path);
+        if (uri.getRawQuery() != null) {
+            sb.append('?').append(uri.getRawQuery());
+        }
+        if (uri.getRawFragment() != null) {
+            sb.append('#').append(uri.getRawFragment());
+        }
+        return new URI(sb.toString());
+    }
+
+    private static String stripControlChars(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < 0x20) {
+                StringBuilder sb = new StringBuilder(value.length());
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    if (c >= 0x20) {
+                        sb.append(c);
+                    }
+                }
+                return sb.toString();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the length of a leading {@code scheme} (excluding the colon), or -1 if the value
+     * does not start with one.
+     */
+    private static int schemeLength(String value) {
+        if (value.isEmpty() || !isAsciiLetter(value.charAt(0))) {
+            return -1;
+        }
+        for (int i = 1; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ':') {
+                return i;
+            }
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+                return -1;
+            }
+        }
+        return -1;
     }
 
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
 }
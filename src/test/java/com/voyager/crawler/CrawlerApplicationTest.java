@@ -1,5 +1,20 @@
 package com.voyager.crawler;
 
+import com.voyager.crawler.config.ClusterConfig;
+import com.voyager.crawler.config.ConcurrencyMode;
+import com.voyager.crawler.config.ContentDedupMode;
+import com.voyager.crawler.config.CrawlerConfig;
+import com.voyager.crawler.config.DedupConfig;
+import com.voyager.crawler.config.DedupMode;
+import com.voyager.crawler.config.FetchLimits;
+import com.voyager.crawler.config.HttpClientConfig;
+import com.voyager.crawler.config.HttpProtocol;
+import com.voyager.crawler.config.ParserType;
+import com.voyager.crawler.config.PolitenessConfig;
+import com.voyager.crawler.config.SchedulingMode;
+import com.voyager.crawler.config.StorageType;
+import com.voyager.crawler.util.ConsolePrinter;
+import com.voyager.crawler.util.UrlCanonicalizer;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.InvocationTargetException;
@@ -32,6 +47,232 @@ class CrawlerApplicationTest {
         assertEquals("Expected 4 arguments.", ex.getMessage());
     }
 
+    @Test
+    void testParseArguments_AcceptsModeOption() {
+        Object cli = invokeParseArguments("https://example.com", "5", "2", "true", "--mode=pipelined");
+
+        assertEquals(SchedulingMode.PIPELINED, invokeAccessor(cli, "schedulingMode"));
+        assertEquals(2, (int) invokeAccessor(cli, "maxDepth"));
+    }
+
+    @Test
+    void testParseArguments_ParserOption() {
+        Object defaults = invokeParseArguments("https://example.com", "5", "2", "true");
+        Object streaming = invokeParseArguments("https://example.com", "5", "2", "true", "--parser=streaming");
+
+        assertEquals(ParserType.JSOUP, invokeAccessor(defaults, "parserType"));
+        assertEquals(ParserType.STREAMING, invokeAccessor(streaming, "parserType"));
+    }
+
+    @Test
+    void testParseArguments_DedupOptions() {
+        Object cli = invokeParseArguments("https://example.com", "5", "2", "true", "--dedup=bloom",
+                "--bloom-capacity=1000", "--bloom-fpp=0.01");
+
+        assertEquals(new DedupConfig(DedupMode.BLOOM, 1000, 0.01), invokeAccessor(cli, "dedup"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--bloom-fpp=1.5"));
+    }
+
+    @Test
+    void testParseArguments_ResumeOption() {
+        Object cli = invokeParseArguments("https://example.com", "5", "2", "true", "--resume=crawl-output");
+
+        assertEquals("crawl-output", invokeAccessor(cli, "resumeDir"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--resume"));
+    }
+
+    @Test
+    void testParseArguments_IncrementalOption() {
+        Object cli = invokeParseArguments("https://example.com", "5", "2", "true", "--incremental=previous-output");
+
+        assertEquals("previous-output", invokeAccessor(cli, "incrementalDir"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--incremental="));
+    }
+
+    @Test
+    void testParseArguments_ContentDedupOption() {
+        Object defaults = invokeParseArguments("https://example.com", "5", "2", "true");
+        Object near = invokeParseArguments("https://example.com", "5", "2", "true", "--content-dedup=near");
+
+        assertEquals(ContentDedupMode.OFF, invokeAccessor(defaults, "contentDedup"));
+        assertEquals(ContentDedupMode.NEAR, invokeAccessor(near, "contentDedup"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--content-dedup=fuzzy"));
+    }
+
+    @Test
+    void testParseArguments_StorageOption() {
+        Object defaults = invokeParseArguments("https://example.com", "5", "2", "true");
+        Object archive = invokeParseArguments("https://example.com", "5", "2", "true", "--storage=archive-gzip");
+
+        assertEquals(StorageType.FILES, invokeAccessor(defaults, "storage"));
+        assertEquals(StorageType.ARCHIVE_GZIP, invokeAccessor(archive, "storage"));
+        assertEquals(StorageType.FILES_SHARDED, invokeAccessor(invokeParseArguments("https://example.com", "5", "2",
+                "true", "--storage=files-sharded"), "storage"));
+        assertEquals(2, invokeAccessor(defaults, "storageWriters"));
+        assertEquals(0, invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true",
+                "--storage-writers=0"), "storageWriters"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--storage=tar"));
+    }
+
+    @Test
+    void testParseArguments_HttpOptions() {
+        Object defaults = invokeParseArguments("https://example.com", "5", "2", "true");
+        Object http11 = invokeParseArguments("https://example.com", "5", "2", "true", "--http=1.1",
+                "--http-threads=4");
+
+        assertEquals(HttpClientConfig.defaults(), invokeAccessor(defaults, "http"));
+        assertEquals(new HttpClientConfig(HttpProtocol.HTTP_1_1, 4), invokeAccessor(http11, "http"));
+        assertEquals(new HttpClientConfig(HttpProtocol.HTTP_2, 0, true), invokeAccessor(
+                invokeParseArguments("https://example.com", "5", "2", "true", "--store-compressed"), "http"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--http=3"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--http-threads=-1"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--store-compressed=yes"));
+    }
+
+    @Test
+    void testParseArguments_ConcurrencyMode() {
+        Object defaults = invokeParseArguments("https://example.com", "5", "2", "true");
+        Object fixed = invokeParseArguments("https://example.com", "5", "2", "true", "--concurrency=fixed");
+
+        assertEquals(PolitenessConfig.defaults(), invokeAccessor(defaults, "politeness"));
+        assertEquals(ConcurrencyMode.FIXED,
+                ((PolitenessConfig) invokeAccessor(fixed, "politeness")).concurrencyMode());
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--concurrency=vegas"));
+    }
+
+    @Test
+    void testParseArguments_IgnoreRobots() {
+        assertTrue((boolean) invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true"),
+                "obeyRobots"));
+        assertFalse((boolean) invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true",
+                "--ignore-robots"), "obeyRobots"));
+    }
+
+    @Test
+    void testParseArguments_LinkCanonicalization() {
+        URI link = URI.create("https://example.com/a?b=1&utm_source=x&a=2&ref=y");
+        UrlCanonicalizer defaults = (UrlCanonicalizer) invokeAccessor(
+                invokeParseArguments("https://example.com", "5", "2", "true"), "canonicalizer");
+        UrlCanonicalizer custom = (UrlCanonicalizer) invokeAccessor(invokeParseArguments("https://example.com", "5",
+                "2", "true", "--tracking-params=ref, utm_*", "--sort-query"), "canonicalizer");
+        UrlCanonicalizer none = (UrlCanonicalizer) invokeAccessor(invokeParseArguments("https://example.com", "5",
+                "2", "true", "--tracking-params=none"), "canonicalizer");
+
+        assertEquals("https://example.com/a?b=1&a=2&ref=y", defaults.canonicalize(link).toString());
+        assertEquals("https://example.com/a?a=2&b=1", custom.canonicalize(link).toString());
+        assertSame(link, none.canonicalize(link));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--tracking-params"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--tracking-params=,"));
+    }
+
+    @Test
+    void testParseArguments_ProgressInterval() {
+        assertEquals(5, invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true"),
+                "progressIntervalSeconds"));
+        assertEquals(0, invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true",
+                "--progress-interval-s=0"), "progressIntervalSeconds"));
+    }
+
+    @Test
+    void testParseArguments_LogLevel() {
+        assertEquals(ConsolePrinter.Level.INFO, invokeAccessor(invokeParseArguments("https://example.com", "5", "2",
+                "true"), "logLevel"));
+        assertEquals(ConsolePrinter.Level.WARN, invokeAccessor(invokeParseArguments("https://example.com", "5", "2",
+                "true", "--log-level=WARN"), "logLevel"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--log-level=debug"));
+    }
+
+    @Test
+    void testParseArguments_ClusterOptions() {
+        Object cli = invokeParseArguments("https://example.com", "5", "2", "true",
+                "--cluster=127.0.0.1:9001, localhost:9002,[::1]:9003", "--node=1");
+        ClusterConfig cluster = (ClusterConfig) invokeAccessor(cli, "cluster");
+
+        assertNull(invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true"), "cluster"));
+        assertEquals(3, cluster.size());
+        assertEquals(1, cluster.nodeIndex());
+        assertEquals(9002, cluster.self().getPort());
+        assertEquals("localhost", cluster.self().getHostString());
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--cluster=127.0.0.1:9001"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--node=0"));
+        assertThrows(IllegalArgumentException.class, () -> invokeParseArguments("https://example.com", "5", "2",
+                "true", "--cluster=127.0.0.1:9001,127.0.0.1:9002", "--node=2"));
+        assertThrows(IllegalArgumentException.class, () -> invokeParseArguments("https://example.com", "5", "2",
+                "true", "--cluster=127.0.0.1", "--node=0"));
+        assertThrows(IllegalArgumentException.class, () -> invokeParseArguments("https://example.com", "5", "2",
+                "true", "--cluster=127.0.0.1:9001", "--node=0", "--mode=pipelined"));
+        assertThrows(IllegalArgumentException.class, () -> invokeParseArguments("https://example.com", "5", "2",
+                "true", "--cluster=127.0.0.1:9001", "--node=0", "--resume=crawled_data/previous"));
+    }
+
+    @Test
+    void testParseArguments_FetchLimits() {
+        Object defaults = invokeParseArguments("https://example.com", "5", "2", "true");
+        Object limited = invokeParseArguments("https://example.com", "5", "2", "true", "--body-budget-mb=64",
+                "--max-page-kb=512");
+
+        assertEquals(FetchLimits.defaults(), invokeAccessor(defaults, "limits"));
+        assertEquals(new FetchLimits(64L * 1024 * 1024, 512L * 1024), invokeAccessor(limited, "limits"));
+        assertEquals(FetchLimits.unlimited(), invokeAccessor(invokeParseArguments("https://example.com", "5", "2",
+                "true", "--body-budget-mb=0", "--max-page-kb=0"), "limits"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--max-page-kb=-1"));
+    }
+
+    @Test
+    void testParseArguments_FlightRecording() {
+        assertNull(invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true"), "jfr"));
+        assertEquals("true", invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true",
+                "--jfr"), "jfr"));
+        assertEquals("/tmp/crawl.jfr", invokeAccessor(invokeParseArguments("https://example.com", "5", "2", "true",
+                "--jfr=/tmp/crawl.jfr"), "jfr"));
+        assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--jfr="));
+    }
+
+    @Test
+    void testLinkLimit_StopsParserEarlyOnlyWhenNoLinksAreSkipped() {
+        assertEquals(5, invokeLinkLimit(invokeParseArguments("https://example.com", "5", "2", "false",
+                "--parser=streaming", "--ignore-robots")));
+        assertEquals(0, invokeLinkLimit(invokeParseArguments("https://example.com", "5", "2", "false",
+                "--parser=streaming")));
+        assertEquals(0, invokeLinkLimit(invokeParseArguments("https://example.com", "5", "2", "true",
+                "--parser=streaming", "--ignore-robots")));
+        assertEquals(0, invokeLinkLimit(invokeParseArguments("https://example.com", "5", "2", "false",
+                "--ignore-robots")));
+    }
+
+    @Test
+    void testCreateConfig_CanonicalizesSeedLikeLinks() {
+        Object cli = invokeParseArguments("https://Example.com:443/a/../b?utm_source=x&id=1#top", "5", "2", "true");
+        Object keepTracking = invokeParseArguments("https://example.com/b?utm_source=x", "5", "2", "true",
+                "--tracking-params=none");
+
+        assertEquals(URI.create("https://example.com/b?id=1"), invokeCreateConfig(cli).seedUrl());
+        assertEquals(URI.create("https://example.com/b?utm_source=x"), invokeCreateConfig(keepTracking).seedUrl());
+    }
+
+    @Test
+    void testParseArguments_RejectsUnknownOption() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> invokeParseArguments("https://example.com", "5", "2", "true", "--bogus"));
+        assertEquals("Unknown option: --bogus", ex.getMessage());
+    }
+
     private static Object invokeParseArguments(String... args) {
         try {
             Method method = CrawlerApplication.class.getDeclaredMethod("parseArguments", String[].class);
@@ -51,6 +292,26 @@ class CrawlerApplicationTest {
         }
     }
 
+    private static CrawlerConfig invokeCreateConfig(Object cli) {
+        try {
+            Method method = CrawlerApplication.class.getDeclaredMethod("createConfig", cli.getClass());
+            method.setAccessible(true);
+            return (CrawlerConfig) method.invoke(null, cli);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static int invokeLinkLimit(Object cli) {
+        try {
+            Method method = CrawlerApplication.class.getDeclaredMethod("linkLimit", cli.getClass());
+            method.setAccessible(true);
+            return (int) method.invoke(null, cli);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private static Object invokeAccessor(Object target, String name) {
         try {
             Method method = target.getClass().getDeclaredMethod(name);
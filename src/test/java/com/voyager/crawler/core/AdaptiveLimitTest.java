@@ -0,0 +1,125 @@
+package com.voyager.crawler.core;
+
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link AdaptiveLimit}.
+ */
+class AdaptiveLimitTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void testOverloadInWindowHalvesLimit() {
+        AdaptiveLimit limit = AdaptiveLimit.adaptive(16, 64, 0);
+
+        recordWindow(limit, 15, FAST);
+        limit.record(FAST, true);
+
+        assertEquals(8, limit.limit());
+        assertEquals(8, limit.lowestLimit());
+    }
+
+    @Test
+    void testFastWindowsGrowLimitUpToMaximum() {
+        AdaptiveLimit limit = AdaptiveLimit.adaptive(4, 6, 0);
+
+        recordWindow(limit, 4, FAST);
+        assertEquals(5, limit.limit());
+        recordWindow(limit, 5, FAST);
+        recordWindow(limit, 6, FAST);
+        recordWindow(limit, 6, FAST);
+
+        assertEquals(6, limit.limit());
+        assertEquals(6, limit.highestLimit());
+    }
+
+    @Test
+    void testRisingLatencyShrinksLimit() {
+        AdaptiveLimit limit = AdaptiveLimit.adaptive(10, 40, 0);
+
+        recordWindow(limit, 10, FAST);
+        assertEquals(11, limit.limit());
+        recordWindow(limit, 11, 3 * FAST);
+
+        assertEquals(9, limit.limit(), "Queueing latency should cut the limit by a tenth");
+    }
+
+    @Test
+    void testOverloadThresholdIgnoresSparseOverload() {
+        AdaptiveLimit limit = AdaptiveLimit.adaptive(20, 80, 0.1);
+
+        recordWindow(limit, 18, FAST);
+        limit.record(FAST, true);
+        limit.record(FAST, true);
+        assertEquals(21, limit.limit(), "A tenth of overloaded responses should be tolerated");
+
+        recordWindow(limit, 16, FAST);
+        for (int i = 0; i < 5; i++) {
+            limit.record(FAST, true);
+        }
+        assertEquals(10, limit.limit());
+    }
+
+    @Test
+    void testGrowthAdmitsWaitingCaller() throws Exception {
+        AdaptiveLimit limit = AdaptiveLimit.adaptive(1, 4, 0);
+        limit.acquire();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> waiter = executor.submit(() -> {
+                limit.acquire();
+                return null;
+            });
+            assertThrows(TimeoutException.class, () -> waiter.get(100, TimeUnit.MILLISECONDS));
+
+            recordWindow(limit, 4, FAST);
+            waiter.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0, limit.available());
+    }
+
+    @Test
+    void testRelativeLatencyIsScaledByBaseline() {
+        AdaptiveLimit limit = AdaptiveLimit.adaptive(4, 4, 0);
+        assertEquals(-1, limit.relativeLatency(FAST));
+
+        recordWindow(limit, 4, FAST);
+
+        assertEquals(AdaptiveLimit.RELATIVE_SCALE, limit.relativeLatency(FAST));
+        assertEquals(3 * AdaptiveLimit.RELATIVE_SCALE, limit.relativeLatency(3 * FAST));
+    }
+
+    @Test
+    void testUnknownLatencyIsLeftOutOfTheMean() {
+        AdaptiveLimit limit = AdaptiveLimit.adaptive(4, 8, 0);
+        recordWindow(limit, 4, FAST);
+        assertEquals(5, limit.limit());
+
+        recordWindow(limit, 5, -1);
+
+        assertEquals(6, limit.limit());
+        assertEquals(AdaptiveLimit.RELATIVE_SCALE, limit.relativeLatency(FAST));
+    }
+
+    @Test
+    void testFixedLimitIgnoresSamples() {
+        AdaptiveLimit limit = AdaptiveLimit.fixed(3);
+
+        for (int i = 0; i < 20; i++) {
+            limit.record(FAST, true);
+        }
+
+        assertEquals(3, limit.limit());
+        assertFalse(limit.isAdaptive());
+    }
+
+    private static void recordWindow(AdaptiveLimit limit, int samples, long latencyNanos) {
+        for (int i = 0; i < samples; i++) {
+            limit.record(latencyNanos, false);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.io.*;
+import com.voyager.crawler.testutil.*;
+import com.voyager.crawler.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ClusterNode}: nodes joined in one process, and a cluster of crawler
+ * processes on localhost crawling a {@link StandInWebServer}.
+ */
+class ClusterNodeTest {
+    private static final int HOSTS = 6;
+    private static final int PAGES_PER_HOST = 4;
+
+    private final List<ClusterNode> nodes = new ArrayList<>();
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ClusterNode::close);
+    }
+
+    @Test
+    void testOwnerOf_SpreadsHostsAndIgnoresPaths() {
+        int[] hostsPerNode = new int[3];
+        for (int i = 0; i < 300; i++) {
+            int owner = ClusterNode.ownerOf(URI.create("http://host" + i + ".example.com/a"), 3);
+            assertEquals(owner, ClusterNode.ownerOf(URI.create("http://HOST" + i + ".example.com/b?c=1"), 3));
+            hostsPerNode[owner]++;
+        }
+
+        for (int count : hostsPerNode) {
+            assertTrue(count > 60, Arrays.toString(hostsPerNode));
+        }
+        assertEquals(0, ClusterNode.ownerOf(URI.create("http://example.com/"), 1));
+    }
+
+    @Test
+    @Timeout(30)
+    void testForwardsLinksToOwnersAndFinishesDepthsTogether() throws Exception {
+        List<ClusterNode> cluster = join(3);
+        URI forNode1 = ownedBy(1, 3, "a");
+        URI forNode2 = ownedBy(2, 3, "b");
+
+        cluster.get(0).forward(List.of(forNode1, forNode2), 2, 1);
+        assertEquals(List.of(true, true, true), finishDepth(cluster, 0));
+
+        assertEquals(List.of(), drain(cluster.get(0), 1));
+        assertEquals(List.of(new ClusterNode.ForwardedLinks(List.of(forNode1), 2)), drain(cluster.get(1), 1));
+        assertEquals(List.of(new ClusterNode.ForwardedLinks(List.of(forNode2), 2)), drain(cluster.get(2), 1));
+        assertEquals(List.of(false, false, false), finishDepth(cluster, 1));
+        assertTrue(cluster.get(0).toString().contains("2 links forwarded in 2 batches"), cluster.get(0).toString());
+        assertThrows(IllegalArgumentException.class,
+                () -> cluster.get(0).forward(List.of(ownedBy(0, 3, "c")), 1, 1));
+    }
+
+    @Test
+    @Timeout(30)
+    void testForward_SendsFullBatchesBeforeTheDepthEnds() throws Exception {
+        List<ClusterNode> cluster = join(2);
+        for (int i = 0; i < ClusterNode.BATCH_SIZE; i++) {
+            cluster.get(0).forward(List.of(ownedBy(1, 2, "p" + i)), 1, 1);
+        }
+
+        List<URI> received = new ArrayList<>();
+        while (received.size() < ClusterNode.BATCH_SIZE) {
+            cluster.get(1).drainReceived(1, group -> received.addAll(group.links()));
+            Thread.sleep(10);
+        }
+        assertEquals(ClusterNode.BATCH_SIZE, new HashSet<>(received).size());
+    }
+
+    @Test
+    @Timeout(60)
+    void testOwnerChecksForwardedLinksAgainstRobotsAndTheBranchingLimit() throws Exception {
+        // Enough hosts that both nodes own some of them.
+        try (StandInWebServer server = StandInWebServer.start(16)) {
+            server.setPages((host, path) -> path.equals("/robots.txt") ? "User-agent: *\nDisallow: /private/\n" : "");
+            URI seed = null;
+            int foreignHost = -1;
+            for (int host = 0; host < server.hostCount(); host++) {
+                URI root = UrlUtils.normalize(server.uri(host, "/"));
+                if (ClusterNode.ownerOf(root, 2) == 0 && seed == null) {
+                    seed = root;
+                } else if (ClusterNode.ownerOf(root, 2) == 1 && foreignHost < 0) {
+                    foreignHost = host;
+                }
+            }
+            assertTrue(seed != null && foreignHost >= 0, "All stand-in hosts belong to one node");
+            List<URI> links = List.of(server.uri(foreignHost, "/private/a"), server.uri(foreignHost, "/public/b"),
+                    server.uri(foreignHost, "/public/c"), server.uri(foreignHost, "/public/d"));
+            CrawlerConfig config = new CrawlerConfig(seed, 2, 1, true);
+            URI root = seed;
+
+            List<ClusterNode> cluster = join(2);
+            List<Set<URI>> fetched = List.of(ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet());
+            List<RobotsCache> robots = new ArrayList<>();
+            List<Future<?>> crawls = new ArrayList<>();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int node = 0; node < 2; node++) {
+                    Set<URI> fetchedHere = fetched.get(node);
+                    HostScheduler scheduler = new HostScheduler(PolitenessConfig.defaults());
+                    robots.add(new RobotsCache(scheduler));
+                    CrawlerManager manager = new CrawlerManager(config, uri -> {
+                        fetchedHere.add(uri);
+                        return Optional.of("page");
+                    }, (uri, html) -> uri.equals(root) ? new LinkedHashSet<>(links) : Set.of(), (uri, html, depth) -> {
+                    }, new ConcurrentDedupService(), CrawlOptions.defaults().withScheduler(scheduler)
+                            .withRobots(robots.get(node)).withCluster(cluster.get(node)));
+                    crawls.add(executor.submit(manager::crawl));
+                }
+            }
+            for (Future<?> crawl : crawls) {
+                crawl.get();
+            }
+
+            assertEquals(Set.of(seed), fetched.get(0));
+            // The disallowed link is dropped by the owner and does not use up one of the two places.
+            assertEquals(Set.of(links.get(1), links.get(2)), fetched.get(1));
+            assertEquals(1, robots.get(0).fetchCount(), "The sender checked robots.txt of a host it does not own");
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void testFinishDepth_FailsWhenAPeerLeaves() throws Exception {
+        List<ClusterNode> cluster = join(2);
+        cluster.get(1).close();
+
+        // Depending on timing the depth-done message cannot be sent or its answer never comes.
+        assertThrows(RuntimeException.class, () -> cluster.get(0).finishDepth(0, 0));
+    }
+
+    @Test
+    @Timeout(120)
+    void testProcessesStoreEachPageOnceOnTheNodeOwningItsHost() throws Exception {
+        try (StandInWebServer server = StandInWebServer.start(HOSTS)) {
+            server.setPages((host, path) -> page(server, host, path));
+            List<String> crawl = List.of(server.uri(0, "/0").toString(), "3", "3", "true", "--storage=files-sharded",
+                    "--host-interval-ms=0", "--progress-interval-s=0", "--log-level=warn");
+
+            Path singleDir = tempDir.resolve("single");
+            Set<String> single = storedUrls(await(launch(singleDir, crawl), singleDir));
+
+            List<InetSocketAddress> addresses = freeAddresses(3);
+            String members = addresses.stream().map(address -> "127.0.0.1:" + address.getPort())
+                    .collect(Collectors.joining(","));
+            List<Process> processes = new ArrayList<>();
+            for (int node = 0; node < addresses.size(); node++) {
+                List<String> args = new ArrayList<>(crawl);
+                args.add("--cluster=" + members);
+                args.add("--node=" + node);
+                processes.add(launch(tempDir.resolve("node" + node), args));
+            }
+
+            Set<String> union = new HashSet<>();
+            int nodesWithPages = 0;
+            for (int node = 0; node < processes.size(); node++) {
+                Set<String> stored = storedUrls(await(processes.get(node), tempDir.resolve("node" + node)));
+                for (String url : stored) {
+                    assertEquals(node, ClusterNode.ownerOf(URI.create(url), processes.size()), url);
+                    assertTrue(union.add(url), url + " stored twice");
+                }
+                nodesWithPages += stored.isEmpty() ? 0 : 1;
+            }
+            assertTrue(single.size() > 10, single.toString());
+            assertEquals(single, union);
+            assertTrue(nodesWithPages > 1);
+        }
+    }
+
+    /**
+     * Page {@code /n} of a host links to pages of the next three hosts.
+     */
+    private static String page(StandInWebServer server, int host, String path) {
+        int page;
+        try {
+            page = Integer.parseInt(path.substring(1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (int k = 1; k <= 3; k++) {
+            html.append("<a href=\"").append(server.uri((host + k) % HOSTS, "/" + (page * 2 + k) % PAGES_PER_HOST))
+                    .append("\">link</a>");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private List<ClusterNode> join(int size) throws Exception {
+        List<InetSocketAddress> addresses = freeAddresses(size);
+        List<Future<ClusterNode>> joins = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < size; i++) {
+                ClusterConfig config = new ClusterConfig(addresses, i);
+                joins.add(executor.submit(() -> ClusterNode.join(config)));
+            }
+        }
+        for (Future<ClusterNode> join : joins) {
+            nodes.add(join.get());
+        }
+        return List.copyOf(nodes);
+    }
+
+    private static List<Boolean> finishDepth(List<ClusterNode> cluster, int depth) throws Exception {
+        List<Future<Boolean>> finishes = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ClusterNode node : cluster) {
+                finishes.add(executor.submit(() -> node.finishDepth(depth, 0)));
+            }
+        }
+        List<Boolean> results = new ArrayList<>();
+        for (Future<Boolean> finish : finishes) {
+            results.add(finish.get());
+        }
+        return results;
+    }
+
+    private static List<ClusterNode.ForwardedLinks> drain(ClusterNode node, int depth) {
+        List<ClusterNode.ForwardedLinks> groups = new ArrayList<>();
+        node.drainReceived(depth, groups::add);
+        return groups;
+    }
+
+    private static URI ownedBy(int node, int nodeCount, String path) {
+        for (int i = 0; ; i++) {
+            URI uri = URI.create("http://host" + i + ".example.com/" + path);
+            if (ClusterNode.ownerOf(uri, nodeCount) == node) {
+                return uri;
+            }
+        }
+    }
+
+    private static List<InetSocketAddress> freeAddresses(int count) throws IOException {
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                sockets.add(new ServerSocket(0, 0, InetAddress.getLoopbackAddress()));
+            }
+            return sockets.stream()
+                    .map(socket -> new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort()))
+                    .toList();
+        } finally {
+            for (ServerSocket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Starts the crawler in a new JVM on this test's class path, working in {@code dir}.
+     */
+    private static Process launch(Path dir, List<String> args) throws IOException {
+        Files.createDirectories(dir);
+        List<String> command = new ArrayList<>(List.of(Path.of(System.getProperty("java.home"), "bin", "java")
+                .toString(), "-cp", System.getProperty("java.class.path"), "com.voyager.crawler.CrawlerApplication"));
+        command.addAll(args);
+        return new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true)
+                .redirectOutput(dir.resolve("console.log").toFile()).start();
+    }
+
+    /**
+     * Waits for a crawler process started in {@code dir} and returns its output directory.
+     */
+    private static Path await(Process process, Path dir) throws Exception {
+        assertTrue(process.waitFor(90, TimeUnit.SECONDS), "crawler process did not finish");
+        String console = Files.readString(dir.resolve("console.log"));
+        assertEquals(0, process.exitValue(), console);
+        try (Stream<Path> outputDirs = Files.list(dir.resolve("crawled_data"))) {
+            List<Path> found = outputDirs.toList();
+            assertEquals(1, found.size(), console);
+            return found.get(0);
+        }
+    }
+
+    private static Set<String> storedUrls(Path outputDir) throws IOException {
+        Set<String> urls = new HashSet<>();
+        for (String line : Files.readAllLines(outputDir.resolve(LocalFileStorage.MANIFEST_FILE),
+                StandardCharsets.UTF_8)) {
+            urls.add(line.substring(0, line.indexOf('\t')));
+        }
+        return urls;
+    }
+}
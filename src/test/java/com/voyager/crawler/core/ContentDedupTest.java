@@ -0,0 +1,161 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ContentDedup} and {@link ContentFingerprint}.
+ */
+class ContentDedupTest {
+    private static final URI CANONICAL = URI.create("https://example.com/article");
+    private static final URI PRINT_VIEW = URI.create("https://example.com/article?print=1");
+    private static final URI SESSION_VARIANT = URI.create("https://example.com/article?sid=42");
+    private static final URI OTHER = URI.create("https://example.com/other");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testFingerprintIgnoresChunkBoundariesAndMarkup() {
+        byte[] page = article("alpha", "").getBytes(StandardCharsets.UTF_8);
+        ContentFingerprint whole = ContentFingerprint.of(page);
+        ContentFingerprint split = ContentFingerprint.of(ByteBuffer.wrap(page, 0, 1000).slice(),
+                ByteBuffer.wrap(page, 1000, page.length - 1000).slice());
+        ContentFingerprint restyled = ContentFingerprint.of(article("alpha", "").replace("<p>", "<p class='x'>")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(whole, split);
+        assertNotEquals(whole.low(), restyled.low());
+        assertEquals(0, whole.distance(restyled));
+        assertTrue(whole.distance(ContentFingerprint.of(article("beta", "").getBytes(StandardCharsets.UTF_8))) > 10);
+    }
+
+    @Test
+    void testDetectsExactAndNearDuplicates() throws Exception {
+        Path aliasFile = tempDir.resolve("aliases.tsv");
+        try (ContentDedup dedup = new ContentDedup(ContentDedupMode.NEAR, aliasFile)) {
+            assertTrue(dedup.check(CANONICAL, 0, fingerprint(article("alpha", ""))).isEmpty());
+
+            ContentDedup.Alias exact = dedup.check(PRINT_VIEW, 1, fingerprint(article("alpha", ""))).orElseThrow();
+            assertEquals(new ContentDedup.Alias(CANONICAL, 0, true), exact);
+
+            ContentDedup.Alias near = dedup.check(SESSION_VARIANT, 1, fingerprint(article("alpha", "session 8f3a9c21")))
+                    .orElseThrow();
+            assertEquals(new ContentDedup.Alias(CANONICAL, 0, false), near);
+
+            assertTrue(dedup.check(OTHER, 1, fingerprint(article("beta", ""))).isEmpty());
+            assertEquals(4, dedup.pagesChecked());
+            assertEquals(1, dedup.exactDuplicates());
+            assertEquals(1, dedup.nearDuplicates());
+        }
+        assertEquals(List.of(PRINT_VIEW + "\t1\t" + CANONICAL + "\t0\texact",
+                SESSION_VARIANT + "\t1\t" + CANONICAL + "\t0\tnear"), Files.readAllLines(aliasFile));
+    }
+
+    @Test
+    void testExactModeAndDepthOrder() {
+        try (ContentDedup dedup = new ContentDedup(ContentDedupMode.EXACT, null)) {
+            assertTrue(dedup.check(CANONICAL, 2, fingerprint(article("alpha", ""))).isEmpty());
+            assertTrue(dedup.check(PRINT_VIEW, 1, fingerprint(article("alpha", ""))).isEmpty(),
+                    "A page must not alias a deeper canonical page");
+            assertTrue(dedup.check(SESSION_VARIANT, 2, fingerprint(article("alpha", "session 8f3a9c21"))).isEmpty(),
+                    "Near duplicates are not detected in exact mode");
+        }
+    }
+
+    @Test
+    void testManyDistinctPagesAreNotDuplicates() {
+        try (ContentDedup dedup = new ContentDedup(ContentDedupMode.NEAR, null)) {
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(dedup.check(URI.create("https://example.com/p" + i), 0, fingerprint(article("t" + i, "")))
+                        .isEmpty(), "Page " + i + " reported as duplicate");
+            }
+        }
+    }
+
+    @Test
+    void testForgottenPageIsNotCanonical() {
+        try (ContentDedup dedup = new ContentDedup(ContentDedupMode.NEAR, null)) {
+            ContentFingerprint alpha = fingerprint(article("alpha", ""));
+            assertTrue(dedup.check(CANONICAL, 0, alpha).isEmpty());
+            dedup.forget(CANONICAL, 0, alpha);
+
+            assertTrue(dedup.check(PRINT_VIEW, 1, alpha).isEmpty(), "A page that was not stored must not be canonical");
+            assertEquals(new ContentDedup.Alias(PRINT_VIEW, 1, false),
+                    dedup.check(SESSION_VARIANT, 1, fingerprint(article("alpha", "session 8f3a9c21"))).orElseThrow());
+        }
+    }
+
+    @Test
+    void testResumedIndexKnowsConfirmedPages() throws Exception {
+        Path contentFile = tempDir.resolve("contents.tsv");
+        ContentFingerprint alpha = fingerprint(article("alpha", ""));
+        ContentFingerprint beta = fingerprint(article("beta", ""));
+        try (ContentDedup dedup = new ContentDedup(ContentDedupMode.NEAR, null, contentFile)) {
+            assertTrue(dedup.check(CANONICAL, 0, alpha).isEmpty());
+            dedup.confirm(CANONICAL, 0, alpha);
+            assertTrue(dedup.check(OTHER, 0, beta).isEmpty());
+        }
+        // An interrupted write leaves a partial line behind.
+        Files.writeString(contentFile, OTHER + "\t0\t", StandardOpenOption.APPEND);
+
+        try (ContentDedup resumed = new ContentDedup(ContentDedupMode.NEAR, null, contentFile)) {
+            assertTrue(resumed.check(CANONICAL, 0, alpha).isEmpty(), "A stored page fetched again is not a duplicate");
+            assertEquals(new ContentDedup.Alias(CANONICAL, 0, true), resumed.check(PRINT_VIEW, 1, alpha).orElseThrow());
+            assertEquals(new ContentDedup.Alias(CANONICAL, 0, false),
+                    resumed.check(SESSION_VARIANT, 1, fingerprint(article("alpha", "session 8f3a9c21"))).orElseThrow());
+            assertTrue(resumed.check(OTHER, 0, beta).isEmpty(), "An unconfirmed page is not loaded");
+        }
+    }
+
+    @Test
+    void testConcurrentChecksOfOneContentKeepOneCanonical() throws Exception {
+        ContentFingerprint alpha = fingerprint(article("alpha", ""));
+        try (ContentDedup dedup = new ContentDedup(ContentDedupMode.NEAR, null);
+                ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                URI uri = URI.create("https://example.com/copy" + i);
+                results.add(executor.submit(() -> dedup.check(uri, 0, alpha).isEmpty()));
+            }
+            int canonical = 0;
+            for (Future<Boolean> result : results) {
+                canonical += result.get() ? 1 : 0;
+            }
+            assertEquals(1, canonical);
+            assertEquals(63, dedup.exactDuplicates() + dedup.nearDuplicates());
+        }
+    }
+
+    private static ContentFingerprint fingerprint(String html) {
+        return ContentFingerprint.of(html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds an article whose words are determined by {@code topic}, with {@code extra} text
+     * inserted at the top.
+     */
+    private static String article(String topic, String extra) {
+        Random random = new Random(topic.hashCode());
+        StringBuilder html = new StringBuilder("<html><body><p>").append(extra).append("</p>");
+        for (int paragraph = 0; paragraph < 20; paragraph++) {
+            html.append("<p>");
+            for (int word = 0; word < 30; word++) {
+                html.append("w").append(random.nextInt(5000)).append(' ');
+            }
+            html.append("</p>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link CrawlJournal} and {@link CrawlCheckpoint}.
+ */
+class CrawlCheckpointTest {
+    private static final URI SEED = URI.create("https://example.com");
+    private static final URI PAGE_A = URI.create("https://example.com/a");
+    private static final URI PAGE_B = URI.create("https://example.com/b");
+    private static final URI PAGE_C = URI.create("https://example.com/c");
+
+    @TempDir
+    Path dir;
+
+    private final CrawlerConfig config = new CrawlerConfig(SEED, 5, 2, true, SchedulingMode.BARRIER);
+
+    @Test
+    void testJournalRoundTripComputesPendingUrls() {
+        Path file = dir.resolve("journal.tsv");
+        try (CrawlJournal journal = CrawlJournal.create(file, config)) {
+            journal.recordPage(SEED, 0, true, List.of(PAGE_A, PAGE_B));
+            journal.recordPage(PAGE_A, 1, true, List.of(PAGE_C));
+        }
+
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.load(file);
+
+        assertEquals(2, checkpoint.pagesSaved());
+        assertFalse(checkpoint.isFinished());
+        assertEquals(List.of(), checkpoint.pending(0));
+        assertEquals(List.of(PAGE_B), checkpoint.pending(1));
+        assertEquals(List.of(PAGE_C), checkpoint.pending(2));
+        assertEquals(Set.of(PAGE_A, PAGE_B), checkpoint.scheduled(1));
+    }
+
+    @Test
+    void testAppendContinuesAfterTornLine() throws Exception {
+        Path file = dir.resolve("journal.tsv");
+        try (CrawlJournal journal = CrawlJournal.create(file, config)) {
+            journal.recordPage(SEED, 0, true, List.of(PAGE_A));
+        }
+        Files.writeString(file, "C\t1\t1\thttps://exa", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.load(file);
+        assertEquals(List.of(PAGE_A), checkpoint.pending(1));
+
+        try (CrawlJournal journal = CrawlJournal.append(file, checkpoint)) {
+            journal.recordPage(PAGE_A, 1, false, List.of());
+            journal.recordFinished();
+        }
+
+        CrawlCheckpoint resumed = CrawlCheckpoint.load(file);
+        assertEquals(List.of(), resumed.pending(1));
+        assertEquals(1, resumed.pagesSaved());
+        assertTrue(resumed.isFinished());
+    }
+
+    @Test
+    void testRequireCompatibleRejectsDifferentCrawl() {
+        Path file = dir.resolve("journal.tsv");
+        CrawlJournal.create(file, config).close();
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.load(file);
+
+        checkpoint.requireCompatible(config);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> checkpoint.requireCompatible(new CrawlerConfig(SEED, 5, 3, true, SchedulingMode.BARRIER)));
+        assertTrue(ex.getMessage().contains("maxDepth 2"));
+    }
+
+    @Test
+    void testLoadRejectsMissingJournal() {
+        assertThrows(IllegalArgumentException.class, () -> CrawlCheckpoint.load(dir.resolve("missing.tsv")));
+    }
+}
@@ -0,0 +1,101 @@
+package com.voyager.crawler.core;
+
+import org.junit.jupiter.api.*;
+
+import java.nio.file.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link CrawlMetrics}, the latency histograms of {@link StageStats}, and the lines
+ * printed by {@link ProgressReporter}.
+ */
+class CrawlMetricsTest {
+    @Test
+    void testPercentilesFollowRecordedLatencies() {
+        StageStats stats = new StageStats();
+        for (int millis = 1000; millis >= 1; millis--) {
+            stats.recordFetch(millis * 1_000_000L);
+        }
+
+        StageStats.Snapshot fetch = stats.fetch();
+        assertEquals(1000, fetch.count());
+        assertEquals(500, fetch.p50Millis(), 500 / 8.0);
+        assertEquals(990, fetch.p99Millis(), 990 / 8.0);
+        assertEquals(1000, fetch.maxMillis(), 1e-9);
+        assertEquals(0, stats.parse().p99Nanos(), "An empty stage has no percentiles");
+    }
+
+    @Test
+    void testHistogramBucketsAreOrderedAndBounded() {
+        int previous = 0;
+        for (long nanos = 0; nanos < 100_000; nanos++) {
+            int bucket = StageStats.Latency.bucketOf(nanos);
+            assertTrue(bucket == previous || bucket == previous + 1, "Bucket skipped at " + nanos);
+            previous = bucket;
+        }
+        assertEquals(0, StageStats.Latency.bucketOf(-1));
+        assertEquals(StageStats.Latency.BUCKETS - 1, StageStats.Latency.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testProgressFollowsShallowestUnfinishedDepth() {
+        CrawlMetrics metrics = new CrawlMetrics(2, new StageStats(), new AtomicInteger(3), null, null);
+        metrics.recordScheduled(0);
+        metrics.recordCompleted(0);
+        for (int i = 0; i < 4; i++) {
+            metrics.recordScheduled(1);
+        }
+        metrics.recordCompleted(1);
+        metrics.recordScheduled(2);
+
+        CrawlMetrics.Progress progress = metrics.progress();
+        assertEquals(1, progress.depth());
+        assertEquals(4, progress.depthScheduled());
+        assertEquals(3, progress.depthRemaining());
+        assertEquals(2, progress.totalCompleted());
+        String line = ProgressReporter.format(progress, 1.5);
+        assertTrue(line.startsWith("Progress: depth 1/2, 1 of 4 URLs (25%), 3 pages saved, 1.5 pages/s"), line);
+        assertTrue(line.endsWith("ETA 2 s"), line);
+        assertTrue(ProgressReporter.format(progress, 0).endsWith("ETA unknown"));
+        metrics.recordSpilledSegments(1, 2);
+        assertTrue(ProgressReporter.format(metrics.progress(), 1.5)
+                .startsWith("Progress: depth 1/2, 1 of 4 URLs (25%), 2 spilled segments, 3 pages saved"));
+
+        for (int i = 0; i < 3; i++) {
+            metrics.recordCompleted(1);
+        }
+        metrics.recordCompleted(2);
+        assertEquals(2, metrics.progress().depth());
+        assertTrue(ProgressReporter.format(metrics.progress(), 0).endsWith("depth done"));
+        assertEquals("depth 0: 1 URLs, depth 1: 4 URLs, depth 2: 1 URLs", metrics.frontierSummary());
+    }
+
+    @Test
+    void testWritesJsonSummary() throws Exception {
+        StageStats stats = new StageStats();
+        stats.recordFetch(2_000_000);
+        stats.recordBytesSaved(1234);
+        CrawlMetrics metrics = new CrawlMetrics(1, stats, new AtomicInteger(1), null, null);
+        metrics.recordScheduled(0);
+        metrics.recordCompleted(0);
+        metrics.addGauge("parseQueuePeak", () -> 7);
+        metrics.addSummary("robots", () -> "1 robots.txt fetched, 0 URLs \"disallowed\"");
+        metrics.recordFinished();
+
+        Path file = Files.createTempDirectory("metrics").resolve("out/metrics.json");
+        metrics.writeJson(file);
+        String json = Files.readString(file);
+
+        assertEquals(metrics.toJson(), json);
+        assertTrue(json.contains("\"pagesSaved\": 1,"));
+        assertTrue(json.contains("{\"depth\": 0, \"scheduled\": 1, \"completed\": 1, \"spilledSegments\": 0}"));
+        assertTrue(json.contains("\"fetch\": {\"count\": 1, \"avgMs\": 2.000, \"p50Ms\": 2.000"), json);
+        assertTrue(json.contains("\"bytes\": {\"saved\": 1234}"));
+        assertTrue(json.contains("\"gauges\": {\n    \"parseQueuePeak\": 7\n  }"), json);
+        assertTrue(json.contains("\"robots\": \"1 robots.txt fetched, 0 URLs \\\"disallowed\\\"\""), json);
+        assertFalse(json.contains("\"responses\""));
+        assertTrue(json.startsWith("{") && json.endsWith("}\n"));
+    }
+}
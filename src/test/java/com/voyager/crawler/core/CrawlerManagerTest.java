@@ -3,12 +3,17 @@ package com.voyager.crawler.core;
 import com.voyager.crawler.config.*;
 import com.voyager.crawler.io.*;
 import com.voyager.crawler.parser.HtmlParser;
+import com.voyager.crawler.testutil.*;
 import com.voyager.crawler.util.*;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
 import org.mockito.*;
 
 import java.net.*;
+import java.nio.file.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 import java.util.stream.*;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -37,7 +42,7 @@ class CrawlerManagerTest {
 
     @Test
     void testSinglePageCrawl() throws Exception {
-        URI seed = new URI("http://example.com");
+        URI seed = new URI("http://example.com/");
         CrawlerConfig config = new CrawlerConfig(seed, 5, 0, true);
 
         when(fetcher.fetch(seed)).thenReturn(Optional.of("html"));
@@ -52,7 +57,7 @@ class CrawlerManagerTest {
 
     @Test
     void testBranchingFactorLimit() throws Exception {
-        URI seed = new URI("http://root.com");
+        URI seed = new URI("http://root.com/");
         Set<URI> tenLinks = IntStream.range(0, 10)
                 .mapToObj(i -> URI.create("http://child" + i + ".com"))
                 .collect(Collectors.toSet());
@@ -70,9 +75,24 @@ class CrawlerManagerTest {
         verify(fetcher, times(3)).fetch(any());
     }
 
+    @Test
+    void testZeroLinkLimitSkipsExtraction() throws Exception {
+        URI seed = new URI("http://root.com/");
+        CrawlerConfig config = new CrawlerConfig(seed, 0, 2, false);
+
+        when(fetcher.fetch(seed)).thenReturn(Optional.of("root"));
+
+        manager = new CrawlerManager(config, fetcher, parser, storage, dedupService);
+        manager.crawl();
+
+        verify(fetcher, times(1)).fetch(any());
+        verify(parser, never()).extractLinks(any(URI.class), anyString());
+        verify(storage, times(1)).save(eq(seed), anyString(), eq(0));
+    }
+
     @Test
     void testAllowsRevisitWhenNotUnique() throws Exception {
-        URI seed = new URI("http://example.com");
+        URI seed = new URI("http://example.com/");
         CrawlerConfig config = new CrawlerConfig(seed, 5, 1, false);
 
         when(fetcher.fetch(seed)).thenReturn(Optional.of("root"));
@@ -83,4 +103,274 @@ class CrawlerManagerTest {
 
         verify(fetcher, times(2)).fetch(seed);
     }
+
+    @Test
+    void testSpillingFrontierCrawlsEveryUrl(@TempDir Path spillDir) throws Exception {
+        URI seed = new URI("http://root.com/");
+        List<URI> tenLinks = IntStream.range(0, 10)
+                .mapToObj(i -> URI.create("http://child" + i + ".com"))
+                .toList();
+
+        CrawlerConfig config = new CrawlerConfig(seed, 10, 1, false);
+
+        when(fetcher.fetch(any(URI.class))).thenReturn(Optional.of("child"));
+        when(fetcher.fetch(seed)).thenReturn(Optional.of("root"));
+        when(parser.extractLinks(eq(seed), anyString())).thenReturn(new LinkedHashSet<>(tenLinks));
+
+        manager = new CrawlerManager(config, fetcher, parser, storage, dedupService,
+                CrawlOptions.defaults().withFrontierConfig(new FrontierConfig(3, spillDir)));
+        manager.crawl();
+
+        verify(fetcher, times(11)).fetch(any());
+        tenLinks.forEach(link -> verify(storage, times(1)).save(eq(link), anyString(), eq(1)));
+        try (Stream<Path> files = Files.list(spillDir)) {
+            Assertions.assertEquals(0, files.count(), "Spill segments should be deleted");
+        }
+    }
+
+    @Test
+    void testRobotsDisallowedLinksAreNotQueued() throws Exception {
+        try (StandInWebServer server = StandInWebServer.start(1)) {
+            server.setPages((host, path) -> path.equals("/robots.txt") ? "User-agent: *\nDisallow: /private/\n" : "");
+            URI seed = UrlUtils.normalize(server.uri(0, "/"));
+            List<URI> links = List.of(server.uri(0, "/private/a"), server.uri(0, "/public/b"),
+                    server.uri(0, "/private/c"), server.uri(0, "/public/d"));
+            CrawlerConfig config = new CrawlerConfig(seed, 2, 1, true);
+
+            when(fetcher.fetch(any(URI.class))).thenReturn(Optional.of("child"));
+            when(fetcher.fetch(seed)).thenReturn(Optional.of("root"));
+            when(parser.extractLinks(eq(seed), anyString())).thenReturn(new LinkedHashSet<>(links));
+
+            HostScheduler scheduler = new HostScheduler(PolitenessConfig.defaults());
+            manager = new CrawlerManager(config, fetcher, parser, storage, dedupService,
+                    CrawlOptions.defaults().withScheduler(scheduler).withRobots(new RobotsCache(scheduler)));
+            manager.crawl();
+
+            // Disallowed links do not count against maxLinksPerPage.
+            verify(fetcher, never()).fetch(links.get(0));
+            verify(fetcher, never()).fetch(links.get(2));
+            verify(fetcher, times(1)).fetch(links.get(1));
+            verify(fetcher, times(1)).fetch(links.get(3));
+        }
+    }
+
+    @Test
+    void testRobotsFilesOfDifferentHostsAreFetchedConcurrently() throws Exception {
+        try (StandInWebServer server = StandInWebServer.start(5)) {
+            server.setPages((host, path) -> "");
+            server.setLatency(3, Duration.ofMillis(400));
+            server.setLatency(4, Duration.ofMillis(400));
+            URI seed = UrlUtils.normalize(server.uri(0, "/"));
+            URI first = server.uri(1, "/a");
+            URI second = server.uri(2, "/b");
+            Map<URI, Set<URI>> links = Map.of(seed, new LinkedHashSet<>(List.of(first, second)),
+                    first, Set.of(server.uri(3, "/c")), second, Set.of(server.uri(4, "/d")));
+            CrawlerConfig config = new CrawlerConfig(seed, 2, 2, true);
+
+            HostScheduler scheduler = new HostScheduler(PolitenessConfig.defaults());
+            manager = new CrawlerManager(config, uri -> Optional.of("page"),
+                    (uri, html) -> links.getOrDefault(uri, Set.of()), (uri, html, depth) -> {
+                    }, dedupService,
+                    CrawlOptions.defaults().withScheduler(scheduler).withRobots(new RobotsCache(scheduler)));
+            manager.crawl();
+
+            // Each depth 1 page checks its link on its own thread, so neither waits for the other's robots.txt.
+            long apartNanos = Math.abs(server.requestStartNanos(3).get(0) - server.requestStartNanos(4).get(0));
+            long apartMs = apartNanos / 1_000_000;
+            Assertions.assertTrue(apartMs < 300, "robots.txt fetches were " + apartMs + " ms apart");
+        }
+    }
+
+    @Test
+    void testJournalRecordsSavedPages(@TempDir Path dir) {
+        URI seed = URI.create("http://root.com/");
+        List<URI> links = List.of(URI.create("http://a.com/"), URI.create("http://b.com/"));
+        CrawlerConfig config = new CrawlerConfig(seed, 5, 1, true);
+        Path journalFile = dir.resolve("journal.tsv");
+
+        try (CrawlJournal journal = CrawlJournal.create(journalFile, config)) {
+            manager = new CrawlerManager(config, uri -> Optional.of("page"),
+                    (uri, html) -> uri.equals(seed) ? new LinkedHashSet<>(links) : Set.of(), (uri, html, depth) -> {
+                    }, dedupService, CrawlOptions.defaults().withJournal(journal));
+            manager.crawl();
+        }
+
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.load(journalFile);
+        Assertions.assertEquals(3, checkpoint.pagesSaved());
+    }
+
+    @Test
+    void testResumeSkipsCompletedPages(@TempDir Path dir) throws Exception {
+        assertResumeSkipsCompletedPages(SchedulingMode.BARRIER, dir);
+    }
+
+    @Test
+    void testPipelinedResumeSkipsCompletedPages(@TempDir Path dir) throws Exception {
+        assertResumeSkipsCompletedPages(SchedulingMode.PIPELINED, dir);
+    }
+
+    /**
+     * Crawls a tree of 13 pages, cuts the journal back to its first records as an interrupted
+     * crawl would leave it, and resumes from it.
+     */
+    private void assertResumeSkipsCompletedPages(SchedulingMode mode, Path dir) throws Exception {
+        URI seed = URI.create("http://root.com/");
+        Map<URI, Set<URI>> tree = new HashMap<>();
+        tree.put(seed, new LinkedHashSet<>());
+        for (int i = 0; i < 4; i++) {
+            URI child = URI.create("http://child" + i + ".com/");
+            tree.get(seed).add(child);
+            tree.put(child, new LinkedHashSet<>(List.of(URI.create("http://leaf" + i + "a.com/"),
+                    URI.create("http://leaf" + i + "b.com/"))));
+        }
+        CrawlerConfig config = new CrawlerConfig(seed, 4, 2, true, mode);
+        Path journalFile = dir.resolve("journal.tsv");
+        HtmlParser treeParser = (uri, html) -> tree.getOrDefault(uri, Set.of());
+        ContentStorage discard = (uri, html, depth) -> {
+        };
+
+        try (CrawlJournal journal = CrawlJournal.create(journalFile, config)) {
+            manager = new CrawlerManager(config, uri -> Optional.of("page"), treeParser, discard,
+                    new ConcurrentDedupService(), CrawlOptions.defaults().withJournal(journal));
+            manager.crawl();
+        }
+        List<String> lines = Files.readAllLines(journalFile);
+        Assertions.assertEquals(15, lines.size(), "Header, 13 pages and the finished record");
+        Files.write(journalFile, lines.subList(0, 7));
+        Set<URI> completed = lines.subList(1, 7).stream()
+                .map(line -> URI.create(line.split("\t")[3]))
+                .collect(Collectors.toSet());
+
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.load(journalFile);
+        List<URI> fetched = Collections.synchronizedList(new ArrayList<>());
+        try (CrawlJournal journal = CrawlJournal.append(journalFile, checkpoint)) {
+            manager = new CrawlerManager(config, uri -> {
+                fetched.add(uri);
+                return Optional.of("page");
+            }, treeParser, discard, new ConcurrentDedupService(), CrawlOptions.defaults().withJournal(journal));
+            manager.resume(checkpoint);
+        }
+
+        Assertions.assertEquals(7, fetched.size(), fetched.toString());
+        Assertions.assertEquals(7, new HashSet<>(fetched).size(), fetched.toString());
+        Assertions.assertTrue(Collections.disjoint(completed, fetched), "Completed pages were fetched again");
+        Assertions.assertEquals(13, manager.metrics().progress().pagesSaved());
+        Assertions.assertEquals(13, CrawlCheckpoint.load(journalFile).pagesSaved());
+    }
+
+    @Test
+    void testHostOrderGroupsUrlsByHost() {
+        List<URI> uris = List.of(
+                URI.create("http://a.com/1"),
+                URI.create("http://b.com/1"),
+                URI.create("http://A.com/2"),
+                URI.create("http://c.com:8080/1"),
+                URI.create("http://b.com/2"),
+                URI.create("http://c.com/1"),
+                URI.create("http://a.com/3"));
+
+        int[] order = CrawlerManager.hostOrder(uris);
+
+        Assertions.assertArrayEquals(new int[] {0, 2, 6, 1, 4, 3, 5}, order);
+        Assertions.assertEquals(0, CrawlerManager.hostOrder(List.of()).length);
+    }
+
+    @Test
+    void testPipelinedBranchingFactorLimit() throws Exception {
+        URI seed = new URI("http://root.com/");
+        List<URI> tenLinks = IntStream.range(0, 10)
+                .mapToObj(i -> URI.create("http://child" + i + ".com"))
+                .toList();
+
+        CrawlerConfig config = new CrawlerConfig(seed, 2, 1, true, SchedulingMode.PIPELINED);
+
+        when(fetcher.fetch(any(URI.class))).thenReturn(Optional.of("child"));
+        when(fetcher.fetch(seed)).thenReturn(Optional.of("root"));
+        when(parser.extractLinks(eq(seed), anyString())).thenReturn(new LinkedHashSet<>(tenLinks));
+
+        manager = new CrawlerManager(config, fetcher, parser, storage, dedupService);
+        manager.crawl();
+
+        verify(fetcher, times(3)).fetch(any());
+        verify(storage, times(1)).save(eq(tenLinks.get(0)), anyString(), eq(1));
+        verify(storage, times(1)).save(eq(tenLinks.get(1)), anyString(), eq(1));
+        Assertions.assertEquals(3, dedupService.size());
+    }
+
+    @Test
+    void testPipelinedCrawlsUrlOnceAtTheDepthFirstReached() throws Exception {
+        URI seed = new URI("http://root.com/");
+        URI slow = URI.create("http://slow.com/");
+        URI fast = URI.create("http://fast.com/");
+        URI between = URI.create("http://between.com/");
+        URI shared = URI.create("http://shared.com/");
+        URI leaf = URI.create("http://leaf.com/");
+        CrawlerConfig config = new CrawlerConfig(seed, 5, 3, true, SchedulingMode.PIPELINED);
+
+        when(fetcher.fetch(any(URI.class))).thenReturn(Optional.of("page"));
+        when(fetcher.fetch(slow)).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return Optional.of("slow");
+        });
+        when(parser.extractLinks(any(URI.class), anyString())).thenReturn(Set.of());
+        when(parser.extractLinks(eq(seed), anyString())).thenReturn(new LinkedHashSet<>(List.of(slow, fast)));
+        when(parser.extractLinks(eq(slow), anyString())).thenReturn(Set.of(shared));
+        when(parser.extractLinks(eq(fast), anyString())).thenReturn(Set.of(between));
+        when(parser.extractLinks(eq(between), anyString())).thenReturn(Set.of(shared));
+        when(parser.extractLinks(eq(shared), anyString())).thenReturn(Set.of(leaf));
+
+        manager = new CrawlerManager(config, fetcher, parser, storage, dedupService);
+        manager.crawl();
+
+        // The fast path reaches the shared page at depth 3, where its links are not extracted.
+        verify(fetcher, times(1)).fetch(shared);
+        verify(storage, times(1)).save(eq(shared), anyString(), eq(3));
+        verify(fetcher, never()).fetch(leaf);
+    }
+
+    @Test
+    void testPipelinedBoundsTasksInFlight() {
+        URI seed = URI.create("http://root.com/");
+        int childCount = CrawlerManager.MAX_PENDING_TASKS + 1000;
+        Set<URI> children = IntStream.range(0, childCount)
+                .mapToObj(i -> URI.create("http://child" + i + ".com/"))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        CrawlerConfig config = new CrawlerConfig(seed, childCount, 1, true, SchedulingMode.PIPELINED);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger fetched = new AtomicInteger();
+
+        manager = new CrawlerManager(config, uri -> {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            fetched.incrementAndGet();
+            return Optional.of("page");
+        }, (uri, html) -> uri.equals(seed) ? children : Set.of(), (uri, html, depth) -> {
+        }, dedupService, CrawlOptions.defaults().withScheduler(new HostScheduler(new PolitenessConfig(
+                2 * childCount, 2, Duration.ZERO))));
+        manager.crawl();
+
+        Assertions.assertEquals(childCount + 1, fetched.get());
+        Assertions.assertTrue(peak.get() <= CrawlerManager.MAX_PENDING_TASKS, "Peak of " + peak + " tasks");
+    }
+
+    @Test
+    void testPipelinedAllowsRevisitAcrossDepthsWhenNotUnique() throws Exception {
+        URI seed = new URI("http://example.com/");
+        CrawlerConfig config = new CrawlerConfig(seed, 5, 2, false, SchedulingMode.PIPELINED);
+
+        when(fetcher.fetch(seed)).thenReturn(Optional.of("root"));
+        when(parser.extractLinks(eq(seed), anyString())).thenReturn(Set.of(seed));
+
+        manager = new CrawlerManager(config, fetcher, parser, storage, dedupService);
+        manager.crawl();
+
+        verify(fetcher, times(3)).fetch(seed);
+        verify(storage, times(1)).save(eq(seed), anyString(), eq(2));
+    }
 }
@@ -0,0 +1,261 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.io.*;
+import com.voyager.crawler.testutil.*;
+import org.junit.jupiter.api.*;
+
+import java.net.*;
+import java.net.http.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link HostScheduler} against a local multi-host {@link StandInWebServer}.
+ */
+class HostSchedulerTest {
+    private static final long TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(15);
+
+    private StandInWebServer server;
+    private HttpClient client;
+    private ExecutorService executor;
+    private final Map<String, Queue<Long>> grantNanos = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = StandInWebServer.start(3);
+        client = HttpClient.newHttpClient();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    void testEnforcesPerHostIntervalAndConcurrency() throws Exception {
+        Duration interval = Duration.ofMillis(40);
+        HostScheduler scheduler = new HostScheduler(new PolitenessConfig(10, 2, interval));
+        for (int host = 0; host < 3; host++) {
+            server.setLatency(host, Duration.ofMillis(20));
+        }
+
+        runAll(scheduler, requests(0, 12), requests(1, 12), requests(2, 12));
+
+        for (int host = 0; host < 3; host++) {
+            assertEquals(12, server.requestCount(host));
+            assertTrue(server.peakInFlight(host) <= 2, "Per-host concurrency exceeded for host " + host);
+
+            List<Long> grants = new ArrayList<>(grantNanos.get(HostScheduler.hostKey(server.uri(host, "/"))));
+            Collections.sort(grants);
+            for (int i = 1; i < grants.size(); i++) {
+                long gap = grants.get(i) - grants.get(i - 1);
+                assertTrue(gap >= interval.toNanos() - TOLERANCE_NANOS,
+                        "Requests to host " + host + " only " + gap / 1_000_000 + " ms apart");
+            }
+
+            List<Long> arrivals = server.requestStartNanos(host);
+            long span = arrivals.get(arrivals.size() - 1) - arrivals.get(0);
+            assertTrue(span >= (arrivals.size() - 1) * interval.toNanos() - TOLERANCE_NANOS,
+                    "Host " + host + " served faster than its rate limit: " + span / 1_000_000 + " ms");
+        }
+        assertTrue(server.peakInFlightTotal() <= 6);
+    }
+
+    @Test
+    void testHostsDoNotWaitOnEachOthersDelays() throws Exception {
+        HostScheduler scheduler = new HostScheduler(new PolitenessConfig(50, 1, Duration.ofMillis(150)));
+
+        long start = System.nanoTime();
+        runAll(scheduler, requests(0, 4), requests(1, 4), requests(2, 4));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // Each host needs ~3 intervals (450 ms); sharing one delay would take ~1650 ms.
+        assertTrue(elapsedMs >= 400, "Interval not enforced: " + elapsedMs + " ms");
+        assertTrue(elapsedMs < 1200, "Hosts waited on each other: " + elapsedMs + " ms");
+    }
+
+    @Test
+    void testSlowHostDoesNotStarveOtherHosts() throws Exception {
+        HostScheduler scheduler = new HostScheduler(new PolitenessConfig(6, 2, Duration.ZERO));
+        server.setLatency(0, Duration.ofMillis(500));
+
+        // Queue the slow host's requests first so they would claim every global permit.
+        List<Future<?>> slow = submit(scheduler, requests(0, 20));
+        Thread.sleep(50);
+
+        long start = System.nanoTime();
+        runAll(scheduler, requests(1, 30), requests(2, 30));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(30, server.requestCount(1));
+        assertEquals(30, server.requestCount(2));
+        assertTrue(server.peakInFlight(0) <= 2);
+        assertTrue(elapsedMs < 2000, "Fast hosts were starved for " + elapsedMs + " ms");
+        assertTrue(slow.stream().anyMatch(f -> !f.isDone()), "Slow host should still be busy");
+    }
+
+    @Test
+    void testAdaptiveLimitFollowsChangingHostCapacity() throws Exception {
+        HostScheduler scheduler = new HostScheduler(
+                new PolitenessConfig(64, 16, Duration.ZERO, ConcurrencyMode.ADAPTIVE));
+        JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher(BufferPool.shared(),
+                new HttpClientConfig(HttpProtocol.HTTP_1_1, 0), FetchLimits.defaults(), scheduler);
+        URI host = server.uri(0, "/");
+        server.setLatency(0, Duration.ofMillis(20));
+
+        // The host starts out able to serve only 4 requests at once.
+        server.setCapacity(0, 4);
+        fetchAll(scheduler, fetcher, requests(0, 120));
+        int limitWhileFragile = scheduler.hostLimit(host);
+        assertTrue(limitWhileFragile <= 8, "Host limit should back off from 16: " + limitWhileFragile);
+        assertTrue(server.overloadedCount(0) < server.requestCount(0) / 4,
+                server.overloadedCount(0) + " of " + server.requestCount(0) + " requests were refused");
+
+        // Then it scales out, and the limit should grow back past what the first phase allowed.
+        server.setCapacity(0, 48);
+        int refusedBefore = server.overloadedCount(0);
+        fetchAll(scheduler, fetcher, requests(0, 400));
+        assertTrue(scheduler.hostLimit(host) >= 12,
+                "Host limit should grow with capacity: " + limitWhileFragile + " -> " + scheduler.hostLimit(host));
+        assertEquals(refusedBefore, server.overloadedCount(0));
+    }
+
+    @Test
+    void testAdaptiveLimitsNeverExceedConfiguredValues() throws Exception {
+        HostScheduler scheduler = new HostScheduler(
+                new PolitenessConfig(10, 4, Duration.ZERO, ConcurrencyMode.ADAPTIVE));
+        URI uri = server.uri(0, "/");
+
+        for (int i = 0; i < 500; i++) {
+            scheduler.onResponse(uri, 1_000_000, false);
+        }
+
+        assertEquals(10, scheduler.globalLimit());
+        assertEquals(4, scheduler.hostLimit(uri));
+    }
+
+    @Test
+    void testGlobalLimitJudgesLatencyPerHost() throws Exception {
+        HostScheduler scheduler = new HostScheduler(
+                new PolitenessConfig(8, 4, Duration.ZERO, ConcurrencyMode.ADAPTIVE));
+        URI fast = server.uri(0, "/");
+        URI slow = server.uri(1, "/");
+
+        for (int i = 0; i < 40; i++) {
+            scheduler.onResponse(fast, TimeUnit.MILLISECONDS.toNanos(5), false);
+        }
+        // A host that is steadily ten times slower is not queueing, and should not shrink the total.
+        for (int i = 0; i < 80; i++) {
+            scheduler.onResponse(slow, TimeUnit.MILLISECONDS.toNanos(50), false);
+        }
+
+        assertEquals(8, scheduler.globalLimit());
+        assertEquals(4, scheduler.hostLimit(slow));
+    }
+
+    @Test
+    void testFixedLimitIgnoresFeedback() throws Exception {
+        HostScheduler scheduler = new HostScheduler(new PolitenessConfig(10, 4, Duration.ZERO));
+        URI uri = server.uri(0, "/");
+
+        for (int i = 0; i < 100; i++) {
+            scheduler.onResponse(uri, 1_000_000, true);
+        }
+
+        assertEquals(10, scheduler.globalLimit());
+        assertEquals(4, scheduler.hostLimit(uri));
+        assertEquals("", scheduler.limitSummary());
+    }
+
+    @Test
+    void testDropsStateOfIdleHostsOnly() throws Exception {
+        HostScheduler scheduler = new HostScheduler(new PolitenessConfig(10, 2, Duration.ZERO), Duration.ofMillis(500));
+        for (int i = 0; i < 100; i++) {
+            scheduler.acquire(URI.create("http://host" + i + ".example.com/")).close();
+        }
+        URI busy = URI.create("http://busy.example.com/");
+        URI delayed = URI.create("http://delayed.example.com/");
+        HostScheduler.Permit held = scheduler.acquire(busy);
+        scheduler.setCrawlDelay(delayed, Duration.ofSeconds(2));
+        assertEquals(102, scheduler.trackedHosts());
+
+        Thread.sleep(600);
+        scheduler.acquire(URI.create("http://new.example.com/")).close();
+
+        assertEquals(3, scheduler.trackedHosts());
+        assertEquals(Duration.ofSeconds(2), scheduler.hostInterval(delayed));
+        held.close();
+    }
+
+    @Test
+    void testRetryWaitsForTheHostInterval() throws Exception {
+        Duration interval = Duration.ofMillis(200);
+        HostScheduler scheduler = new HostScheduler(new PolitenessConfig(10, 2, interval));
+        URI uri = server.uri(0, "/");
+
+        try (HostScheduler.Permit first = scheduler.acquire(uri);
+                HostScheduler.Permit second = scheduler.acquire(uri)) {
+            long start = System.nanoTime();
+            scheduler.awaitRetry(uri);
+            long waitedNanos = System.nanoTime() - start;
+
+            // The second request just took the host's start time, so the retry gets the next one.
+            assertTrue(waitedNanos >= interval.toNanos() - TOLERANCE_NANOS,
+                    "Retry waited only " + waitedNanos / 1_000_000 + " ms");
+        }
+    }
+
+    private void fetchAll(HostScheduler scheduler, JavaHttpClientFetcher fetcher, List<URI> uris) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (URI uri : uris) {
+            futures.add(executor.submit(() -> {
+                try (HostScheduler.Permit permit = scheduler.acquire(uri)) {
+                    return fetcher.fetch(uri);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private List<URI> requests(int host, int count) {
+        List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            uris.add(server.uri(host, "/page" + i));
+        }
+        return uris;
+    }
+
+    @SafeVarargs
+    private void runAll(HostScheduler scheduler, List<URI>... batches) throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<URI> batch : batches) {
+            futures.addAll(submit(scheduler, batch));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private List<Future<?>> submit(HostScheduler scheduler, List<URI> uris) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (URI uri : uris) {
+            futures.add(executor.submit(() -> {
+                try (HostScheduler.Permit permit = scheduler.acquire(uri)) {
+                    grantNanos.computeIfAbsent(HostScheduler.hostKey(uri), key -> new ConcurrentLinkedQueue<>())
+                            .add(System.nanoTime());
+                    client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+                }
+                return null;
+            }));
+        }
+        return futures;
+    }
+}
@@ -0,0 +1,105 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.parser.*;
+import org.junit.jupiter.api.*;
+
+import java.net.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ParseStage} and the hand-off from {@link CrawlTask}.
+ */
+class ParseStageTest {
+    private final CountDownLatch releaseParser = new CountDownLatch(1);
+    private final AtomicInteger parsing = new AtomicInteger(0);
+    private final HtmlParser blockingParser = (uri, html) -> {
+        parsing.incrementAndGet();
+        try {
+            releaseParser.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Set.of(uri.resolve("/next"));
+    };
+    private final StageStats stats = new StageStats();
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseParser.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @Timeout(10)
+    void testHostPermitReleasedBeforeParsing() throws Exception {
+        HostScheduler scheduler = new HostScheduler(new PolitenessConfig(1, 1, Duration.ZERO));
+        AtomicInteger fetches = new AtomicInteger(0);
+        AtomicInteger pagesSaved = new AtomicInteger(0);
+
+        try (ParseStage stage = new ParseStage(blockingParser, stats, 2, 4)) {
+            List<Future<Set<URI>>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                URI uri = URI.create("http://example.com/page" + i);
+                CrawlTask task = new CrawlTask(uri, 0, u -> {
+                    fetches.incrementAndGet();
+                    return Optional.of("<html></html>");
+                }, (u, content, depth) -> {
+                }, scheduler, stage, true, pagesSaved, stats);
+                results.add(executor.submit(task));
+            }
+
+            // Both pages are fetched through a single global permit while the first parse is blocked.
+            awaitValue(parsing, 2);
+            assertEquals(2, fetches.get());
+            assertEquals(1, scheduler.availableGlobalPermits());
+
+            releaseParser.countDown();
+            for (Future<Set<URI>> result : results) {
+                assertEquals(Set.of(URI.create("http://example.com/next")), result.get());
+            }
+            assertEquals(2, pagesSaved.get());
+            assertEquals(2, stats.fetch().count());
+            assertEquals(2, stats.parse().count());
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void testFullQueueBlocksSubmitter() throws Exception {
+        try (ParseStage stage = new ParseStage(blockingParser, stats, 1, 1)) {
+            CompletableFuture<Set<URI>> first = stage.submit(URI.create("http://example.com/1"), "");
+            awaitValue(parsing, 1);
+            CompletableFuture<Set<URI>> second = stage.submit(URI.create("http://example.com/2"), "");
+            assertEquals(1, stage.queueDepth());
+
+            Future<CompletableFuture<Set<URI>>> third = executor.submit(
+                    () -> stage.submit(URI.create("http://example.com/3"), ""));
+            assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+            releaseParser.countDown();
+            assertFalse(first.get().isEmpty());
+            assertFalse(second.get().isEmpty());
+            assertFalse(third.get().get().isEmpty());
+            assertEquals(1, stage.peakQueueDepth());
+            assertEquals(3, stats.parseWait().count());
+        }
+    }
+
+    private static void awaitValue(AtomicInteger value, int expected) throws InterruptedException {
+        while (value.get() < expected) {
+            Thread.sleep(5);
+        }
+    }
+}
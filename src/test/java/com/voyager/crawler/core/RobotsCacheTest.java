@@ -0,0 +1,114 @@
+package com.voyager.crawler.core;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.testutil.*;
+import org.junit.jupiter.api.*;
+
+import java.net.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link RobotsCache} against a local {@link StandInWebServer}.
+ */
+class RobotsCacheTest {
+    private static final String ROBOTS = "User-agent: *\nDisallow: /private/\nCrawl-delay: 1\n";
+
+    private StandInWebServer server;
+    private HostScheduler scheduler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = StandInWebServer.start(2);
+        server.setPages((host, path) -> path.equals("/robots.txt")
+                ? (host == 0 ? ROBOTS : null)
+                : "<html><body>page</body></html>");
+        scheduler = new HostScheduler(PolitenessConfig.defaults());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void testConcurrentLookupsFetchRobotsOnce() throws Exception {
+        RobotsCache robots = new RobotsCache(scheduler);
+        server.setLatency(0, Duration.ofMillis(100));
+
+        List<Future<Boolean>> lookups = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 20; i++) {
+                URI uri = server.uri(0, (i % 2 == 0 ? "/private/" : "/public/") + i);
+                lookups.add(executor.submit(() -> robots.isAllowed(uri)));
+            }
+            for (int i = 0; i < lookups.size(); i++) {
+                assertEquals(i % 2 != 0, lookups.get(i).get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, server.requestCount(0));
+        assertEquals(1, robots.fetchCount());
+        assertEquals(10, robots.disallowedCount());
+    }
+
+    @Test
+    void testCrawlDelayRaisesHostInterval() {
+        RobotsCache robots = new RobotsCache(scheduler);
+        URI page = server.uri(0, "/page");
+
+        assertEquals(PolitenessConfig.DEFAULT_MIN_HOST_INTERVAL, scheduler.hostInterval(page));
+        robots.isAllowed(page);
+
+        assertEquals(Duration.ofSeconds(1), scheduler.hostInterval(page));
+        assertEquals(PolitenessConfig.DEFAULT_MIN_HOST_INTERVAL, scheduler.hostInterval(server.uri(1, "/")));
+    }
+
+    @Test
+    void testMissingRobotsAllowsAndUnreachableRobotsDisallows() {
+        RobotsCache robots = new RobotsCache(scheduler);
+
+        // Host 1 answers 404 for robots.txt.
+        assertTrue(robots.isAllowed(server.uri(1, "/private/page")));
+
+        server.setCapacity(0, 0);
+        assertFalse(robots.isAllowed(server.uri(0, "/public/page")), "A 503 should disallow the host");
+    }
+
+    @Test
+    void testRobotsFetchWaitsForAHostSlot() throws Exception {
+        HostScheduler oneAtATime = new HostScheduler(new PolitenessConfig(4, 1, Duration.ZERO));
+        RobotsCache robots = new RobotsCache(oneAtATime);
+        URI page = server.uri(0, "/public/page");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Boolean> lookup;
+            try (HostScheduler.Permit held = oneAtATime.acquire(page)) {
+                lookup = executor.submit(() -> robots.isAllowed(page));
+                Thread.sleep(200);
+                assertFalse(lookup.isDone());
+                assertEquals(0, server.requestCount(0));
+            }
+            assertTrue(lookup.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.requestCount(0));
+    }
+
+    @Test
+    void testExpiredRulesAreFetchedAgain() throws Exception {
+        RobotsCache robots = new RobotsCache(scheduler, Duration.ofMillis(100));
+        URI page = server.uri(0, "/private/page");
+
+        assertFalse(robots.isAllowed(page));
+        assertFalse(robots.isAllowed(page));
+        assertEquals(1, robots.fetchCount());
+
+        server.setPages((host, path) -> "User-agent: *\nAllow: /\n");
+        Thread.sleep(150);
+        assertTrue(robots.isAllowed(page));
+        assertEquals(2, robots.fetchCount());
+    }
+}
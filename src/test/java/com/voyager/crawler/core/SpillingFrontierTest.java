@@ -0,0 +1,88 @@
+package com.voyager.crawler.core;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link SpillingFrontier}.
+ */
+class SpillingFrontierTest {
+
+    @TempDir
+    Path spillDir;
+
+    @Test
+    void testSpillsAcrossSegmentsAndKeepsOrder() throws Exception {
+        List<URI> urls = IntStream.range(0, 1000)
+                .mapToObj(i -> URI.create("https://example.com/page/" + i + "?q=" + "x".repeat(i % 50)))
+                .toList();
+
+        try (SpillingFrontier frontier = new SpillingFrontier(64, spillDir, "depth-1", 4096)) {
+            urls.forEach(frontier::add);
+
+            assertEquals(urls.size(), frontier.size());
+            assertTrue(frontier.segmentCount() > 1, "Expected several segments");
+
+            List<URI> readBack = new ArrayList<>();
+            frontier.forEach(readBack::add);
+            assertEquals(urls, readBack);
+            assertThrows(IllegalStateException.class, () -> frontier.add(urls.get(0)));
+        }
+
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(0, files.count(), "Segments should be deleted on close");
+        }
+    }
+
+    @Test
+    void testCloseReleasesAnUnfinishedIteration() throws Exception {
+        SpillingFrontier frontier = new SpillingFrontier(8, spillDir, "depth-1", 4096);
+        for (int i = 0; i < 200; i++) {
+            frontier.add(URI.create("https://example.com/page/" + i));
+        }
+        Iterator<URI> iterator = frontier.iterator();
+        assertEquals(URI.create("https://example.com/page/0"), iterator.next());
+
+        frontier.close();
+
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(0, files.count(), "Segments should be deleted on close");
+        }
+        assertThrows(IllegalStateException.class, iterator::hasNext);
+    }
+
+    @Test
+    void testCloseReportsUndeletableSegmentInsteadOfThrowing() throws Exception {
+        SpillingFrontier frontier = new SpillingFrontier(2, spillDir, "depth-1", 4096);
+        for (int i = 0; i < 4; i++) {
+            frontier.add(URI.create("https://example.com/page/" + i));
+        }
+        // A non-empty directory in place of the segment cannot be deleted.
+        Path segment = spillDir.resolve("depth-1-0.seg");
+        Files.delete(segment);
+        Files.createDirectories(segment.resolve("blocker"));
+
+        assertDoesNotThrow(frontier::close);
+        assertTrue(Files.isDirectory(segment));
+    }
+
+    @Test
+    void testStaysInMemoryWithoutSpillDirectory() {
+        try (SpillingFrontier frontier = new SpillingFrontier(2, null, "depth-0")) {
+            frontier.add(URI.create("https://example.com/a"));
+            frontier.add(URI.create("https://example.com/b"));
+            frontier.add(URI.create("https://example.com/c"));
+
+            assertEquals(0, frontier.segmentCount());
+            assertEquals(List.of("https://example.com/a", "https://example.com/b", "https://example.com/c"),
+                    StreamSupport.stream(frontier.spliterator(), false).map(URI::toString).toList());
+        }
+    }
+}
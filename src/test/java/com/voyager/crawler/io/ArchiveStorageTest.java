@@ -0,0 +1,183 @@
+package com.voyager.crawler.io;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import java.util.zip.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ArchiveStorage} and {@link ArchiveReader}.
+ */
+class ArchiveStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRecordsReadBackByUrlAndDepth() throws Exception {
+        URI uri = new URI("https://example.com/latin1");
+        byte[] bytes = "<p>caf\u00e9</p>".getBytes(StandardCharsets.ISO_8859_1);
+        try (ArchiveStorage storage = new ArchiveStorage(tempDir, false)) {
+            try (PageBody body = PageBody.wrap(bytes, StandardCharsets.ISO_8859_1)) {
+                storage.save(uri, body, 1);
+            }
+            storage.save(uri, "<p>again</p>", 2);
+        }
+
+        try (ArchiveReader reader = new ArchiveReader(tempDir)) {
+            assertArrayEquals(bytes, reader.read(uri, 1).orElseThrow());
+            assertEquals("<p>again</p>", new String(reader.read(uri, 2).orElseThrow(), StandardCharsets.UTF_8));
+            assertTrue(reader.read(uri, 0).isEmpty());
+        }
+        String segment = Files.readString(tempDir.resolve("archive").resolve("segment-00000.warc"),
+                StandardCharsets.ISO_8859_1);
+        assertTrue(segment.startsWith("WARC/1.1\r\nWARC-Type: resource\r\n"));
+        assertTrue(segment.contains("WARC-Target-URI: " + uri + "\r\n"));
+    }
+
+    @Test
+    void testFlushSyncsTheIndex() throws Exception {
+        URI uri = new URI("https://example.com/flushed");
+        try (ArchiveStorage storage = new ArchiveStorage(tempDir, false)) {
+            storage.save(uri, "<p>flushed</p>", 0);
+            storage.flush();
+
+            // The index is read while the archive is still open.
+            try (ArchiveReader reader = new ArchiveReader(tempDir)) {
+                assertEquals("<p>flushed</p>", new String(reader.read(uri, 0).orElseThrow(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void testGzipSegmentsHoldOneMemberPerRecordAndRoll() throws Exception {
+        try (ArchiveStorage storage = new ArchiveStorage(tempDir, true, 1024)) {
+            for (int i = 0; i < 20; i++) {
+                storage.save(new URI("https://example.com/" + i), "<p>" + "page ".repeat(100) + i + "</p>", 0);
+            }
+        }
+
+        Path archiveDir = tempDir.resolve("archive");
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            segments = files.filter(file -> file.toString().endsWith(".warc.gz")).sorted().toList();
+        }
+        assertTrue(segments.size() > 1, "Segments should roll over at the configured size");
+        // The concatenated members of a segment form a valid gzip stream.
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segments.get(0)))) {
+            assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).startsWith("WARC/1.1"));
+        }
+        try (ArchiveReader reader = new ArchiveReader(tempDir)) {
+            assertEquals(20, reader.size());
+            String page = new String(reader.read(new URI("https://example.com/17"), 0).orElseThrow(),
+                    StandardCharsets.UTF_8);
+            assertEquals("<p>" + "page ".repeat(100) + "17</p>", page);
+        }
+    }
+
+    @Test
+    void testGzipEncodedBodyIsStoredAsReceived() throws Exception {
+        URI uri = new URI("https://example.com/encoded");
+        String html = "<p>" + "sent compressed ".repeat(50) + "</p>";
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(encoded)) {
+            gzip.write(html.getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (ArchiveStorage storage = new ArchiveStorage(tempDir, true)) {
+            assertTrue(storage.storesGzipEncoding());
+            try (PageBody body = PageBody.readGzip(new ByteArrayInputStream(encoded.toByteArray()),
+                    BufferPool.shared(), StandardCharsets.UTF_8)) {
+                storage.save(uri, body, 0);
+            }
+            storage.save(new URI("https://example.com/next"), "<p>next</p>", 0);
+        }
+
+        byte[] segment = Files.readAllBytes(tempDir.resolve("archive").resolve("segment-00000.warc.gz"));
+        assertTrue(indexOf(segment, encoded.toByteArray()) > 0, "The received member should be copied verbatim");
+        try (ArchiveReader reader = new ArchiveReader(tempDir)) {
+            assertEquals(html, new String(reader.read(uri, 0).orElseThrow(), StandardCharsets.UTF_8));
+            assertEquals("<p>next</p>",
+                    new String(reader.read(new URI("https://example.com/next"), 0).orElseThrow(), StandardCharsets.UTF_8));
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(segment))) {
+            String records = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(records.contains(
+                    "Content-Length: " + html.length() + "\r\n\r\n" + html + "\r\n\r\nWARC/1.1"));
+        }
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        for (int i = 0; i + needle.length <= haystack.length; i++) {
+            if (Arrays.equals(haystack, i, i + needle.length, needle, 0, needle.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void testExportMatchesLocalFileStorageLayout() throws Exception {
+        Path archived = tempDir.resolve("archived");
+        Path files = tempDir.resolve("files");
+        LocalFileStorage local = new LocalFileStorage(files.toString());
+        try (ArchiveStorage storage = new ArchiveStorage(archived, true)) {
+            for (int depth = 0; depth < 3; depth++) {
+                URI uri = new URI("https://example.com/page?d=" + depth);
+                storage.save(uri, "<p>" + depth + "</p>", depth);
+                local.save(uri, "<p>" + depth + "</p>", depth);
+            }
+        }
+
+        Path exported = tempDir.resolve("exported");
+        try (ArchiveReader reader = new ArchiveReader(archived)) {
+            assertEquals(3, reader.exportTo(exported));
+        }
+        for (int depth = 0; depth < 3; depth++) {
+            Path relative = LocalFileStorage.relativePath(new URI("https://example.com/page?d=" + depth), depth);
+            assertArrayEquals(Files.readAllBytes(files.resolve(relative)),
+                    Files.readAllBytes(exported.resolve(relative)));
+        }
+    }
+
+    @Test
+    void testConcurrentWritersAndReopenedArchive() throws Exception {
+        int pages = 200;
+        try (ArchiveStorage storage = new ArchiveStorage(tempDir, false, 4096);
+                ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> saves = new ArrayList<>();
+            for (int i = 0; i < pages; i++) {
+                URI uri = new URI("https://example.com/" + i);
+                String content = "<p>" + i + "</p>".repeat(i % 7 + 1);
+                saves.add(executor.submit(() -> storage.save(uri, content, 1)));
+            }
+            for (Future<?> save : saves) {
+                save.get();
+            }
+        }
+        // A resumed crawl continues in a new segment and may store a page again.
+        try (ArchiveStorage storage = new ArchiveStorage(tempDir, false, 4096)) {
+            storage.save(new URI("https://example.com/0"), "<p>refetched</p>", 1);
+        }
+
+        try (ArchiveReader reader = new ArchiveReader(tempDir)) {
+            assertEquals(pages + 1, reader.size());
+            for (int i = 1; i < pages; i++) {
+                String page = new String(reader.read(new URI("https://example.com/" + i), 1).orElseThrow(),
+                        StandardCharsets.UTF_8);
+                assertEquals("<p>" + i + "</p>".repeat(i % 7 + 1), page);
+            }
+            assertEquals("<p>refetched</p>",
+                    new String(reader.read(new URI("https://example.com/0"), 1).orElseThrow(), StandardCharsets.UTF_8));
+        }
+    }
+}
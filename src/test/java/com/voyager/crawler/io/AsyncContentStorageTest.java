@@ -0,0 +1,158 @@
+package com.voyager.crawler.io;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link AsyncContentStorage}.
+ */
+class AsyncContentStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBodyIsWrittenAfterCallerReleasesIt() throws Exception {
+        BufferPool pool = new BufferPool(16, 8);
+        URI uri = new URI("https://example.com/page");
+        String html = "<p>" + "x".repeat(40) + "</p>";
+
+        try (AsyncContentStorage storage = new AsyncContentStorage(new LocalFileStorage(tempDir.toString()), 1)) {
+            CompletableFuture<Void> write;
+            try (PageBody body = PageBody.read(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)),
+                    pool, null)) {
+                write = storage.saveAsync(uri, body, 1);
+            }
+            write.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(html, Files.readString(tempDir.resolve(LocalFileStorage.relativePath(uri, 1))));
+        assertEquals(3, pool.pooledChunks(), "The writer's handle should return the chunks");
+    }
+
+    @Test
+    void testFullQueueBlocksUntilWritesComplete() throws Exception {
+        CountDownLatch diskStalled = new CountDownLatch(1);
+        RecordingStorage delegate = new RecordingStorage(diskStalled, null);
+        try (AsyncContentStorage storage = new AsyncContentStorage(delegate, 1, 2);
+                ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<Void> first = storage.saveAsync(new URI("https://example.com/1"), "<p>1</p>", 0);
+            CompletableFuture<Void> second = storage.saveAsync(new URI("https://example.com/2"), "<p>2</p>", 0);
+            Future<CompletableFuture<Void>> third = executor.submit(
+                    () -> storage.saveAsync(new URI("https://example.com/3"), "<p>3</p>", 0));
+            Future<?> fetchGate = executor.submit(() -> {
+                storage.awaitCapacity();
+                return null;
+            });
+
+            assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+            assertThrows(TimeoutException.class, () -> fetchGate.get(50, TimeUnit.MILLISECONDS));
+            assertFalse(first.isDone());
+            assertEquals(2, storage.pendingWrites());
+
+            diskStalled.countDown();
+            third.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+            fetchGate.get(5, TimeUnit.SECONDS);
+            assertTrue(first.isDone() && second.isDone());
+            assertEquals(2, storage.peakPendingWrites());
+        }
+        assertEquals(List.of("https://example.com/1", "https://example.com/2", "https://example.com/3"),
+                delegate.saved);
+    }
+
+    @Test
+    void testFailedWriteCompletesExceptionallyAndBatchesShareOneFlush() throws Exception {
+        CountDownLatch diskStalled = new CountDownLatch(1);
+        RecordingStorage delegate = new RecordingStorage(diskStalled, "https://example.com/bad");
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        try (AsyncContentStorage storage = new AsyncContentStorage(delegate, 1, 64)) {
+            // The first write stalls the writer, so the next ones are queued together.
+            writes.add(storage.saveAsync(new URI("https://example.com/0"), "<p>0</p>", 0));
+            writes.add(storage.saveAsync(new URI("https://example.com/bad"), "<p>bad</p>", 0));
+            for (int i = 1; i < 10; i++) {
+                writes.add(storage.saveAsync(new URI("https://example.com/" + i), "<p>" + i + "</p>", 0));
+            }
+            diskStalled.countDown();
+        }
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> writes.get(1).get());
+        assertEquals("disk full", failure.getCause().getMessage());
+        for (int i = 0; i < writes.size(); i++) {
+            if (i != 1) {
+                assertTrue(writes.get(i).isDone() && !writes.get(i).isCompletedExceptionally());
+            }
+        }
+        assertTrue(delegate.flushes.get() <= 2, "Queued writes should be flushed as a group");
+    }
+
+    @Test
+    void testCloseWritesQueuedPages() throws Exception {
+        AsyncContentStorage storage = new AsyncContentStorage(new LocalFileStorage(tempDir.toString()), 2);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            writes.add(storage.saveAsync(new URI("https://example.com/" + i), "<p>" + i + "</p>", i % 3));
+        }
+        storage.close();
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(writes.get(i).isDone());
+            Path file = tempDir.resolve(LocalFileStorage.relativePath(new URI("https://example.com/" + i), i % 3));
+            assertEquals("<p>" + i + "</p>", Files.readString(file));
+        }
+        assertThrows(RejectedExecutionException.class,
+                () -> storage.saveAsync(new URI("https://example.com/late"), "<p>late</p>", 0));
+    }
+
+    /**
+     * Records saved URLs and flushes; the first write waits for a latch.
+     */
+    private static final class RecordingStorage implements ByteContentStorage {
+        private final CountDownLatch firstWrite;
+        private final String failingUrl;
+        private final List<String> saved = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger flushes = new AtomicInteger();
+
+        RecordingStorage(CountDownLatch firstWrite, String failingUrl) {
+            this.firstWrite = firstWrite;
+            this.failingUrl = failingUrl;
+        }
+
+        @Override
+        public void save(URI uri, String content, int depth) {
+            try {
+                firstWrite.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (uri.toString().equals(failingUrl)) {
+                throw new RuntimeException("disk full");
+            }
+            saved.add(uri.toString());
+        }
+
+        @Override
+        public void save(URI uri, PageBody body, int depth) {
+            save(uri, body.decode(), depth);
+        }
+
+        @Override
+        public void saveCopy(URI uri, Path source, int depth) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.voyager.crawler.io;
+
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ByteBudget}.
+ */
+class ByteBudgetTest {
+
+    @Test
+    void testReserveWaitsUntilRoomIsReleased() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+        ByteBudget.Reservation first = budget.reserve(70, 1000);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<ByteBudget.Reservation> second = executor.submit(() -> budget.reserve(50, 1000));
+            assertThrows(TimeoutException.class, () -> second.get(100, TimeUnit.MILLISECONDS));
+
+            first.close();
+            try (ByteBudget.Reservation admitted = second.get(5, TimeUnit.SECONDS)) {
+                assertEquals(50, budget.usedBytes());
+            }
+        }
+        assertEquals(0, budget.usedBytes());
+        assertEquals(70, budget.peakBytes());
+        assertEquals(1, budget.waits());
+    }
+
+    @Test
+    void testChargeGrowsPastTheBudgetWithoutWaiting() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+
+        try (ByteBudget.Reservation reservation = budget.reserve(10, 1000)) {
+            reservation.charge(40);
+            reservation.charge(30);
+            assertEquals(40, budget.usedBytes(), "Charging a smaller total should not release bytes");
+            reservation.charge(250);
+            assertEquals(250, budget.usedBytes());
+        }
+        assertEquals(0, budget.usedBytes());
+        assertEquals(250, budget.peakBytes());
+        assertEquals(0, budget.waits());
+    }
+
+    @Test
+    void testOversizedReservationIsAdmittedWhenBudgetIsEmpty() throws Exception {
+        ByteBudget budget = new ByteBudget(100);
+
+        ByteBudget.Reservation reservation = budget.reserve(500, 300);
+        assertEquals(300, budget.usedBytes(), "The reservation should be clamped to the body maximum");
+        assertEquals(300, reservation.maxBytes());
+        reservation.close();
+        reservation.close();
+
+        assertEquals(0, budget.usedBytes());
+    }
+}
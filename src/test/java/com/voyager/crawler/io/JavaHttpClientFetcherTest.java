@@ -0,0 +1,225 @@
+package com.voyager.crawler.io;
+
+import com.voyager.crawler.config.*;
+import com.voyager.crawler.testutil.*;
+import com.voyager.crawler.util.*;
+import jdk.jfr.*;
+import jdk.jfr.consumer.*;
+import org.junit.jupiter.api.*;
+
+import java.net.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for conditional requests and connection use of {@link JavaHttpClientFetcher} against a
+ * {@link StandInWebServer} and an {@link H2cStandInServer}.
+ */
+class JavaHttpClientFetcherTest {
+    private static final int CONCURRENT_REQUESTS = 32;
+    private static final Duration LATENCY = Duration.ofMillis(50);
+
+    private StandInWebServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = StandInWebServer.start(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void testRevalidatesWithEtag() {
+        JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher();
+        URI uri = server.uri(0, "/page");
+
+        ConditionalResponse first = fetcher.fetchConditional(uri, PageValidators.NONE).orElseThrow();
+        assertFalse(first.isNotModified());
+        first.body().close();
+        assertNotNull(first.validators().etag());
+
+        ConditionalResponse second = fetcher.fetchConditional(uri, first.validators()).orElseThrow();
+        assertTrue(second.isNotModified());
+        assertEquals(first.validators().etag(), second.validators().etag());
+        assertEquals(1, server.notModifiedCount());
+
+        server.setPages((host, path) -> "<html><body>changed</body></html>");
+        ConditionalResponse third = fetcher.fetchConditional(uri, first.validators()).orElseThrow();
+        assertFalse(third.isNotModified());
+        try (PageBody body = third.body()) {
+            assertTrue(body.decode().contains("changed"));
+        }
+        assertNotEquals(first.validators().etag(), third.validators().etag());
+    }
+
+    @Test
+    void testHttp2MultiplexesConcurrentRequestsOnOneConnection() throws Exception {
+        try (H2cStandInServer h2c = H2cStandInServer.start("<html><body><p>h2c</p></body></html>")) {
+            JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher(BufferPool.shared(),
+                    new HttpClientConfig(HttpProtocol.HTTP_2, 2));
+            h2c.setLatency(LATENCY);
+
+            // All requests start cold: the first upgrades a connection, the rest become streams on it.
+            Duration elapsed = fetchConcurrently(fetcher, h2c::uri);
+
+            assertEquals(1, h2c.connectionCount());
+            assertEquals(CONCURRENT_REQUESTS, h2c.http2StreamCount());
+            assertEquals(0, h2c.http1RequestCount());
+            assertTrue(elapsed.compareTo(LATENCY.multipliedBy(CONCURRENT_REQUESTS / 2)) < 0,
+                    "Multiplexed streams should be answered concurrently, took " + elapsed);
+        }
+    }
+
+    @Test
+    void testHttp11UsesOneConnectionPerConcurrentRequest() throws Exception {
+        JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher(BufferPool.shared(),
+                new HttpClientConfig(HttpProtocol.HTTP_1_1, 0));
+        server.setLatency(0, LATENCY);
+
+        Duration elapsed = fetchConcurrently(fetcher, path -> server.uri(0, path));
+
+        assertEquals(CONCURRENT_REQUESTS, server.requestCount(0));
+        assertTrue(server.connectionCount(0) > 1, "Concurrent HTTP/1.1 requests need separate connections");
+        assertTrue(server.connectionCount(0) <= CONCURRENT_REQUESTS);
+        assertTrue(elapsed.compareTo(LATENCY.multipliedBy(CONCURRENT_REQUESTS / 2)) < 0,
+                "Requests should run on parallel connections, took " + elapsed);
+
+        // Sequential requests reuse the warm keep-alive connections.
+        int connections = server.connectionCount(0);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(fetcher.fetch(server.uri(0, "/again/" + i)).isPresent());
+        }
+        assertEquals(connections, server.connectionCount(0));
+    }
+
+    @Test
+    void testInflatesCompressedBodiesAndCountsBytes() {
+        JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher();
+        String html = "<html><body>" + "<p>repeated news paragraph</p>".repeat(200) + "</body></html>";
+        server.setPages((host, path) -> html);
+
+        for (String encoding : new String[] {"gzip", "deflate", "raw-deflate"}) {
+            server.setContentEncoding(encoding);
+            try (PageBody body = fetcher.fetchBody(server.uri(0, "/" + encoding)).orElseThrow()) {
+                assertEquals(html, body.decode(), encoding);
+                assertFalse(body.hasGzipEncoding());
+            }
+        }
+        server.setContentEncoding(null);
+        assertEquals(html, fetcher.fetch(server.uri(0, "/identity")).orElseThrow());
+
+        TransferStats.Snapshot transfer = fetcher.transferStats().snapshot();
+        assertEquals(4, transfer.bodies());
+        assertEquals(3, transfer.encodedBodies());
+        assertEquals(server.bodyBytesSent(), transfer.bytesReceived());
+        assertEquals(4L * html.length(), transfer.bytesDecoded());
+        assertTrue(transfer.compressionRatio() > 3, "Repetitive pages should compress well: " + transfer);
+    }
+
+    @Test
+    void testKeepsGzipEncodingWhenConfigured() {
+        JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher(BufferPool.shared(),
+                new HttpClientConfig(HttpProtocol.HTTP_2, 0, true));
+        server.setContentEncoding("gzip");
+
+        try (PageBody body = fetcher.fetchBody(server.uri(0, "/kept")).orElseThrow()) {
+            assertTrue(body.hasGzipEncoding());
+            assertEquals(server.bodyBytesSent(), body.gzipEncodedLength());
+            assertTrue(body.decode().contains("host 0 /kept"));
+        }
+    }
+
+    @Test
+    void testAbandonsBodiesLargerThanMaximum() {
+        JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher(BufferPool.shared(), HttpClientConfig.defaults(),
+                new FetchLimits(1024 * 1024, 4096));
+        String html = "<html><body>" + "<p>long repeated paragraph</p>".repeat(400) + "</body></html>";
+        server.setPages((host, path) -> path.equals("/small") ? "<p>small</p>" : html);
+
+        assertTrue(fetcher.fetch(server.uri(0, "/large")).isEmpty(), "Content-Length should reject the page");
+        assertEquals(1, server.requestCount(0), "An oversized page should not be retried");
+
+        // Compressed, the page is sent below the maximum and only exceeds it while inflating.
+        server.setContentEncoding("gzip");
+        long sentBefore = server.bodyBytesSent();
+        assertTrue(fetcher.fetch(server.uri(0, "/large-gzip")).isEmpty());
+        assertTrue(server.bodyBytesSent() - sentBefore < 4096);
+        assertEquals(2, server.requestCount(0));
+
+        assertEquals("<p>small</p>", fetcher.fetch(server.uri(0, "/small")).orElseThrow());
+        assertEquals(0, fetcher.byteBudget().usedBytes(), "Every body should return its bytes to the budget");
+    }
+
+    @Test
+    void testCountsStatusesAndRetriesPerHost() {
+        JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher();
+        server.setPages((host, path) -> path.equals("/missing") ? null : "<html><body>page</body></html>");
+
+        assertTrue(fetcher.fetch(server.uri(0, "/page")).isPresent());
+        assertTrue(fetcher.fetch(server.uri(0, "/missing")).isEmpty());
+        server.setCapacity(0, 0);
+        assertTrue(fetcher.fetch(server.uri(0, "/busy")).isEmpty());
+
+        ResponseStats.HostSnapshot host = fetcher.responseStats().snapshot().get(UrlUtils.hostKey(server.uri(0, "/")));
+        assertEquals(Map.of(200, 1L, 404, 1L, 503, 3L), host.statuses());
+        assertEquals(2, host.retries(), "The last 503 is not retried");
+        assertEquals(0, host.errors());
+        assertEquals(host, fetcher.responseStats().total());
+    }
+
+    @Test
+    void testEmitsFlightRecorderEventPerAttempt() throws Exception {
+        JavaHttpClientFetcher fetcher = new JavaHttpClientFetcher();
+        String html = "<html><body>page</body></html>";
+        server.setPages((host, path) -> path.equals("/missing") ? null : html);
+        Path file = Files.createTempFile("fetch", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("com.voyager.crawler.Fetch");
+            recording.start();
+            assertTrue(fetcher.fetch(server.uri(0, "/page")).isPresent());
+            assertTrue(fetcher.fetch(server.uri(0, "/missing")).isEmpty());
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = new ArrayList<>(RecordingFile.readAllEvents(file));
+        events.sort(Comparator.comparing(RecordedEvent::getStartTime));
+        assertEquals(2, events.size());
+        assertEquals(server.uri(0, "/page").toString(), events.get(0).getString("uri"));
+        assertEquals(UrlUtils.hostKey(server.uri(0, "/")), events.get(0).getString("host"));
+        assertEquals(1, events.get(0).getInt("attempt"));
+        assertEquals(200, events.get(0).getInt("status"));
+        assertEquals(html.length(), events.get(0).getLong("bytes"));
+        assertEquals(404, events.get(1).getInt("status"));
+        assertEquals(0, events.get(1).getLong("bytes"));
+        Files.delete(file);
+    }
+
+    /**
+     * Fetches {@value #CONCURRENT_REQUESTS} pages at once and returns the time until all arrived.
+     */
+    private static Duration fetchConcurrently(JavaHttpClientFetcher fetcher,
+            Function<String, URI> uris) throws Exception {
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Optional<String>>> fetches = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                URI uri = uris.apply("/page/" + i);
+                fetches.add(executor.submit(() -> fetcher.fetch(uri)));
+            }
+            for (Future<Optional<String>> fetch : fetches) {
+                assertTrue(fetch.get(10, TimeUnit.SECONDS).isPresent());
+            }
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+}
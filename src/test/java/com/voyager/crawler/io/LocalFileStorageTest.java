@@ -4,8 +4,12 @@ import com.voyager.crawler.util.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.io.*;
 
+import java.io.*;
 import java.net.*;
+import java.nio.charset.*;
 import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,4 +38,138 @@ class LocalFileStorageTest {
         String actualContent = Files.readString(expectedFile);
         assertTrue(actualContent.contains(content));
     }
+
+    @Test
+    void testSaveBodyWritesBytesAsReceived() throws Exception {
+        LocalFileStorage storage = new LocalFileStorage(tempDir.toString());
+        URI uri = new URI("https://example.com/latin1");
+        byte[] bytes = "<p>caf\u00e9</p>".getBytes(StandardCharsets.ISO_8859_1);
+
+        try (PageBody body = PageBody.wrap(bytes, StandardCharsets.ISO_8859_1)) {
+            storage.save(uri, body, 0);
+        }
+
+        Path expectedFile = tempDir.resolve("0").resolve(UrlUtils.toFilename(uri) + ".html");
+        assertArrayEquals(bytes, Files.readAllBytes(expectedFile));
+    }
+
+    @Test
+    void testFlushSyncsSavedPagesEvenIfOneWasRemoved() throws Exception {
+        LocalFileStorage storage = new LocalFileStorage(tempDir.resolve("out").toString(), true);
+        URI kept = new URI("https://example.com/kept");
+        URI removed = new URI("https://example.com/removed");
+        storage.save(kept, "<p>kept</p>", 0);
+        storage.save(removed, "<p>removed</p>", 1);
+        Files.delete(tempDir.resolve("out").resolve(LocalFileStorage.relativeName(removed, 1, true)));
+
+        storage.flush();
+        storage.flush();
+        storage.close();
+
+        assertEquals("<p>kept</p>", Files.readString(tempDir.resolve("out")
+                .resolve(LocalFileStorage.relativeName(kept, 0, true))));
+    }
+
+    @Test
+    void testFlushWaitsForAnotherWritersSyncOfItsPages() throws Exception {
+        CountDownLatch syncStarted = new CountDownLatch(1);
+        CountDownLatch releaseSync = new CountDownLatch(1);
+        LocalFileStorage storage = new LocalFileStorage(tempDir.toString()) {
+            @Override
+            void syncFile(Path file) throws IOException {
+                syncStarted.countDown();
+                try {
+                    releaseSync.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.syncFile(file);
+            }
+        };
+        storage.save(new URI("https://example.com/a"), "<p>a</p>", 0);
+
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        try {
+            // The second writer's flush takes the first writer's page and is held inside its sync.
+            Future<?> other = writers.submit(storage::flush);
+            assertTrue(syncStarted.await(5, TimeUnit.SECONDS));
+            Future<?> own = writers.submit(storage::flush);
+
+            assertThrows(TimeoutException.class, () -> own.get(200, TimeUnit.MILLISECONDS),
+                    "A flush returned before the page saved ahead of it was synced");
+            releaseSync.countDown();
+            other.get(5, TimeUnit.SECONDS);
+            own.get(5, TimeUnit.SECONDS);
+        } finally {
+            releaseSync.countDown();
+            writers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSaveCopyLeavesPreviousCrawlUntouched() throws Exception {
+        Path previousFile = Files.writeString(tempDir.resolve("previous.html"), "<p>old</p>");
+        Path root = tempDir.resolve("current");
+        LocalFileStorage storage = new LocalFileStorage(root.toString());
+        URI uri = new URI("https://example.com/unchanged");
+
+        storage.saveCopy(uri, previousFile, 1);
+        Path copy = root.resolve("1").resolve(UrlUtils.toFilename(uri) + ".html");
+        assertEquals("<p>old</p>", Files.readString(copy));
+
+        try (PageBody body = PageBody.wrap("<p>new</p>".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)) {
+            storage.save(uri, body, 1);
+        }
+        assertEquals("<p>new</p>", Files.readString(copy));
+        assertEquals("<p>old</p>", Files.readString(previousFile));
+    }
+
+    @Test
+    void testShardedLayoutSeparatesCollidingUrlsAndWritesManifest() throws Exception {
+        URI query = new URI("https://example.com/a?b");
+        URI underscore = new URI("https://example.com/a_b");
+        URI copied = new URI("https://example.com/c");
+        Path previousFile = Files.writeString(tempDir.resolve("previous.html"), "<p>c</p>");
+        Path root = tempDir.resolve("sharded");
+        assertEquals(UrlUtils.toFilename(query), UrlUtils.toFilename(underscore), "Flat names collide");
+
+        try (LocalFileStorage storage = new LocalFileStorage(root.toString(), true)) {
+            storage.save(query, "<p>query</p>", 1);
+            try (PageBody body = PageBody.wrap("<p>underscore</p>".getBytes(StandardCharsets.UTF_8),
+                    StandardCharsets.UTF_8)) {
+                storage.save(underscore, body, 1);
+            }
+            storage.saveCopy(copied, previousFile, 2);
+        }
+
+        String queryPath = LocalFileStorage.relativeName(query, 1, true);
+        String underscorePath = LocalFileStorage.relativeName(underscore, 1, true);
+        assertNotEquals(queryPath, underscorePath);
+        assertTrue(queryPath.matches("1/[0-9a-f]{2}/[0-9a-f]{2}/https_example.com_a_b-[0-9a-f]{16}\\.html"),
+                queryPath);
+        assertEquals("<p>query</p>", Files.readString(root.resolve(queryPath)));
+        assertEquals("<p>underscore</p>", Files.readString(root.resolve(underscorePath)));
+        assertEquals(List.of(query + "\t" + queryPath, underscore + "\t" + underscorePath,
+                copied + "\t" + LocalFileStorage.relativeName(copied, 2, true)),
+                Files.readAllLines(root.resolve(LocalFileStorage.MANIFEST_FILE)));
+        assertTrue(LocalFileStorage.isSharded(root));
+        assertFalse(LocalFileStorage.isSharded(tempDir));
+    }
+
+    @Test
+    void testShardedLayoutContinuesExistingManifest() throws Exception {
+        URI first = new URI("https://example.com/first");
+        URI second = new URI("https://example.com/second");
+        try (LocalFileStorage storage = new LocalFileStorage(tempDir.toString(), true)) {
+            storage.save(first, "<p>1</p>", 0);
+        }
+        try (LocalFileStorage storage = new LocalFileStorage(tempDir.toString(), true)) {
+            storage.save(second, "<p>2</p>", 0);
+        }
+
+        List<String> lines = Files.readAllLines(tempDir.resolve(LocalFileStorage.MANIFEST_FILE));
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith(first + "\t"));
+        assertTrue(lines.get(1).startsWith(second + "\t"));
+    }
 }
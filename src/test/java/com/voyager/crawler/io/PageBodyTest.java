@@ -0,0 +1,180 @@
+package com.voyager.crawler.io;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.zip.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link PageBody} and {@link HtmlCharsets}.
+ */
+class PageBodyTest {
+
+    @Test
+    void testReadSpansChunksAndRoundTrips() throws Exception {
+        BufferPool pool = new BufferPool(16, 8);
+        String html = "<html><body>" + "x".repeat(80) + "</body></html>";
+
+        try (PageBody body = PageBody.read(stream(html, StandardCharsets.UTF_8), pool, StandardCharsets.UTF_8)) {
+            assertEquals(html.length(), body.length());
+            assertEquals(html, body.decode());
+            assertEquals(html, new String(body.newInputStream().readAllBytes(), StandardCharsets.UTF_8));
+
+            InputStream bytes = body.newInputStream();
+            StringBuilder byteByByte = new StringBuilder();
+            for (int b = bytes.read(); b != -1; b = bytes.read()) {
+                byteByByte.append((char) b);
+            }
+            assertEquals(html, byteByByte.toString());
+            assertEquals(-1, bytes.read());
+
+            ByteBuffer[] buffers = body.asByteBuffers();
+            assertEquals((html.length() + 15) / 16, buffers.length);
+        }
+    }
+
+    @Test
+    void testCharsetFromMetaWhenNotDeclared() throws Exception {
+        String html = "<html><head><meta charset=\"ISO-8859-1\"></head><body>café</body></html>";
+
+        try (PageBody body = PageBody.read(stream(html, StandardCharsets.ISO_8859_1), BufferPool.shared(), null)) {
+            assertEquals(StandardCharsets.ISO_8859_1, body.charset());
+            assertTrue(body.decode().contains("café"));
+        }
+    }
+
+    @Test
+    void testDeclaredCharsetWinsOverMeta() throws Exception {
+        String html = "<meta http-equiv=\"Content-Type\" content=\"text/html; charset=ISO-8859-1\">שלום";
+        Charset declared = HtmlCharsets.fromContentType("text/html; charset=\"utf-8\"").orElseThrow();
+
+        try (PageBody body = PageBody.read(stream(html, StandardCharsets.UTF_8), BufferPool.shared(), declared)) {
+            assertEquals(StandardCharsets.UTF_8, body.charset());
+            assertTrue(body.decode().endsWith("שלום"));
+        }
+    }
+
+    @Test
+    void testCloseReturnsChunksToPool() throws Exception {
+        BufferPool pool = new BufferPool(16, 8);
+
+        PageBody body = PageBody.read(stream("a".repeat(40), StandardCharsets.UTF_8), pool, null);
+        assertEquals(0, pool.pooledChunks());
+        body.close();
+
+        assertEquals(3, pool.pooledChunks());
+        assertThrows(IllegalStateException.class, body::decode);
+    }
+
+    @Test
+    void testRetainedHandleKeepsChunksUntilClosed() throws Exception {
+        BufferPool pool = new BufferPool(16, 8);
+
+        PageBody body = PageBody.read(stream("b".repeat(40), StandardCharsets.UTF_8), pool, null);
+        PageBody handle = body.retain();
+        body.close();
+        body.close();
+
+        assertEquals(0, pool.pooledChunks());
+        assertEquals("b".repeat(40), handle.decode());
+        handle.close();
+        assertEquals(3, pool.pooledChunks());
+    }
+
+    @Test
+    void testReadGzipKeepsEncodedMemberUntilLastHandleCloses() throws Exception {
+        BufferPool pool = new BufferPool(64, 32);
+        String html = "<p>" + "c".repeat(200) + "</p>";
+        byte[] encoded = gzip(html);
+
+        PageBody body = PageBody.readGzip(new ByteArrayInputStream(encoded), pool, StandardCharsets.UTF_8);
+        assertEquals(html, body.decode());
+        assertTrue(body.hasGzipEncoding());
+        assertEquals(encoded.length, body.gzipEncodedLength());
+        assertArrayEquals(encoded, concat(body.gzipEncodedByteBuffers()));
+
+        PageBody handle = body.retain();
+        body.close();
+        assertArrayEquals(encoded, concat(handle.gzipEncodedByteBuffers()));
+        assertEquals(0, pool.pooledChunks());
+        handle.close();
+        // One chunk held the encoded member, four the decoded page.
+        assertEquals(5, pool.pooledChunks());
+    }
+
+    @Test
+    void testReadGzipDropsEncodingWithTrailingBytes() throws Exception {
+        BufferPool pool = new BufferPool(64, 32);
+        String html = "<p>" + "d".repeat(200) + "</p>";
+        byte[] encoded = gzip(html);
+        byte[] padded = Arrays.copyOf(encoded, encoded.length + 4);
+
+        try (PageBody body = PageBody.readGzip(new ByteArrayInputStream(padded), pool, null)) {
+            assertEquals(html, body.decode());
+            assertFalse(body.hasGzipEncoding());
+            assertEquals(0, body.gzipEncodedByteBuffers().length);
+            assertEquals(1, pool.pooledChunks(), "The encoded chunk should be released at once");
+        }
+        assertThrows(ZipException.class,
+                () -> PageBody.readGzip(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), pool, null));
+    }
+
+    @Test
+    void testReservationIsChargedPerChunkAndReleasedOnClose() throws Exception {
+        BufferPool pool = new BufferPool(16, 8);
+        ByteBudget budget = new ByteBudget(1024);
+
+        PageBody body = PageBody.read(stream("c".repeat(40), StandardCharsets.UTF_8), pool, null,
+                budget.reserve(16, 100));
+        assertEquals(48, budget.usedBytes(), "Every acquired chunk should be charged");
+        PageBody handle = body.retain();
+        body.close();
+        assertEquals(48, budget.usedBytes());
+        handle.close();
+
+        assertEquals(0, budget.usedBytes());
+        assertEquals(3, pool.pooledChunks());
+    }
+
+    @Test
+    void testReadStopsOnceBodyExceedsMaximum() throws Exception {
+        BufferPool pool = new BufferPool(16, 8);
+        ByteBudget budget = new ByteBudget(1024);
+
+        assertThrows(BodyTooLargeException.class, () -> PageBody.read(
+                stream("e".repeat(100), StandardCharsets.UTF_8), pool, null, budget.reserve(0, 40)));
+        assertEquals(0, budget.usedBytes());
+        assertEquals(3, pool.pooledChunks(), "Reading should stop at the first chunk past the maximum");
+
+        assertThrows(BodyTooLargeException.class, () -> PageBody.readGzip(
+                new ByteArrayInputStream(gzip("f".repeat(500))), pool, null, budget.reserve(0, 100)));
+        assertEquals(0, budget.usedBytes(), "A decoded body past the maximum should release both forms");
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(ByteBuffer[] buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.writeBytes(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static InputStream stream(String text, Charset charset) {
+        return new ByteArrayInputStream(text.getBytes(charset));
+    }
+}
@@ -0,0 +1,118 @@
+package com.voyager.crawler.io;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link PageIndex}.
+ */
+class PageIndexTest {
+    private static final URI PAGE = URI.create("https://example.com/page");
+    private static final URI LEAF = URI.create("https://example.com/leaf");
+    private static final URI NO_VALIDATORS = URI.create("https://example.com/plain");
+    private static final List<URI> LINKS = List.of(URI.create("https://example.com/b"),
+            URI.create("https://example.com/a"));
+    private static final PageValidators VALIDATORS = new PageValidators("\"v1\"", "Mon, 02 Mar 2026 10:00:00 GMT");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLooksUpPagesOfPreviousCrawl() throws Exception {
+        Path previousDir = writePreviousCrawl(0);
+
+        try (PageIndex index = PageIndex.create(tempDir.resolve("current"), previousDir, 0)) {
+            PageIndex.CachedPage cached = index.previous(PAGE, true).orElseThrow();
+            assertEquals(VALIDATORS, cached.validators());
+            assertEquals(LINKS, cached.links());
+            assertEquals("<p>page</p>", Files.readString(cached.file()));
+
+            assertTrue(index.previous(LEAF, true).isEmpty(), "Leaf links were never extracted");
+            assertNull(index.previous(LEAF, false).orElseThrow().links());
+            assertTrue(index.previous(NO_VALIDATORS, false).isEmpty());
+            assertTrue(index.previous(URI.create("https://example.com/unknown"), false).isEmpty());
+        }
+    }
+
+    @Test
+    void testLooksUpPagesOfShardedCrawl() throws Exception {
+        Path previousDir = writePreviousCrawl(0, true);
+
+        try (PageIndex index = PageIndex.create(tempDir.resolve("current"), previousDir, 0)) {
+            PageIndex.CachedPage cached = index.previous(PAGE, true).orElseThrow();
+            assertEquals(previousDir.resolve(LocalFileStorage.relativePath(PAGE, 0, true)), cached.file());
+            assertEquals("<p>page</p>", Files.readString(cached.file()));
+        }
+    }
+
+    @Test
+    void testReusesLinksOnlyIfLimitCoversCurrentCrawl() throws Exception {
+        Path previousDir = writePreviousCrawl(5);
+
+        try (PageIndex unlimited = PageIndex.create(tempDir.resolve("unlimited"), previousDir, 0);
+                PageIndex smaller = PageIndex.create(tempDir.resolve("smaller"), previousDir, 3)) {
+            assertTrue(unlimited.previous(PAGE, true).isEmpty());
+            assertTrue(unlimited.previous(PAGE, false).isPresent());
+            assertEquals(LINKS, smaller.previous(PAGE, true).orElseThrow().links());
+        }
+    }
+
+    @Test
+    void testIgnoresTornLastLine() throws Exception {
+        Path previousDir = writePreviousCrawl(0);
+        Files.writeString(previousDir.resolve(PageIndex.INDEX_FILE), "https://example.com/torn\t0\t\"x",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (PageIndex index = PageIndex.create(tempDir.resolve("current"), previousDir, 0)) {
+            assertTrue(index.previous(URI.create("https://example.com/torn"), false).isEmpty());
+            assertTrue(index.previous(PAGE, true).isPresent());
+        }
+    }
+
+    @Test
+    void testRejectsDirectoryWithoutIndex() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PageIndex.create(tempDir.resolve("current"), tempDir.resolve("missing"), 0));
+    }
+
+    @Test
+    void testRejectsArchivedCrawl() throws Exception {
+        Path previousDir = tempDir.resolve("archived");
+        try (ArchiveStorage storage = new ArchiveStorage(previousDir, false)) {
+            storage.save(PAGE, "<p>page</p>", 0);
+        }
+        try (PageIndex index = PageIndex.create(previousDir, null, 0)) {
+            index.record(PAGE, 0, VALIDATORS, LINKS);
+        }
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> PageIndex.create(tempDir.resolve("current"), previousDir, 0));
+        assertTrue(e.getMessage().contains("archive"), e.getMessage());
+    }
+
+    private Path writePreviousCrawl(int linkLimit) throws Exception {
+        return writePreviousCrawl(linkLimit, false);
+    }
+
+    private Path writePreviousCrawl(int linkLimit, boolean sharded) throws Exception {
+        Path previousDir = tempDir.resolve("previous");
+        try (LocalFileStorage storage = new LocalFileStorage(previousDir.toString(), sharded)) {
+            storage.save(PAGE, "<p>page</p>", 0);
+            storage.save(LEAF, "<p>leaf</p>", 1);
+            storage.save(NO_VALIDATORS, "<p>plain</p>", 1);
+        }
+        try (PageIndex index = PageIndex.create(previousDir, null, linkLimit)) {
+            index.record(PAGE, 0, VALIDATORS, LINKS);
+            index.record(LEAF, 1, new PageValidators("\"leaf\"", null), null);
+            index.record(NO_VALIDATORS, 1, PageValidators.NONE, List.of());
+        }
+        return previousDir;
+    }
+}
@@ -0,0 +1,78 @@
+package com.voyager.crawler.parser;
+
+import com.voyager.crawler.io.*;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link StreamingHtmlParser}, using {@link JsoupHtmlParser} as the reference.
+ */
+class StreamingHtmlParserTest {
+    private static final List<String> CORPUS = List.of("news_front.html", "blog_article.html", "base_tag.html",
+            "latin1.html");
+    private static final URI PAGE_URI = URI.create("https://example.com/section/page.html?id=7");
+
+    private final HtmlParser reference = new JsoupHtmlParser();
+    private final HtmlParser streaming = new StreamingHtmlParser();
+
+    @Test
+    void testCorpusMatchesJsoup() throws Exception {
+        for (String name : CORPUS) {
+            byte[] bytes = readCorpus(name);
+            BufferPool pool = new BufferPool(256, 64);
+
+            try (PageBody body = PageBody.read(new ByteArrayInputStream(bytes), pool, null)) {
+                List<URI> expected = List.copyOf(reference.extractLinks(PAGE_URI, body.decode()));
+
+                assertFalse(expected.isEmpty(), name + " should contain links");
+                assertEquals(expected, List.copyOf(streaming.extractLinks(PAGE_URI, body.decode())),
+                        name + " (string input)");
+                assertEquals(expected, List.copyOf(streaming.extractLinks(PAGE_URI, body)), name + " (byte input)");
+            }
+        }
+    }
+
+    @Test
+    void testSkipsCommentsAndRawText() {
+        String html = "<!-- <a href='/comment'> --><script>var s = '<a href=\"/script\">';</script>"
+                + "<textarea><a href='/textarea'></textarea><a href='/real'>real</a>";
+
+        Set<URI> links = streaming.extractLinks(PAGE_URI, html);
+
+        assertEquals(Set.of(URI.create("https://example.com/real")), links);
+    }
+
+    @Test
+    void testBaseHrefAndEntities() {
+        String html = "<head><base href=\"/docs/\"><base href=\"/ignored/\"></head>"
+                + "<a href=\"guide?a=1&amp;b=2\">guide</a><A HREF=/top>top</A><a href=\"mailto:x@example.com\">mail</a>";
+
+        List<URI> links = List.copyOf(streaming.extractLinks(PAGE_URI, html));
+
+        assertEquals(List.of(URI.create("https://example.com/docs/guide?a=1&b=2"),
+                URI.create("https://example.com/top")), links);
+    }
+
+    @Test
+    void testLinkLimitReturnsPrefixInDocumentOrder() throws Exception {
+        String html = new String(readCorpus("blog_article.html"), StandardCharsets.UTF_8);
+        List<URI> all = List.copyOf(streaming.extractLinks(PAGE_URI, html));
+
+        List<URI> limited = List.copyOf(new StreamingHtmlParser(5).extractLinks(PAGE_URI, html));
+
+        assertEquals(all.subList(0, 5), limited);
+    }
+
+    private static byte[] readCorpus(String name) throws IOException {
+        try (InputStream in = StreamingHtmlParserTest.class.getResourceAsStream("/corpus/" + name)) {
+            assertNotNull(in, "Missing corpus file " + name);
+            return in.readAllBytes();
+        }
+    }
+}
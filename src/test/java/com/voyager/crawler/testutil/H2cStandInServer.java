@@ -0,0 +1,302 @@
+package com.voyager.crawler.testutil;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Minimal cleartext HTTP/2 ({@code h2c}) server for connection-reuse tests. It accepts the
+ * HTTP/1.1 {@code Upgrade: h2c} handshake that {@link java.net.http.HttpClient} uses for
+ * {@code http://} URIs, and answers every stream with the same HTML page after a configurable
+ * latency. Requests without the upgrade are served as plain HTTP/1.1.
+ * <p>
+ * Request headers are not HPACK-decoded, so every path gets the same page. Responses use only
+ * literal header fields, which keeps the client's header table in sync without tracking state.
+ */
+public final class H2cStandInServer implements AutoCloseable {
+    private static final byte[] CLIENT_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int SETTINGS = 0x4;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int CONTINUATION = 0x9;
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Queue<Socket> sockets = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger http2Streams = new AtomicInteger();
+    private final AtomicInteger http1Requests = new AtomicInteger();
+    private final byte[] page;
+    private volatile Duration latency = Duration.ZERO;
+
+    private H2cStandInServer(String html) throws IOException {
+        this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        this.page = html.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Starts a server on an ephemeral loopback port.
+     *
+     * @param html page served for every request.
+     */
+    public static H2cStandInServer start(String html) throws IOException {
+        H2cStandInServer server = new H2cStandInServer(html);
+        server.executor.submit(server::acceptLoop);
+        return server;
+    }
+
+    public URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + serverSocket.getLocalPort() + path);
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Returns the number of TCP connections accepted.
+     */
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Returns the number of requests answered over HTTP/2, including upgraded ones.
+     */
+    public int http2StreamCount() {
+        return http2Streams.get();
+    }
+
+    /**
+     * Returns the number of requests answered over plain HTTP/1.1.
+     */
+    public int http1RequestCount() {
+        return http1Requests.get();
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway.
+        }
+        sockets.forEach(socket -> {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway.
+            }
+        });
+        executor.shutdownNow();
+    }
+
+    private Void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                sockets.add(socket);
+                executor.submit(() -> serve(socket));
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            Connection connection = new Connection(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                Map<String, String> headers = readHttp1Request(in);
+                if (headers == null) {
+                    return null;
+                }
+                if ("h2c".equalsIgnoreCase(headers.get("upgrade"))) {
+                    connection.write("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n"
+                            .getBytes(StandardCharsets.US_ASCII));
+                    connection.frame(SETTINGS, 0, 0, new byte[0]);
+                    // The upgraded request becomes stream 1.
+                    respondAsync(connection, 1);
+                    serveHttp2(in, connection);
+                    return null;
+                }
+                sleepLatency();
+                http1Requests.incrementAndGet();
+                connection.write(("HTTP/1.1 200 OK\r\nContent-Type: text/html; charset=UTF-8\r\nContent-Length: "
+                        + page.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII), page);
+            }
+        } catch (IOException | InterruptedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a request line and headers, lower-casing header names. Returns null at end of stream.
+     */
+    private static Map<String, String> readHttp1Request(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.isEmpty()) {
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.isEmpty() ? null : line.toString();
+    }
+
+    private void serveHttp2(InputStream in, Connection connection) throws IOException {
+        byte[] preface = in.readNBytes(CLIENT_PREFACE.length);
+        if (!Arrays.equals(preface, CLIENT_PREFACE)) {
+            return;
+        }
+        byte[] header = new byte[9];
+        while (in.readNBytes(header, 0, 9) == 9) {
+            int length = ((header[0] & 0xFF) << 16) | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+            int type = header[3] & 0xFF;
+            int flags = header[4] & 0xFF;
+            int streamId = ((header[5] & 0x7F) << 24) | ((header[6] & 0xFF) << 16) | ((header[7] & 0xFF) << 8)
+                    | (header[8] & 0xFF);
+            byte[] payload = in.readNBytes(length);
+            if (payload.length < length) {
+                return;
+            }
+            switch (type) {
+                case SETTINGS -> {
+                    if ((flags & FLAG_ACK) == 0) {
+                        connection.frame(SETTINGS, FLAG_ACK, 0, new byte[0]);
+                    }
+                }
+                case PING -> {
+                    if ((flags & FLAG_ACK) == 0) {
+                        connection.frame(PING, FLAG_ACK, 0, payload);
+                    }
+                }
+                case HEADERS, CONTINUATION -> {
+                    // GET requests carry no body, so a stream is complete once its headers are.
+                    if ((flags & FLAG_END_HEADERS) != 0) {
+                        respondAsync(connection, streamId);
+                    }
+                }
+                case GOAWAY -> {
+                    return;
+                }
+                default -> {
+                    // DATA, PRIORITY, RST_STREAM and WINDOW_UPDATE need no answer here.
+                }
+            }
+        }
+    }
+
+    private void respondAsync(Connection connection, int streamId) {
+        executor.submit(() -> {
+            sleepLatency();
+            http2Streams.incrementAndGet();
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            block.write(0x88); // :status 200, static table index 8
+            literal(block, 31, "text/html; charset=UTF-8"); // content-type, static table index 31
+            literal(block, 28, Integer.toString(page.length)); // content-length, static table index 28
+            connection.frames(streamId, block.toByteArray(), page);
+            return null;
+        });
+    }
+
+    /**
+     * Appends a literal header field without indexing, with an indexed name and a raw value.
+     */
+    private static void literal(ByteArrayOutputStream block, int nameIndex, String value) {
+        writeInteger(block, 0x00, 4, nameIndex);
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        writeInteger(block, 0x00, 7, bytes.length);
+        block.writeBytes(bytes);
+    }
+
+    private static void writeInteger(ByteArrayOutputStream block, int prefixBits, int prefixSize, int value) {
+        int max = (1 << prefixSize) - 1;
+        if (value < max) {
+            block.write(prefixBits | value);
+            return;
+        }
+        block.write(prefixBits | max);
+        value -= max;
+        while (value >= 128) {
+            block.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block.write(value);
+    }
+
+    private void sleepLatency() throws InterruptedException {
+        Duration current = latency;
+        if (!current.isZero()) {
+            Thread.sleep(current.toMillis());
+        }
+    }
+
+    /**
+     * Serializes writes of frames from concurrently answered streams.
+     */
+    private static final class Connection {
+        private final OutputStream out;
+
+        Connection(OutputStream out) {
+            this.out = out;
+        }
+
+        synchronized void write(byte[]... parts) throws IOException {
+            for (byte[] part : parts) {
+                out.write(part);
+            }
+            out.flush();
+        }
+
+        synchronized void frame(int type, int flags, int streamId, byte[] payload) throws IOException {
+            writeFrame(type, flags, streamId, payload);
+            out.flush();
+        }
+
+        synchronized void frames(int streamId, byte[] headerBlock, byte[] body) throws IOException {
+            writeFrame(HEADERS, FLAG_END_HEADERS, streamId, headerBlock);
+            writeFrame(DATA, FLAG_END_STREAM, streamId, body);
+            out.flush();
+        }
+
+        private void writeFrame(int type, int flags, int streamId, byte[] payload) throws IOException {
+            int length = payload.length;
+            out.write(new byte[] {(byte) (length >>> 16), (byte) (length >>> 8), (byte) length, (byte) type,
+                    (byte) flags, (byte) (streamId >>> 24), (byte) (streamId >>> 16), (byte) (streamId >>> 8),
+                    (byte) streamId});
+            out.write(payload);
+        }
+    }
+}
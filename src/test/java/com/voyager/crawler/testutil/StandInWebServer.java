@@ -0,0 +1,235 @@
+package com.voyager.crawler.testutil;
+
+import com.sun.net.httpserver.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+/**
+ * Local stand-in for a set of web hosts. Each host is a separate {@link HttpServer} on its own
+ * loopback port, so URIs of different hosts get distinct scheduler host keys. Records request
+ * start times, peak concurrency and the client connections used per host. Every page carries an
+ * {@code ETag} derived from its content, and a matching {@code If-None-Match} is answered with
+ * {@code 304}. Bodies can be sent compressed to clients that accept the encoding, and a host
+ * can be given a capacity beyond which it answers {@code 503}.
+ */
+public final class StandInWebServer implements AutoCloseable {
+    private final List<Host> hosts = new ArrayList<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger inFlightTotal = new AtomicInteger();
+    private final AtomicInteger peakInFlightTotal = new AtomicInteger();
+    private final AtomicInteger notModifiedTotal = new AtomicInteger();
+    private final AtomicLong bodyBytesSent = new AtomicLong();
+    private volatile String contentEncoding;
+    private volatile PageSource pages = (host, path) -> "<html><body><p>host " + host + " " + path
+            + "</p></body></html>";
+
+    /**
+     * Renders the HTML served for a path of a host, or null to answer {@code 404}.
+     */
+    @FunctionalInterface
+    public interface PageSource {
+        String render(int host, String path);
+    }
+
+    private StandInWebServer() {
+    }
+
+    /**
+     * Starts {@code hostCount} hosts on ephemeral loopback ports.
+     */
+    public static StandInWebServer start(int hostCount) throws IOException {
+        StandInWebServer server = new StandInWebServer();
+        for (int i = 0; i < hostCount; i++) {
+            server.hosts.add(server.startHost(i));
+        }
+        return server;
+    }
+
+    private Host startHost(int index) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        Host host = new Host(index, http);
+        http.createContext("/", exchange -> handle(host, exchange));
+        http.setExecutor(executor);
+        http.start();
+        return host;
+    }
+
+    private void handle(Host host, HttpExchange exchange) throws IOException {
+        host.startNanos.add(System.nanoTime());
+        host.clientAddresses.add(exchange.getRemoteAddress());
+        int inFlight = host.inFlight.incrementAndGet();
+        updatePeak(host.peakInFlight, inFlight);
+        updatePeak(peakInFlightTotal, inFlightTotal.incrementAndGet());
+        try {
+            if (inFlight > host.capacity) {
+                host.overloaded.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            Duration latency = host.latency;
+            if (!latency.isZero()) {
+                Thread.sleep(latency.toMillis());
+            }
+            String page = pages.render(host.index, exchange.getRequestURI().getPath());
+            if (page == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = page.getBytes(StandardCharsets.UTF_8);
+            String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedTotal.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            String encoding = contentEncoding;
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (encoding != null && accepted != null && accepted.contains(encoding.replace("raw-", ""))) {
+                exchange.getResponseHeaders().set("Content-Encoding", encoding.replace("raw-", ""));
+                body = encode(body, encoding);
+            }
+            bodyBytesSent.addAndGet(body.length);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            host.inFlight.decrementAndGet();
+            inFlightTotal.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static byte[] encode(byte[] body, String encoding) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream encoder = switch (encoding) {
+            case "gzip" -> new GZIPOutputStream(out);
+            case "deflate" -> new DeflaterOutputStream(out);
+            case "raw-deflate" -> new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+            default -> throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }) {
+            encoder.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static void updatePeak(AtomicInteger peak, int value) {
+        peak.accumulateAndGet(value, Math::max);
+    }
+
+    public int hostCount() {
+        return hosts.size();
+    }
+
+    public URI uri(int host, String path) {
+        return URI.create("http://127.0.0.1:" + hosts.get(host).http.getAddress().getPort() + path);
+    }
+
+    public void setLatency(int host, Duration latency) {
+        hosts.get(host).latency = latency;
+    }
+
+    /**
+     * Answers requests that arrive while {@code capacity} others to the host are in flight with
+     * {@code 503 Service Unavailable}, without the host's latency.
+     */
+    public void setCapacity(int host, int capacity) {
+        hosts.get(host).capacity = capacity;
+    }
+
+    /**
+     * Returns the number of requests to the host answered with {@code 503} for lack of capacity.
+     */
+    public int overloadedCount(int host) {
+        return hosts.get(host).overloaded.get();
+    }
+
+    public void setPages(PageSource pages) {
+        this.pages = pages;
+    }
+
+    /**
+     * Sends bodies with {@code gzip} or zlib-wrapped {@code deflate} encoding, or with
+     * {@code raw-deflate}: a raw deflate stream labelled {@code deflate}, as some servers send.
+     * Null sends bodies unencoded.
+     */
+    public void setContentEncoding(String encoding) {
+        this.contentEncoding = encoding;
+    }
+
+    /**
+     * Returns the number of body bytes sent, after any encoding.
+     */
+    public long bodyBytesSent() {
+        return bodyBytesSent.get();
+    }
+
+    /**
+     * Returns the {@link System#nanoTime()} at which each request to the host arrived, in order.
+     */
+    public List<Long> requestStartNanos(int host) {
+        List<Long> starts = new ArrayList<>(hosts.get(host).startNanos);
+        Collections.sort(starts);
+        return starts;
+    }
+
+    public int requestCount(int host) {
+        return hosts.get(host).startNanos.size();
+    }
+
+    public int peakInFlight(int host) {
+        return hosts.get(host).peakInFlight.get();
+    }
+
+    /**
+     * Returns the number of distinct client connections that sent requests to the host.
+     */
+    public int connectionCount(int host) {
+        return hosts.get(host).clientAddresses.size();
+    }
+
+    public int peakInFlightTotal() {
+        return peakInFlightTotal.get();
+    }
+
+    /**
+     * Returns the number of requests answered with {@code 304 Not Modified}.
+     */
+    public int notModifiedCount() {
+        return notModifiedTotal.get();
+    }
+
+    @Override
+    public void close() {
+        hosts.forEach(host -> host.http.stop(0));
+        executor.shutdownNow();
+    }
+
+    private static final class Host {
+        private final int index;
+        private final HttpServer http;
+        private final Queue<Long> startNanos = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+        private final AtomicInteger overloaded = new AtomicInteger();
+        private final Set<InetSocketAddress> clientAddresses = ConcurrentHashMap.newKeySet();
+        private volatile Duration latency = Duration.ZERO;
+        private volatile int capacity = Integer.MAX_VALUE;
+
+        Host(int index, HttpServer http) {
+            this.index = index;
+            this.http = http;
+        }
+    }
+}
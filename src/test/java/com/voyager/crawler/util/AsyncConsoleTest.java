@@ -0,0 +1,60 @@
+package com.voyager.crawler.util;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link AsyncConsole}.
+ */
+class AsyncConsoleTest {
+
+    @Test
+    void testDropsLinesWhileFullAndReportsThem() throws Exception {
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream blocking = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                err.write(b, off, len);
+            }
+        };
+        System.setErr(new PrintStream(blocking, true, StandardCharsets.UTF_8));
+        try {
+            AsyncConsole console = new AsyncConsole(4);
+            int offered = 0;
+            while (console.offer(true, "line " + offered)) {
+                offered++;
+                assertTrue(offered < 100_000, "The ring never filled");
+            }
+            release.countDown();
+            console.close();
+
+            String output = err.toString(StandardCharsets.UTF_8);
+            assertEquals(offered, output.lines().filter(line -> line.startsWith("line ")).count());
+            assertTrue(output.contains("log lines dropped"), output);
+        } finally {
+            System.setErr(originalErr);
+        }
+    }
+
+    @Test
+    void testRejectsCapacityThatIsNotAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new AsyncConsole(6));
+    }
+}
@@ -0,0 +1,107 @@
+package com.voyager.crawler.util;
+
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ConsolePrinter}. Standard output and error are captured for each test.
+ */
+class ConsolePrinterTest {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+
+    @BeforeEach
+    void captureConsole() {
+        originalOut = System.out;
+        originalErr = System.err;
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restoreConsole() {
+        ConsolePrinter.stopAsync();
+        ConsolePrinter.setLevel(ConsolePrinter.Level.INFO);
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    private static List<String> lines(ByteArrayOutputStream stream) {
+        return stream.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    @Test
+    void testRateLimitsRepeatedMessagesPerKey() {
+        for (int i = 0; i < ConsolePrinter.RATE_LIMIT_BURST + 3; i++) {
+            ConsolePrinter.warn("example.com 503", "Fetch failed for URI: https://example.com/" + i);
+        }
+        ConsolePrinter.warn("other.org 503", "Fetch failed for URI: https://other.org/");
+        ConsolePrinter.flush();
+
+        List<String> lines = lines(err);
+        assertEquals(ConsolePrinter.RATE_LIMIT_BURST + 2, lines.size(), lines.toString());
+        assertEquals("[WARN] Fetch failed for URI: https://example.com/0", lines.get(0));
+        assertEquals("[WARN] Fetch failed for URI: https://other.org/", lines.get(ConsolePrinter.RATE_LIMIT_BURST));
+        assertEquals("[WARN] Suppressed 3 similar messages for example.com 503", lines.get(lines.size() - 1));
+    }
+
+    @Test
+    void testSkipsMessagesBelowLevel() {
+        ConsolePrinter.setLevel(ConsolePrinter.Level.WARN);
+        ConsolePrinter.info("progress");
+        ConsolePrinter.infoKeyValue("Seed:", "https://example.com");
+        ConsolePrinter.warn("slow host");
+        ConsolePrinter.setLevel(ConsolePrinter.Level.ERROR);
+        ConsolePrinter.warn("hidden");
+        ConsolePrinter.warn("key", "hidden");
+        ConsolePrinter.error("failed");
+
+        assertEquals(List.of(), lines(out));
+        assertEquals(List.of("[WARN] slow host", "[ERROR] failed"), lines(err));
+    }
+
+    @Test
+    void testAsyncPrintsEveryLineOfEachThreadInOrder() throws Exception {
+        ConsolePrinter.startAsync();
+        // Fewer lines than the ring holds, so none can be dropped.
+        int threads = 8;
+        int perThread = AsyncConsole.DEFAULT_CAPACITY / threads - 1;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ConsolePrinter.warn(thread + " " + i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        ConsolePrinter.info("done");
+        ConsolePrinter.flush();
+
+        List<String> lines = lines(err);
+        assertEquals(threads * perThread, lines.size());
+        int[] next = new int[threads];
+        for (String line : lines) {
+            String[] fields = line.substring("[WARN] ".length()).split(" ");
+            int thread = Integer.parseInt(fields[0]);
+            assertEquals(next[thread]++, Integer.parseInt(fields[1]), "Out of order: " + line);
+        }
+        assertEquals(List.of("[INFO] done"), lines(out));
+    }
+}
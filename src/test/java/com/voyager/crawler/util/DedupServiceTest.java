@@ -0,0 +1,101 @@
+package com.voyager.crawler.util;
+
+import org.junit.jupiter.api.*;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link FingerprintDedupService} and {@link BloomFilterDedupService}.
+ */
+class DedupServiceTest {
+
+    @Test
+    void testFingerprintIsExactAcrossGrowth() {
+        FingerprintDedupService service = new FingerprintDedupService();
+
+        for (int i = 0; i < 200_000; i++) {
+            assertTrue(service.visit(url(i)), "First visit should be new: " + i);
+        }
+        for (int i = 0; i < 200_000; i += 7) {
+            assertFalse(service.visit(url(i)), "Repeat visit should be rejected: " + i);
+        }
+
+        assertEquals(200_000, service.size());
+        assertFalse(service.visit(null));
+    }
+
+    @Test
+    void testFingerprintDependsOnlyOnCharacters() {
+        assertEquals(UrlFingerprint.of("ab"), UrlFingerprint.of(new StringBuilder("ab")));
+        assertNotEquals(UrlFingerprint.of("https://example.com/a"), UrlFingerprint.of("https://example.com/b"));
+        assertNotEquals(UrlFingerprint.of(""), UrlFingerprint.of("\0"));
+    }
+
+    @Test
+    void testBloomFilterStaysNearTargetFalsePositiveRate() {
+        BloomFilterDedupService service = new BloomFilterDedupService(50_000, 0.01);
+
+        for (int i = 0; i < 50_000; i++) {
+            service.visit(url(i));
+        }
+        for (int i = 0; i < 50_000; i++) {
+            assertFalse(service.visit(url(i)), "Visited URL must never be reported as new: " + i);
+        }
+
+        // Each probe also inserts, so keep the sample small relative to the capacity.
+        int falsePositives = 0;
+        for (int i = 50_000; i < 55_000; i++) {
+            if (!service.visit(url(i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 5_000 * 0.02, "False positives: " + falsePositives);
+        assertEquals(7, service.hashCount());
+    }
+
+    @Test
+    @Timeout(30)
+    void testConcurrentVisitsAcceptEachUrlOnce() throws Exception {
+        assertAcceptsEachUrlOnce(FingerprintDedupService::new);
+        assertAcceptsEachUrlOnce(() -> new BloomFilterDedupService(1_000_000, 0.0001));
+    }
+
+    private static void assertAcceptsEachUrlOnce(Supplier<UrlDedupService> factory) throws Exception {
+        UrlDedupService service = factory.get();
+        int threads = 8;
+        int urls = 20_000;
+        AtomicInteger accepted = new AtomicInteger(0);
+        CyclicBarrier start = new CyclicBarrier(threads);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < urls; i++) {
+                        if (service.visit(url(i))) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertEquals(urls, accepted.get(), service.getClass().getSimpleName());
+        assertEquals(urls, service.size(), service.getClass().getSimpleName());
+    }
+
+    private static URI url(int i) {
+        return URI.create("https://host" + (i % 97) + ".example.com/articles/" + i + "?ref=home");
+    }
+}
@@ -0,0 +1,106 @@
+package com.voyager.crawler.util;
+
+import org.junit.jupiter.api.*;
+
+import java.net.*;
+import java.time.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link RobotsRules}.
+ */
+class RobotsRulesTest {
+    private static final String TOKEN = "VoyagerCrawler";
+
+    @Test
+    void testOwnGroupReplacesWildcardGroup() {
+        String robots = """
+                User-agent: *
+                Disallow: /
+
+                User-agent: OtherBot
+                User-agent: voyagercrawler/2.0
+                Disallow: /private   # not for us
+                Crawl-delay: 2.5
+                """;
+
+        RobotsRules rules = RobotsRules.parse(robots, TOKEN);
+
+        assertTrue(rules.isAllowed(URI.create("https://example.com/news")));
+        assertFalse(rules.isAllowed(URI.create("https://example.com/private/page")));
+        assertEquals(Duration.ofMillis(2500), rules.crawlDelay().orElseThrow());
+        assertEquals(1, rules.ruleCount());
+    }
+
+    @Test
+    void testWildcardGroupAppliesWithoutOwnGroup() {
+        String robots = "User-agent: OtherBot\nDisallow: /\n\nUser-agent: *\nDisallow: /search\n";
+
+        RobotsRules rules = RobotsRules.parse(robots, TOKEN);
+
+        assertFalse(rules.isAllowed(URI.create("https://example.com/search?q=x")));
+        assertTrue(rules.isAllowed(URI.create("https://example.com/")));
+        assertTrue(rules.crawlDelay().isEmpty());
+    }
+
+    @Test
+    void testLongestMatchWinsAndAllowWinsTies() {
+        String robots = """
+                user-agent: *
+                disallow: /shop
+                allow: /shop/public
+                disallow: /tie
+                allow: /tie
+                """;
+
+        RobotsRules rules = RobotsRules.parse(robots, TOKEN);
+
+        assertFalse(rules.isAllowed("/shop/cart"));
+        assertTrue(rules.isAllowed("/shop/public/item"));
+        assertTrue(rules.isAllowed("/tie/page"));
+    }
+
+    @Test
+    void testWildcardsAndEndAnchor() {
+        String robots = """
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /*?sessionid=
+                Disallow: /archive/*/print
+                """;
+
+        RobotsRules rules = RobotsRules.parse(robots, TOKEN);
+
+        assertFalse(rules.isAllowed("/files/report.pdf"));
+        assertTrue(rules.isAllowed("/files/report.pdf.html"));
+        assertFalse(rules.isAllowed("/page?sessionid=42"));
+        assertFalse(rules.isAllowed("/archive/2024/01/print/view"));
+        assertTrue(rules.isAllowed("/archive/2024/view"));
+        assertTrue(rules.isAllowed("/" + "a".repeat(10_000)), "Mismatches must not backtrack without bound");
+    }
+
+    @Test
+    void testEmptyDisallowAndMissingGroupsAllowEverything() {
+        assertTrue(RobotsRules.parse("User-agent: *\nDisallow:\n", TOKEN).isAllowed("/anything"));
+        assertSame(RobotsRules.allowAll(), RobotsRules.parse("<html><body>Not found</body></html>", TOKEN));
+        assertSame(RobotsRules.allowAll(), RobotsRules.parse("Disallow: /before-any-group\n", TOKEN));
+    }
+
+    @Test
+    void testRobotsTxtIsAlwaysAllowed() {
+        RobotsRules rules = RobotsRules.disallowAll();
+
+        assertTrue(rules.isAllowed(URI.create("https://example.com/robots.txt")));
+        assertFalse(rules.isAllowed(URI.create("https://example.com")));
+    }
+
+    @Test
+    void testPercentEncodingIsComparedConsistently() {
+        RobotsRules rules = RobotsRules.parse("User-agent: *\nDisallow: /caf%c3%a9\nDisallow: /שלום\n", TOKEN);
+
+        assertFalse(rules.isAllowed(URI.create("https://example.com/caf%C3%A9/menu")));
+        assertFalse(rules.isAllowed(URI.create("https://example.com/%d7%a9%d7%9c%d7%95%d7%9d")));
+        assertTrue(rules.isAllowed(URI.create("https://example.com/cafe")));
+    }
+}
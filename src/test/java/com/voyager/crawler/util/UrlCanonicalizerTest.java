@@ -0,0 +1,102 @@
+package com.voyager.crawler.util;
+
+import org.junit.jupiter.api.*;
+
+import java.net.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link UrlCanonicalizer}.
+ */
+class UrlCanonicalizerTest {
+
+    private static String canonical(UrlCanonicalizer canonicalizer, String uri) {
+        return canonicalizer.canonicalize(URI.create(uri)).toString();
+    }
+
+    @Test
+    void testCanonicalize_SchemeHostAndDefaultPort() {
+        UrlCanonicalizer syntax = UrlCanonicalizer.SYNTAX_ONLY;
+
+        assertEquals("http://example.com/a", canonical(syntax, "HTTP://Example.COM:80/a"));
+        assertEquals("https://example.com/", canonical(syntax, "https://EXAMPLE.com:443"));
+        assertEquals("https://example.com:8443/", canonical(syntax, "https://example.com:8443/"));
+        assertEquals("http://example.com:443/", canonical(syntax, "http://example.com:443/"));
+        assertEquals("http://example.com/x", canonical(syntax, "http://example.com:/x"));
+        assertEquals("http://user@example.com/Path", canonical(syntax, "http://user@Example.com/Path#Top"));
+    }
+
+    @Test
+    void testCanonicalize_RemovesDotSegments() {
+        UrlCanonicalizer syntax = UrlCanonicalizer.SYNTAX_ONLY;
+
+        assertEquals("http://example.com/b/c", canonical(syntax, "http://example.com/a/../b/./c"));
+        assertEquals("http://example.com/a/", canonical(syntax, "http://example.com/a/b/.."));
+        assertEquals("http://example.com/a/", canonical(syntax, "http://example.com/a/./"));
+        assertEquals("http://example.com/a", canonical(syntax, "http://example.com/../../a"));
+        assertEquals("http://example.com/a//b", canonical(syntax, "http://example.com/a//b"));
+        assertEquals("http://example.com/b", canonical(syntax, "http://example.com/a/%2e%2E/b"));
+    }
+
+    @Test
+    void testCanonicalize_NormalizesPercentEscapes() {
+        UrlCanonicalizer syntax = UrlCanonicalizer.SYNTAX_ONLY;
+
+        assertEquals("http://example.com/~user/A%2Fb", canonical(syntax, "http://example.com/%7euser/%41%2fb"));
+        assertEquals("http://example.com/a?q=%C3%A9%26x-y", canonical(syntax, "http://example.com/a?q=%c3%a9%26x%2Dy"));
+        assertEquals("http://example.com/100%25", canonical(syntax, "http://example.com/100%25"));
+    }
+
+    @Test
+    void testCanonicalize_StripsTrackingParameters() {
+        UrlCanonicalizer defaults = UrlCanonicalizer.DEFAULT;
+
+        assertEquals("http://example.com/a?b=1&a=2",
+                canonical(defaults, "http://example.com/a?utm_source=x&b=1&gclid=abc&a=2&utm_medium=y"));
+        assertEquals("http://example.com/a", canonical(defaults, "http://example.com/a?utm_source=x&fbclid=1"));
+        assertEquals("http://example.com/a?utm=1&a=1&b=2", canonical(defaults, "http://example.com/a?utm=1&&a=1&b=2&"));
+        assertEquals("http://example.com/a", canonical(defaults, "http://example.com/a?"));
+        assertEquals("http://example.com/a?UTM_SOURCE=x", canonical(defaults, "http://example.com/a?UTM_SOURCE=x"));
+        assertEquals("http://example.com/a?utm_source=x",
+                canonical(UrlCanonicalizer.SYNTAX_ONLY, "http://example.com/a?utm_source=x"));
+    }
+
+    @Test
+    void testCanonicalize_SortsQueryByName() {
+        UrlCanonicalizer sorting = new UrlCanonicalizer(List.of("utm_*", "ref"), true);
+
+        assertEquals("http://example.com/b?a=2&b=1",
+                canonical(sorting, "HTTP://Example.com:80/a/../b?utm_source=x&b=1&a=2"));
+        assertEquals("http://example.com/?a=1&a&ab=3&b=2&b=1",
+                canonical(sorting, "http://example.com/?b=2&a=1&ref=home&b=1&ab=3&a"));
+        assertEquals(canonical(sorting, "http://example.com/p?y=2&x=1&utm_campaign=z"),
+                canonical(sorting, "http://EXAMPLE.com/./p?x=1&y=2#frag"));
+    }
+
+    @Test
+    void testCanonicalize_ReturnsCanonicalUriItself() {
+        URI uri = URI.create("https://example.com/a/b?x=1&y=%2F");
+
+        assertSame(uri, UrlCanonicalizer.DEFAULT.canonicalize(uri));
+        assertSame(uri, new UrlCanonicalizer(List.of(), true).canonicalize(uri));
+        assertNull(UrlCanonicalizer.DEFAULT.canonicalize(null));
+    }
+
+    @Test
+    void testCanonicalize_LeavesOpaqueAndRelativeUrisAlone() {
+        URI mailto = URI.create("mailto:someone@example.com");
+
+        assertSame(mailto, UrlCanonicalizer.DEFAULT.canonicalize(mailto));
+        assertEquals("page.html?utm_source=x", canonical(UrlCanonicalizer.DEFAULT, "page.html?utm_source=x#top"));
+        assertEquals("http://my_host.example.com/a", canonical(UrlCanonicalizer.DEFAULT,
+                "http://my_host.example.com/a#b"));
+    }
+
+    @Test
+    void testConstructor_RejectsEmptyNames() {
+        assertThrows(IllegalArgumentException.class, () -> new UrlCanonicalizer(List.of(""), false));
+        assertThrows(IllegalArgumentException.class, () -> new UrlCanonicalizer(List.of("*"), false));
+    }
+}
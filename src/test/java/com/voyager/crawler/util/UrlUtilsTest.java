@@ -45,6 +45,21 @@ class UrlUtilsTest {
         assertTrue(filename.contains("baz.v1.html"), "Dots should be preserved");
     }
 
+    @Test
+    void testToFilename_MatchesRegexSanitization() throws Exception {
+        String[] urls = {"https://example.com/r?to=http://other.org/x", "https://example.com/\uD83D\uDE00/caf\u00e9",
+                "https://example.com/" + "p".repeat(300), "http://example.com/%20a+b~c"};
+        for (String url : urls) {
+            String expected = url.replace("://", "_").replaceAll("[^a-zA-Z0-9.-]", "_");
+            expected = expected.substring(0, Math.min(expected.length(), UrlUtils.MAX_FILENAME_LENGTH));
+            assertEquals(expected, UrlUtils.toFilename(new URI(url)));
+        }
+
+        StringBuilder name = new StringBuilder("x/");
+        UrlUtils.appendFilename(new URI("https://example.com/long/path"), 12, name);
+        assertEquals("x/https_exampl", name.toString());
+    }
+
     @Test
     void testNormalize_RemovesFragment() throws Exception {
         URI uri = new URI("https://example.com/page#section1");
@@ -52,4 +67,16 @@ class UrlUtilsTest {
 
         assertEquals("https://example.com/page", normalized.toString());
     }
+
+    @Test
+    void testResolve_MatchesBrowserResolution() throws Exception {
+        URI base = new URI("https://example.com/a/b.html?x=1");
+
+        assertEquals("https://example.com/a/c.html", UrlUtils.resolve(base, " c.html\n").toString());
+        assertEquals("https://example.com/a/b.html?y=2", UrlUtils.resolve(base, "?y=2").toString());
+        assertEquals("https://example.com/a/b.html?x=1#top", UrlUtils.resolve(base, "#top").toString());
+        assertEquals("https://example.com/d", UrlUtils.resolve(base, "../../d").toString());
+        assertEquals("https://example.com/e", UrlUtils.resolve(new URI("https://example.com"), "e").toString());
+        assertEquals("http://other.org/", UrlUtils.resolve(base, "HTTP://other.org/").toString());
+    }
 }